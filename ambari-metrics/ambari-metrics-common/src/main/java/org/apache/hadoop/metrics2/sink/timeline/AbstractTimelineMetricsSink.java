@@ -30,6 +30,8 @@ import org.apache.hadoop.metrics2.sink.timeline.availability.MetricCollectorHAHe
 import org.apache.hadoop.metrics2.sink.timeline.availability.MetricCollectorUnavailableException;
 import org.apache.hadoop.metrics2.sink.timeline.availability.MetricSinkWriteShardHostnameHashingStrategy;
 import org.apache.hadoop.metrics2.sink.timeline.availability.MetricSinkWriteShardStrategy;
+import org.apache.hadoop.metrics2.sink.timeline.cache.TimelineMetricsSpillBuffer;
+import org.codehaus.jackson.JsonProcessingException;
 import org.codehaus.jackson.map.AnnotationIntrospector;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.annotate.JsonSerialize;
@@ -58,8 +60,15 @@ import java.util.Random;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
 
 public abstract class AbstractTimelineMetricsSink {
   public static final String TAGS_FOR_PREFIX_PROPERTY_PREFIX = "tagsForPrefix.";
@@ -72,6 +81,18 @@ public abstract class AbstractTimelineMetricsSink {
   public static final String ZOOKEEPER_QUORUM = "zookeeper.quorum";
   public static final String COLLECTOR_ZOOKEEPER_QUORUM = "metrics.zookeeper.quorum";
   public static final int DEFAULT_POST_TIMEOUT_SECONDS = 10;
+  public static final String METRICS_POST_GZIP = "gzip";
+  public static final String METRICS_SEND_QUEUE_SIZE = "sendQueueSize";
+  public static final int DEFAULT_SEND_QUEUE_SIZE = 0;
+  public static final long DEFAULT_SEND_QUEUE_CLOSE_TIMEOUT_MILLIS = 10000;
+  public static final String METRICS_SPILL_DIR = "spill.dir";
+  public static final String METRICS_SPILL_MAX_BYTES = "spill.max.bytes";
+  public static final long DEFAULT_SPILL_MAX_BYTES = 16 * 1024 * 1024;
+  public static final String METRICS_SPILL_MAX_AGE_SECONDS = "spill.max.age.seconds";
+  // Collector drops points older than its out of band allowance, 5 min by default
+  public static final int DEFAULT_SPILL_MAX_AGE_SECONDS = 300;
+  public static final String METRICS_SPILL_REPLAY_RATE = "spill.replay.posts.per.second";
+  public static final int DEFAULT_SPILL_REPLAY_RATE = 10;
   public static final String SKIP_COUNTER_TRANSFROMATION = "skipCounterDerivative";
   public static final String RPC_METRIC_PREFIX = "metric.rpc";
   public static final String WS_V1_TIMELINE_METRICS = "/ws/v1/timeline/metrics";
@@ -118,6 +139,22 @@ public abstract class AbstractTimelineMetricsSink {
   private static final int COLLECTOR_HOST_CACHE_MAX_EXPIRATION_MINUTES = 75;
   private static final int COLLECTOR_HOST_CACHE_MIN_EXPIRATION_MINUTES = 60;
 
+  // Pending batches of the asynchronous sender, created on first use
+  private BlockingQueue<TimelineMetrics> sendQueue;
+  private Thread senderThread;
+  private volatile boolean sendQueueClosed = false;
+  private final AtomicLong droppedSends = new AtomicLong(0);
+
+  // Posts that failed, replayed by the spill replay thread
+  protected TimelineMetricsSpillBuffer spillBuffer;
+  private int spillReplayRate;
+  private ScheduledExecutorService spillReplayExecutor;
+  // A spilled post that fails this many replays while live posts get
+  // through is one the collector rejects, it is discarded
+  private static final int MAX_SPILL_REPLAY_ATTEMPTS = 3;
+  private int spillReplayFailures = 0;
+  private final AtomicLong discardedSpilledPosts = new AtomicLong(0);
+
   static {
     mapper = new ObjectMapper();
     AnnotationIntrospector introspector = new JaxbAnnotationIntrospector();
@@ -141,7 +178,30 @@ public abstract class AbstractTimelineMetricsSink {
     isInitializedForHA = true;
   }
 
-  protected boolean emitMetricsJson(String connectUrl, String jsonData) {
+  protected boolean emitMetricsJson(String connectUrl, final String jsonData) {
+    return emitPayload(connectUrl, jsonData == null ? null : new PayloadWriter() {
+      @Override
+      public void write(OutputStream os) throws IOException {
+        os.write(jsonData.getBytes("UTF-8"));
+      }
+    }, false);
+  }
+
+  /**
+   * Serialize the metrics straight into the connection output stream, gzip
+   * compressed if enabled, instead of building the whole JSON document in
+   * memory first.
+   */
+  protected boolean emitMetricsStream(String connectUrl, final TimelineMetrics metrics) {
+    return emitPayload(connectUrl, new PayloadWriter() {
+      @Override
+      public void write(OutputStream os) throws IOException {
+        mapper.writeValue(os, metrics);
+      }
+    }, isGzipEnabled());
+  }
+
+  private boolean emitPayload(String connectUrl, PayloadWriter payload, boolean gzip) {
     int timeout = getTimeoutSeconds() * 1000;
     HttpURLConnection connection = null;
     try {
@@ -158,9 +218,16 @@ public abstract class AbstractTimelineMetricsSink {
       connection.setReadTimeout(timeout);
       connection.setDoOutput(true);
 
-      if (jsonData != null) {
-        try (OutputStream os = connection.getOutputStream()) {
-          os.write(jsonData.getBytes("UTF-8"));
+      if (payload != null) {
+        if (gzip) {
+          connection.setRequestProperty("Content-Encoding", "gzip");
+        }
+        // Stream the body in chunks, HttpURLConnection buffers it all otherwise
+        connection.setChunkedStreamingMode(0);
+        try (OutputStream os = gzip ?
+            new GZIPOutputStream(connection.getOutputStream(), 8192) :
+            connection.getOutputStream()) {
+          payload.write(os);
         }
       }
 
@@ -178,6 +245,13 @@ public abstract class AbstractTimelineMetricsSink {
       // reset failedCollectorConnectionsCounter to "0"
       failedCollectorConnectionsCounter.set(0);
       return true;
+    } catch (JsonProcessingException e) {
+      LOG.error("Unable to parse metrics", e);
+      // The request body is incomplete, do not reuse the connection
+      if (connection != null) {
+        connection.disconnect();
+      }
+      return false;
     } catch (IOException ioe) {
       StringBuilder errorMessage =
           new StringBuilder("Unable to connect to collector, " + connectUrl + "\n"
@@ -207,7 +281,21 @@ public abstract class AbstractTimelineMetricsSink {
     }
   }
 
+  /**
+   * Post the metrics to the collector. With a send queue configured the
+   * metrics are handed to the sender thread and the call returns right away;
+   * if the queue is full the oldest pending batch is spilled or dropped and
+   * false is returned.
+   */
   protected boolean emitMetrics(TimelineMetrics metrics) {
+    int queueSize = getSendQueueSize();
+    if (queueSize > 0) {
+      return enqueueMetrics(metrics, queueSize);
+    }
+    return sendMetrics(metrics);
+  }
+
+  private boolean sendMetrics(TimelineMetrics metrics) {
     String collectorHost;
     // Get cached target
     if (targetCollectorHostSupplier != null) {
@@ -224,22 +312,241 @@ public abstract class AbstractTimelineMetricsSink {
     }
 
     if (collectorHost == null) {
-      LOG.warn("No live collector to send metrics to. Metrics to be sent will be discarded.");
+      LOG.warn("No live collector to send metrics to. Metrics to be sent will be " +
+        (spillBuffer != null ? "spilled." : "discarded."));
+      spill(metrics);
       return false;
     }
 
     String connectUrl = getCollectorUri(collectorHost);
-    String jsonData = null;
     LOG.debug("EmitMetrics connectUrl = "  + connectUrl);
+    boolean sent = false;
+    try {
+      sent = emitMetricsStream(connectUrl, metrics);
+    } finally {
+      if (!sent) {
+        spill(metrics);
+      }
+    }
+    return sent;
+  }
+
+  /**
+   * Keep posts that cannot be delivered in a file under spillDir, and replay
+   * them oldest first, at most replayRate posts a second, once a collector
+   * takes posts again. Does nothing if spillDir is not set.
+   *
+   * @param spillName file name prefix, unique among the sinks of a host
+   */
+  protected void initSpillBuffer(String spillDir, String spillName, long maxBytes,
+                                 int maxAgeSeconds, int replayRate) {
+    if (StringUtils.isEmpty(spillDir) || spillBuffer != null) {
+      return;
+    }
+    File spillFile = new File(spillDir, spillName + ".spill");
     try {
-      jsonData = mapper.writeValueAsString(metrics);
+      spillFile.getParentFile().mkdirs();
+      spillBuffer = new TimelineMetricsSpillBuffer(spillFile, maxBytes, maxAgeSeconds * 1000L);
+    } catch (IOException | IllegalArgumentException e) {
+      LOG.warn("Unable to use metrics spill file " + spillFile + ", metrics that cannot " +
+        "be sent will be discarded: " + e.getMessage());
+      return;
+    }
+    LOG.info("Spilling metrics that cannot be sent to " + spillFile);
+    spillReplayRate = Math.max(1, replayRate);
+    spillReplayExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "timeline-metrics-spill-replay");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    spillReplayExecutor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          replaySpilledMetrics();
+        } catch (Exception e) {
+          LOG.warn("Unable to replay spilled metrics", e);
+        }
+      }
+    }, 1, 1, TimeUnit.SECONDS);
+  }
+
+  private void spill(TimelineMetrics metrics) {
+    if (spillBuffer == null) {
+      return;
+    }
+    try {
+      if (!spillBuffer.append(mapper.writeValueAsBytes(metrics))) {
+        LOG.debug("Metrics post too large to spill, discarded.");
+      }
     } catch (IOException e) {
-      LOG.error("Unable to parse metrics", e);
+      LOG.debug("Unable to spill metrics", e);
     }
-    if (jsonData != null) {
-      return emitMetricsJson(connectUrl, jsonData);
+  }
+
+  /**
+   * Replay up to the replay rate of spilled posts, oldest first. Only runs
+   * while a collector found by findPreferredCollectHost takes the live posts.
+   * The oldest post is discarded once it failed MAX_SPILL_REPLAY_ATTEMPTS
+   * times, so that a post the collector rejects does not stop the replay.
+   */
+  protected void replaySpilledMetrics() {
+    for (int i = 0; i < spillReplayRate; i++) {
+      Supplier<String> hostSupplier = targetCollectorHostSupplier;
+      if (hostSupplier == null || failedCollectorConnectionsCounter.get() > 0) {
+        return;
+      }
+      String collectorHost = hostSupplier.get();
+      final byte[] payload = spillBuffer.peek();
+      if (collectorHost == null || payload == null) {
+        return;
+      }
+      boolean sent;
+      try {
+        sent = emitPayload(getCollectorUri(collectorHost), new PayloadWriter() {
+          @Override
+          public void write(OutputStream os) throws IOException {
+            os.write(payload);
+          }
+        }, isGzipEnabled());
+      } catch (UnableToConnectException e) {
+        sent = false;
+      }
+      if (!sent) {
+        if (++spillReplayFailures < MAX_SPILL_REPLAY_ATTEMPTS) {
+          return;
+        }
+        discardedSpilledPosts.incrementAndGet();
+        LOG.warn("Discarding a spilled metrics post that failed " + spillReplayFailures +
+          " replays, " + discardedSpilledPosts.get() + " discarded so far.");
+      }
+      spillReplayFailures = 0;
+      spillBuffer.remove();
     }
-    return false;
+  }
+
+  /**
+   * @return number of spilled posts discarded because their replay kept failing
+   */
+  protected long getDiscardedSpilledPosts() {
+    return discardedSpilledPosts.get();
+  }
+
+  private synchronized boolean enqueueMetrics(TimelineMetrics metrics, int queueSize) {
+    if (sendQueueClosed) {
+      return sendMetrics(metrics);
+    }
+    if (sendQueue == null) {
+      final BlockingQueue<TimelineMetrics> queue = new ArrayBlockingQueue<>(queueSize);
+      sendQueue = queue;
+      senderThread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          sendQueuedMetrics(queue);
+        }
+      }, "timeline-metrics-sender-" + getClass().getSimpleName());
+      senderThread.setDaemon(true);
+      senderThread.start();
+    }
+    boolean queued = true;
+    while (!sendQueue.offer(metrics)) {
+      // Newer metrics are worth more than old ones on a slow collector
+      TimelineMetrics oldest = sendQueue.poll();
+      if (oldest != null) {
+        queued = false;
+        dropQueuedMetrics(oldest);
+      }
+    }
+    return queued;
+  }
+
+  private void dropQueuedMetrics(TimelineMetrics metrics) {
+    spill(metrics);
+    if (droppedSends.getAndIncrement() % NUMBER_OF_SKIPPED_COLLECTOR_EXCEPTIONS == 0) {
+      LOG.warn("Metrics send queue is full, dropped " + droppedSends.get() +
+        " batches so far" + (spillBuffer != null ? ", dropped batches are spilled." : "."));
+    }
+  }
+
+  private void sendQueuedMetrics(BlockingQueue<TimelineMetrics> queue) {
+    while (true) {
+      TimelineMetrics metrics;
+      try {
+        metrics = queue.poll(1, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        return;
+      }
+      if (metrics == null) {
+        // A sender that outlived the close of its queue stops once it is empty
+        if (sendQueueClosed || queue != sendQueue) {
+          return;
+        }
+        continue;
+      }
+      try {
+        sendMetrics(metrics);
+      } catch (UnableToConnectException e) {
+        // Already logged, the next batch will retry
+      } catch (Exception e) {
+        LOG.warn("Unable to send metrics to collector", e);
+      }
+    }
+  }
+
+  /**
+   * Let the sender thread post the batches still in the send queue and wait
+   * for it at most timeoutMillis, the sender is a daemon thread and would
+   * otherwise lose them when the JVM exits. Batches left after the timeout
+   * are spilled or dropped. Later metrics are posted on the calling thread
+   * until {@link #openSendQueue()} is called.
+   * Sinks call this when they are closed.
+   */
+  protected void closeSendQueue(long timeoutMillis) {
+    Thread sender;
+    synchronized (this) {
+      sendQueueClosed = true;
+      sender = senderThread;
+    }
+    if (sender == null) {
+      return;
+    }
+    try {
+      sender.join(timeoutMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    int left = 0;
+    TimelineMetrics metrics;
+    while ((metrics = sendQueue.poll()) != null) {
+      left++;
+      dropQueuedMetrics(metrics);
+    }
+    if (left > 0) {
+      LOG.warn("Metrics sender did not finish within " + timeoutMillis + " ms, " + left +
+        " batches not sent" + (spillBuffer != null ? " are spilled." : " are dropped."));
+    }
+  }
+
+  /**
+   * Send metrics asynchronously again after {@link #closeSendQueue(long)},
+   * with a new queue and sender thread created on first use.
+   * Sinks which are restarted after being stopped call this when started.
+   */
+  protected synchronized void openSendQueue() {
+    sendQueueClosed = false;
+    sendQueue = null;
+    senderThread = null;
+  }
+
+  /**
+   * @return number of batches dropped because the send queue was full or
+   * not sent when it was closed
+   */
+  protected long getDroppedSends() {
+    return droppedSends.get();
   }
 
   /**
@@ -558,4 +865,23 @@ public abstract class AbstractTimelineMetricsSink {
    * @return String "host1"
    */
   abstract protected String getHostname();
+
+  /**
+   * Capacity, in batches, of the asynchronous send queue. With the default
+   * of 0 metrics are posted on the calling thread.
+   */
+  protected int getSendQueueSize() {
+    return DEFAULT_SEND_QUEUE_SIZE;
+  }
+
+  /**
+   * Whether to gzip the metrics posted to the collector.
+   */
+  protected boolean isGzipEnabled() {
+    return false;
+  }
+
+  private interface PayloadWriter {
+    void write(OutputStream os) throws IOException;
+  }
 }
@@ -17,8 +17,11 @@
  */
 package org.apache.hadoop.metrics2.sink.timeline;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 import javax.xml.bind.annotation.XmlAccessType;
@@ -28,7 +31,7 @@ import javax.xml.bind.annotation.XmlRootElement;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
-import org.codehaus.jackson.map.annotate.JsonDeserialize;
+import org.codehaus.jackson.annotate.JsonIgnore;
 
 @XmlRootElement(name = "metric")
 @XmlAccessorType(XmlAccessType.NONE)
@@ -44,7 +47,13 @@ public class TimelineMetric implements Comparable<TimelineMetric> {
   private long startTime;
   private String type;
   private String units;
+  // The data points are held by metricValues unless a series was set with
+  // setMetricSeries(), only the setters switch between the two
   private TreeMap<Long, Double> metricValues = new TreeMap<Long, Double>();
+  private TimelineMetricSeries metricSeries;
+  // Read only TreeMap built on demand from a series, dropped whenever the
+  // series changes
+  private volatile TreeMap<Long, Double> metricSeriesValues;
   private Map<String, String> metadata = new HashMap<>();
 
   // default
@@ -62,7 +71,11 @@ public class TimelineMetric implements Comparable<TimelineMetric> {
     setInstanceId(metric.getInstanceId());
     setHostName(metric.getHostName());
     setStartTime(metric.getStartTime());
-    setMetricValues(new TreeMap<Long, Double>(metric.getMetricValues()));
+    if (metric.metricSeries != null) {
+      setMetricValues(metric.metricSeries.toTreeMap());
+    } else {
+      setMetricValues(new TreeMap<Long, Double>(metric.metricValues));
+    }
   }
 
   @XmlElement(name = "metricname")
@@ -137,17 +150,86 @@ public class TimelineMetric implements Comparable<TimelineMetric> {
     this.units = units;
   }
 
+  /**
+   * Data points of this metric. For a metric whose points are held in a
+   * {@link TimelineMetricSeries} the map is built once and cached, and is read
+   * only since changes to it could not reach the series, modifying it throws
+   * UnsupportedOperationException. Use {@link #addMetricValue} or
+   * {@link #addMetricValues} to modify any metric.
+   */
   @XmlElement(name = "metrics")
   public TreeMap<Long, Double> getMetricValues() {
-    return metricValues;
+    TimelineMetricSeries series = metricSeries;
+    if (series == null) {
+      return metricValues;
+    }
+    TreeMap<Long, Double> values = metricSeriesValues;
+    if (values == null) {
+      values = new SeriesValues(series.toTreeMap());
+      metricSeriesValues = values;
+    }
+    return values;
   }
 
   public void setMetricValues(TreeMap<Long, Double> metricValues) {
-    this.metricValues = metricValues;
+    this.metricValues = metricValues == null ? new TreeMap<Long, Double>() : metricValues;
+    this.metricSeries = null;
+    this.metricSeriesValues = null;
+  }
+
+  /**
+   * Primitive array backed data points. For a metric whose points are held
+   * in the TreeMap this is a new copy on every call, null values become NaN.
+   */
+  @JsonIgnore
+  public TimelineMetricSeries getMetricSeries() {
+    TimelineMetricSeries series = metricSeries;
+    return series != null ? series : TimelineMetricSeries.fromMap(metricValues);
+  }
+
+  @JsonIgnore
+  public void setMetricSeries(TimelineMetricSeries metricSeries) {
+    this.metricSeries = metricSeries == null ? new TimelineMetricSeries() : metricSeries;
+    this.metricSeriesValues = null;
+    this.metricValues = null;
+  }
+
+  public void addMetricValue(long timestamp, double value) {
+    if (metricSeries != null) {
+      metricSeries.put(timestamp, value);
+      metricSeriesValues = null;
+    } else {
+      metricValues.put(timestamp, value);
+    }
   }
 
   public void addMetricValues(Map<Long, Double> metricValues) {
-    this.metricValues.putAll(metricValues);
+    if (metricSeries != null) {
+      metricSeries.putAll(metricValues);
+      metricSeriesValues = null;
+    } else {
+      this.metricValues.putAll(metricValues);
+    }
+  }
+
+  public void addMetricValues(TimelineMetricSeries series) {
+    if (metricSeries != null) {
+      metricSeries.putAll(series);
+      metricSeriesValues = null;
+    } else {
+      for (int i = 0; i < series.size(); i++) {
+        metricValues.put(series.getTimestamp(i), series.getValue(i));
+      }
+    }
+  }
+
+  /**
+   * @return number of data points, without building a TreeMap
+   */
+  @JsonIgnore
+  public int getMetricValuesCount() {
+    TimelineMetricSeries series = metricSeries;
+    return series != null ? series.size() : metricValues.size();
   }
 
   @XmlElement(name = "metadata")
@@ -211,4 +293,67 @@ public class TimelineMetric implements Comparable<TimelineMetric> {
       return metricName.compareTo(other.metricName);
     }
   }
+
+  /**
+   * Data points of a series backed metric as returned by getMetricValues(),
+   * rejecting changes which would otherwise be silently lost.
+   */
+  private static final class SeriesValues extends TreeMap<Long, Double> {
+    private static final long serialVersionUID = 1L;
+
+    SeriesValues(TreeMap<Long, Double> values) {
+      // Built from a sorted map without calling put()
+      super(values);
+    }
+
+    private static UnsupportedOperationException readOnly() {
+      return new UnsupportedOperationException("The data points of a series backed metric are " +
+        "read only, use TimelineMetric.addMetricValue() or addMetricValues()");
+    }
+
+    @Override
+    public Double put(Long key, Double value) {
+      throw readOnly();
+    }
+
+    @Override
+    public void putAll(Map<? extends Long, ? extends Double> map) {
+      throw readOnly();
+    }
+
+    @Override
+    public Double remove(Object key) {
+      throw readOnly();
+    }
+
+    @Override
+    public void clear() {
+      throw readOnly();
+    }
+
+    @Override
+    public Map.Entry<Long, Double> pollFirstEntry() {
+      throw readOnly();
+    }
+
+    @Override
+    public Map.Entry<Long, Double> pollLastEntry() {
+      throw readOnly();
+    }
+
+    @Override
+    public Set<Long> keySet() {
+      return Collections.unmodifiableSet(super.keySet());
+    }
+
+    @Override
+    public Collection<Double> values() {
+      return Collections.unmodifiableCollection(super.values());
+    }
+
+    @Override
+    public Set<Map.Entry<Long, Double>> entrySet() {
+      return Collections.unmodifiableSet(super.entrySet());
+    }
+  }
 }
@@ -39,6 +39,8 @@ public class TimelineMetricMetadata {
   boolean isWhitelisted = false;
   // Serialization ignored helper flag
   boolean isPersisted = false;
+  // Compact id of the metric name and app id, assigned by the collector
+  Integer uuid;
 
   // Placeholder to add more type later
   public enum MetricType {
@@ -132,6 +134,15 @@ public class TimelineMetricMetadata {
     this.isPersisted = isPersisted;
   }
 
+  @JsonIgnore
+  public Integer getUuid() {
+    return uuid;
+  }
+
+  public void setUuid(Integer uuid) {
+    this.uuid = uuid;
+  }
+
   /**
    * Assumes the key of the object being compared is the same as @TimelineMetricMetadata
    * @param metadata @TimelineMetricMetadata to be compared
@@ -0,0 +1,329 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonProcessingException;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.DeserializationContext;
+import org.codehaus.jackson.map.JsonDeserializer;
+import org.codehaus.jackson.map.JsonSerializer;
+import org.codehaus.jackson.map.SerializerProvider;
+import org.codehaus.jackson.map.annotate.JsonDeserialize;
+import org.codehaus.jackson.map.annotate.JsonSerialize;
+
+/**
+ * Time series sorted by timestamp, backed by parallel long[] / double[]
+ * arrays instead of a TreeMap of boxed values. Appending in timestamp order
+ * is amortized O(1), out of order puts fall back to a binary search insert.
+ *
+ * A null value in a map based series is stored as NaN.
+ *
+ * The JSON form is the same object of "timestamp": value pairs that
+ * Jackson produces for a TreeMap&lt;Long, Double&gt;.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Unstable
+@JsonSerialize(using = TimelineMetricSeries.Serializer.class)
+@JsonDeserialize(using = TimelineMetricSeries.Deserializer.class)
+public class TimelineMetricSeries {
+
+  private static final int DEFAULT_CAPACITY = 8;
+
+  private long[] timestamps;
+  private double[] values;
+  private int size;
+
+  public TimelineMetricSeries() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public TimelineMetricSeries(int capacity) {
+    timestamps = new long[Math.max(capacity, 1)];
+    values = new double[Math.max(capacity, 1)];
+  }
+
+  private TimelineMetricSeries(long[] timestamps, double[] values, int size) {
+    this.timestamps = timestamps;
+    this.values = values;
+    this.size = size;
+  }
+
+  public static TimelineMetricSeries fromMap(Map<Long, Double> metricValues) {
+    TimelineMetricSeries series = new TimelineMetricSeries(metricValues.size());
+    series.putAll(metricValues);
+    return series;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public long getTimestamp(int index) {
+    checkIndex(index);
+    return timestamps[index];
+  }
+
+  public double getValue(int index) {
+    checkIndex(index);
+    return values[index];
+  }
+
+  public long getFirstTimestamp() {
+    return getTimestamp(0);
+  }
+
+  public long getLastTimestamp() {
+    return getTimestamp(size - 1);
+  }
+
+  /**
+   * Add a point, replacing the value of an existing timestamp.
+   */
+  public void put(long timestamp, double value) {
+    if (size == 0 || timestamp > timestamps[size - 1]) {
+      ensureCapacity(size + 1);
+      timestamps[size] = timestamp;
+      values[size] = value;
+      size++;
+      return;
+    }
+    int index = Arrays.binarySearch(timestamps, 0, size, timestamp);
+    if (index >= 0) {
+      values[index] = value;
+      return;
+    }
+    int insertAt = -index - 1;
+    ensureCapacity(size + 1);
+    System.arraycopy(timestamps, insertAt, timestamps, insertAt + 1, size - insertAt);
+    System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+    timestamps[insertAt] = timestamp;
+    values[insertAt] = value;
+    size++;
+  }
+
+  public void putAll(Map<Long, Double> metricValues) {
+    ensureCapacity(size + metricValues.size());
+    for (Map.Entry<Long, Double> entry : metricValues.entrySet()) {
+      put(entry.getKey(), entry.getValue() == null ? Double.NaN : entry.getValue());
+    }
+  }
+
+  public void putAll(TimelineMetricSeries other) {
+    ensureCapacity(size + other.size);
+    for (int i = 0; i < other.size; i++) {
+      put(other.timestamps[i], other.values[i]);
+    }
+  }
+
+  /**
+   * @return value at the timestamp or null if there is no such point
+   */
+  public Double get(long timestamp) {
+    int index = indexOf(timestamp);
+    return index >= 0 ? values[index] : null;
+  }
+
+  public boolean containsTimestamp(long timestamp) {
+    return indexOf(timestamp) >= 0;
+  }
+
+  public int indexOf(long timestamp) {
+    int index = Arrays.binarySearch(timestamps, 0, size, timestamp);
+    return index >= 0 ? index : -1;
+  }
+
+  /**
+   * Copy of the points with a timestamp &gt;= fromTimestamp, same as
+   * TreeMap.tailMap(fromTimestamp).
+   */
+  public TimelineMetricSeries tailSeries(long fromTimestamp) {
+    return subSeries(fromTimestamp, Long.MAX_VALUE, true);
+  }
+
+  /**
+   * Copy of the points with fromTimestamp &lt;= timestamp &lt; toTimestamp,
+   * or &lt;= toTimestamp when toInclusive is set.
+   */
+  public TimelineMetricSeries subSeries(long fromTimestamp, long toTimestamp, boolean toInclusive) {
+    int from = lowerBound(fromTimestamp);
+    int to = toInclusive ? upperBound(toTimestamp) : lowerBound(toTimestamp);
+    if (to <= from) {
+      return new TimelineMetricSeries();
+    }
+    return new TimelineMetricSeries(Arrays.copyOfRange(timestamps, from, to),
+      Arrays.copyOfRange(values, from, to), to - from);
+  }
+
+  /**
+   * Drop, in place, all points with a timestamp &lt; timestamp.
+   */
+  public void removeBefore(long timestamp) {
+    int from = lowerBound(timestamp);
+    if (from == 0) {
+      return;
+    }
+    System.arraycopy(timestamps, from, timestamps, 0, size - from);
+    System.arraycopy(values, from, values, 0, size - from);
+    size -= from;
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  public TimelineMetricSeries copy() {
+    return new TimelineMetricSeries(Arrays.copyOf(timestamps, Math.max(size, 1)),
+      Arrays.copyOf(values, Math.max(size, 1)), size);
+  }
+
+  public TreeMap<Long, Double> toTreeMap() {
+    TreeMap<Long, Double> metricValues = new TreeMap<Long, Double>();
+    for (int i = 0; i < size; i++) {
+      metricValues.put(timestamps[i], values[i]);
+    }
+    return metricValues;
+  }
+
+  public void writeJson(JsonGenerator generator) throws IOException {
+    generator.writeStartObject();
+    for (int i = 0; i < size; i++) {
+      generator.writeFieldName(Long.toString(timestamps[i]));
+      generator.writeNumber(values[i]);
+    }
+    generator.writeEndObject();
+  }
+
+  public static TimelineMetricSeries readJson(JsonParser parser) throws IOException {
+    JsonToken token = parser.getCurrentToken();
+    if (token == null) {
+      token = parser.nextToken();
+    }
+    if (token == JsonToken.VALUE_NULL) {
+      return null;
+    }
+    if (token != JsonToken.START_OBJECT) {
+      throw new IOException("Expected start of metric values object, found " + token);
+    }
+    TimelineMetricSeries series = new TimelineMetricSeries();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      long timestamp = Long.parseLong(parser.getCurrentName());
+      JsonToken valueToken = parser.nextToken();
+      double value;
+      if (valueToken == JsonToken.VALUE_NULL) {
+        value = Double.NaN;
+      } else if (valueToken == JsonToken.VALUE_STRING) {
+        // NaN and Infinity are written as strings
+        value = Double.parseDouble(parser.getText());
+      } else {
+        value = parser.getDoubleValue();
+      }
+      series.put(timestamp, value);
+    }
+    return series;
+  }
+
+  private int lowerBound(long timestamp) {
+    int index = Arrays.binarySearch(timestamps, 0, size, timestamp);
+    return index >= 0 ? index : -index - 1;
+  }
+
+  private int upperBound(long timestamp) {
+    int index = Arrays.binarySearch(timestamps, 0, size, timestamp);
+    return index >= 0 ? index + 1 : -index - 1;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > timestamps.length) {
+      int newCapacity = Math.max(capacity, timestamps.length + (timestamps.length >> 1));
+      timestamps = Arrays.copyOf(timestamps, newCapacity);
+      values = Arrays.copyOf(values, newCapacity);
+    }
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    TimelineMetricSeries that = (TimelineMetricSeries) o;
+    if (size != that.size) return false;
+    for (int i = 0; i < size; i++) {
+      if (timestamps[i] != that.timestamps[i]) return false;
+      if (Double.doubleToLongBits(values[i]) != Double.doubleToLongBits(that.values[i])) return false;
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = size;
+    for (int i = 0; i < size; i++) {
+      long bits = Double.doubleToLongBits(values[i]);
+      result = 31 * result + (int) (timestamps[i] ^ (timestamps[i] >>> 32));
+      result = 31 * result + (int) (bits ^ (bits >>> 32));
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("{");
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(timestamps[i]).append('=').append(values[i]);
+    }
+    return sb.append('}').toString();
+  }
+
+  public static class Serializer extends JsonSerializer<TimelineMetricSeries> {
+    @Override
+    public void serialize(TimelineMetricSeries series, JsonGenerator generator,
+                          SerializerProvider provider) throws IOException, JsonProcessingException {
+      series.writeJson(generator);
+    }
+  }
+
+  public static class Deserializer extends JsonDeserializer<TimelineMetricSeries> {
+    @Override
+    public TimelineMetricSeries deserialize(JsonParser parser, DeserializationContext context)
+        throws IOException, JsonProcessingException {
+      return readJson(parser);
+    }
+  }
+}
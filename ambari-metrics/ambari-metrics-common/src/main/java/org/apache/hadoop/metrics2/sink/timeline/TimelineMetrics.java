@@ -114,7 +114,7 @@ public class TimelineMetrics {
     }
 
     if (metricToMerge != null) {
-      metricToMerge.getMetricValues().put(metric.getTimestamp(), metric.getValue());
+      metricToMerge.addMetricValue(metric.getTimestamp(), metric.getValue());
       if (metricToMerge.getTimestamp() > metric.getTimestamp()) {
         metricToMerge.setTimestamp(metric.getTimestamp());
       }
@@ -22,28 +22,40 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Buffers the values of each metric until they span the eviction time.
+ *
+ * Every metric name owns a {@link MetricBuffer} of primitive timestamp and
+ * value arrays that is drained, not dropped, on eviction, so once the arrays
+ * have grown to the size of an eviction window a put allocates nothing. A
+ * cache is normally fed and evicted by the single reporting thread of its
+ * sink, so the per buffer lock is uncontended; it only guards the final
+ * flush on close against puts still in flight.
+ */
 @InterfaceAudience.Public
 @InterfaceStability.Evolving
 public class TimelineMetricsCache {
 
-  private final TimelineMetricHolder timelineMetricCache = new TimelineMetricHolder();
   private static final Log LOG = LogFactory.getLog(TimelineMetric.class);
   public static final int MAX_RECS_PER_NAME_DEFAULT = 10000;
   public static final int MAX_EVICTION_TIME_MILLIS = 59000; // ~ 1 min
+  private static final int INITIAL_BUFFER_CAPACITY = 8;
+
+  private final ConcurrentMap<String, MetricBuffer> metricBuffers =
+    new ConcurrentHashMap<String, MetricBuffer>();
   private final int maxRecsPerName;
   private final int maxEvictionTimeInMillis;
   private boolean skipCounterTransform = true;
-  private final Map<String, Double> counterMetricLastValue = new HashMap<String, Double>();
 
   public TimelineMetricsCache(int maxRecsPerName, int maxEvictionTimeInMillis) {
     this(maxRecsPerName, maxEvictionTimeInMillis, false);
@@ -56,130 +68,199 @@ public class TimelineMetricsCache {
     this.skipCounterTransform = skipCounterTransform;
   }
 
-  class TimelineMetricWrapper {
-    private long timeDiff = -1;
+  /**
+   * Values of one metric, in arrival order, plus the metadata of the first
+   * metric put since the last eviction.
+   */
+  class MetricBuffer {
+    private long[] timestamps = new long[INITIAL_BUFFER_CAPACITY];
+    private double[] values = new double[INITIAL_BUFFER_CAPACITY];
+    private int size = 0;
+    // A buffer without a started metric has nothing to evict
+    private boolean started = false;
+
+    private String metricName;
+    private String appId;
+    private String instanceId;
+    private String hostName;
+    private String type;
+    private String units;
+    private long timestamp;
+    private long startTime;
+    private Map<String, String> metadata;
+
     private long oldestTimestamp = -1;
-    private TimelineMetric timelineMetric;
+    private long timeDiff = -1;
 
-    TimelineMetricWrapper(TimelineMetric timelineMetric) {
-      this.timelineMetric = timelineMetric;
-      this.oldestTimestamp = timelineMetric.getStartTime();
-    }
+    // To avoid duplication at the end of the buffer and beginning of the
+    // next segment of values; both survive evictions
+    private boolean hasEndOfBuffer = false;
+    private long endOfBufferTimestamp;
+    private double counterLastValue = Double.NaN;
 
-    private void updateTimeDiff(long timestamp) {
-      if (oldestTimestamp != -1 && timestamp > oldestTimestamp) {
-        timeDiff = timestamp - oldestTimestamp;
-      } else {
-        oldestTimestamp = timestamp;
+    synchronized void put(TimelineMetric metric, boolean asDerivative) {
+      boolean duplicate = hasEndOfBuffer && endOfBufferTimestamp == metric.getStartTime();
+      Map<Long, Double> metricValues = metric.getMetricValues();
+
+      if (!duplicate) {
+        if (!started) {
+          start(metric);
+        } else if (size > maxRecsPerName) {
+          removeOldest(metric);
+        }
       }
-    }
 
-    public synchronized void putMetric(TimelineMetric metric) {
-      TreeMap<Long, Double> metricValues = this.timelineMetric.getMetricValues();
-      if (metricValues.size() > maxRecsPerName) {
-        // remove values for eldest maxEvictionTimeInMillis
-        long newEldestTimestamp = oldestTimestamp + maxEvictionTimeInMillis;
-        TreeMap<Long, Double> metricsSubSet =
-          new TreeMap<>(metricValues.tailMap(newEldestTimestamp));
-        if (metricsSubSet.isEmpty()) {
-          oldestTimestamp = metric.getStartTime();
-          this.timelineMetric.setStartTime(metric.getStartTime());
-        } else {
-          Long newStartTime = metricsSubSet.firstKey();
-          oldestTimestamp = newStartTime;
-          this.timelineMetric.setStartTime(newStartTime);
+      if (asDerivative) {
+        double previousValue = counterLastValue;
+        for (Map.Entry<Long, Double> entry : metricValues.entrySet()) {
+          if (entry.getValue() == null) {
+            continue;
+          }
+          double value = entry.getValue();
+          if (Double.isNaN(previousValue)) {
+            previousValue = value;
+          }
+          if (!duplicate) {
+            append(entry.getKey(), value - previousValue);
+          }
+          previousValue = value;
+        }
+        counterLastValue = previousValue;
+      } else if (!duplicate) {
+        for (Map.Entry<Long, Double> entry : metricValues.entrySet()) {
+          append(entry.getKey(), entry.getValue() == null ? Double.NaN : entry.getValue());
         }
-        this.timelineMetric.setMetricValues(metricsSubSet);
-        LOG.warn("Metrics cache overflow. Values for metric " +
-          metric.getMetricName() + " older than " + newEldestTimestamp +
-          " were removed to clean up the cache.");
       }
-      this.timelineMetric.addMetricValues(metric.getMetricValues());
-      updateTimeDiff(metric.getStartTime());
-    }
 
-    public synchronized long getTimeDiff() {
-      return timeDiff;
+      if (!duplicate) {
+        updateTimeDiff(metric.getStartTime());
+        // Buffer last ts value
+        hasEndOfBuffer = true;
+        endOfBufferTimestamp = metric.getStartTime();
+      }
     }
 
-    public synchronized TimelineMetric getTimelineMetric() {
-      return timelineMetric;
+    synchronized boolean isEvictable() {
+      return started && timeDiff >= maxEvictionTimeInMillis;
     }
-  }
-
-  // TODO: Add weighted eviction
-  class TimelineMetricHolder extends ConcurrentSkipListMap<String, TimelineMetricWrapper> {
-    private static final long serialVersionUID = 2L;
-    // To avoid duplication at the end of the buffer and beginning of the next
-    // segment of values
-    private Map<String, Long> endOfBufferTimestamps = new HashMap<String, Long>();
 
-    public TimelineMetric evict(String metricName) {
-      TimelineMetricWrapper metricWrapper = this.get(metricName);
+    synchronized boolean isStarted() {
+      return started;
+    }
 
-      if (metricWrapper == null
-        || metricWrapper.getTimeDiff() < getMaxEvictionTimeInMillis()) {
-        return null;
+    /**
+     * Hand out the buffered values and reset the buffer, keeping its arrays.
+     */
+    synchronized TimelineMetric drain() {
+      TimelineMetric metric = new TimelineMetric();
+      metric.setMetricName(metricName);
+      metric.setAppId(appId);
+      metric.setInstanceId(instanceId);
+      metric.setHostName(hostName);
+      metric.setType(type);
+      metric.setUnits(units);
+      metric.setTimestamp(timestamp);
+      metric.setStartTime(startTime);
+      if (metadata != null) {
+        metric.setMetadata(metadata);
       }
+      TimelineMetricSeries series = new TimelineMetricSeries(size);
+      for (int i = 0; i < size; i++) {
+        series.put(timestamps[i], values[i]);
+      }
+      metric.setMetricSeries(series);
 
-      TimelineMetric timelineMetric = metricWrapper.getTimelineMetric();
-      this.remove(metricName);
+      size = 0;
+      started = false;
+      metadata = null;
+      oldestTimestamp = -1;
+      timeDiff = -1;
+      return metric;
+    }
 
-      return timelineMetric;
+    private void start(TimelineMetric metric) {
+      metricName = metric.getMetricName();
+      appId = metric.getAppId();
+      instanceId = metric.getInstanceId();
+      hostName = metric.getHostName();
+      type = metric.getType();
+      units = metric.getUnits();
+      timestamp = metric.getTimestamp();
+      startTime = metric.getStartTime();
+      metadata = metric.getMetadata();
+      oldestTimestamp = metric.getStartTime();
+      started = true;
     }
 
-    public TimelineMetrics evictAll() {
-      List<TimelineMetric> metricList = new ArrayList<TimelineMetric>();
+    private void append(long ts, double value) {
+      if (size == timestamps.length) {
+        int capacity = timestamps.length << 1;
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        values = Arrays.copyOf(values, capacity);
+      }
+      timestamps[size] = ts;
+      values[size] = value;
+      size++;
+    }
 
-      for (Iterator<Map.Entry<String, TimelineMetricWrapper>> it = this.entrySet().iterator(); it.hasNext();) {
-        Map.Entry<String, TimelineMetricWrapper> cacheEntry = it.next();
-        TimelineMetricWrapper metricWrapper = cacheEntry.getValue();
-        if (metricWrapper != null) {
-          TimelineMetric timelineMetric = cacheEntry.getValue().getTimelineMetric();
-          metricList.add(timelineMetric);
+    /**
+     * Cache overflow, remove values for eldest maxEvictionTimeInMillis in
+     * place.
+     */
+    private void removeOldest(TimelineMetric metric) {
+      long newEldestTimestamp = oldestTimestamp + maxEvictionTimeInMillis;
+      int kept = 0;
+      long newStartTime = Long.MAX_VALUE;
+      for (int i = 0; i < size; i++) {
+        if (timestamps[i] >= newEldestTimestamp) {
+          timestamps[kept] = timestamps[i];
+          values[kept] = values[i];
+          newStartTime = Math.min(newStartTime, timestamps[i]);
+          kept++;
         }
-        it.remove();
       }
-      TimelineMetrics timelineMetrics = new TimelineMetrics();
-      timelineMetrics.setMetrics(metricList);
-      return timelineMetrics;
+      size = kept;
+      startTime = kept == 0 ? metric.getStartTime() : newStartTime;
+      oldestTimestamp = startTime;
+      LOG.warn("Metrics cache overflow. Values for metric " +
+        metric.getMetricName() + " older than " + newEldestTimestamp +
+        " were removed to clean up the cache.");
     }
 
-    public void put(String metricName, TimelineMetric timelineMetric) {
-      if (isDuplicate(timelineMetric)) {
-        return;
-      }
-      TimelineMetricWrapper metric = this.get(metricName);
-      if (metric == null) {
-        this.put(metricName, new TimelineMetricWrapper(timelineMetric));
+    private void updateTimeDiff(long ts) {
+      if (oldestTimestamp != -1 && ts > oldestTimestamp) {
+        timeDiff = ts - oldestTimestamp;
       } else {
-        metric.putMetric(timelineMetric);
+        oldestTimestamp = ts;
       }
-      // Buffer last ts value
-      endOfBufferTimestamps.put(metricName, timelineMetric.getStartTime());
-    }
-
-    /**
-     * Test whether last buffered timestamp is same as the newly received.
-     * @param timelineMetric @TimelineMetric
-     * @return true/false
-     */
-    private boolean isDuplicate(TimelineMetric timelineMetric) {
-      return endOfBufferTimestamps.containsKey(timelineMetric.getMetricName())
-        && endOfBufferTimestamps.get(timelineMetric.getMetricName()).equals(timelineMetric.getStartTime());
     }
   }
 
   public TimelineMetric getTimelineMetric(String metricName) {
-    if (timelineMetricCache.containsKey(metricName)) {
-      return timelineMetricCache.evict(metricName);
+    MetricBuffer buffer = metricBuffers.get(metricName);
+    if (buffer == null) {
+      return null;
+    }
+    synchronized (buffer) {
+      return buffer.isEvictable() ? buffer.drain() : null;
     }
-
-    return null;
   }
 
+  /**
+   * Evict every buffered metric, regardless of the time its values span.
+   */
   public TimelineMetrics getAllMetrics() {
-    return timelineMetricCache.evictAll();
+    List<TimelineMetric> metricList = new ArrayList<TimelineMetric>(metricBuffers.size());
+    for (MetricBuffer buffer : metricBuffers.values()) {
+      synchronized (buffer) {
+        if (buffer.isStarted()) {
+          metricList.add(buffer.drain());
+        }
+      }
+    }
+    TimelineMetrics timelineMetrics = new TimelineMetrics();
+    timelineMetrics.setMetrics(metricList);
+    return timelineMetrics;
   }
 
   /**
@@ -191,29 +272,23 @@ public class TimelineMetricsCache {
   }
 
   public void putTimelineMetric(TimelineMetric timelineMetric) {
-    timelineMetricCache.put(timelineMetric.getMetricName(), timelineMetric);
+    putTimelineMetric(timelineMetric, false);
   }
 
-  private void transformMetricValuesToDerivative(TimelineMetric timelineMetric) {
-    String metricName = timelineMetric.getMetricName();
-    double firstValue = timelineMetric.getMetricValues().size() > 0
-        ? timelineMetric.getMetricValues().entrySet().iterator().next().getValue() : 0;
-    Double value = counterMetricLastValue.get(metricName);
-    double previousValue = value != null ? value : firstValue;
-    Map<Long, Double> metricValues = timelineMetric.getMetricValues();
-    TreeMap<Long, Double>   newMetricValues = new TreeMap<Long, Double>();
-    for (Map.Entry<Long, Double> entry : metricValues.entrySet()) {
-      newMetricValues.put(entry.getKey(), entry.getValue() - previousValue);
-      previousValue = entry.getValue();
-    }
-    timelineMetric.setMetricValues(newMetricValues);
-    counterMetricLastValue.put(metricName, previousValue);
+  public void putTimelineMetric(TimelineMetric timelineMetric, boolean isCounter) {
+    getMetricBuffer(timelineMetric.getMetricName())
+      .put(timelineMetric, isCounter && !skipCounterTransform);
   }
 
-  public void putTimelineMetric(TimelineMetric timelineMetric, boolean isCounter) {
-    if (isCounter && !skipCounterTransform) {
-      transformMetricValuesToDerivative(timelineMetric);
+  private MetricBuffer getMetricBuffer(String metricName) {
+    MetricBuffer buffer = metricBuffers.get(metricName);
+    if (buffer == null) {
+      MetricBuffer newBuffer = new MetricBuffer();
+      buffer = metricBuffers.putIfAbsent(metricName, newBuffer);
+      if (buffer == null) {
+        buffer = newBuffer;
+      }
     }
-    putTimelineMetric(timelineMetric);
+    return buffer;
   }
 }
@@ -0,0 +1,271 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+
+/**
+ * Bounded, memory mapped, append only file holding metric posts the
+ * collector could not take, so they can be replayed in order once a
+ * collector is reachable again.
+ *
+ * Layout: a header with the offsets of the oldest record and of the end
+ * of the last record and the record count, followed by records of
+ * [length, spill time, payload].
+ * The offsets are kept in the file, so the spilled posts survive a restart
+ * of the daemon. Records older than the maximum age are dropped, as are the
+ * oldest records when a new one does not fit.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class TimelineMetricsSpillBuffer implements Closeable {
+  private static final Log LOG = LogFactory.getLog(TimelineMetricsSpillBuffer.class);
+
+  private static final int HEADER_BYTES = 16;
+  private static final int RECORD_HEADER_BYTES = 12;
+  private static final int COMPACT_CHUNK_BYTES = 64 * 1024;
+
+  private final File file;
+  private final int capacity;
+  private final long maxAgeMillis;
+  private final RandomAccessFile raf;
+  private final FileChannel channel;
+  private final FileLock lock;
+  private final MappedByteBuffer buffer;
+
+  private int readOffset;
+  private int writeOffset;
+  private int records;
+  private long droppedRecords = 0;
+
+  /**
+   * @param file spill file, created if needed; owned exclusively by this
+   *             buffer for as long as it is open
+   * @param maxBytes size cap of the file
+   * @param maxAgeMillis records spilled longer ago than this are dropped
+   * @throws IOException if the file cannot be mapped or is in use
+   */
+  public TimelineMetricsSpillBuffer(File file, long maxBytes, long maxAgeMillis)
+      throws IOException {
+    if (maxBytes <= HEADER_BYTES + RECORD_HEADER_BYTES || maxBytes > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Invalid spill buffer size: " + maxBytes);
+    }
+    this.file = file;
+    this.capacity = (int) maxBytes;
+    this.maxAgeMillis = maxAgeMillis;
+    this.raf = new RandomAccessFile(file, "rw");
+    this.channel = raf.getChannel();
+    FileLock fileLock = null;
+    try {
+      fileLock = channel.tryLock();
+    } catch (IOException | OverlappingFileLockException e) {
+      // Handled below
+    }
+    if (fileLock == null) {
+      raf.close();
+      throw new IOException("Spill file " + file + " is in use by another sink");
+    }
+    this.lock = fileLock;
+    this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    recover();
+  }
+
+  /**
+   * Append a payload, evicting the oldest records if needed.
+   *
+   * @return false if the payload alone exceeds the size cap
+   */
+  public synchronized boolean append(byte[] payload) {
+    int recordBytes = RECORD_HEADER_BYTES + payload.length;
+    if (recordBytes > capacity - HEADER_BYTES) {
+      return false;
+    }
+    long now = System.currentTimeMillis();
+    evictExpired(now);
+    if (writeOffset + recordBytes > capacity) {
+      // Drop as many of the oldest records as needed, then move the rest once
+      while (records > 0 && HEADER_BYTES + (writeOffset - readOffset) + recordBytes > capacity) {
+        skipOldest();
+        droppedRecords++;
+      }
+      compact();
+    }
+    buffer.putInt(writeOffset, payload.length);
+    buffer.putLong(writeOffset + 4, now);
+    at(writeOffset + RECORD_HEADER_BYTES).put(payload);
+    writeOffset += recordBytes;
+    records++;
+    writeHeader();
+    return true;
+  }
+
+  /**
+   * @return the oldest payload still within the maximum age, null if none
+   */
+  public synchronized byte[] peek() {
+    evictExpired(System.currentTimeMillis());
+    if (records == 0) {
+      return null;
+    }
+    byte[] payload = new byte[buffer.getInt(readOffset)];
+    at(readOffset + RECORD_HEADER_BYTES).get(payload);
+    return payload;
+  }
+
+  /**
+   * Remove the oldest payload, once it has been replayed.
+   */
+  public synchronized void remove() {
+    if (records > 0) {
+      skipOldest();
+      writeHeader();
+    }
+  }
+
+  public synchronized boolean isEmpty() {
+    return records == 0;
+  }
+
+  public synchronized int size() {
+    return records;
+  }
+
+  /**
+   * @return records dropped because of the size cap or their age
+   */
+  public synchronized long getDroppedRecords() {
+    return droppedRecords;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    buffer.force();
+    try {
+      lock.release();
+    } finally {
+      raf.close();
+    }
+  }
+
+  private void recover() {
+    readOffset = buffer.getInt(0);
+    writeOffset = buffer.getInt(4);
+    records = buffer.getInt(8);
+    if (readOffset < HEADER_BYTES || writeOffset < readOffset ||
+        writeOffset > capacity || records < 0) {
+      // New file, or one written with a different size cap
+      reset();
+      return;
+    }
+    // Validate the records, a torn write leaves the tail unreadable
+    int offset = readOffset;
+    int count = 0;
+    while (offset < writeOffset) {
+      int length = buffer.getInt(offset);
+      if (length < 0 || offset + RECORD_HEADER_BYTES + length > writeOffset) {
+        break;
+      }
+      offset += RECORD_HEADER_BYTES + length;
+      count++;
+    }
+    if (offset != writeOffset || count != records) {
+      LOG.warn("Truncating inconsistent spill file " + file + " after " + count + " records");
+      writeOffset = offset;
+      records = count;
+    }
+    if (records == 0) {
+      reset();
+    } else {
+      LOG.info("Recovered " + records + " spilled metric posts from " + file);
+      writeHeader();
+    }
+  }
+
+  private void evictExpired(long now) {
+    boolean evicted = false;
+    while (records > 0 && now - buffer.getLong(readOffset + 4) > maxAgeMillis) {
+      skipOldest();
+      droppedRecords++;
+      evicted = true;
+    }
+    if (evicted) {
+      writeHeader();
+    }
+  }
+
+  private void skipOldest() {
+    readOffset += RECORD_HEADER_BYTES + buffer.getInt(readOffset);
+    records--;
+    if (records == 0) {
+      readOffset = HEADER_BYTES;
+      writeOffset = HEADER_BYTES;
+    }
+  }
+
+  /**
+   * Move the live records to the start of the file. Copying forward in
+   * chunks is safe, the destination is always before the source.
+   */
+  private void compact() {
+    if (readOffset == HEADER_BYTES) {
+      return;
+    }
+    int length = writeOffset - readOffset;
+    byte[] chunk = new byte[Math.min(COMPACT_CHUNK_BYTES, Math.max(length, 1))];
+    for (int copied = 0; copied < length; copied += chunk.length) {
+      int n = Math.min(chunk.length, length - copied);
+      at(readOffset + copied).get(chunk, 0, n);
+      at(HEADER_BYTES + copied).put(chunk, 0, n);
+    }
+    readOffset = HEADER_BYTES;
+    writeOffset = HEADER_BYTES + length;
+    writeHeader();
+  }
+
+  private void reset() {
+    readOffset = HEADER_BYTES;
+    writeOffset = HEADER_BYTES;
+    records = 0;
+    writeHeader();
+  }
+
+  private ByteBuffer at(int offset) {
+    ByteBuffer view = buffer.duplicate();
+    view.position(offset);
+    return view;
+  }
+
+  private void writeHeader() {
+    buffer.putInt(0, readOffset);
+    buffer.putInt(4, writeOffset);
+    buffer.putInt(8, records);
+  }
+}
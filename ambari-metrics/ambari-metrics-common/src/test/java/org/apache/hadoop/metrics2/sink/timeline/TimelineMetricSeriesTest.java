@@ -0,0 +1,195 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import org.codehaus.jackson.map.AnnotationIntrospector;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.TypeReference;
+import org.codehaus.jackson.xc.JaxbAnnotationIntrospector;
+import org.junit.Test;
+
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TimelineMetricSeriesTest {
+
+  @Test
+  public void testPutKeepsTimestampOrder() {
+    TimelineMetricSeries series = new TimelineMetricSeries(2);
+    series.put(30L, 3.0);
+    series.put(10L, 1.0);
+    series.put(20L, 2.0);
+    series.put(40L, 4.0);
+    series.put(20L, 2.5);
+
+    assertEquals(4, series.size());
+    assertEquals(10L, series.getFirstTimestamp());
+    assertEquals(40L, series.getLastTimestamp());
+    assertEquals(2.5, series.get(20L), 0.0);
+    assertNull(series.get(25L));
+  }
+
+  @Test
+  public void testSlicingMatchesTreeMap() {
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    for (long i = 0; i < 10; i++) {
+      values.put(i * 10, (double) i);
+    }
+    TimelineMetricSeries series = TimelineMetricSeries.fromMap(values);
+
+    assertEquals(values.tailMap(35L), series.tailSeries(35L).toTreeMap());
+    assertEquals(values.tailMap(40L), series.tailSeries(40L).toTreeMap());
+    assertEquals(values.subMap(20L, 60L), series.subSeries(20L, 60L, false).toTreeMap());
+    assertEquals(values.subMap(20L, true, 60L, true), series.subSeries(20L, 60L, true).toTreeMap());
+    assertTrue(series.tailSeries(100L).isEmpty());
+
+    series.removeBefore(50L);
+    assertEquals(values.tailMap(50L), series.toTreeMap());
+  }
+
+  @Test
+  public void testJsonIsCompatibleWithTreeMap() throws Exception {
+    ObjectMapper mapper = new ObjectMapper();
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    values.put(1466000000000L, 1.5);
+    values.put(1466000010000L, 2.0);
+    values.put(1466000020000L, Double.NaN);
+
+    String json = mapper.writeValueAsString(values);
+    TimelineMetricSeries series = TimelineMetricSeries.fromMap(values);
+    assertEquals(json, mapper.writeValueAsString(series));
+    assertEquals(series, mapper.readValue(json, TimelineMetricSeries.class));
+
+    TreeMap<Long, Double> parsed = mapper.readValue(mapper.writeValueAsString(series),
+      new TypeReference<TreeMap<Long, Double>>() {});
+    assertEquals(values, parsed);
+  }
+
+  @Test
+  public void testTimelineMetricTreeMapView() throws Exception {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName("m1");
+    metric.addMetricValue(2L, 2.0);
+    metric.addMetricValue(1L, 1.0);
+    assertEquals(2, metric.getMetricValuesCount());
+
+    TreeMap<Long, Double> view = metric.getMetricValues();
+    assertSame(view, metric.getMetricValues());
+    view.put(3L, 3.0);
+    assertEquals(3, metric.getMetricSeries().size());
+    assertEquals(3L, metric.getMetricSeries().getLastTimestamp());
+
+    TimelineMetric copy = new TimelineMetric(metric);
+    copy.addMetricValue(4L, 4.0);
+    assertEquals(3, metric.getMetricValuesCount());
+    assertEquals(4, copy.getMetricValuesCount());
+
+    // Wire format produced by the sinks is unchanged
+    ObjectMapper mapper = new ObjectMapper();
+    AnnotationIntrospector introspector = new JaxbAnnotationIntrospector();
+    mapper.setAnnotationIntrospector(introspector);
+    TimelineMetric parsed = mapper.readValue(mapper.writeValueAsString(copy), TimelineMetric.class);
+    assertEquals(copy.getMetricValues(), parsed.getMetricValues());
+  }
+
+  @Test
+  public void testGettersDoNotChangeTheMetric() {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName("m1");
+    TreeMap<Long, Double> values = metric.getMetricValues();
+    values.put(1L, 1.0);
+    values.put(2L, null);
+
+    TimelineMetricSeries series = metric.getMetricSeries();
+    assertEquals(2, series.size());
+    assertTrue(Double.isNaN(series.getValue(1)));
+    // The map handed out before still backs the metric, nulls included
+    assertSame(values, metric.getMetricValues());
+    values.put(3L, 3.0);
+    assertEquals(3, metric.getMetricValuesCount());
+    assertNull(metric.getMetricValues().get(2L));
+    assertEquals(3L, metric.getMetricSeries().getLastTimestamp());
+
+    TimelineMetric seriesMetric = new TimelineMetric();
+    seriesMetric.setMetricName("m2");
+    seriesMetric.setMetricSeries(TimelineMetricSeries.fromMap(metric.getMetricValues()));
+    TreeMap<Long, Double> view = seriesMetric.getMetricValues();
+    assertSame(view, seriesMetric.getMetricValues());
+    assertEquals(series.get(1L), view.get(1L));
+    assertSame(seriesMetric.getMetricSeries(), seriesMetric.getMetricSeries());
+    assertEquals(view, seriesMetric.getMetricSeries().toTreeMap());
+
+    seriesMetric.addMetricValue(4L, 4.0);
+    assertEquals(4, seriesMetric.getMetricValues().size());
+    assertEquals(4.0, seriesMetric.getMetricValues().get(4L), 0.0);
+    assertEquals(seriesMetric.getMetricValues(), seriesMetric.getMetricSeries().toTreeMap());
+  }
+
+  @Test
+  public void testSeriesBackedValuesAreReadOnly() {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName("m1");
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    values.put(1L, 1.0);
+    values.put(2L, 2.0);
+    metric.setMetricSeries(TimelineMetricSeries.fromMap(values));
+
+    // A change that could not reach the series fails instead of being lost
+    try {
+      metric.getMetricValues().put(3L, 3.0);
+      fail("Expected UnsupportedOperationException");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+    try {
+      metric.getMetricValues().keySet().remove(1L);
+      fail("Expected UnsupportedOperationException");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+    assertEquals(values, metric.getMetricValues());
+    assertEquals(2, metric.getMetricValuesCount());
+  }
+
+  @Test
+  public void testMergeSingleValuedMetricIntoSeriesBackedMetric() {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName("m1");
+    metric.setHostName("h1");
+    metric.setTimestamp(2L);
+    metric.setStartTime(2L);
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    values.put(2L, 2.0);
+    metric.setMetricSeries(TimelineMetricSeries.fromMap(values));
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.getMetrics().add(metric);
+
+    SingleValuedTimelineMetric singleValued =
+      new SingleValuedTimelineMetric("m1", null, null, "h1", 1L, 1L, null);
+    singleValued.setSingleTimeseriesValue(1L, 1.0);
+    metrics.addOrMergeTimelineMetric(singleValued);
+    assertEquals(1, metrics.getMetrics().size());
+    assertEquals(2, metric.getMetricSeries().size());
+    assertEquals(1L, metric.getTimestamp());
+  }
+}
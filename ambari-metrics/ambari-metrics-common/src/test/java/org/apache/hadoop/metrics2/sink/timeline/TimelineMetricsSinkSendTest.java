@@ -0,0 +1,302 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import com.google.common.base.Suppliers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.codehaus.jackson.map.AnnotationIntrospector;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.xc.JaxbAnnotationIntrospector;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class TimelineMetricsSinkSendTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private HttpServer server;
+  private final BlockingQueue<ReceivedPost> received = new LinkedBlockingQueue<>();
+  private volatile CountDownLatch release = new CountDownLatch(0);
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  @Before
+  public void setUp() throws Exception {
+    AnnotationIntrospector introspector = new JaxbAnnotationIntrospector();
+    mapper.setAnnotationIntrospector(introspector);
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext(AbstractTimelineMetricsSink.WS_V1_TIMELINE_METRICS, new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        try {
+          release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        InputStream in = "gzip".equals(encoding) ?
+          new GZIPInputStream(exchange.getRequestBody()) : exchange.getRequestBody();
+        TimelineMetrics metrics;
+        try {
+          metrics = mapper.readValue(in, TimelineMetrics.class);
+        } catch (IOException e) {
+          exchange.sendResponseHeaders(400, -1);
+          exchange.close();
+          return;
+        }
+        received.add(new ReceivedPost(encoding, metrics));
+        exchange.sendResponseHeaders(200, -1);
+        exchange.close();
+      }
+    });
+    server.start();
+  }
+
+  @After
+  public void tearDown() {
+    release.countDown();
+    server.stop(0);
+  }
+
+  @Test
+  public void testGzipStreamedPost() throws Exception {
+    TestSink sink = new TestSink(0, true);
+    assertTrue(sink.emitMetrics(createMetrics("m1")));
+
+    ReceivedPost post = received.poll(10, TimeUnit.SECONDS);
+    assertNotNull(post);
+    assertEquals("gzip", post.encoding);
+    TimelineMetric metric = post.metrics.getMetrics().get(0);
+    assertEquals("m1", metric.getMetricName());
+    assertEquals(1.0, metric.getMetricValues().get(1000L), 0.0);
+  }
+
+  @Test
+  public void testAsyncSendDoesNotBlockCaller() throws Exception {
+    release = new CountDownLatch(1);
+    TestSink sink = new TestSink(1, false);
+
+    long start = System.currentTimeMillis();
+    int rejected = 0;
+    for (String metricName : new String[] { "m1", "m2", "m3" }) {
+      if (!sink.emitMetrics(createMetrics(metricName))) {
+        rejected++;
+      }
+    }
+    // The collector holds every request, the caller must not wait for it
+    assertTrue(System.currentTimeMillis() - start < 5000);
+    assertTrue(sink.getDroppedSends() >= 1);
+    // Every call that dropped a batch says so
+    assertEquals(sink.getDroppedSends(), rejected);
+
+    release.countDown();
+    String lastMetricName = null;
+    ReceivedPost post;
+    while ((post = received.poll(10, TimeUnit.SECONDS)) != null) {
+      assertEquals(null, post.encoding);
+      lastMetricName = post.metrics.getMetrics().get(0).getMetricName();
+      if ("m3".equals(lastMetricName)) {
+        break;
+      }
+    }
+    // The newest batch is never the one dropped
+    assertEquals("m3", lastMetricName);
+  }
+
+  @Test
+  public void testCloseSendsQueuedMetrics() throws Exception {
+    TestSink sink = new TestSink(10, false);
+    for (int i = 0; i < 5; i++) {
+      assertTrue(sink.emitMetrics(createMetrics("m" + i)));
+    }
+    sink.closeSendQueue(10000);
+
+    // Every queued batch was posted before close returned
+    assertEquals(5, received.size());
+    assertEquals(0, sink.getDroppedSends());
+    // Posted from the calling thread once closed
+    assertTrue(sink.emitMetrics(createMetrics("m5")));
+    assertEquals(6, received.size());
+  }
+
+  @Test
+  public void testReopenAfterClose() throws Exception {
+    TestSink sink = new TestSink(10, false);
+    assertTrue(sink.emitMetrics(createMetrics("m0")));
+    sink.closeSendQueue(10000);
+    assertEquals(1, received.size());
+
+    // A stopped and restarted sink posts asynchronously again
+    release = new CountDownLatch(1);
+    sink.openSendQueue();
+    long start = System.currentTimeMillis();
+    assertTrue(sink.emitMetrics(createMetrics("m1")));
+    assertTrue(System.currentTimeMillis() - start < 5000);
+    release.countDown();
+
+    sink.closeSendQueue(10000);
+    assertEquals(2, received.size());
+    assertEquals(0, sink.getDroppedSends());
+  }
+
+  @Test
+  public void testCloseGivesUpAfterTimeout() throws Exception {
+    release = new CountDownLatch(1);
+    TestSink sink = new TestSink(10, false);
+    for (int i = 0; i < 3; i++) {
+      assertTrue(sink.emitMetrics(createMetrics("m" + i)));
+    }
+
+    long start = System.currentTimeMillis();
+    sink.closeSendQueue(500);
+    assertTrue(System.currentTimeMillis() - start < 5000);
+    // The batch held by the collector is in flight, the others are dropped
+    assertTrue(sink.getDroppedSends() >= 2);
+    release.countDown();
+  }
+
+  @Test
+  public void testRejectedSpilledPostDoesNotBlockReplay() throws Exception {
+    TestSink sink = new TestSink(0, false);
+    sink.initSpillBuffer(folder.getRoot().getAbsolutePath(), "test", 1024 * 1024, 300, 10);
+    sink.targetCollectorHostSupplier = Suppliers.ofInstance("localhost");
+    sink.spillBuffer.append("not a metrics post".getBytes("UTF-8"));
+    sink.spillBuffer.append(mapper.writeValueAsBytes(createMetrics("spilled")));
+
+    // Live posts keep the collector marked as reachable, which lets the replay run
+    long deadline = System.currentTimeMillis() + 20000;
+    boolean replayed = false;
+    while (!replayed && System.currentTimeMillis() < deadline) {
+      assertTrue(sink.emitMetrics(createMetrics("live")));
+      ReceivedPost post;
+      while ((post = received.poll(500, TimeUnit.MILLISECONDS)) != null) {
+        if ("spilled".equals(post.metrics.getMetrics().get(0).getMetricName())) {
+          replayed = true;
+        }
+      }
+    }
+    assertTrue(replayed);
+    assertEquals(1, sink.getDiscardedSpilledPosts());
+    assertTrue(sink.spillBuffer.isEmpty());
+  }
+
+  private static TimelineMetrics createMetrics(String metricName) {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName(metricName);
+    metric.setHostName("h1");
+    metric.setAppId("test");
+    metric.setStartTime(1000L);
+    TreeMap<Long, Double> metricValues = new TreeMap<>();
+    metricValues.put(1000L, 1.0);
+    metric.setMetricValues(metricValues);
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.setMetrics(Collections.singletonList(metric));
+    return metrics;
+  }
+
+  private static class ReceivedPost {
+    private final String encoding;
+    private final TimelineMetrics metrics;
+
+    ReceivedPost(String encoding, TimelineMetrics metrics) {
+      this.encoding = encoding;
+      this.metrics = metrics;
+    }
+  }
+
+  private class TestSink extends AbstractTimelineMetricsSink {
+    private final int sendQueueSize;
+    private final boolean gzipEnabled;
+
+    TestSink(int sendQueueSize, boolean gzipEnabled) {
+      this.sendQueueSize = sendQueueSize;
+      this.gzipEnabled = gzipEnabled;
+    }
+
+    @Override
+    protected String getCollectorUri(String host) {
+      return getCollectorProtocol() + "://" + host + ":" + getCollectorPort() + WS_V1_TIMELINE_METRICS;
+    }
+
+    @Override
+    protected String getCollectorProtocol() {
+      return "http";
+    }
+
+    @Override
+    protected String getCollectorPort() {
+      return String.valueOf(server.getAddress().getPort());
+    }
+
+    @Override
+    protected int getTimeoutSeconds() {
+      return 30;
+    }
+
+    @Override
+    protected String getZookeeperQuorum() {
+      return null;
+    }
+
+    @Override
+    protected Collection<String> getConfiguredCollectorHosts() {
+      return Arrays.asList("localhost");
+    }
+
+    @Override
+    protected String getHostname() {
+      return "h1";
+    }
+
+    @Override
+    protected synchronized String findPreferredCollectHost() {
+      return "localhost";
+    }
+
+    @Override
+    protected int getSendQueueSize() {
+      return sendQueueSize;
+    }
+
+    @Override
+    protected boolean isGzipEnabled() {
+      return gzipEnabled;
+    }
+  }
+}
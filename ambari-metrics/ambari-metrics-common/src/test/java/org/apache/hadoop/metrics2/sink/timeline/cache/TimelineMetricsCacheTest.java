@@ -18,6 +18,7 @@
 package org.apache.hadoop.metrics2.sink.timeline.cache;
 
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.junit.Test;
 
 import java.util.Map;
@@ -26,6 +27,8 @@ import java.util.TreeMap;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class TimelineMetricsCacheTest {
 
@@ -124,6 +127,87 @@ public class TimelineMetricsCacheTest {
     assertEquals(DEFAULT_START_TIME + maxEvictionTime * 2, cachedMetric.getStartTime());
   }
 
+  @Test
+  public void testDuplicateStartTimeIsSkipped() throws Exception {
+    TimelineMetricsCache timelineMetricsCache = new TimelineMetricsCache(
+      TimelineMetricsCache.MAX_RECS_PER_NAME_DEFAULT, TimelineMetricsCache.MAX_EVICTION_TIME_MILLIS);
+    timelineMetricsCache.putTimelineMetric(createTimelineMetricSingleValue(DEFAULT_START_TIME));
+    // Same segment reported twice
+    timelineMetricsCache.putTimelineMetric(createTimelineMetricSingleValue(DEFAULT_START_TIME));
+
+    TimelineMetrics metrics = timelineMetricsCache.getAllMetrics();
+    assertEquals(1, metrics.getMetrics().size());
+    assertEquals(1, metrics.getMetrics().get(0).getMetricValues().size());
+  }
+
+  @Test
+  public void testGetAllMetricsDrainsBuffers() throws Exception {
+    TimelineMetricsCache timelineMetricsCache = new TimelineMetricsCache(
+      TimelineMetricsCache.MAX_RECS_PER_NAME_DEFAULT, TimelineMetricsCache.MAX_EVICTION_TIME_MILLIS);
+    for (int i = 0; i < 100; i++) {
+      timelineMetricsCache.putTimelineMetric(createTimelineMetricSingleValue(DEFAULT_START_TIME + i));
+    }
+    TimelineMetric other = createTimelineMetricSingleValue(DEFAULT_START_TIME);
+    other.setMetricName("other");
+    timelineMetricsCache.putTimelineMetric(other);
+
+    TimelineMetrics metrics = timelineMetricsCache.getAllMetrics();
+    assertEquals(2, metrics.getMetrics().size());
+    for (TimelineMetric metric : metrics.getMetrics()) {
+      assertEquals("Test hostName", metric.getHostName());
+      assertEquals(DEFAULT_START_TIME, metric.getStartTime());
+      if (METRIC_NAME.equals(metric.getMetricName())) {
+        assertEquals(100, metric.getMetricValues().size());
+        assertEquals(DEFAULT_START_TIME + 99, metric.getMetricValues().lastKey().longValue());
+      } else {
+        assertEquals(1, metric.getMetricValues().size());
+      }
+    }
+    assertTrue(timelineMetricsCache.getAllMetrics().getMetrics().isEmpty());
+    assertNull(timelineMetricsCache.getTimelineMetric(METRIC_NAME));
+  }
+
+  @Test
+  public void testNullCounterValuesAreSkipped() throws Exception {
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    values.put(1L, null);
+    values.put(2L, 10.0);
+    values.put(3L, null);
+    values.put(4L, 25.0);
+    timelineMetricsCache.putTimelineMetric(createTimelineMetric(values, DEFAULT_START_TIME), true);
+
+    TimelineMetric cachedMetric = timelineMetricsCache.getAllMetrics().getMetrics().get(0);
+    assertEquals(2, cachedMetric.getMetricValues().size());
+    assertEquals(0, cachedMetric.getMetricValues().get(2L), delta);
+    assertEquals(15, cachedMetric.getMetricValues().get(4L), delta);
+  }
+
+  @Test
+  public void testGetAllMetricsWhilePutting() throws Exception {
+    final int puts = 100000;
+    final TimelineMetricsCache timelineMetricsCache = new TimelineMetricsCache(puts, Integer.MAX_VALUE);
+    Thread writer = new Thread() {
+      @Override
+      public void run() {
+        for (int i = 0; i < puts; i++) {
+          timelineMetricsCache.putTimelineMetric(createTimelineMetricSingleValue(DEFAULT_START_TIME + i));
+        }
+      }
+    };
+    writer.start();
+    int drained = 0;
+    while (writer.isAlive()) {
+      for (TimelineMetric metric : timelineMetricsCache.getAllMetrics().getMetrics()) {
+        drained += metric.getMetricValues().size();
+      }
+    }
+    writer.join();
+    for (TimelineMetric metric : timelineMetricsCache.getAllMetrics().getMetrics()) {
+      drained += metric.getMetricValues().size();
+    }
+    assertEquals(puts, drained);
+  }
+
   private TimelineMetric createTimelineMetricSingleValue(final long startTime) {
     TreeMap<Long, Double> values = new TreeMap<Long, Double>();
     values.put(startTime, 0.0);
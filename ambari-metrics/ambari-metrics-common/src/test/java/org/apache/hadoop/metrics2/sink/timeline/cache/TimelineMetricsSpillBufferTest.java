@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline.cache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TimelineMetricsSpillBufferTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testReplayInOrder() throws Exception {
+    TimelineMetricsSpillBuffer spillBuffer = new TimelineMetricsSpillBuffer(
+      folder.newFile("test.spill"), 1024, 60000);
+    assertNull(spillBuffer.peek());
+    assertTrue(spillBuffer.append(bytes("a")));
+    assertTrue(spillBuffer.append(bytes("bb")));
+    assertTrue(spillBuffer.append(bytes("ccc")));
+    assertEquals(3, spillBuffer.size());
+
+    assertArrayEquals(bytes("a"), spillBuffer.peek());
+    // Not removed until replayed
+    assertArrayEquals(bytes("a"), spillBuffer.peek());
+    spillBuffer.remove();
+    assertArrayEquals(bytes("bb"), spillBuffer.peek());
+    spillBuffer.remove();
+    assertArrayEquals(bytes("ccc"), spillBuffer.peek());
+    spillBuffer.remove();
+    assertTrue(spillBuffer.isEmpty());
+    spillBuffer.close();
+  }
+
+  @Test
+  public void testSizeCapDropsOldest() throws Exception {
+    // Header plus room for three 20 byte records of 8 bytes payload
+    TimelineMetricsSpillBuffer spillBuffer = new TimelineMetricsSpillBuffer(
+      folder.newFile("test.spill"), 16 + 3 * 20, 60000);
+    assertFalse(spillBuffer.append(new byte[100]));
+    for (int i = 0; i < 5; i++) {
+      assertTrue(spillBuffer.append(bytes("record-" + i)));
+    }
+    assertEquals(3, spillBuffer.size());
+    assertEquals(2, spillBuffer.getDroppedRecords());
+    for (int i = 2; i < 5; i++) {
+      assertArrayEquals(bytes("record-" + i), spillBuffer.peek());
+      spillBuffer.remove();
+    }
+    spillBuffer.close();
+  }
+
+  @Test
+  public void testLargeRecordDropsSeveralOldest() throws Exception {
+    // Header plus room for five 20 byte records of 8 bytes payload
+    TimelineMetricsSpillBuffer spillBuffer = new TimelineMetricsSpillBuffer(
+      folder.newFile("test.spill"), 16 + 5 * 20, 60000);
+    for (int i = 0; i < 5; i++) {
+      assertTrue(spillBuffer.append(bytes("record-" + i)));
+    }
+    spillBuffer.remove();
+    // Needs the room of three records, two more than the one freed
+    assertTrue(spillBuffer.append(new byte[3 * 20 - 12]));
+    assertEquals(3, spillBuffer.size());
+    assertEquals(2, spillBuffer.getDroppedRecords());
+    assertArrayEquals(bytes("record-3"), spillBuffer.peek());
+    spillBuffer.remove();
+    assertArrayEquals(bytes("record-4"), spillBuffer.peek());
+    spillBuffer.remove();
+    assertEquals(3 * 20 - 12, spillBuffer.peek().length);
+    spillBuffer.close();
+  }
+
+  @Test
+  public void testAgeEviction() throws Exception {
+    TimelineMetricsSpillBuffer spillBuffer = new TimelineMetricsSpillBuffer(
+      folder.newFile("test.spill"), 1024, 50);
+    spillBuffer.append(bytes("old"));
+    Thread.sleep(100);
+    spillBuffer.append(bytes("new"));
+    assertArrayEquals(bytes("new"), spillBuffer.peek());
+    assertEquals(1, spillBuffer.getDroppedRecords());
+    spillBuffer.close();
+  }
+
+  @Test
+  public void testRecoverAfterReopen() throws Exception {
+    File file = folder.newFile("test.spill");
+    TimelineMetricsSpillBuffer spillBuffer = new TimelineMetricsSpillBuffer(file, 1024, 60000);
+    spillBuffer.append(bytes("a"));
+    spillBuffer.append(bytes("b"));
+    spillBuffer.remove();
+    spillBuffer.append(bytes("c"));
+    spillBuffer.close();
+
+    spillBuffer = new TimelineMetricsSpillBuffer(file, 1024, 60000);
+    assertEquals(2, spillBuffer.size());
+    assertArrayEquals(bytes("b"), spillBuffer.peek());
+    spillBuffer.remove();
+    assertArrayEquals(bytes("c"), spillBuffer.peek());
+    spillBuffer.close();
+  }
+
+  @Test(expected = IOException.class)
+  public void testFileInUse() throws Exception {
+    File file = folder.newFile("test.spill");
+    TimelineMetricsSpillBuffer spillBuffer = new TimelineMetricsSpillBuffer(file, 1024, 60000);
+    try {
+      new TimelineMetricsSpillBuffer(file, 1024, 60000);
+    } finally {
+      spillBuffer.close();
+    }
+  }
+
+  private static byte[] bytes(String s) throws Exception {
+    return s.getBytes("UTF-8");
+  }
+}
@@ -61,6 +61,8 @@ public class FlumeTimelineMetricsSink extends AbstractTimelineMetricsSink implem
   private final static String COUNTER_METRICS_PROPERTY = "counters";
   private final Set<String> counterMetrics = new HashSet<String>();
   private int timeoutSeconds = 10;
+  private int sendQueueSize = DEFAULT_SEND_QUEUE_SIZE;
+  private boolean gzipEnabled = false;
 
   @Override
   public void start() {
@@ -77,6 +79,7 @@ public class FlumeTimelineMetricsSink extends AbstractTimelineMetricsSink implem
   public void stop() {
     LOG.info("Stopping Flume Metrics Sink");
     scheduledExecutorService.shutdown();
+    closeSendQueue(DEFAULT_SEND_QUEUE_CLOSE_TIMEOUT_MILLIS);
   }
 
   @Override
@@ -97,6 +100,16 @@ public class FlumeTimelineMetricsSink extends AbstractTimelineMetricsSink implem
     Configuration configuration = new Configuration("/flume-metrics2.properties");
     timeoutSeconds = Integer.parseInt(configuration.getProperty(METRICS_POST_TIMEOUT_SECONDS,
         String.valueOf(DEFAULT_POST_TIMEOUT_SECONDS)));
+    sendQueueSize = Integer.parseInt(configuration.getProperty(METRICS_SEND_QUEUE_SIZE,
+        String.valueOf(DEFAULT_SEND_QUEUE_SIZE)));
+    gzipEnabled = Boolean.parseBoolean(configuration.getProperty(METRICS_POST_GZIP, "false"));
+    initSpillBuffer(configuration.getProperty(METRICS_SPILL_DIR), "flume",
+        Long.parseLong(configuration.getProperty(METRICS_SPILL_MAX_BYTES,
+            String.valueOf(DEFAULT_SPILL_MAX_BYTES))),
+        Integer.parseInt(configuration.getProperty(METRICS_SPILL_MAX_AGE_SECONDS,
+            String.valueOf(DEFAULT_SPILL_MAX_AGE_SECONDS))),
+        Integer.parseInt(configuration.getProperty(METRICS_SPILL_REPLAY_RATE,
+            String.valueOf(DEFAULT_SPILL_REPLAY_RATE))));
     maxRowCacheSize = Integer.parseInt(configuration.getProperty(MAX_METRIC_ROW_CACHE_SIZE,
         String.valueOf(TimelineMetricsCache.MAX_RECS_PER_NAME_DEFAULT)));
     metricsSendInterval = Integer.parseInt(configuration.getProperty(METRICS_SEND_INTERVAL,
@@ -143,6 +156,16 @@ public class FlumeTimelineMetricsSink extends AbstractTimelineMetricsSink implem
     return timeoutSeconds;
   }
 
+  @Override
+  protected int getSendQueueSize() {
+    return sendQueueSize;
+  }
+
+  @Override
+  protected boolean isGzipEnabled() {
+    return gzipEnabled;
+  }
+
   @Override
   protected String getZookeeperQuorum() {
     return zookeeperQuorum;
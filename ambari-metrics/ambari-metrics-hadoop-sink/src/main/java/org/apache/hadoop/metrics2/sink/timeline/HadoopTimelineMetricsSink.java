@@ -44,6 +44,7 @@ import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 @InterfaceAudience.Public
 @InterfaceStability.Evolving
@@ -62,6 +63,8 @@ public class HadoopTimelineMetricsSink extends AbstractTimelineMetricsSink imple
   private static final String SERVICE_NAME_PREFIX = "serviceName-prefix";
   private static final String SERVICE_NAME = "serviceName";
   private int timeoutSeconds = 10;
+  private int sendQueueSize = DEFAULT_SEND_QUEUE_SIZE;
+  private boolean gzipEnabled = false;
   private SubsetConfiguration conf;
   // Cache the rpc port used and the suffix to use if the port tag is found
   private Map<String, String> rpcPortSuffixes = new HashMap<>(10);
@@ -122,6 +125,12 @@ public class HadoopTimelineMetricsSink extends AbstractTimelineMetricsSink imple
     LOG.info("Container Metrics Uri: " + containerMetricsUri);
 
     timeoutSeconds = conf.getInt(METRICS_POST_TIMEOUT_SECONDS, DEFAULT_POST_TIMEOUT_SECONDS);
+    sendQueueSize = conf.getInt(METRICS_SEND_QUEUE_SIZE, DEFAULT_SEND_QUEUE_SIZE);
+    gzipEnabled = conf.getBoolean(METRICS_POST_GZIP, false);
+    initSpillBuffer(conf.getString(METRICS_SPILL_DIR), "hadoop-" + serviceName,
+      conf.getLong(METRICS_SPILL_MAX_BYTES, DEFAULT_SPILL_MAX_BYTES),
+      conf.getInt(METRICS_SPILL_MAX_AGE_SECONDS, DEFAULT_SPILL_MAX_AGE_SECONDS),
+      conf.getInt(METRICS_SPILL_REPLAY_RATE, DEFAULT_SPILL_REPLAY_RATE));
 
     int maxRowCacheSize = conf.getInt(MAX_METRIC_ROW_CACHE_SIZE,
       TimelineMetricsCache.MAX_RECS_PER_NAME_DEFAULT);
@@ -220,6 +229,16 @@ public class HadoopTimelineMetricsSink extends AbstractTimelineMetricsSink imple
     return timeoutSeconds;
   }
 
+  @Override
+  protected int getSendQueueSize() {
+    return sendQueueSize;
+  }
+
+  @Override
+  protected boolean isGzipEnabled() {
+    return gzipEnabled;
+  }
+
   @Override
   protected String getZookeeperQuorum() {
     return conf.getString(ZOOKEEPER_QUORUM);
@@ -467,8 +486,15 @@ public class HadoopTimelineMetricsSink extends AbstractTimelineMetricsSink imple
         if (metrics != null) {
           emitMetrics(metrics);
         }
+        closeSendQueue(DEFAULT_SEND_QUEUE_CLOSE_TIMEOUT_MILLIS);
       }
     });
     executorService.shutdown();
+    try {
+      executorService.awaitTermination(DEFAULT_SEND_QUEUE_CLOSE_TIMEOUT_MILLIS +
+        TimeUnit.SECONDS.toMillis(getTimeoutSeconds()), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
   }
 }
@@ -86,6 +86,8 @@ public class KafkaTimelineMetricsReporter extends AbstractTimelineMetricsSink
   private TimelineScheduledReporter reporter;
   private TimelineMetricsCache metricsCache;
   private int timeoutSeconds = 10;
+  private int sendQueueSize = DEFAULT_SEND_QUEUE_SIZE;
+  private boolean gzipEnabled = false;
   private String zookeeperQuorum = null;
 
   private String[] excludedMetricsPrefixes;
@@ -113,6 +115,16 @@ public class KafkaTimelineMetricsReporter extends AbstractTimelineMetricsSink
     return timeoutSeconds;
   }
 
+  @Override
+  protected int getSendQueueSize() {
+    return sendQueueSize;
+  }
+
+  @Override
+  protected boolean isGzipEnabled() {
+    return gzipEnabled;
+  }
+
   @Override
   protected String getZookeeperQuorum() {
     return zookeeperQuorum;
@@ -152,6 +164,12 @@ public class KafkaTimelineMetricsReporter extends AbstractTimelineMetricsSink
 
         KafkaMetricsConfig metricsConfig = new KafkaMetricsConfig(props);
         timeoutSeconds = props.getInt(METRICS_POST_TIMEOUT_SECONDS, DEFAULT_POST_TIMEOUT_SECONDS);
+        sendQueueSize = props.getInt(METRICS_SEND_QUEUE_SIZE, DEFAULT_SEND_QUEUE_SIZE);
+        gzipEnabled = props.getBoolean(METRICS_POST_GZIP, false);
+        initSpillBuffer(props.getString(METRICS_SPILL_DIR, null), "kafka",
+          props.getLong(METRICS_SPILL_MAX_BYTES, DEFAULT_SPILL_MAX_BYTES),
+          props.getInt(METRICS_SPILL_MAX_AGE_SECONDS, DEFAULT_SPILL_MAX_AGE_SECONDS),
+          props.getInt(METRICS_SPILL_REPLAY_RATE, DEFAULT_SPILL_REPLAY_RATE));
         int metricsSendInterval = props.getInt(TIMELINE_METRICS_SEND_INTERVAL_PROPERTY, MAX_EVICTION_TIME_MILLIS);
         int maxRowCacheSize = props.getInt(TIMELINE_METRICS_MAX_ROW_CACHE_SIZE_PROPERTY, MAX_RECS_PER_NAME_DEFAULT);
 
@@ -203,6 +221,7 @@ public class KafkaTimelineMetricsReporter extends AbstractTimelineMetricsSink
   public synchronized void startReporter(long period) {
     synchronized (lock) {
       if (initialized && !running) {
+        openSendQueue();
         reporter.start(period, TimeUnit.SECONDS);
         running = true;
         LOG.info(String.format("Started Kafka Timeline metrics reporter with polling period %d seconds", period));
@@ -214,6 +233,7 @@ public class KafkaTimelineMetricsReporter extends AbstractTimelineMetricsSink
     synchronized (lock) {
       if (initialized && running) {
         reporter.stop();
+        closeSendQueue(DEFAULT_SEND_QUEUE_CLOSE_TIMEOUT_MILLIS);
         running = false;
         LOG.info("Stopped Kafka Timeline metrics reporter");
         initializeReporter();
@@ -53,6 +53,8 @@ public class StormTimelineMetricsReporter extends AbstractTimelineMetricsSink
   private NimbusClient nimbusClient;
   private String applicationId;
   private int timeoutSeconds;
+  private int sendQueueSize = DEFAULT_SEND_QUEUE_SIZE;
+  private boolean gzipEnabled = false;
 
   public StormTimelineMetricsReporter() {
 
@@ -73,6 +75,16 @@ public class StormTimelineMetricsReporter extends AbstractTimelineMetricsSink
     return timeoutSeconds;
   }
 
+  @Override
+  protected int getSendQueueSize() {
+    return sendQueueSize;
+  }
+
+  @Override
+  protected boolean isGzipEnabled() {
+    return gzipEnabled;
+  }
+
   @Override
   protected String getZookeeperQuorum() {
     return zkQuorum;
@@ -125,6 +137,20 @@ public class StormTimelineMetricsReporter extends AbstractTimelineMetricsSink
       timeoutSeconds = cf.get(METRICS_POST_TIMEOUT_SECONDS) != null ?
           Integer.parseInt(cf.get(METRICS_POST_TIMEOUT_SECONDS).toString()) :
           DEFAULT_POST_TIMEOUT_SECONDS;
+      sendQueueSize = cf.get(METRICS_SEND_QUEUE_SIZE) != null ?
+          Integer.parseInt(cf.get(METRICS_SEND_QUEUE_SIZE).toString()) :
+          DEFAULT_SEND_QUEUE_SIZE;
+      gzipEnabled = cf.get(METRICS_POST_GZIP) != null &&
+          Boolean.parseBoolean(cf.get(METRICS_POST_GZIP).toString());
+      if (cf.get(METRICS_SPILL_DIR) != null) {
+        initSpillBuffer(cf.get(METRICS_SPILL_DIR).toString(), "storm-nimbus",
+            cf.get(METRICS_SPILL_MAX_BYTES) != null ?
+                Long.parseLong(cf.get(METRICS_SPILL_MAX_BYTES).toString()) : DEFAULT_SPILL_MAX_BYTES,
+            cf.get(METRICS_SPILL_MAX_AGE_SECONDS) != null ?
+                Integer.parseInt(cf.get(METRICS_SPILL_MAX_AGE_SECONDS).toString()) : DEFAULT_SPILL_MAX_AGE_SECONDS,
+            cf.get(METRICS_SPILL_REPLAY_RATE) != null ?
+                Integer.parseInt(cf.get(METRICS_SPILL_REPLAY_RATE).toString()) : DEFAULT_SPILL_REPLAY_RATE);
+      }
       applicationId = cf.get(APP_ID).toString();
 
       collectorUri = constructTimelineMetricUri(protocol, findPreferredCollectHost(), port);
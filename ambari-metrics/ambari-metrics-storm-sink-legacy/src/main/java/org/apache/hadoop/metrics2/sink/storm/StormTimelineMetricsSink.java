@@ -53,6 +53,8 @@ public class StormTimelineMetricsSink extends AbstractTimelineMetricsSink implem
   private TimelineMetricsCache metricsCache;
   private String hostname;
   private int timeoutSeconds;
+  private int sendQueueSize = DEFAULT_SEND_QUEUE_SIZE;
+  private boolean gzipEnabled = false;
   private Collection<String> collectorHosts;
   private String zkQuorum;
   private String protocol;
@@ -75,6 +77,16 @@ public class StormTimelineMetricsSink extends AbstractTimelineMetricsSink implem
     return timeoutSeconds;
   }
 
+  @Override
+  protected int getSendQueueSize() {
+    return sendQueueSize;
+  }
+
+  @Override
+  protected boolean isGzipEnabled() {
+    return gzipEnabled;
+  }
+
   @Override
   protected String getZookeeperQuorum() {
     return zkQuorum;
@@ -111,6 +123,16 @@ public class StormTimelineMetricsSink extends AbstractTimelineMetricsSink implem
     Configuration configuration = new Configuration("/storm-metrics2.properties");
     timeoutSeconds = Integer.parseInt(configuration.getProperty(METRICS_POST_TIMEOUT_SECONDS,
         String.valueOf(DEFAULT_POST_TIMEOUT_SECONDS)));
+    sendQueueSize = Integer.parseInt(configuration.getProperty(METRICS_SEND_QUEUE_SIZE,
+        String.valueOf(DEFAULT_SEND_QUEUE_SIZE)));
+    gzipEnabled = Boolean.parseBoolean(configuration.getProperty(METRICS_POST_GZIP, "false"));
+    initSpillBuffer(configuration.getProperty(METRICS_SPILL_DIR), "storm-" + removeNonce(topologyContext.getStormId()),
+        Long.parseLong(configuration.getProperty(METRICS_SPILL_MAX_BYTES,
+            String.valueOf(DEFAULT_SPILL_MAX_BYTES))),
+        Integer.parseInt(configuration.getProperty(METRICS_SPILL_MAX_AGE_SECONDS,
+            String.valueOf(DEFAULT_SPILL_MAX_AGE_SECONDS))),
+        Integer.parseInt(configuration.getProperty(METRICS_SPILL_REPLAY_RATE,
+            String.valueOf(DEFAULT_SPILL_REPLAY_RATE))));
     int maxRowCacheSize = Integer.parseInt(configuration.getProperty(MAX_METRIC_ROW_CACHE_SIZE,
         String.valueOf(MAX_RECS_PER_NAME_DEFAULT)));
     int metricsSendInterval = Integer.parseInt(configuration.getProperty(METRICS_SEND_INTERVAL,
@@ -183,6 +205,7 @@ public class StormTimelineMetricsSink extends AbstractTimelineMetricsSink implem
   @Override
   public void cleanup() {
     LOG.info("Stopping Storm Metrics Sink");
+    closeSendQueue(DEFAULT_SEND_QUEUE_CLOSE_TIMEOUT_MILLIS);
   }
 
   // purpose just for testing
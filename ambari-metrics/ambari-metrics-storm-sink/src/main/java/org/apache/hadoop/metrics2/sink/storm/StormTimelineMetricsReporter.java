@@ -48,6 +48,8 @@ public class StormTimelineMetricsReporter extends AbstractTimelineMetricsSink
   private String protocol;
   private String applicationId;
   private int timeoutSeconds;
+  private int sendQueueSize = DEFAULT_SEND_QUEUE_SIZE;
+  private boolean gzipEnabled = false;
 
   public StormTimelineMetricsReporter() {
 
@@ -68,6 +70,16 @@ public class StormTimelineMetricsReporter extends AbstractTimelineMetricsSink
     return timeoutSeconds;
   }
 
+  @Override
+  protected int getSendQueueSize() {
+    return sendQueueSize;
+  }
+
+  @Override
+  protected boolean isGzipEnabled() {
+    return gzipEnabled;
+  }
+
   @Override
   protected String getZookeeperQuorum() {
     return zkQuorum;
@@ -114,6 +126,16 @@ public class StormTimelineMetricsReporter extends AbstractTimelineMetricsSink
       timeoutSeconds = configuration.getProperty(METRICS_POST_TIMEOUT_SECONDS) != null ?
           Integer.parseInt(configuration.getProperty(METRICS_POST_TIMEOUT_SECONDS)) :
           DEFAULT_POST_TIMEOUT_SECONDS;
+      sendQueueSize = Integer.parseInt(configuration.getProperty(METRICS_SEND_QUEUE_SIZE,
+          String.valueOf(DEFAULT_SEND_QUEUE_SIZE)));
+      gzipEnabled = Boolean.parseBoolean(configuration.getProperty(METRICS_POST_GZIP, "false"));
+      initSpillBuffer(configuration.getProperty(METRICS_SPILL_DIR), "storm-nimbus",
+          Long.parseLong(configuration.getProperty(METRICS_SPILL_MAX_BYTES,
+              String.valueOf(DEFAULT_SPILL_MAX_BYTES))),
+          Integer.parseInt(configuration.getProperty(METRICS_SPILL_MAX_AGE_SECONDS,
+              String.valueOf(DEFAULT_SPILL_MAX_AGE_SECONDS))),
+          Integer.parseInt(configuration.getProperty(METRICS_SPILL_REPLAY_RATE,
+              String.valueOf(DEFAULT_SPILL_REPLAY_RATE))));
       applicationId = configuration.getProperty(CLUSTER_REPORTER_APP_ID, DEFAULT_CLUSTER_REPORTER_APP_ID);
 
       if (protocol.contains("https")) {
@@ -179,6 +201,7 @@ public class StormTimelineMetricsReporter extends AbstractTimelineMetricsSink
   @Override
   public void cleanup() {
     LOG.info("Stopping Storm Metrics Reporter");
+    closeSendQueue(DEFAULT_SEND_QUEUE_CLOSE_TIMEOUT_MILLIS);
   }
 
   private List<DataPoint> populateDataPoints(DataPoint dataPoint) {
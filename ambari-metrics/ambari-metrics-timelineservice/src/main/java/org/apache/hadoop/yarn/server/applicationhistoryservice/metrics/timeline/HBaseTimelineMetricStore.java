@@ -34,6 +34,7 @@ import org.apache.hadoop.yarn.api.records.timeline.TimelinePutResponse;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.Function;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.TimelineMetricAggregator;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.TimelineMetricAggregatorFactory;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.TimelineMetricStreamingBuffer;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.AggregationTaskRunner.AGGREGATOR_NAME;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.MetricCollectorHAController;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.discovery.TimelineMetricMetadataKey;
@@ -61,6 +62,8 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.USE_GROUPBY_AGGREGATOR_QUERIES;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_AGGREGATOR_SECOND_DISABLED;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_AGGREGATOR_SECOND_STREAMING_ENABLED;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.DEFAULT_TOPN_HOSTS_LIMIT;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.AggregationTaskRunner.ACTUAL_AGGREGATOR_NAMES;
 
@@ -75,6 +78,7 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
   private TimelineMetricMetadataManager metricMetadataManager;
   private Integer defaultTopNHostsLimit;
   private MetricCollectorHAController haController;
+  private TimelineMetricStreamingBuffer streamingBuffer;
 
   /**
    * Construct the service.
@@ -122,9 +126,14 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
       }
 
       // Start the cluster aggregator second
+      if (metricsConf.getBoolean(CLUSTER_AGGREGATOR_SECOND_STREAMING_ENABLED, false)
+          && !metricsConf.getBoolean(CLUSTER_AGGREGATOR_SECOND_DISABLED, false)) {
+        LOG.info("Using streaming cluster aggregation for the second aggregator.");
+        streamingBuffer = new TimelineMetricStreamingBuffer(metricsConf);
+      }
       TimelineMetricAggregator secondClusterAggregator =
         TimelineMetricAggregatorFactory.createTimelineClusterAggregatorSecond(
-          hBaseAccessor, metricsConf, metricMetadataManager, haController);
+          hBaseAccessor, metricsConf, metricMetadataManager, haController, streamingBuffer);
       scheduleAggregatorThread(secondClusterAggregator);
 
       // Start the minute cluster aggregator
@@ -181,6 +190,9 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
 
   @Override
   protected void serviceStop() throws Exception {
+    if (hBaseAccessor != null) {
+      hBaseAccessor.shutdownCommitter();
+    }
     super.serviceStop();
   }
 
@@ -341,6 +353,16 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
     TimelinePutResponse response = new TimelinePutResponse();
 
     hBaseAccessor.insertMetricRecordsWithMetadata(metricMetadataManager, metrics, false);
+    // Other collectors take the writes of some hosts, the hot tier of this
+    // one is not complete
+    if (hBaseAccessor.isHotTierEnabled() && haController != null
+        && haController.isInitialized() && haController.getLiveInstanceCount() > 1) {
+      hBaseAccessor.invalidateHotTier();
+    }
+    // Only the metrics accepted by the filter are left at this point
+    if (streamingBuffer != null) {
+      streamingBuffer.putMetrics(metrics);
+    }
 
     return response;
   }
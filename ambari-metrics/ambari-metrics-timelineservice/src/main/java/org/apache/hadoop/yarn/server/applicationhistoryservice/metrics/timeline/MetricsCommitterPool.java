@@ -0,0 +1,314 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsException;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.metrics2.MetricsSource;
+import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.apache.hadoop.metrics2.lib.Interns.info;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_COMMIT_INTERVAL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_COMMITTER_BATCH_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_COMMITTER_LANES;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_COMMITTER_PARTITION_KEY;
+
+/**
+ * Replaces the single cache committer thread with N independent writer
+ * lanes. Incoming metrics are partitioned by metric name (default, which
+ * follows the METRIC_RECORD row key and therefore the region layout) or by
+ * host name. Every lane has its own bounded queue of put requests
+ * (timeline.metrics.cache.size), Phoenix connection, batch size in rows and
+ * commit schedule, so a slow region server only backs up the lanes writing
+ * to it. As with the former single committer thread, a full lane is
+ * committed from the calling thread.
+ */
+public class MetricsCommitterPool implements MetricsSource {
+  private static final Log LOG = LogFactory.getLog(MetricsCommitterPool.class);
+
+  static final String METRICS_SOURCE_NAME = "TimelineMetricsCommitter";
+
+  public enum PartitionKey {
+    METRIC_NAME,
+    HOST;
+
+    static PartitionKey getPartitionKey(String name) {
+      if (name == null || name.trim().isEmpty()) {
+        return METRIC_NAME;
+      }
+      return PartitionKey.valueOf(name.trim().toUpperCase());
+    }
+  }
+
+  private final PhoenixHBaseAccessor hBaseAccessor;
+  private final PartitionKey partitionKey;
+  private final CommitterLane[] lanes;
+
+  public MetricsCommitterPool(PhoenixHBaseAccessor hBaseAccessor, Configuration metricsConf) {
+    this.hBaseAccessor = hBaseAccessor;
+    this.partitionKey = PartitionKey.getPartitionKey(
+      metricsConf.get(TIMELINE_METRICS_COMMITTER_PARTITION_KEY));
+    int laneCount = Math.max(1, metricsConf.getInt(TIMELINE_METRICS_COMMITTER_LANES, 1));
+    int capacity = metricsConf.getInt(TIMELINE_METRICS_CACHE_SIZE, 150);
+    int batchSize = metricsConf.getInt(TIMELINE_METRICS_COMMITTER_BATCH_SIZE, 10000);
+    int commitInterval = metricsConf.getInt(TIMELINE_METRICS_CACHE_COMMIT_INTERVAL, 3);
+
+    lanes = new CommitterLane[laneCount];
+    for (int i = 0; i < laneCount; i++) {
+      lanes[i] = new CommitterLane(i, capacity, batchSize);
+    }
+    for (CommitterLane lane : lanes) {
+      lane.start(commitInterval);
+    }
+    LOG.info("Started " + laneCount + " metrics committer lanes partitioned by " +
+      partitionKey + ", batch size = " + batchSize + ", capacity = " + capacity);
+  }
+
+  /**
+   * Register the per lane gauges with the collector's metrics system.
+   */
+  public void registerMetricsSource() {
+    try {
+      DefaultMetricsSystem.instance().register(METRICS_SOURCE_NAME,
+        "Timeline metrics committer lanes", this);
+    } catch (MetricsException e) {
+      LOG.warn("Unable to register committer metrics source: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Split the request by lane and queue every part on its lane.
+   */
+  public void putMetrics(TimelineMetrics metrics) throws InterruptedException {
+    if (lanes.length == 1) {
+      lanes[0].put(metrics);
+      return;
+    }
+    List<List<TimelineMetric>> parts = new ArrayList<List<TimelineMetric>>(lanes.length);
+    for (int i = 0; i < lanes.length; i++) {
+      parts.add(new ArrayList<TimelineMetric>());
+    }
+    for (TimelineMetric metric : metrics.getMetrics()) {
+      parts.get(getLaneIndex(metric)).add(metric);
+    }
+    for (int i = 0; i < lanes.length; i++) {
+      if (!parts.get(i).isEmpty()) {
+        TimelineMetrics part = new TimelineMetrics();
+        part.setMetrics(parts.get(i));
+        lanes[i].put(part);
+      }
+    }
+  }
+
+  int getLaneIndex(TimelineMetric metric) {
+    String key = (partitionKey == PartitionKey.HOST) ?
+      metric.getHostName() : metric.getMetricName();
+    if (lanes.length == 1 || key == null) {
+      return 0;
+    }
+    return (key.hashCode() & Integer.MAX_VALUE) % lanes.length;
+  }
+
+  public boolean isEmpty() {
+    for (CommitterLane lane : lanes) {
+      if (!lane.queue.isEmpty()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Commit everything buffered so far from the calling thread.
+   */
+  public void commitAll() {
+    for (CommitterLane lane : lanes) {
+      lane.commitPending();
+    }
+  }
+
+  public void shutdown() {
+    for (CommitterLane lane : lanes) {
+      lane.executor.shutdown();
+    }
+    for (CommitterLane lane : lanes) {
+      try {
+        lane.executor.awaitTermination(30, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      lane.commitPending();
+      lane.closeConnection();
+    }
+  }
+
+  int getLaneCount() {
+    return lanes.length;
+  }
+
+  long getLaneBacklog(int lane) {
+    return lanes[lane].pendingRows.get();
+  }
+
+  @Override
+  public void getMetrics(MetricsCollector collector, boolean all) {
+    for (CommitterLane lane : lanes) {
+      MetricsRecordBuilder builder = collector.addRecord(METRICS_SOURCE_NAME)
+        .setContext("timeline")
+        .tag(info("Lane", "Committer lane index"), String.valueOf(lane.index));
+      builder.addGauge(info("Backlog", "Metrics waiting to be committed"), lane.pendingRows.get());
+      builder.addGauge(info("QueuedRequests", "Put requests waiting to be committed"), lane.queue.size());
+      builder.addCounter(info("CommittedMetrics", "Metrics committed"), lane.committedMetrics.get());
+      builder.addCounter(info("Commits", "Batches committed"), lane.commits.get());
+      builder.addCounter(info("FailedCommits", "Batches that failed to commit"), lane.failedCommits.get());
+      builder.addGauge(info("LastCommitLatencyMs", "Latency of the last batch commit"), lane.lastCommitLatency.get());
+      builder.addGauge(info("MaxCommitLatencyMs", "Highest batch commit latency"), lane.maxCommitLatency.get());
+    }
+  }
+
+  private class CommitterLane implements Runnable {
+    private final int index;
+    private final int batchSize;
+    private final BlockingQueue<TimelineMetrics> queue;
+    private final AtomicLong pendingRows = new AtomicLong();
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean commitScheduled = new AtomicBoolean(false);
+    private final AtomicLong committedMetrics = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong failedCommits = new AtomicLong();
+    private final AtomicLong lastCommitLatency = new AtomicLong();
+    private final AtomicLong maxCommitLatency = new AtomicLong();
+    private Connection connection;
+
+    CommitterLane(final int index, int capacity, int batchSize) {
+      this.index = index;
+      this.batchSize = batchSize;
+      this.queue = new ArrayBlockingQueue<TimelineMetrics>(capacity);
+      this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "timeline-metrics-committer-" + index);
+          t.setDaemon(true);
+          return t;
+        }
+      });
+    }
+
+    void start(int commitInterval) {
+      executor.scheduleWithFixedDelay(this, commitInterval, commitInterval, TimeUnit.SECONDS);
+    }
+
+    void put(TimelineMetrics metrics) throws InterruptedException {
+      if (queue.remainingCapacity() == 0) {
+        commitPending();
+      }
+      queue.put(metrics); // blocked while the lane is full
+      if (pendingRows.addAndGet(metrics.getMetrics().size()) >= batchSize
+          && commitScheduled.compareAndSet(false, true)) {
+        try {
+          executor.execute(this);
+        } catch (RejectedExecutionException e) {
+          commitScheduled.set(false);
+        }
+      }
+    }
+
+    @Override
+    public void run() {
+      commitScheduled.set(false);
+      commitPending();
+    }
+
+    /**
+     * Drain the lane, committing every batchSize rows.
+     */
+    synchronized void commitPending() {
+      List<TimelineMetrics> batch = new ArrayList<TimelineMetrics>();
+      int rows = 0;
+      TimelineMetrics metrics;
+      while ((metrics = queue.poll()) != null) {
+        int size = metrics.getMetrics().size();
+        pendingRows.addAndGet(-size);
+        batch.add(metrics);
+        rows += size;
+        if (rows >= batchSize) {
+          commitBatch(batch, rows);
+          batch.clear();
+          rows = 0;
+        }
+      }
+      if (!batch.isEmpty()) {
+        commitBatch(batch, rows);
+      }
+    }
+
+    private void commitBatch(List<TimelineMetrics> batch, int rows) {
+      long start = System.currentTimeMillis();
+      try {
+        if (connection == null) {
+          connection = hBaseAccessor.getConnection();
+        }
+        hBaseAccessor.commitMetrics(connection, batch);
+        committedMetrics.addAndGet(rows);
+        commits.incrementAndGet();
+      } catch (Exception e) {
+        failedCommits.incrementAndGet();
+        LOG.error("Committer lane " + index + " failed to commit " + rows + " metrics.", e);
+        closeConnection();
+      } finally {
+        long latency = System.currentTimeMillis() - start;
+        lastCommitLatency.set(latency);
+        if (latency > maxCommitLatency.get()) {
+          maxCommitLatency.set(latency);
+        }
+      }
+    }
+
+    synchronized void closeConnection() {
+      if (connection != null) {
+        try {
+          connection.close();
+        } catch (SQLException sql) {
+          // Ignore
+        }
+        connection = null;
+      }
+    }
+  }
+}
@@ -43,9 +43,13 @@ import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.MetricHostAggregate;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.TimelineClusterMetric;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.TimelineMetricReadHelper;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.codec.GorillaMetricValuesCodec;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.codec.MetricValuesCodec;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.codec.MetricValuesEncoding;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.discovery.TimelineMetricMetadataKey;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.discovery.TimelineMetricMetadataManager;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.Condition;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.DefaultCondition;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.DefaultPhoenixDataSource;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixConnectionProvider;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL;
@@ -62,6 +66,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -73,10 +78,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
@@ -98,12 +99,16 @@ import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.ti
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HOST_HOUR_TABLE_TTL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HOST_MINUTE_TABLE_TTL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.OUT_OFF_BAND_DATA_TIME_ALLOWANCE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_HOT_TIER_ENABLED;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_UPSERT_BATCH_MAX_BYTES;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_UPSERT_BATCH_MAX_LATENCY;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_UPSERT_BATCH_MAX_ROWS;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.PRECISION_TABLE_SPLIT_POINTS;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.PRECISION_TABLE_TTL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CONTAINER_METRICS_TTL;
-import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_SIZE;
-import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_COMMIT_INTERVAL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_ENABLED;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_PRECISION_VALUES_CODEC_CLASS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_PRECISION_VALUES_ENCODING;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRIC_AGGREGATOR_SINK_CLASS;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.CONTAINER_METRICS_TABLE_NAME;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.CREATE_CONTAINER_METRICS_TABLE_SQL;
@@ -113,10 +118,14 @@ import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.ti
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.CREATE_METRICS_CLUSTER_AGGREGATE_TABLE_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.CREATE_METRICS_METADATA_TABLE_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.ALTER_METRICS_METADATA_TABLE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.ALTER_METRICS_METADATA_TABLE_ADD_UUID;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.ALTER_HOSTED_APPS_METADATA_TABLE_ADD_UUID;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.ALTER_METRICS_TABLE_ADD_BINARY_VALUES;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.CREATE_METRICS_TABLE_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.DEFAULT_ENCODING;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.DEFAULT_TABLE_COMPRESSION;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.GET_HOSTED_APPS_METADATA_SQL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.GET_HOST_UUIDS_METADATA_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.GET_METRIC_METADATA_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_AGGREGATE_DAILY_TABLE_NAME;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_AGGREGATE_HOURLY_TABLE_NAME;
@@ -133,6 +142,8 @@ import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.ti
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.UPSERT_HOSTED_APPS_METADATA_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.UPSERT_METADATA_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.UPSERT_METRICS_SQL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.UPSERT_METRICS_BINARY_SQL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.UPSERT_METRICS_DUAL_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.UPSERT_CONTAINER_METRICS_SQL;
 
 
@@ -146,7 +157,7 @@ public class PhoenixHBaseAccessor {
   // Default stale data allowance set to 3 minutes, 2 minutes more than time
   // it was collected. Also 2 minutes is the default aggregation interval at
   // cluster and host levels.
-  static final long DEFAULT_OUT_OF_BAND_TIME_ALLOWANCE = 300000;
+  public static final long DEFAULT_OUT_OF_BAND_TIME_ALLOWANCE = 300000;
   /**
    * 22 metrics for 2hours in SECONDS (10 second data)
    * => Reasonable upper bound on the limit such that our Precision calculation for a given time range makes sense.
@@ -158,19 +169,23 @@ public class PhoenixHBaseAccessor {
   static final TimelineMetricReadHelper TIMELINE_METRIC_READ_HELPER = new TimelineMetricReadHelper();
   static ObjectMapper mapper = new ObjectMapper();
   static TypeReference<TreeMap<Long, Double>> metricValuesTypeRef = new TypeReference<TreeMap<Long, Double>>() {};
+  // Set from ams-site on construction, readers are static like the JSON mapper
+  static MetricValuesCodec metricValuesCodec = new GorillaMetricValuesCodec();
+  static MetricValuesEncoding metricValuesEncoding = MetricValuesEncoding.JSON;
 
   private final Configuration hbaseConf;
   private final Configuration metricsConf;
   private final RetryCounterFactory retryCounterFactory;
   private final PhoenixConnectionProvider dataSource;
   private final long outOfBandTimeAllowance;
-  private final int cacheSize;
   private final boolean cacheEnabled;
-  private final BlockingQueue<TimelineMetrics> insertCache;
-  private ScheduledExecutorService scheduledExecutorService;
-  private MetricsCacheCommitterThread metricsCommiterThread;
+  private MetricsCommitterPool committerPool;
+  private final UpsertBatchMetrics upsertBatchMetrics = new UpsertBatchMetrics();
+  private final int upsertBatchMaxRows;
+  private final long upsertBatchMaxBytes;
+  private final long upsertBatchMaxLatency;
+  private TimelineMetricHotTier hotTier;
   private TimelineMetricsAggregatorSink aggregatorSink;
-  private final int cacheCommitInterval;
   private final boolean skipBlockCacheForAggregatorsEnabled;
   private final String timelineMetricsTablesDurability;
   private final String timelineMetricsPrecisionTableDurability;
@@ -209,12 +224,28 @@ public class PhoenixHBaseAccessor {
     this.outOfBandTimeAllowance = metricsConf.getLong(OUT_OFF_BAND_DATA_TIME_ALLOWANCE,
       DEFAULT_OUT_OF_BAND_TIME_ALLOWANCE);
     this.cacheEnabled = Boolean.valueOf(metricsConf.get(TIMELINE_METRICS_CACHE_ENABLED, "true"));
-    this.cacheSize = Integer.valueOf(metricsConf.get(TIMELINE_METRICS_CACHE_SIZE, "150"));
-    this.cacheCommitInterval = Integer.valueOf(metricsConf.get(TIMELINE_METRICS_CACHE_COMMIT_INTERVAL, "3"));
-    this.insertCache = new ArrayBlockingQueue<TimelineMetrics>(cacheSize);
     this.skipBlockCacheForAggregatorsEnabled = metricsConf.getBoolean(AGGREGATORS_SKIP_BLOCK_CACHE, false);
     this.timelineMetricsTablesDurability = metricsConf.get(TIMELINE_METRICS_AGGREGATE_TABLES_DURABILITY, "");
     this.timelineMetricsPrecisionTableDurability = metricsConf.get(TIMELINE_METRICS_PRECISION_TABLE_DURABILITY, "");
+    // Phoenix fails commits above its maximum mutation state size
+    this.upsertBatchMaxRows = Math.min(metricsConf.getInt(TIMELINE_METRICS_UPSERT_BATCH_MAX_ROWS, 10000),
+      PHOENIX_MAX_MUTATION_STATE_SIZE - 1);
+    this.upsertBatchMaxBytes = metricsConf.getLong(TIMELINE_METRICS_UPSERT_BATCH_MAX_BYTES, 8 * 1024 * 1024);
+    this.upsertBatchMaxLatency = metricsConf.getLong(TIMELINE_METRICS_UPSERT_BATCH_MAX_LATENCY, 10000);
+    upsertBatchMetrics.registerMetricsSource();
+    if (metricsConf.getBoolean(TIMELINE_METRICS_HOT_TIER_ENABLED, false)) {
+      LOG.info("Serving recent precision data from the in memory hot tier.");
+      hotTier = new TimelineMetricHotTier(metricsConf);
+      hotTier.registerMetricsSource();
+    }
+    metricValuesEncoding = MetricValuesEncoding.getEncoding(
+      metricsConf.get(TIMELINE_METRICS_PRECISION_VALUES_ENCODING));
+    Class<? extends MetricValuesCodec> codecClass = metricsConf.getClass(
+      TIMELINE_METRICS_PRECISION_VALUES_CODEC_CLASS, GorillaMetricValuesCodec.class,
+      MetricValuesCodec.class);
+    metricValuesCodec = ReflectionUtils.newInstance(codecClass, metricsConf);
+    LOG.info("Metric record values encoding: " + metricValuesEncoding +
+      ", codec: " + codecClass.getName());
 
     tableTTL.put(METRICS_RECORD_TABLE_NAME, metricsConf.get(PRECISION_TABLE_TTL, String.valueOf(1 * 86400)));  // 1 day
     tableTTL.put(CONTAINER_METRICS_TABLE_NAME, metricsConf.get(CONTAINER_METRICS_TTL, String.valueOf(30 * 86400)));  // 30 days
@@ -227,10 +258,9 @@ public class PhoenixHBaseAccessor {
     tableTTL.put(METRICS_CLUSTER_AGGREGATE_DAILY_TABLE_NAME, metricsConf.get(CLUSTER_DAILY_TABLE_TTL, String.valueOf(730 * 86400))); //2 years
 
     if (cacheEnabled) {
-      LOG.debug("Initialising and starting metrics cache committer thread...");
-      metricsCommiterThread = new MetricsCacheCommitterThread(this);
-      scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
-      scheduledExecutorService.scheduleWithFixedDelay(metricsCommiterThread, 0, cacheCommitInterval, TimeUnit.SECONDS);
+      LOG.debug("Initialising and starting metrics committer lanes...");
+      committerPool = new MetricsCommitterPool(this, metricsConf);
+      committerPool.registerMetricsSource();
     }
 
     Class<? extends TimelineMetricsAggregatorSink> metricSinkClass =
@@ -244,17 +274,36 @@ public class PhoenixHBaseAccessor {
   }
 
   public boolean isInsertCacheEmpty() {
-    return insertCache.isEmpty();
+    return committerPool == null || committerPool.isEmpty();
   }
 
   public void commitMetricsFromCache() {
     LOG.debug("Clearing metrics cache");
-    List<TimelineMetrics> metricsArray = new ArrayList<TimelineMetrics>(insertCache.size());
-    while (!insertCache.isEmpty()) {
-      metricsArray.add(insertCache.poll());
+    if (committerPool != null) {
+      committerPool.commitAll();
     }
-    if (metricsArray.size() > 0) {
-      commitMetrics(metricsArray);
+  }
+
+  /**
+   * Commit buffered metrics and stop the committer lanes.
+   */
+  public void shutdownCommitter() {
+    if (committerPool != null) {
+      committerPool.shutdown();
+    }
+  }
+
+  public boolean isHotTierEnabled() {
+    return hotTier != null;
+  }
+
+  /**
+   * Stop answering from the hot tier for data committed so far, e.g. because
+   * other collectors share the writes.
+   */
+  public void invalidateHotTier() {
+    if (hotTier != null) {
+      hotTier.invalidate();
     }
   }
 
@@ -265,13 +314,37 @@ public class PhoenixHBaseAccessor {
   public void commitMetrics(Collection<TimelineMetrics> timelineMetricsCollection) {
     LOG.debug("Committing metrics to store");
     Connection conn = null;
-    PreparedStatement metricRecordStmt = null;
-    long currentTime = System.currentTimeMillis();
 
     try {
       conn = getConnection();
-      metricRecordStmt = conn.prepareStatement(String.format(
-              UPSERT_METRICS_SQL, METRICS_RECORD_TABLE_NAME));
+      commitMetrics(conn, timelineMetricsCollection);
+    } catch (Exception exception){
+      exception.printStackTrace();
+    }
+    finally {
+      if (conn != null) {
+        try {
+          conn.close();
+        } catch (SQLException sql) {
+          // Ignore
+        }
+      }
+    }
+  }
+
+  /**
+   * Upsert the metrics and commit using a connection owned by the caller,
+   * the connection is left open.
+   */
+  void commitMetrics(Connection conn, Collection<TimelineMetrics> timelineMetricsCollection)
+      throws SQLException, IOException {
+    long currentTime = System.currentTimeMillis();
+
+    UpsertBatchWriter writer = newUpsertBatchWriter(conn, String.format(
+      getUpsertMetricsSql(metricValuesEncoding), METRICS_RECORD_TABLE_NAME), METRICS_RECORD_TABLE_NAME);
+    List<TimelineMetric> hotTierMetrics = hotTier != null ? new ArrayList<TimelineMetric>() : null;
+    List<double[]> hotTierAggregates = hotTier != null ? new ArrayList<double[]>() : null;
+    try {
       for (TimelineMetrics timelineMetrics : timelineMetricsCollection) {
         for (TimelineMetric metric : timelineMetrics.getMetrics()) {
           if (Math.abs(currentTime - metric.getStartTime()) > outOfBandTimeAllowance) {
@@ -282,8 +355,6 @@ public class PhoenixHBaseAccessor {
             continue;
           }
 
-          metricRecordStmt.clearParameters();
-
           if (LOG.isTraceEnabled()) {
             LOG.trace("host: " + metric.getHostName() + ", " +
                     "metricName = " + metric.getMetricName() + ", " +
@@ -292,65 +363,114 @@ public class PhoenixHBaseAccessor {
           double[] aggregates = AggregatorUtils.calculateAggregates(
                   metric.getMetricValues());
 
-          metricRecordStmt.setString(1, metric.getMetricName());
-          metricRecordStmt.setString(2, metric.getHostName());
-          metricRecordStmt.setString(3, metric.getAppId());
-          metricRecordStmt.setString(4, metric.getInstanceId());
-          metricRecordStmt.setLong(5, currentTime);
-          metricRecordStmt.setLong(6, metric.getStartTime());
-          metricRecordStmt.setString(7, metric.getUnits());
-          metricRecordStmt.setDouble(8, aggregates[0]);
-          metricRecordStmt.setDouble(9, aggregates[1]);
-          metricRecordStmt.setDouble(10, aggregates[2]);
-          metricRecordStmt.setLong(11, (long) aggregates[3]);
-          String json = TimelineUtils.dumpTimelineRecordtoJSON(metric.getMetricValues());
-          metricRecordStmt.setString(12, json);
-
-          try {
-            metricRecordStmt.executeUpdate();
-          } catch (SQLException sql) {
-            LOG.error("Failed on insert records to store.", sql);
+          writer.setString(1, metric.getMetricName());
+          writer.setString(2, metric.getHostName());
+          writer.setString(3, metric.getAppId());
+          writer.setString(4, metric.getInstanceId());
+          writer.setLong(5, currentTime);
+          writer.setLong(6, metric.getStartTime());
+          writer.setString(7, metric.getUnits());
+          writer.setDouble(8, aggregates[0]);
+          writer.setDouble(9, aggregates[1]);
+          writer.setDouble(10, aggregates[2]);
+          writer.setLong(11, (long) aggregates[3]);
+          int valuesBytes = setMetricValues(writer, 12, metric.getMetricValues());
+
+          writer.addRow(estimateRowBytes(metric.getMetricName(), metric.getHostName(),
+            metric.getAppId(), metric.getInstanceId()) + valuesBytes);
+          if (hotTierMetrics != null) {
+            hotTierMetrics.add(metric);
+            hotTierAggregates.add(aggregates);
           }
         }
       }
 
-      // commit() blocked if HBase unavailable
-      conn.commit();
-    } catch (Exception exception){
-      exception.printStackTrace();
-    }
-    finally {
-      if (metricRecordStmt != null) {
-        try {
-          metricRecordStmt.close();
-        } catch (SQLException e) {
-          // Ignore
+      writer.flush();
+      // Only once committed, a failed commit never shows up in the hot tier
+      if (hotTierMetrics != null) {
+        for (int i = 0; i < hotTierMetrics.size(); i++) {
+          hotTier.put(hotTierMetrics.get(i), currentTime, hotTierAggregates.get(i));
         }
       }
-      if (conn != null) {
-        try {
-          conn.close();
-        } catch (SQLException sql) {
-          // Ignore
-        }
+    } catch (SQLException | IOException | RuntimeException e) {
+      // Batches committed before the failure are missing from the hot tier,
+      // so it must not claim to cover the time they were written at
+      invalidateHotTier();
+      throw e;
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Batched upserts into tableName on a connection owned by the caller.
+   */
+  UpsertBatchWriter newUpsertBatchWriter(Connection conn, String sql, String tableName)
+      throws SQLException {
+    return new UpsertBatchWriter(conn, sql, tableName, upsertBatchMaxRows,
+      upsertBatchMaxBytes, upsertBatchMaxLatency, upsertBatchMetrics);
+  }
+
+  /**
+   * Approximate size of the row key columns plus the fixed width columns.
+   */
+  private static long estimateRowBytes(String... keyColumns) {
+    long bytes = 64;
+    for (String column : keyColumns) {
+      if (column != null) {
+        bytes += column.length();
       }
     }
+    return bytes;
+  }
+
+  static String getUpsertMetricsSql(MetricValuesEncoding encoding) {
+    switch (encoding) {
+      case BINARY:
+        return UPSERT_METRICS_BINARY_SQL;
+      case DUAL:
+        return UPSERT_METRICS_DUAL_SQL;
+      default:
+        return UPSERT_METRICS_SQL;
+    }
+  }
+
+  /**
+   * Bind the metric values starting at parameterIndex, as JSON and / or
+   * codec bytes in the same column order as {@link #getUpsertMetricsSql}.
+   *
+   * @return approximate number of bytes bound
+   */
+  static int setMetricValues(UpsertBatchWriter writer, int parameterIndex,
+                             TreeMap<Long, Double> metricValues)
+      throws SQLException, IOException {
+    int bytes = 0;
+    if (metricValuesEncoding.writesJson()) {
+      String json = TimelineUtils.dumpTimelineRecordtoJSON(metricValues);
+      writer.setString(parameterIndex++, json);
+      bytes += json.length();
+    }
+    if (metricValuesEncoding.writesBinary()) {
+      byte[] encoded = metricValuesCodec.encode(metricValues);
+      writer.setBytes(parameterIndex, encoded);
+      bytes += encoded.length;
+    }
+    return bytes;
   }
 
   private static TimelineMetric getLastTimelineMetricFromResultSet(ResultSet rs)
       throws SQLException, IOException {
     TimelineMetric metric = TIMELINE_METRIC_READ_HELPER.getTimelineMetricCommonsFromResultSet(rs);
-    metric.setMetricValues(readLastMetricValueFromJSON(rs.getString("METRICS")));
+    metric.setMetricValues(readLastMetricValue(readMetricValues(rs)));
     return metric;
   }
 
-  private static TreeMap<Long, Double> readLastMetricValueFromJSON(String json)
-      throws IOException {
-    TreeMap<Long, Double> values = readMetricFromJSON(json);
-    Long lastTimeStamp = values.lastKey();
-
+  private static TreeMap<Long, Double> readLastMetricValue(TreeMap<Long, Double> values) {
     TreeMap<Long, Double> valueMap = new TreeMap<Long, Double>();
-    valueMap.put(lastTimeStamp, values.get(lastTimeStamp));
+    if (!values.isEmpty()) {
+      Long lastTimeStamp = values.lastKey();
+      valueMap.put(lastTimeStamp, values.get(lastTimeStamp));
+    }
     return valueMap;
   }
 
@@ -359,6 +479,30 @@ public class PhoenixHBaseAccessor {
     return mapper.readValue(json, metricValuesTypeRef);
   }
 
+  /**
+   * Read the values of a METRIC_RECORD row. The column of the configured
+   * encoding is tried first and the other one is used for rows written
+   * under a different encoding.
+   */
+  public static TreeMap<Long, Double> readMetricValues(ResultSet rs)
+      throws SQLException, IOException {
+    if (metricValuesEncoding.readsBinaryFirst()) {
+      byte[] bytes = rs.getBytes("METRICS_BIN");
+      if (bytes != null) {
+        return metricValuesCodec.decode(bytes);
+      }
+      String json = rs.getString("METRICS");
+      return json != null ? readMetricFromJSON(json) : new TreeMap<Long, Double>();
+    }
+
+    String json = rs.getString("METRICS");
+    if (json != null) {
+      return readMetricFromJSON(json);
+    }
+    byte[] bytes = rs.getBytes("METRICS_BIN");
+    return bytes != null ? metricValuesCodec.decode(bytes) : new TreeMap<Long, Double>();
+  }
+
   private Connection getConnectionRetryingOnException()
     throws SQLException, InterruptedException {
     RetryCounter retryCounter = retryCounterFactory.create();
@@ -416,10 +560,12 @@ public class PhoenixHBaseAccessor {
         encoding, compression);
       stmt.executeUpdate(metadataSql);
       stmt.executeUpdate(ALTER_METRICS_METADATA_TABLE);
+      stmt.executeUpdate(ALTER_METRICS_METADATA_TABLE_ADD_UUID);
 
       String hostedAppSql = String.format(CREATE_HOSTED_APPS_METADATA_TABLE_SQL,
         encoding, compression);
       stmt.executeUpdate(hostedAppSql);
+      stmt.executeUpdate(ALTER_HOSTED_APPS_METADATA_TABLE_ADD_UUID);
 
       // Container Metrics
       stmt.executeUpdate( String.format(CREATE_CONTAINER_METRICS_TABLE_SQL,
@@ -433,6 +579,7 @@ public class PhoenixHBaseAccessor {
         precisionSql += getSplitPointsStr(splitPoints);
       }
       stmt.executeUpdate(precisionSql);
+      stmt.executeUpdate(ALTER_METRICS_TABLE_ADD_BINARY_VALUES);
 
       String hostMinuteAggregrateSql = String.format(CREATE_METRICS_AGGREGATE_TABLE_SQL,
         METRICS_AGGREGATE_MINUTE_TABLE_NAME, encoding,
@@ -749,11 +896,8 @@ public class PhoenixHBaseAccessor {
 
     if  (!skipCache && cacheEnabled) {
       LOG.debug("Adding metrics to cache");
-      if (insertCache.size() >= cacheSize) {
-        commitMetricsFromCache();
-      }
       try {
-        insertCache.put(metrics); // blocked while the queue is full
+        committerPool.putMetrics(metrics); // blocked while a lane is full
       } catch (InterruptedException e) {
         e.printStackTrace();
       }
@@ -778,6 +922,13 @@ public class PhoenixHBaseAccessor {
 
     validateConditionIsNotEmpty(condition);
 
+    if (hotTier != null && !condition.isPointInTime()) {
+      TimelineMetrics hotTierMetrics = getMetricRecordsFromHotTier(condition, metricFunctions);
+      if (hotTierMetrics != null) {
+        return hotTierMetrics;
+      }
+    }
+
     Connection conn = getConnection();
     PreparedStatement stmt = null;
     ResultSet rs = null;
@@ -867,6 +1018,154 @@ public class PhoenixHBaseAccessor {
     return metrics;
   }
 
+  /**
+   * Answer a precision query from the hot tier, scanning METRIC_RECORD only
+   * for the part of the time range that is older than the hot tier.
+   *
+   * @return null if the hot tier cannot answer the query
+   */
+  private TimelineMetrics getMetricRecordsFromHotTier(Condition condition,
+      Multimap<String, List<Function>> metricFunctions) throws SQLException, IOException {
+    long coveredSince = hotTier.getCoveredSince();
+    if (!TimelineMetricHotTier.isQueryable(condition) || coveredSince >= condition.getEndTime()) {
+      hotTier.recordMiss();
+      return null;
+    }
+    // Same limit check as the scan of the whole range
+    PhoenixTransactSQL.validateRowCountLimit(condition);
+
+    long startTime = condition.getStartTime();
+    List<TimelineMetricHotTier.Row> rows = new ArrayList<>();
+    if (startTime < coveredSince) {
+      rows.addAll(getMetricRecordRows(getOlderRangeCondition(condition, coveredSince)));
+      hotTier.recordPartialHit();
+    } else {
+      hotTier.recordHit();
+    }
+    rows.addAll(hotTier.getRows(condition, Math.max(startTime, coveredSince), condition.getEndTime()));
+    // Stable, scanned rows keep their order
+    Collections.sort(rows, TimelineMetricHotTier.SCAN_ORDER);
+
+    Integer limit = condition.getLimit();
+    if (limit != null && rows.size() > limit) {
+      rows = rows.subList(0, limit);
+    }
+
+    TimelineMetrics metrics = new TimelineMetrics();
+    for (TimelineMetricHotTier.Row row : rows) {
+      appendMetricFromRow(metrics, condition, metricFunctions, row);
+    }
+    LOG.debug("Metrics records size: " + metrics.getMetrics().size());
+    return metrics;
+  }
+
+  /**
+   * The query restricted to server times before endTime.
+   */
+  private static Condition getOlderRangeCondition(Condition condition, long endTime) {
+    List<String> metricNames = condition.getMetricNames() == null ? null :
+      new ArrayList<>(condition.getMetricNames());
+    DefaultCondition olderCondition = new DefaultCondition(metricNames, condition.getHostnames(),
+      condition.getAppId(), condition.getInstanceId(), condition.getStartTime(), endTime,
+      condition.getPrecision(), condition.getLimit(), condition.isGrouped());
+    olderCondition.setMetricNamesNotCondition(((DefaultCondition) condition).isMetricNamesNotCondition());
+    olderCondition.setFetchSize(condition.getFetchSize());
+    if (condition.getLimit() == null) {
+      olderCondition.setNoLimit();
+    }
+    return olderCondition;
+  }
+
+  private List<TimelineMetricHotTier.Row> getMetricRecordRows(Condition condition)
+      throws SQLException, IOException {
+    List<TimelineMetricHotTier.Row> rows = new ArrayList<>();
+    Connection conn = getConnection();
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    try {
+      stmt = PhoenixTransactSQL.prepareGetMetricsSqlStmt(conn, condition);
+      rs = stmt.executeQuery();
+      while (rs.next()) {
+        rows.add(new TimelineMetricHotTier.Row(
+          TIMELINE_METRIC_READ_HELPER.getTimelineMetricFromResultSet(rs),
+          new double[] {
+            rs.getDouble("METRIC_SUM"),
+            rs.getDouble("METRIC_MAX"),
+            rs.getDouble("METRIC_MIN"),
+            rs.getLong("METRIC_COUNT")
+          }));
+      }
+    } finally {
+      if (rs != null) {
+        try {
+          rs.close();
+        } catch (SQLException e) {
+          // Ignore
+        }
+      }
+      if (stmt != null) {
+        try {
+          stmt.close();
+        } catch (SQLException e) {
+          // Ignore
+        }
+      }
+      try {
+        conn.close();
+      } catch (SQLException sql) {
+        // Ignore
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * Same as {@link #appendMetricFromResultSet} for a precision row held in
+   * memory.
+   */
+  private void appendMetricFromRow(TimelineMetrics metrics, Condition condition,
+                                   Multimap<String, List<Function>> metricFunctions,
+                                   TimelineMetricHotTier.Row row) {
+    Collection<List<Function>> functionList = findMetricFunctions(metricFunctions,
+      row.metric.getMetricName());
+
+    for (List<Function> functions : functionList) {
+      if ((functions != null && !functions.isEmpty())) {
+        if (functions.size() > 1) {
+          throw new IllegalArgumentException("Multiple aggregate functions not supported.");
+        }
+        for (Function f : functions) {
+          if (f.getReadFunction() == Function.ReadFunction.VALUE) {
+            TimelineMetric metric = new TimelineMetric(row.metric);
+            if (f.getSuffix() != null) {
+              metric.setMetricName(metric.getMetricName() + f.getSuffix());
+            }
+            if (condition.isGrouped()) {
+              metrics.addOrMergeTimelineMetric(metric);
+            } else {
+              metrics.getMetrics().add(metric);
+            }
+          } else {
+            SingleValuedTimelineMetric metric =
+              TIMELINE_METRIC_READ_HELPER.getAggregatedTimelineMetric(row.metric, row.aggregates, f);
+            if (condition.isGrouped()) {
+              metrics.addOrMergeTimelineMetric(metric);
+            } else {
+              metrics.getMetrics().add(metric.getTimelineMetric());
+            }
+          }
+        }
+      } else {
+        TimelineMetric metric = new TimelineMetric(row.metric);
+        if (condition.isGrouped()) {
+          metrics.addOrMergeTimelineMetric(metric);
+        } else {
+          metrics.getMetrics().add(metric);
+        }
+      }
+    }
+  }
+
   /**
    * Apply aggregate function to the result if supplied else get precision
    * or aggregate data with default function applied.
@@ -1175,14 +1474,13 @@ public class PhoenixHBaseAccessor {
     }
 
     Connection conn = getConnection();
-    PreparedStatement stmt = null;
+    UpsertBatchWriter writer = null;
 
     long start = System.currentTimeMillis();
-    int rowCount = 0;
 
     try {
-      stmt = conn.prepareStatement(
-        String.format(UPSERT_AGGREGATE_RECORD_SQL, phoenixTableName));
+      writer = newUpsertBatchWriter(conn,
+        String.format(UPSERT_AGGREGATE_RECORD_SQL, phoenixTableName), phoenixTableName);
 
       for (Map.Entry<TimelineMetric, MetricHostAggregate> metricAggregate :
         hostAggregateMap.entrySet()) {
@@ -1190,41 +1488,26 @@ public class PhoenixHBaseAccessor {
         TimelineMetric metric = metricAggregate.getKey();
         MetricHostAggregate hostAggregate = metricAggregate.getValue();
 
-        rowCount++;
-        stmt.clearParameters();
-        stmt.setString(1, metric.getMetricName());
-        stmt.setString(2, metric.getHostName());
-        stmt.setString(3, metric.getAppId());
-        stmt.setString(4, metric.getInstanceId());
-        stmt.setLong(5, metric.getTimestamp());
-        stmt.setString(6, metric.getType());
-        stmt.setDouble(7, hostAggregate.getSum());
-        stmt.setDouble(8, hostAggregate.getMax());
-        stmt.setDouble(9, hostAggregate.getMin());
-        stmt.setDouble(10, hostAggregate.getNumberOfSamples());
-
-        try {
-          stmt.executeUpdate();
-        } catch (SQLException sql) {
-          LOG.error(sql);
-        }
-
-        if (rowCount >= PHOENIX_MAX_MUTATION_STATE_SIZE - 1) {
-          conn.commit();
-          rowCount = 0;
-        }
+        writer.setString(1, metric.getMetricName());
+        writer.setString(2, metric.getHostName());
+        writer.setString(3, metric.getAppId());
+        writer.setString(4, metric.getInstanceId());
+        writer.setLong(5, metric.getTimestamp());
+        writer.setString(6, metric.getType());
+        writer.setDouble(7, hostAggregate.getSum());
+        writer.setDouble(8, hostAggregate.getMax());
+        writer.setDouble(9, hostAggregate.getMin());
+        writer.setDouble(10, hostAggregate.getNumberOfSamples());
 
+        writer.addRow(estimateRowBytes(metric.getMetricName(), metric.getHostName(),
+          metric.getAppId(), metric.getInstanceId(), metric.getType()));
       }
 
-      conn.commit();
+      writer.flush();
 
     } finally {
-      if (stmt != null) {
-        try {
-          stmt.close();
-        } catch (SQLException e) {
-          // Ignore
-        }
+      if (writer != null) {
+        writer.close();
       }
       if (conn != null) {
         try {
@@ -1269,10 +1552,9 @@ public class PhoenixHBaseAccessor {
     long start = System.currentTimeMillis();
     String sqlStr = String.format(UPSERT_CLUSTER_AGGREGATE_SQL, METRICS_CLUSTER_AGGREGATE_TABLE_NAME);
     Connection conn = getConnection();
-    PreparedStatement stmt = null;
+    UpsertBatchWriter writer = null;
     try {
-      stmt = conn.prepareStatement(sqlStr);
-      int rowCount = 0;
+      writer = newUpsertBatchWriter(conn, sqlStr, METRICS_CLUSTER_AGGREGATE_TABLE_NAME);
 
       for (Map.Entry<TimelineClusterMetric, MetricClusterAggregate>
         aggregateEntry : records.entrySet()) {
@@ -1284,40 +1566,25 @@ public class PhoenixHBaseAccessor {
             "aggregate = " + aggregate);
         }
 
-        rowCount++;
-        stmt.clearParameters();
-        stmt.setString(1, clusterMetric.getMetricName());
-        stmt.setString(2, clusterMetric.getAppId());
-        stmt.setString(3, clusterMetric.getInstanceId());
-        stmt.setLong(4, clusterMetric.getTimestamp());
-        stmt.setString(5, clusterMetric.getType());
-        stmt.setDouble(6, aggregate.getSum());
-        stmt.setInt(7, aggregate.getNumberOfHosts());
-        stmt.setDouble(8, aggregate.getMax());
-        stmt.setDouble(9, aggregate.getMin());
-
-        try {
-          stmt.executeUpdate();
-        } catch (SQLException sql) {
-          // we have no way to verify it works!!!
-          LOG.error(sql);
-        }
+        writer.setString(1, clusterMetric.getMetricName());
+        writer.setString(2, clusterMetric.getAppId());
+        writer.setString(3, clusterMetric.getInstanceId());
+        writer.setLong(4, clusterMetric.getTimestamp());
+        writer.setString(5, clusterMetric.getType());
+        writer.setDouble(6, aggregate.getSum());
+        writer.setInt(7, aggregate.getNumberOfHosts());
+        writer.setDouble(8, aggregate.getMax());
+        writer.setDouble(9, aggregate.getMin());
 
-        if (rowCount >= PHOENIX_MAX_MUTATION_STATE_SIZE - 1) {
-          conn.commit();
-          rowCount = 0;
-        }
+        writer.addRow(estimateRowBytes(clusterMetric.getMetricName(), clusterMetric.getAppId(),
+          clusterMetric.getInstanceId(), clusterMetric.getType()));
       }
 
-      conn.commit();
+      writer.flush();
 
     } finally {
-      if (stmt != null) {
-        try {
-          stmt.close();
-        } catch (SQLException e) {
-          // Ignore
-        }
+      if (writer != null) {
+        writer.close();
       }
       if (conn != null) {
         try {
@@ -1359,10 +1626,10 @@ public class PhoenixHBaseAccessor {
     long start = System.currentTimeMillis();
 
     Connection conn = getConnection();
-    PreparedStatement stmt = null;
+    UpsertBatchWriter writer = null;
     try {
-      stmt = conn.prepareStatement(String.format(UPSERT_CLUSTER_AGGREGATE_TIME_SQL, tableName));
-      int rowCount = 0;
+      writer = newUpsertBatchWriter(conn,
+        String.format(UPSERT_CLUSTER_AGGREGATE_TIME_SQL, tableName), tableName);
 
       for (Map.Entry<TimelineClusterMetric, MetricHostAggregate> aggregateEntry : records.entrySet()) {
         TimelineClusterMetric clusterMetric = aggregateEntry.getKey();
@@ -1373,40 +1640,25 @@ public class PhoenixHBaseAccessor {
             "aggregate = " + aggregate);
         }
 
-        rowCount++;
-        stmt.clearParameters();
-        stmt.setString(1, clusterMetric.getMetricName());
-        stmt.setString(2, clusterMetric.getAppId());
-        stmt.setString(3, clusterMetric.getInstanceId());
-        stmt.setLong(4, clusterMetric.getTimestamp());
-        stmt.setString(5, clusterMetric.getType());
-        stmt.setDouble(6, aggregate.getSum());
-        stmt.setLong(7, aggregate.getNumberOfSamples());
-        stmt.setDouble(8, aggregate.getMax());
-        stmt.setDouble(9, aggregate.getMin());
+        writer.setString(1, clusterMetric.getMetricName());
+        writer.setString(2, clusterMetric.getAppId());
+        writer.setString(3, clusterMetric.getInstanceId());
+        writer.setLong(4, clusterMetric.getTimestamp());
+        writer.setString(5, clusterMetric.getType());
+        writer.setDouble(6, aggregate.getSum());
+        writer.setLong(7, aggregate.getNumberOfSamples());
+        writer.setDouble(8, aggregate.getMax());
+        writer.setDouble(9, aggregate.getMin());
 
-        try {
-          stmt.executeUpdate();
-        } catch (SQLException sql) {
-          // we have no way to verify it works!!!
-          LOG.error(sql);
-        }
-
-        if (rowCount >= PHOENIX_MAX_MUTATION_STATE_SIZE - 1) {
-          conn.commit();
-          rowCount = 0;
-        }
+        writer.addRow(estimateRowBytes(clusterMetric.getMetricName(), clusterMetric.getAppId(),
+          clusterMetric.getInstanceId(), clusterMetric.getType()));
       }
 
-      conn.commit();
+      writer.flush();
 
     } finally {
-      if (stmt != null) {
-        try {
-          stmt.close();
-        } catch (SQLException e) {
-          // Ignore
-        }
+      if (writer != null) {
+        writer.close();
       }
       if (conn != null) {
         try {
@@ -1471,7 +1723,8 @@ public class PhoenixHBaseAccessor {
    * One time save of metadata when discovering topology during aggregation.
    * @throws SQLException
    */
-  public void saveHostAppsMetadata(Map<String, Set<String>> hostedApps) throws SQLException {
+  public void saveHostAppsMetadata(Map<String, Set<String>> hostedApps,
+                                   Map<String, Integer> hostUuids) throws SQLException {
     Connection conn = getConnection();
     PreparedStatement stmt = null;
     try {
@@ -1486,6 +1739,7 @@ public class PhoenixHBaseAccessor {
         stmt.clearParameters();
         stmt.setString(1, hostedAppsEntry.getKey());
         stmt.setString(2, StringUtils.join(hostedAppsEntry.getValue(), ","));
+        setUuid(stmt, 3, hostUuids.get(hostedAppsEntry.getKey()));
         try {
           stmt.executeUpdate();
           rowCount++;
@@ -1549,6 +1803,7 @@ public class PhoenixHBaseAccessor {
         stmt.setLong(5, metadata.getSeriesStartTime());
         stmt.setBoolean(6, metadata.isSupportsAggregates());
         stmt.setBoolean(7, metadata.isWhitelisted());
+        setUuid(stmt, 8, metadata.getUuid());
 
         try {
           stmt.executeUpdate();
@@ -1621,6 +1876,61 @@ public class PhoenixHBaseAccessor {
     return hostedAppMap;
   }
 
+  /**
+   * @return compact ids of the hosts that have one assigned
+   */
+  public Map<String, Integer> getHostUuidsMetadata() throws SQLException {
+    Map<String, Integer> hostUuids = new HashMap<>();
+    Connection conn = getConnection();
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+
+    try {
+      stmt = conn.prepareStatement(GET_HOST_UUIDS_METADATA_SQL);
+      rs = stmt.executeQuery();
+
+      while (rs.next()) {
+        int uuid = rs.getInt("UUID");
+        if (!rs.wasNull()) {
+          hostUuids.put(rs.getString("HOSTNAME"), uuid);
+        }
+      }
+
+    } finally {
+      if (rs != null) {
+        try {
+          rs.close();
+        } catch (SQLException e) {
+          // Ignore
+        }
+      }
+      if (stmt != null) {
+        try {
+          stmt.close();
+        } catch (SQLException e) {
+          // Ignore
+        }
+      }
+      if (conn != null) {
+        try {
+          conn.close();
+        } catch (SQLException sql) {
+          // Ignore
+        }
+      }
+    }
+
+    return hostUuids;
+  }
+
+  private static void setUuid(PreparedStatement stmt, int index, Integer uuid) throws SQLException {
+    if (uuid != null) {
+      stmt.setInt(index, uuid);
+    } else {
+      stmt.setNull(index, Types.INTEGER);
+    }
+  }
+
   // No filter criteria support for now.
   public Map<TimelineMetricMetadataKey, TimelineMetricMetadata> getTimelineMetricMetadata() throws SQLException {
     Map<TimelineMetricMetadataKey, TimelineMetricMetadata> metadataMap = new HashMap<>();
@@ -1645,6 +1955,11 @@ public class PhoenixHBaseAccessor {
           rs.getBoolean("IS_WHITELISTED")
         );
 
+        int uuid = rs.getInt("UUID");
+        if (!rs.wasNull()) {
+          metadata.setUuid(uuid);
+        }
+
         TimelineMetricMetadataKey key = new TimelineMetricMetadataKey(metricName, appId);
         metadata.setIsPersisted(true); // Always true on retrieval
         metadataMap.put(key, metadata);
@@ -57,6 +57,33 @@ public class TimelineMetricConfiguration {
   public static final String TIMELINE_METRICS_CACHE_ENABLED =
     "timeline.metrics.cache.enabled";
 
+  public static final String TIMELINE_METRICS_COMMITTER_LANES =
+    "timeline.metrics.cache.committer.lanes";
+
+  public static final String TIMELINE_METRICS_COMMITTER_PARTITION_KEY =
+    "timeline.metrics.cache.committer.partition.key";
+
+  public static final String TIMELINE_METRICS_COMMITTER_BATCH_SIZE =
+    "timeline.metrics.cache.committer.batch.size";
+
+  public static final String TIMELINE_METRICS_UPSERT_BATCH_MAX_ROWS =
+    "timeline.metrics.upsert.batch.max.rows";
+
+  public static final String TIMELINE_METRICS_UPSERT_BATCH_MAX_BYTES =
+    "timeline.metrics.upsert.batch.max.bytes";
+
+  public static final String TIMELINE_METRICS_UPSERT_BATCH_MAX_LATENCY =
+    "timeline.metrics.upsert.batch.max.latency.ms";
+
+  public static final String TIMELINE_METRICS_HOT_TIER_ENABLED =
+    "timeline.metrics.service.hot.tier.enabled";
+
+  public static final String TIMELINE_METRICS_HOT_TIER_WINDOW_MINUTES =
+    "timeline.metrics.service.hot.tier.window.minutes";
+
+  public static final String TIMELINE_METRICS_HOT_TIER_MAX_BYTES =
+    "timeline.metrics.service.hot.tier.max.bytes";
+
   public static final String DEFAULT_CHECKPOINT_LOCATION =
     System.getProperty("java.io.tmpdir");
 
@@ -165,6 +192,12 @@ public class TimelineMetricConfiguration {
   public static final String CLUSTER_AGGREGATOR_SECOND_DISABLED =
     "timeline.metrics.cluster.aggregator.second.disabled";
 
+  public static final String CLUSTER_AGGREGATOR_SECOND_STREAMING_ENABLED =
+    "timeline.metrics.cluster.aggregator.second.streaming.enabled";
+
+  public static final String CLUSTER_AGGREGATOR_SECOND_STREAMING_MAX_BUFFERED =
+    "timeline.metrics.cluster.aggregator.second.streaming.max.buffered.metrics";
+
   public static final String CLUSTER_AGGREGATOR_MINUTE_DISABLED =
     "timeline.metrics.cluster.aggregator.minute.disabled";
 
@@ -261,6 +294,12 @@ public class TimelineMetricConfiguration {
   public static final String TIMELINE_METRIC_AGGREGATION_SQL_FILTERS =
     "timeline.metrics.cluster.aggregation.sql.filters";
 
+  public static final String TIMELINE_METRICS_PRECISION_VALUES_ENCODING =
+    "timeline.metrics.precision.values.encoding";
+
+  public static final String TIMELINE_METRICS_PRECISION_VALUES_CODEC_CLASS =
+    "timeline.metrics.precision.values.codec.class";
+
   public static final String HOST_APP_ID = "HOST";
 
   public static final String DEFAULT_INSTANCE_PORT = "12001";
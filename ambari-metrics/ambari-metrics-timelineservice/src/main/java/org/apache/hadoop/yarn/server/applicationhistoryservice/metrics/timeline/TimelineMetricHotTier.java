@@ -0,0 +1,488 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_HOT_TIER_MAX_BYTES;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_HOT_TIER_WINDOW_MINUTES;
+import static org.apache.hadoop.metrics2.lib.Interns.info;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsException;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.metrics2.MetricsSource;
+import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
+import org.apache.hadoop.metrics2.sink.timeline.Precision;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.Condition;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.DefaultCondition;
+
+/**
+ * In memory copy of the most recent METRIC_RECORD rows, indexed by metric
+ * name and then by host, app and instance, so that precision queries over
+ * the last few minutes do not need a Phoenix scan.
+ *
+ * Rows are added with the SERVER_TIME they were committed with. The tier
+ * only answers for server times it has seen completely, i.e. after the
+ * first commit following a (re)start, an overflow or an invalidation, and
+ * never for more than the configured window.
+ */
+public class TimelineMetricHotTier implements MetricsSource {
+  private static final Log LOG = LogFactory.getLog(TimelineMetricHotTier.class);
+
+  static final String METRICS_SOURCE_NAME = "TimelineMetricsHotTier";
+
+  static final long NOT_COVERED = Long.MAX_VALUE;
+
+  // Rough heap cost of a row besides its data points
+  private static final long ROW_OVERHEAD_BYTES = 160;
+  private static final long EVICTION_INTERVAL_MILLIS = 10000;
+
+  // Order of the METRIC_RECORD scan, METRIC_NAME, SERVER_TIME, ties broken
+  // by the rest of the row key
+  static final Comparator<Row> ROW_ORDER = new Comparator<Row>() {
+    @Override
+    public int compare(Row o1, Row o2) {
+      int result = compareNullable(o1.metric.getMetricName(), o2.metric.getMetricName());
+      if (result == 0) {
+        result = Long.compare(o1.metric.getTimestamp(), o2.metric.getTimestamp());
+      }
+      if (result == 0) {
+        result = compareNullable(o1.metric.getHostName(), o2.metric.getHostName());
+      }
+      if (result == 0) {
+        result = compareNullable(o1.metric.getAppId(), o2.metric.getAppId());
+      }
+      if (result == 0) {
+        result = compareNullable(o1.metric.getInstanceId(), o2.metric.getInstanceId());
+      }
+      return result;
+    }
+  };
+
+  // Only the scan order, so that merging with scanned rows keeps their order
+  static final Comparator<Row> SCAN_ORDER = new Comparator<Row>() {
+    @Override
+    public int compare(Row o1, Row o2) {
+      int result = compareNullable(o1.metric.getMetricName(), o2.metric.getMetricName());
+      if (result == 0) {
+        result = Long.compare(o1.metric.getTimestamp(), o2.metric.getTimestamp());
+      }
+      return result;
+    }
+  };
+
+  private final ConcurrentMap<String, ConcurrentMap<SeriesKey, ConcurrentNavigableMap<Long, Row>>> rows =
+    new ConcurrentHashMap<>();
+  private final long windowMillis;
+  private final long maxBytes;
+
+  private final AtomicLong coveredSince = new AtomicLong(NOT_COVERED);
+  private final AtomicLong lastEvictionTime = new AtomicLong();
+  private final AtomicLong rowCount = new AtomicLong();
+  private final AtomicLong estimatedBytes = new AtomicLong();
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong partialHits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong overflows = new AtomicLong();
+
+  public TimelineMetricHotTier(Configuration metricsConf) {
+    this.windowMillis = TimeUnit.MINUTES.toMillis(
+      metricsConf.getInt(TIMELINE_METRICS_HOT_TIER_WINDOW_MINUTES, 15));
+    this.maxBytes = metricsConf.getLong(TIMELINE_METRICS_HOT_TIER_MAX_BYTES, 128 * 1024 * 1024);
+  }
+
+  public void registerMetricsSource() {
+    try {
+      DefaultMetricsSystem.instance().register(METRICS_SOURCE_NAME,
+        "Timeline metrics in memory hot tier", this);
+    } catch (MetricsException e) {
+      LOG.warn("Unable to register hot tier metrics source: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Add a row that was committed to METRIC_RECORD.
+   *
+   * @param aggregates sum, max, min and count as written with the row
+   */
+  void put(TimelineMetric metric, long serverTime, double[] aggregates) {
+    coveredSince.compareAndSet(NOT_COVERED, serverTime);
+
+    TimelineMetric copy = new TimelineMetric();
+    copy.setMetricName(metric.getMetricName());
+    copy.setHostName(metric.getHostName());
+    copy.setAppId(metric.getAppId());
+    copy.setInstanceId(metric.getInstanceId());
+    copy.setStartTime(metric.getStartTime());
+    copy.setTimestamp(serverTime);
+    // The read path maps the UNITS column to the type
+    copy.setType(metric.getUnits());
+    copy.setMetricSeries(TimelineMetricSeries.fromMap(metric.getMetricValues()));
+    Row row = new Row(copy, aggregates);
+
+    ConcurrentNavigableMap<Long, Row> seriesRows = getSeriesRows(copy);
+    // Same row key upserted twice, the last write wins as in HBase
+    Row previous = seriesRows.put(serverTime, row);
+    if (previous == null) {
+      rowCount.incrementAndGet();
+    } else {
+      estimatedBytes.addAndGet(-previous.estimatedBytes());
+    }
+    estimatedBytes.addAndGet(row.estimatedBytes());
+
+    long now = System.currentTimeMillis();
+    if (estimatedBytes.get() > maxBytes) {
+      overflow(now);
+    } else {
+      long lastEviction = lastEvictionTime.get();
+      if (now - lastEviction >= EVICTION_INTERVAL_MILLIS &&
+          lastEvictionTime.compareAndSet(lastEviction, now)) {
+        evictBefore(now - windowMillis);
+      }
+    }
+  }
+
+  /**
+   * Forget the coverage, e.g. when other collectors take part of the writes.
+   */
+  void invalidate() {
+    long now = System.currentTimeMillis();
+    if (coveredSince.get() != NOT_COVERED && coveredSince.get() < now) {
+      LOG.debug("Hot tier coverage reset, serving queries from " + now + " on.");
+      coveredSince.set(now);
+    }
+  }
+
+  /**
+   * @return the server time from which on every committed row is held,
+   * NOT_COVERED if there is none
+   */
+  long getCoveredSince() {
+    long since = coveredSince.get();
+    if (since == NOT_COVERED) {
+      return NOT_COVERED;
+    }
+    return Math.max(since, System.currentTimeMillis() - windowMillis);
+  }
+
+  /**
+   * @return whether the condition is a plain precision data query that the
+   * tier can evaluate. The precision is resolved on the condition the same
+   * way the scan does.
+   */
+  static boolean isQueryable(Condition condition) {
+    if (condition.getClass() != DefaultCondition.class || condition.isPointInTime()
+        || condition.getStatement() != null || condition.getOrderByClause(true) != null
+        || condition.getStartTime() == null || condition.getEndTime() == null
+        || condition.getEndTime() < condition.getStartTime()) {
+      return false;
+    }
+    if (condition.getHostnames() != null && condition.getHostnames().isEmpty()) {
+      return false;
+    }
+    if (condition.getPrecision() == null) {
+      condition.setPrecision(Precision.getPrecision(condition.getStartTime(), condition.getEndTime()));
+    }
+    return condition.getPrecision() == Precision.SECONDS;
+  }
+
+  /**
+   * Rows that match the condition with a server time in [fromServerTime,
+   * toServerTime), sorted like the METRIC_RECORD scan. The rows must not
+   * be modified.
+   */
+  List<Row> getRows(Condition condition, long fromServerTime, long toServerTime) {
+    DefaultCondition defaultCondition = (DefaultCondition) condition;
+    NameFilter metricNameFilter = new NameFilter(condition.getMetricNames(),
+      defaultCondition.isMetricNamesNotCondition(), false);
+    // One wildcard turns all hostnames into LIKE clauses
+    NameFilter hostnameFilter = new NameFilter(condition.getHostnames(), false, true);
+    String appId = condition.getAppId();
+    String instanceId = condition.getInstanceId();
+
+    List<Row> result = new ArrayList<>();
+    for (Map.Entry<String, ConcurrentMap<SeriesKey, ConcurrentNavigableMap<Long, Row>>> metricEntry : rows.entrySet()) {
+      if (!metricNameFilter.matches(metricEntry.getKey())) {
+        continue;
+      }
+      for (Map.Entry<SeriesKey, ConcurrentNavigableMap<Long, Row>> seriesEntry : metricEntry.getValue().entrySet()) {
+        SeriesKey key = seriesEntry.getKey();
+        if (!hostnameFilter.matches(key.hostName)
+            || (appId != null && !appId.equals(key.appId))
+            || (instanceId != null && !instanceId.equals(key.instanceId))) {
+          continue;
+        }
+        result.addAll(seriesEntry.getValue().subMap(fromServerTime, toServerTime).values());
+      }
+    }
+    Collections.sort(result, ROW_ORDER);
+    return result;
+  }
+
+  void recordHit() {
+    hits.incrementAndGet();
+  }
+
+  void recordPartialHit() {
+    partialHits.incrementAndGet();
+  }
+
+  void recordMiss() {
+    misses.incrementAndGet();
+  }
+
+  long getHits() {
+    return hits.get();
+  }
+
+  long getPartialHits() {
+    return partialHits.get();
+  }
+
+  long getMisses() {
+    return misses.get();
+  }
+
+  long getRowCount() {
+    return rowCount.get();
+  }
+
+  long getEstimatedBytes() {
+    return estimatedBytes.get();
+  }
+
+  /**
+   * Drop the rows committed before serverTime.
+   */
+  void evictBefore(long serverTime) {
+    for (ConcurrentMap<SeriesKey, ConcurrentNavigableMap<Long, Row>> metricRows : rows.values()) {
+      for (ConcurrentNavigableMap<Long, Row> seriesRows : metricRows.values()) {
+        Map.Entry<Long, Row> entry;
+        while ((entry = seriesRows.firstEntry()) != null && entry.getKey() < serverTime) {
+          if (seriesRows.remove(entry.getKey(), entry.getValue())) {
+            rowCount.decrementAndGet();
+            estimatedBytes.addAndGet(-entry.getValue().estimatedBytes());
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Halve the covered time range until the rows fit again. Coverage is
+   * moved before the rows go, a query never sees a partly evicted range.
+   */
+  private synchronized void overflow(long now) {
+    if (estimatedBytes.get() <= maxBytes) {
+      return;
+    }
+    overflows.incrementAndGet();
+    long cutoff = Math.max(getCoveredSince(), now - windowMillis);
+    while (estimatedBytes.get() > maxBytes && cutoff < now) {
+      cutoff = cutoff + Math.max((now - cutoff) / 2, 1);
+      coveredSince.set(Math.max(coveredSince.get(), cutoff));
+      evictBefore(cutoff);
+    }
+    LOG.warn("Hot tier exceeded " + maxBytes + " bytes, now serving queries from " +
+      coveredSince.get() + " on.");
+  }
+
+  private ConcurrentNavigableMap<Long, Row> getSeriesRows(TimelineMetric metric) {
+    ConcurrentMap<SeriesKey, ConcurrentNavigableMap<Long, Row>> metricRows = rows.get(metric.getMetricName());
+    if (metricRows == null) {
+      ConcurrentMap<SeriesKey, ConcurrentNavigableMap<Long, Row>> newMetricRows = new ConcurrentHashMap<>();
+      metricRows = rows.putIfAbsent(metric.getMetricName(), newMetricRows);
+      if (metricRows == null) {
+        metricRows = newMetricRows;
+      }
+    }
+    SeriesKey key = new SeriesKey(metric.getHostName(), metric.getAppId(), metric.getInstanceId());
+    ConcurrentNavigableMap<Long, Row> seriesRows = metricRows.get(key);
+    if (seriesRows == null) {
+      ConcurrentNavigableMap<Long, Row> newSeriesRows = new ConcurrentSkipListMap<>();
+      seriesRows = metricRows.putIfAbsent(key, newSeriesRows);
+      if (seriesRows == null) {
+        seriesRows = newSeriesRows;
+      }
+    }
+    return seriesRows;
+  }
+
+  @Override
+  public void getMetrics(MetricsCollector collector, boolean all) {
+    long queries = hits.get() + partialHits.get() + misses.get();
+    MetricsRecordBuilder builder = collector.addRecord(METRICS_SOURCE_NAME)
+      .setContext("timeline");
+    builder.addCounter(info("Hits", "Queries answered from memory"), hits.get());
+    builder.addCounter(info("PartialHits", "Queries with only the older range scanned"), partialHits.get());
+    builder.addCounter(info("Misses", "Queries answered by a full scan"), misses.get());
+    builder.addGauge(info("HitRatePercent", "Queries answered at least partly from memory"),
+      queries == 0 ? 0 : (int) ((hits.get() + partialHits.get()) * 100 / queries));
+    builder.addGauge(info("Rows", "Rows held in memory"), rowCount.get());
+    builder.addGauge(info("EstimatedBytes", "Estimated heap used by the rows"), estimatedBytes.get());
+    long since = getCoveredSince();
+    builder.addGauge(info("CoveredSeconds", "Seconds of most recent data held"),
+      since == NOT_COVERED ? 0 : Math.max(0, (System.currentTimeMillis() - since) / 1000));
+    builder.addCounter(info("Overflows", "Evictions due to the memory bound"), overflows.get());
+  }
+
+  private static int compareNullable(String s1, String s2) {
+    if (s1 == null) {
+      return s2 == null ? 0 : -1;
+    }
+    return s2 == null ? 1 : s1.compareTo(s2);
+  }
+
+  /**
+   * A METRIC_RECORD row: the metric carries SERVER_TIME as timestamp and the
+   * UNITS as type, like a metric read from the table.
+   */
+  static class Row {
+    final TimelineMetric metric;
+    // METRIC_SUM, METRIC_MAX, METRIC_MIN, METRIC_COUNT
+    final double[] aggregates;
+
+    Row(TimelineMetric metric, double[] aggregates) {
+      this.metric = metric;
+      this.aggregates = aggregates;
+    }
+
+    long estimatedBytes() {
+      return ROW_OVERHEAD_BYTES + 16L * metric.getMetricValuesCount();
+    }
+  }
+
+  private static class SeriesKey {
+    private final String hostName;
+    private final String appId;
+    private final String instanceId;
+
+    SeriesKey(String hostName, String appId, String instanceId) {
+      this.hostName = hostName;
+      this.appId = appId;
+      this.instanceId = instanceId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      SeriesKey that = (SeriesKey) o;
+      return equalsNullable(hostName, that.hostName) && equalsNullable(appId, that.appId)
+        && equalsNullable(instanceId, that.instanceId);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = hostName != null ? hostName.hashCode() : 0;
+      result = 31 * result + (appId != null ? appId.hashCode() : 0);
+      result = 31 * result + (instanceId != null ? instanceId.hashCode() : 0);
+      return result;
+    }
+
+    private static boolean equalsNullable(String s1, String s2) {
+      return s1 == null ? s2 == null : s1.equals(s2);
+    }
+  }
+
+  /**
+   * Evaluates the (NOT) IN / LIKE clause the condition generates for metric
+   * names or hostnames.
+   */
+  private static class NameFilter {
+    private final boolean matchAll;
+    private final boolean negate;
+    private final Set<String> names = new HashSet<>();
+    private final List<Pattern> patterns = new ArrayList<>();
+
+    NameFilter(List<String> values, boolean negate, boolean allLikeOnWildcard) {
+      this.matchAll = values == null;
+      this.negate = negate;
+      if (values != null) {
+        boolean allLike = false;
+        if (allLikeOnWildcard) {
+          for (String value : values) {
+            allLike |= value.contains("%");
+          }
+        }
+        for (String value : values) {
+          if (allLike || value.contains("%")) {
+            patterns.add(Pattern.compile(likeToRegex(value)));
+          } else {
+            names.add(value);
+          }
+        }
+      }
+    }
+
+    boolean matches(String value) {
+      if (matchAll) {
+        return true;
+      }
+      if (value == null) {
+        return false;
+      }
+      boolean matched = names.contains(value);
+      for (int i = 0; !matched && i < patterns.size(); i++) {
+        matched = patterns.get(i).matcher(value).matches();
+      }
+      return negate ? !matched : matched;
+    }
+
+    private static String likeToRegex(String like) {
+      StringBuilder sb = new StringBuilder();
+      StringBuilder literal = new StringBuilder();
+      for (char c : like.toCharArray()) {
+        if (c == '%' || c == '_') {
+          if (literal.length() > 0) {
+            sb.append(Pattern.quote(literal.toString()));
+            literal.setLength(0);
+          }
+          sb.append(c == '%' ? ".*" : ".");
+        } else {
+          literal.append(c);
+        }
+      }
+      if (literal.length() > 0) {
+        sb.append(Pattern.quote(literal.toString()));
+      }
+      return sb.toString();
+    }
+  }
+}
@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsException;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.metrics2.MetricsSource;
+import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.apache.hadoop.metrics2.lib.Interns.info;
+
+/**
+ * Per table throughput and batch size histogram of the
+ * {@link UpsertBatchWriter}s, published through the collector's own
+ * metrics system.
+ */
+public class UpsertBatchMetrics implements MetricsSource {
+  private static final Log LOG = LogFactory.getLog(UpsertBatchMetrics.class);
+
+  static final String METRICS_SOURCE_NAME = "TimelineMetricsUpsertBatches";
+
+  // Upper bounds (inclusive) of the batch size histogram buckets
+  static final int[] BATCH_SIZE_BUCKETS = { 10, 100, 1000, 10000, Integer.MAX_VALUE };
+
+  private final ConcurrentMap<String, TableStats> tableStats =
+    new ConcurrentHashMap<String, TableStats>();
+
+  public void registerMetricsSource() {
+    try {
+      DefaultMetricsSystem.instance().register(METRICS_SOURCE_NAME,
+        "Timeline metrics batched upserts", this);
+    } catch (MetricsException e) {
+      LOG.warn("Unable to register upsert batch metrics source: " + e.getMessage());
+    }
+  }
+
+  void recordBatch(String tableName, int rows, int failedRows, long bytes, long latencyMillis) {
+    TableStats stats = getTableStats(tableName);
+    stats.rows.addAndGet(rows);
+    stats.failedRows.addAndGet(failedRows);
+    stats.bytes.addAndGet(bytes);
+    stats.batches.incrementAndGet();
+    stats.lastBatchLatency.set(latencyMillis);
+    int batchSize = rows + failedRows;
+    for (int i = 0; i < BATCH_SIZE_BUCKETS.length; i++) {
+      if (batchSize <= BATCH_SIZE_BUCKETS[i]) {
+        stats.batchSizeHistogram.incrementAndGet(i);
+        break;
+      }
+    }
+  }
+
+  long getRows(String tableName) {
+    return getTableStats(tableName).rows.get();
+  }
+
+  long getBatches(String tableName) {
+    return getTableStats(tableName).batches.get();
+  }
+
+  long getBatchSizeCount(String tableName, int bucket) {
+    return getTableStats(tableName).batchSizeHistogram.get(bucket);
+  }
+
+  private TableStats getTableStats(String tableName) {
+    TableStats stats = tableStats.get(tableName);
+    if (stats == null) {
+      TableStats newStats = new TableStats();
+      stats = tableStats.putIfAbsent(tableName, newStats);
+      if (stats == null) {
+        stats = newStats;
+      }
+    }
+    return stats;
+  }
+
+  @Override
+  public void getMetrics(MetricsCollector collector, boolean all) {
+    for (Map.Entry<String, TableStats> entry : tableStats.entrySet()) {
+      TableStats stats = entry.getValue();
+      MetricsRecordBuilder builder = collector.addRecord(METRICS_SOURCE_NAME)
+        .setContext("timeline")
+        .tag(info("Table", "Phoenix table name"), entry.getKey());
+      builder.addCounter(info("UpsertedRows", "Rows upserted"), stats.rows.get());
+      builder.addCounter(info("FailedRows", "Rows rejected by the batch"), stats.failedRows.get());
+      builder.addCounter(info("UpsertedBytes", "Estimated bytes upserted"), stats.bytes.get());
+      builder.addCounter(info("Batches", "Batches executed and committed"), stats.batches.get());
+      builder.addGauge(info("LastBatchLatencyMs", "Latency of the last batch"), stats.lastBatchLatency.get());
+      int lowerBound = 1;
+      for (int i = 0; i < BATCH_SIZE_BUCKETS.length; i++) {
+        String name = BATCH_SIZE_BUCKETS[i] == Integer.MAX_VALUE ?
+          "BatchSize_" + lowerBound + "_plus" : "BatchSize_" + lowerBound + "_" + BATCH_SIZE_BUCKETS[i];
+        builder.addCounter(info(name, "Batches of this many rows"), stats.batchSizeHistogram.get(i));
+        lowerBound = BATCH_SIZE_BUCKETS[i] + 1;
+      }
+    }
+  }
+
+  private static class TableStats {
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong failedRows = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong lastBatchLatency = new AtomicLong();
+    private final AtomicLongArray batchSizeHistogram = new AtomicLongArray(BATCH_SIZE_BUCKETS.length);
+  }
+}
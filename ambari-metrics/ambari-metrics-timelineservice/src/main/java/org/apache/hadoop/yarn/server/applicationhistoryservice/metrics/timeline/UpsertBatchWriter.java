@@ -0,0 +1,279 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.Closeable;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Upserts rows of one table through a single prepared statement using JDBC
+ * batching. The batch is executed and committed once it reaches the maximum
+ * number of rows or (estimated) bytes, or once its first row is older than
+ * the maximum latency.
+ *
+ * Usage: set the parameters through the setters of this writer and call
+ * {@link #addRow(long)} per row, then {@link #flush()} once all rows are
+ * added. The connection stays owned by the caller.
+ *
+ * The parameters of the pending rows are kept, so that the rows of a batch
+ * the driver failed or stopped executing are replayed one by one and, as
+ * with the former per row executeUpdate, only the bad rows are lost.
+ */
+public class UpsertBatchWriter implements Closeable {
+  private static final Log LOG = LogFactory.getLog(UpsertBatchWriter.class);
+
+  private final Connection conn;
+  private final PreparedStatement stmt;
+  private final List<List<Parameter>> batchParameters = new ArrayList<List<Parameter>>();
+  private List<Parameter> rowParameters = new ArrayList<Parameter>();
+  private final String tableName;
+  private final int maxRows;
+  private final long maxBytes;
+  private final long maxLatencyMillis;
+  private final UpsertBatchMetrics batchMetrics;
+
+  private int batchRows = 0;
+  private long batchBytes = 0;
+  private long batchStartTime = 0;
+  private int totalRows = 0;
+  private SQLException commitFailure;
+
+  UpsertBatchWriter(Connection conn, String sql, String tableName, int maxRows,
+                    long maxBytes, long maxLatencyMillis,
+                    UpsertBatchMetrics batchMetrics) throws SQLException {
+    this.conn = conn;
+    this.stmt = conn.prepareStatement(sql);
+    this.tableName = tableName;
+    this.maxRows = Math.max(1, maxRows);
+    this.maxBytes = maxBytes;
+    this.maxLatencyMillis = maxLatencyMillis;
+    this.batchMetrics = batchMetrics;
+  }
+
+  public void setString(int parameterIndex, final String value) throws SQLException {
+    stmt.setString(parameterIndex, value);
+    rowParameters.add(new Parameter(parameterIndex) {
+      @Override
+      void apply(PreparedStatement statement) throws SQLException {
+        statement.setString(index, value);
+      }
+    });
+  }
+
+  public void setLong(int parameterIndex, final long value) throws SQLException {
+    stmt.setLong(parameterIndex, value);
+    rowParameters.add(new Parameter(parameterIndex) {
+      @Override
+      void apply(PreparedStatement statement) throws SQLException {
+        statement.setLong(index, value);
+      }
+    });
+  }
+
+  public void setInt(int parameterIndex, final int value) throws SQLException {
+    stmt.setInt(parameterIndex, value);
+    rowParameters.add(new Parameter(parameterIndex) {
+      @Override
+      void apply(PreparedStatement statement) throws SQLException {
+        statement.setInt(index, value);
+      }
+    });
+  }
+
+  public void setDouble(int parameterIndex, final double value) throws SQLException {
+    stmt.setDouble(parameterIndex, value);
+    rowParameters.add(new Parameter(parameterIndex) {
+      @Override
+      void apply(PreparedStatement statement) throws SQLException {
+        statement.setDouble(index, value);
+      }
+    });
+  }
+
+  public void setBytes(int parameterIndex, final byte[] value) throws SQLException {
+    stmt.setBytes(parameterIndex, value);
+    rowParameters.add(new Parameter(parameterIndex) {
+      @Override
+      void apply(PreparedStatement statement) throws SQLException {
+        statement.setBytes(index, value);
+      }
+    });
+  }
+
+  /**
+   * Add the row bound on the statement to the batch and flush if a bound is
+   * reached.
+   *
+   * @param estimatedBytes approximate serialized size of the row
+   */
+  public void addRow(long estimatedBytes) throws SQLException {
+    stmt.addBatch();
+    stmt.clearParameters();
+    batchParameters.add(rowParameters);
+    rowParameters = new ArrayList<Parameter>();
+    if (batchRows == 0) {
+      batchStartTime = System.currentTimeMillis();
+    }
+    batchRows++;
+    batchBytes += estimatedBytes;
+    totalRows++;
+
+    if (batchRows >= maxRows || batchBytes >= maxBytes ||
+        System.currentTimeMillis() - batchStartTime >= maxLatencyMillis) {
+      commitBatch();
+    }
+  }
+
+  /**
+   * Execute and commit the current batch. Rows rejected by the batch or not
+   * executed by it are replayed one by one, so as with the former per row
+   * executeUpdate only the bad rows are logged and counted. A commit
+   * that failed here or for an earlier batch of this writer is thrown once
+   * every row was attempted, like the single commit at the end of a save
+   * used to fail.
+   */
+  public void flush() throws SQLException {
+    commitBatch();
+    if (commitFailure != null) {
+      SQLException e = commitFailure;
+      commitFailure = null;
+      throw e;
+    }
+  }
+
+  private void commitBatch() throws SQLException {
+    if (batchRows == 0) {
+      return;
+    }
+    int rows = batchRows;
+    long bytes = batchBytes;
+    batchRows = 0;
+    batchBytes = 0;
+
+    long start = System.currentTimeMillis();
+    int failedRows = 0;
+    boolean replay = false;
+    int[] updateCounts = null;
+    try {
+      stmt.executeBatch();
+    } catch (BatchUpdateException e) {
+      updateCounts = e.getUpdateCounts();
+      LOG.warn("Failed on batch upsert of " + rows + " rows into " + tableName +
+        ", retrying the rows not upserted row by row", e);
+      replay = true;
+    } catch (SQLException e) {
+      LOG.warn("Failed on batch upsert of " + rows + " rows into " + tableName +
+        ", retrying row by row", e);
+      replay = true;
+    } finally {
+      stmt.clearBatch();
+    }
+    if (replay) {
+      failedRows = replayRows(updateCounts);
+    }
+    batchParameters.clear();
+
+    try {
+      // commit() blocked if HBase unavailable
+      conn.commit();
+    } catch (SQLException e) {
+      LOG.error("Failed to commit " + rows + " rows into " + tableName, e);
+      failedRows = rows;
+      if (commitFailure == null) {
+        commitFailure = e;
+      }
+    }
+
+    if (batchMetrics != null) {
+      batchMetrics.recordBatch(tableName, rows - failedRows, failedRows, bytes,
+        System.currentTimeMillis() - start);
+    }
+  }
+
+  /**
+   * @return rows added since this writer was created
+   */
+  public int getTotalRows() {
+    return totalRows;
+  }
+
+  /**
+   * Execute the pending rows the batch did not upsert one at a time.
+   *
+   * @param updateCounts update counts of a partly executed batch, null if
+   *                     every row is to be replayed
+   * @return number of rows that failed
+   */
+  private int replayRows(int[] updateCounts) throws SQLException {
+    int failedRows = 0;
+    for (int i = 0; i < batchParameters.size(); i++) {
+      // Drivers that stop at the first failure return fewer counts than rows
+      if (updateCounts != null && i < updateCounts.length &&
+          updateCounts[i] != Statement.EXECUTE_FAILED) {
+        continue;
+      }
+      stmt.clearParameters();
+      try {
+        for (Parameter parameter : batchParameters.get(i)) {
+          parameter.apply(stmt);
+        }
+        stmt.executeUpdate();
+      } catch (SQLException e) {
+        failedRows++;
+        LOG.error("Failed on upsert of a row into " + tableName, e);
+      }
+    }
+    stmt.clearParameters();
+    return failedRows;
+  }
+
+  /**
+   * Close the statement. Rows not flushed yet are dropped, like uncommitted
+   * upserts were when a save failed half way.
+   */
+  @Override
+  public void close() {
+    try {
+      stmt.close();
+    } catch (SQLException e) {
+      // Ignore
+    }
+  }
+
+  /**
+   * A parameter set on the statement for the current row.
+   */
+  private abstract static class Parameter {
+    final int index;
+
+    Parameter(int index) {
+      this.index = index;
+    }
+
+    abstract void apply(PreparedStatement statement) throws SQLException;
+  }
+}
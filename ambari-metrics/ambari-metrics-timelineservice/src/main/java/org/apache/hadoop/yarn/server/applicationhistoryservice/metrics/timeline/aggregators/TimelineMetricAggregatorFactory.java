@@ -248,6 +248,19 @@ public class TimelineMetricAggregatorFactory {
     PhoenixHBaseAccessor hBaseAccessor, Configuration metricsConf,
     TimelineMetricMetadataManager metadataManager,
     MetricCollectorHAController haController) {
+    return createTimelineClusterAggregatorSecond(hBaseAccessor, metricsConf,
+      metadataManager, haController, null);
+  }
+
+  /**
+   * Second aggregation for cluster, optionally reading the metrics from the
+   * collector's streaming buffer instead of the precision table.
+   */
+  public static TimelineMetricAggregator createTimelineClusterAggregatorSecond(
+    PhoenixHBaseAccessor hBaseAccessor, Configuration metricsConf,
+    TimelineMetricMetadataManager metadataManager,
+    MetricCollectorHAController haController,
+    TimelineMetricStreamingBuffer streamingBuffer) {
 
     String checkpointDir = metricsConf.get(
       TIMELINE_METRICS_AGGREGATOR_CHECKPOINT_DIR, DEFAULT_CHECKPOINT_LOCATION);
@@ -281,7 +294,8 @@ public class TimelineMetricAggregatorFactory {
       outputTableName,
       120000l,
       timeSliceIntervalMillis,
-      haController
+      haController,
+      streamingBuffer
     );
   }
 
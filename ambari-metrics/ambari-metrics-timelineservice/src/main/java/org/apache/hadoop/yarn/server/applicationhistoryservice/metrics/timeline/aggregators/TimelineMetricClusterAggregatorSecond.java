@@ -29,10 +29,13 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang.StringUtils;
@@ -52,6 +55,11 @@ import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.
 /**
  * Aggregates a metric across all hosts in the cluster. Reads metrics from
  * the precision table and saves into the aggregate.
+ *
+ * With a {@link TimelineMetricStreamingBuffer} the metrics are instead taken
+ * from what passed through the collector's write path, whenever the buffer
+ * covers the whole window and this collector is the only live instance. The
+ * precision table scan remains the fallback, e.g. to catch up after restart.
  */
 public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggregator {
   public Long timeSliceIntervalMillis;
@@ -63,6 +71,8 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
   private final boolean interpolationEnabled;
   private TimelineMetricMetadataManager metadataManagerInstance;
   private String skipAggrPatternStrings;
+  private final TimelineMetricStreamingBuffer streamingBuffer;
+  private final MetricCollectorHAController haController;
 
   public TimelineMetricClusterAggregatorSecond(AGGREGATOR_NAME aggregatorName,
                                                TimelineMetricMetadataManager metadataManager,
@@ -77,6 +87,25 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
                                                Long nativeTimeRangeDelay,
                                                Long timeSliceInterval,
                                                MetricCollectorHAController haController) {
+    this(aggregatorName, metadataManager, hBaseAccessor, metricsConf, checkpointLocation,
+      sleepIntervalMillis, checkpointCutOffMultiplier, aggregatorDisabledParam, tableName,
+      outputTableName, nativeTimeRangeDelay, timeSliceInterval, haController, null);
+  }
+
+  public TimelineMetricClusterAggregatorSecond(AGGREGATOR_NAME aggregatorName,
+                                               TimelineMetricMetadataManager metadataManager,
+                                               PhoenixHBaseAccessor hBaseAccessor,
+                                               Configuration metricsConf,
+                                               String checkpointLocation,
+                                               Long sleepIntervalMillis,
+                                               Integer checkpointCutOffMultiplier,
+                                               String aggregatorDisabledParam,
+                                               String tableName,
+                                               String outputTableName,
+                                               Long nativeTimeRangeDelay,
+                                               Long timeSliceInterval,
+                                               MetricCollectorHAController haController,
+                                               TimelineMetricStreamingBuffer streamingBuffer) {
     super(aggregatorName, hBaseAccessor, metricsConf, checkpointLocation,
       sleepIntervalMillis, checkpointCutOffMultiplier, aggregatorDisabledParam,
       tableName, outputTableName, nativeTimeRangeDelay, haController);
@@ -87,6 +116,109 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
     this.serverTimeShiftAdjustment = Long.parseLong(metricsConf.get(SERVER_SIDE_TIMESIFT_ADJUSTMENT, "90000"));
     this.interpolationEnabled = Boolean.parseBoolean(metricsConf.get(TIMELINE_METRICS_CLUSTER_AGGREGATOR_INTERPOLATION_ENABLED, "true"));
     this.skipAggrPatternStrings = metricsConf.get(TIMELINE_METRIC_AGGREGATION_SQL_FILTERS);
+    this.streamingBuffer = streamingBuffer;
+    this.haController = haController;
+  }
+
+  @Override
+  public boolean doWork(long startTime, long endTime) {
+    if (streamingBuffer == null) {
+      return super.doWork(startTime, endTime);
+    }
+
+    boolean success;
+    if (canAggregateFromBuffer(startTime)) {
+      success = aggregateFromBuffer(startTime, endTime);
+    } else {
+      LOG.info("Streaming buffer does not cover the window starting at " +
+        new Date(startTime - serverTimeShiftAdjustment) + ", reading from the precision table.");
+      success = super.doWork(startTime, endTime);
+    }
+    if (success) {
+      // Next window reads from endTime - serverTimeShiftAdjustment on,
+      // a failed one is retried and still needs its metrics.
+      streamingBuffer.evictBefore(endTime - serverTimeShiftAdjustment);
+    }
+    return success;
+  }
+
+  private boolean canAggregateFromBuffer(long startTime) {
+    if (!streamingBuffer.covers(startTime - serverTimeShiftAdjustment)) {
+      return false;
+    }
+    // Hosts are sharded across live collectors, a single buffer only sees its share
+    if (haController != null && haController.isInitialized()) {
+      List<String> liveInstances = haController.getLiveInstanceHostNames();
+      return liveInstances == null || liveInstances.size() <= 1;
+    }
+    return true;
+  }
+
+  /**
+   * Same window and slicing as the precision table scan, see
+   * {@link #prepareMetricQueryCondition(long, long)}.
+   */
+  boolean aggregateFromBuffer(long startTime, long endTime) {
+    LOG.info("Start streaming aggregation cycle @ " + new Date() + ", " +
+      "startTime = " + new Date(startTime) + ", endTime = " + new Date(endTime));
+
+    List<TimelineMetric> metrics = streamingBuffer.getMetrics(startTime - serverTimeShiftAdjustment, endTime);
+    if (!StringUtils.isEmpty(skipAggrPatternStrings)) {
+      List<String> skipPatterns = Arrays.asList(skipAggrPatternStrings.split(","));
+      for (Iterator<TimelineMetric> iterator = metrics.iterator(); iterator.hasNext();) {
+        if (matchesAny(iterator.next().getMetricName(), skipPatterns)) {
+          iterator.remove();
+        }
+      }
+    }
+
+    List<Long[]> timeSlices = getTimeSlices(startTime - serverTimeShiftAdjustment, endTime - serverTimeShiftAdjustment);
+    appAggregator.init();
+    try {
+      Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics =
+        aggregateMetrics(metrics, timeSlices);
+
+      LOG.info("Saving " + aggregateClusterMetrics.size() + " metric aggregates from " +
+        metrics.size() + " buffered series.");
+      hBaseAccessor.saveClusterAggregateRecords(aggregateClusterMetrics);
+    } catch (SQLException e) {
+      LOG.error("Exception during streaming aggregation of metrics.", e);
+      return false;
+    } finally {
+      appAggregator.cleanup();
+    }
+
+    LOG.info("End streaming aggregation cycle @ " + new Date());
+    return true;
+  }
+
+  /**
+   * Metric name filter of the scan: NOT IN for plain names, NOT LIKE for
+   * names with a '%'.
+   */
+  static boolean matchesAny(String metricName, List<String> skipPatterns) {
+    for (String pattern : skipPatterns) {
+      if (!pattern.contains("%")) {
+        if (pattern.equals(metricName)) {
+          return true;
+        }
+        continue;
+      }
+      StringBuilder regex = new StringBuilder();
+      for (char c : pattern.toCharArray()) {
+        if (c == '%') {
+          regex.append(".*");
+        } else if (c == '_') {
+          regex.append('.');
+        } else {
+          regex.append(Pattern.quote(String.valueOf(c)));
+        }
+      }
+      if (metricName.matches(regex.toString())) {
+        return true;
+      }
+    }
+    return false;
   }
 
   @Override
@@ -166,32 +298,51 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
           metric.addMetricValues(nextMetric.getMetricValues());
         } else {
           // Process the current metric
-          int numHosts = processAggregateClusterMetrics(aggregateClusterMetrics, metric, timeSlices);
-          if (!hostedAppCounter.containsKey(metric.getAppId())) {
-            hostedAppCounter.put(metric.getAppId(), new MutableInt(numHosts));
-          } else {
-            int currentHostCount = hostedAppCounter.get(metric.getAppId()).intValue();
-            if (currentHostCount < numHosts) {
-              hostedAppCounter.put(metric.getAppId(), new MutableInt(numHosts));
-            }
-          }
+          processMetric(aggregateClusterMetrics, hostedAppCounter, metric, timeSlices);
           metric = nextMetric;
         }
       }
     }
     // Process last metric
     if (metric != null) {
-      int numHosts = processAggregateClusterMetrics(aggregateClusterMetrics, metric, timeSlices);
-      if (!hostedAppCounter.containsKey(metric.getAppId())) {
+      processMetric(aggregateClusterMetrics, hostedAppCounter, metric, timeSlices);
+    }
+
+    return completeAggregation(aggregateClusterMetrics, hostedAppCounter, timeSlices);
+  }
+
+  /**
+   * Same as {@link #aggregateMetricsFromResultSet(ResultSet, List)} for
+   * metrics already merged per host and sorted like the result set.
+   */
+  Map<TimelineClusterMetric, MetricClusterAggregate> aggregateMetrics(Collection<TimelineMetric> metrics,
+                                                                       List<Long[]> timeSlices) {
+    Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics =
+      new HashMap<TimelineClusterMetric, MetricClusterAggregate>();
+    Map<String, MutableInt> hostedAppCounter = new HashMap<>();
+    for (TimelineMetric metric : metrics) {
+      processMetric(aggregateClusterMetrics, hostedAppCounter, metric, timeSlices);
+    }
+    return completeAggregation(aggregateClusterMetrics, hostedAppCounter, timeSlices);
+  }
+
+  private void processMetric(Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics,
+                             Map<String, MutableInt> hostedAppCounter,
+                             TimelineMetric metric, List<Long[]> timeSlices) {
+    int numHosts = processAggregateClusterMetrics(aggregateClusterMetrics, metric, timeSlices);
+    if (!hostedAppCounter.containsKey(metric.getAppId())) {
+      hostedAppCounter.put(metric.getAppId(), new MutableInt(numHosts));
+    } else {
+      int currentHostCount = hostedAppCounter.get(metric.getAppId()).intValue();
+      if (currentHostCount < numHosts) {
         hostedAppCounter.put(metric.getAppId(), new MutableInt(numHosts));
-      } else {
-        int currentHostCount = hostedAppCounter.get(metric.getAppId()).intValue();
-        if (currentHostCount < numHosts) {
-          hostedAppCounter.put(metric.getAppId(), new MutableInt(numHosts));
-        }
       }
     }
+  }
 
+  private Map<TimelineClusterMetric, MetricClusterAggregate> completeAggregation(
+      Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics,
+      Map<String, MutableInt> hostedAppCounter, List<Long[]> timeSlices) {
     // Add app level aggregates to save
     aggregateClusterMetrics.putAll(appAggregator.getAggregateClusterMetrics());
 
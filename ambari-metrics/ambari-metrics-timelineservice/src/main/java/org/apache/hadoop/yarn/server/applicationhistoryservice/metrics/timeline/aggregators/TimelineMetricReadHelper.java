@@ -41,7 +41,7 @@ public class TimelineMetricReadHelper {
   public TimelineMetric getTimelineMetricFromResultSet(ResultSet rs)
       throws SQLException, IOException {
     TimelineMetric metric = getTimelineMetricCommonsFromResultSet(rs);
-    TreeMap<Long, Double> sortedByTimeMetrics = PhoenixHBaseAccessor.readMetricFromJSON(rs.getString("METRICS"));
+    TreeMap<Long, Double> sortedByTimeMetrics = PhoenixHBaseAccessor.readMetricValues(rs);
     metric.setMetricValues(sortedByTimeMetrics);
     return metric;
   }
@@ -84,6 +84,45 @@ public class TimelineMetricReadHelper {
     return metric;
   }
 
+  /**
+   * Same as {@link #getAggregatedTimelineMetricFromResultSet} for a precision
+   * row that is held in memory.
+   *
+   * @param row metric with the SERVER_TIME as timestamp and UNITS as type
+   * @param aggregates METRIC_SUM, METRIC_MAX, METRIC_MIN and METRIC_COUNT
+   */
+  public SingleValuedTimelineMetric getAggregatedTimelineMetric(TimelineMetric row,
+      double[] aggregates, Function f) {
+
+    Function function = (f != null) ? f : Function.DEFAULT_VALUE_FUNCTION;
+    SingleValuedTimelineMetric metric = new SingleValuedTimelineMetric(
+      row.getMetricName() + function.getSuffix(),
+      row.getAppId(),
+      row.getInstanceId(),
+      row.getHostName(),
+      row.getTimestamp(),
+      row.getTimestamp(),
+      row.getType()
+    );
+
+    double value;
+    switch(function.getReadFunction()){
+      case MIN:
+        value = aggregates[2];
+        break;
+      case MAX:
+        value = aggregates[1];
+        break;
+      default:
+        value = aggregates[0] / (int) aggregates[3];
+        break;
+    }
+
+    metric.setSingleTimeseriesValue(row.getTimestamp(), value);
+
+    return metric;
+  }
+
   /**
    * Returns common part of timeline metrics record without the values.
    */
@@ -0,0 +1,191 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators;
+
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_AGGREGATOR_SECOND_STREAMING_MAX_BUFFERED;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.OUT_OFF_BAND_DATA_TIME_ALLOWANCE;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixHBaseAccessor;
+
+/**
+ * Keeps the precision metrics accepted by the collector in memory, stamped
+ * with their arrival (server) time, so that the second cluster aggregator
+ * can slice them without scanning METRIC_RECORD again.
+ *
+ * The buffer only answers for server time windows it has seen completely,
+ * i.e. starting after the first put following a (re)start or an overflow.
+ * Older windows are left to the checkpoint based scan.
+ */
+public class TimelineMetricStreamingBuffer {
+  private static final Log LOG = LogFactory.getLog(TimelineMetricStreamingBuffer.class);
+
+  private static final long NOT_COVERED = Long.MAX_VALUE;
+
+  // Same order as the aggregator scan: METRIC_NAME, HOSTNAME, APP_ID
+  private static final Comparator<TimelineMetric> ROW_KEY_ORDER = new Comparator<TimelineMetric>() {
+    @Override
+    public int compare(TimelineMetric o1, TimelineMetric o2) {
+      int result = compareNullable(o1.getMetricName(), o2.getMetricName());
+      if (result == 0) {
+        result = compareNullable(o1.getHostName(), o2.getHostName());
+      }
+      if (result == 0) {
+        result = compareNullable(o1.getAppId(), o2.getAppId());
+      }
+      return result;
+    }
+  };
+
+  private final ConcurrentLinkedQueue<BufferedMetric> buffer = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger size = new AtomicInteger();
+  private final AtomicLong coveredSince = new AtomicLong(NOT_COVERED);
+  private final long outOfBandTimeAllowance;
+  private final int maxBufferedMetrics;
+
+  public TimelineMetricStreamingBuffer(Configuration metricsConf) {
+    this.outOfBandTimeAllowance = metricsConf.getLong(OUT_OFF_BAND_DATA_TIME_ALLOWANCE,
+      PhoenixHBaseAccessor.DEFAULT_OUT_OF_BAND_TIME_ALLOWANCE);
+    this.maxBufferedMetrics = metricsConf.getInt(CLUSTER_AGGREGATOR_SECOND_STREAMING_MAX_BUFFERED, 500000);
+  }
+
+  /**
+   * Add metrics that were accepted for the precision table.
+   */
+  public void putMetrics(TimelineMetrics metrics) {
+    putMetrics(metrics, System.currentTimeMillis());
+  }
+
+  void putMetrics(TimelineMetrics metrics, long serverTime) {
+    if (metrics == null || metrics.getMetrics() == null) {
+      return;
+    }
+    coveredSince.compareAndSet(NOT_COVERED, serverTime);
+
+    for (TimelineMetric metric : metrics.getMetrics()) {
+      // Same rule as the precision table write path
+      if (Math.abs(serverTime - metric.getStartTime()) > outOfBandTimeAllowance) {
+        continue;
+      }
+      TreeMap<Long, Double> metricValues = metric.getMetricValues();
+      if (metricValues == null || metricValues.isEmpty()) {
+        continue;
+      }
+      TimelineMetric copy = new TimelineMetric();
+      copy.setMetricName(metric.getMetricName());
+      copy.setHostName(metric.getHostName());
+      copy.setAppId(metric.getAppId());
+      copy.setStartTime(metric.getStartTime());
+      copy.setTimestamp(serverTime);
+      // The read path maps the UNITS column to the type
+      copy.setType(metric.getUnits());
+      copy.setMetricSeries(TimelineMetricSeries.fromMap(metricValues));
+
+      buffer.add(new BufferedMetric(serverTime, copy));
+      if (size.incrementAndGet() > maxBufferedMetrics) {
+        overflow();
+      }
+    }
+  }
+
+  /**
+   * @return true if every metric accepted since fromServerTime is buffered
+   */
+  public boolean covers(long fromServerTime) {
+    return coveredSince.get() <= fromServerTime;
+  }
+
+  /**
+   * Metrics that arrived in [fromServerTime, toServerTime), merged per
+   * metric, host and app and sorted in the order of the METRIC_RECORD scan,
+   * as the scan would return them with the instance ignored.
+   */
+  public List<TimelineMetric> getMetrics(long fromServerTime, long toServerTime) {
+    TreeMap<TimelineMetric, TimelineMetric> merged = new TreeMap<>(ROW_KEY_ORDER);
+    for (BufferedMetric bufferedMetric : buffer) {
+      if (bufferedMetric.serverTime < fromServerTime || bufferedMetric.serverTime >= toServerTime) {
+        continue;
+      }
+      TimelineMetric existing = merged.get(bufferedMetric.metric);
+      if (existing == null) {
+        merged.put(bufferedMetric.metric, new TimelineMetric(bufferedMetric.metric));
+      } else {
+        existing.addMetricValues(bufferedMetric.metric.getMetricSeries());
+      }
+    }
+    return new ArrayList<>(merged.values());
+  }
+
+  /**
+   * Drop metrics that arrived before serverTime, no later window needs them.
+   */
+  public void evictBefore(long serverTime) {
+    for (Iterator<BufferedMetric> iterator = buffer.iterator(); iterator.hasNext();) {
+      if (iterator.next().serverTime < serverTime) {
+        iterator.remove();
+        size.decrementAndGet();
+      }
+    }
+  }
+
+  public int size() {
+    return size.get();
+  }
+
+  private synchronized void overflow() {
+    if (size.get() <= maxBufferedMetrics) {
+      return;
+    }
+    LOG.warn("Streaming aggregation buffer exceeded " + maxBufferedMetrics +
+      " metrics, falling back to the precision table scan for the current window.");
+    buffer.clear();
+    size.set(0);
+    coveredSince.set(System.currentTimeMillis());
+  }
+
+  private static int compareNullable(String s1, String s2) {
+    if (s1 == null) {
+      return s2 == null ? 0 : -1;
+    }
+    return s2 == null ? 1 : s1.compareTo(s2);
+  }
+
+  private static class BufferedMetric {
+    private final long serverTime;
+    private final TimelineMetric metric;
+
+    BufferedMetric(long serverTime, TimelineMetric metric) {
+      this.serverTime = serverTime;
+      this.metric = metric;
+    }
+  }
+}
@@ -37,6 +37,7 @@ import org.apache.helix.model.OnlineOfflineSMD;
 import org.apache.helix.model.StateModelDefinition;
 import org.apache.helix.tools.StateModelConfigGenerator;;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeSet;
@@ -59,8 +60,9 @@ public class MetricCollectorHAController {
   final AggregationTaskRunner aggregationTaskRunner;
   final TimelineMetricConfiguration configuration;
 
-  // Cache list of known live instances
-  final List<String> liveInstanceNames = new ArrayList<>();
+  // Cache list of known live instances, replaced as a whole by the Helix
+  // callback so that readers always see a complete snapshot
+  volatile List<String> liveInstanceNames = Collections.emptyList();
 
   // Helix Admin
   HelixAdmin admin;
@@ -217,6 +219,13 @@ public class MetricCollectorHAController {
     return aggregationTaskRunner;
   }
 
+  /**
+   * Number of live collector instances, without copying the host names.
+   */
+  public int getLiveInstanceCount() {
+    return liveInstanceNames.size();
+  }
+
   public List<String> getLiveInstanceHostNames() {
     List<String> liveInstanceHostNames = new ArrayList<>();
 
@@ -235,10 +244,11 @@ public class MetricCollectorHAController {
     public void onLiveInstanceChange(List<LiveInstance> liveInstances, NotificationContext changeContext) {
       super.onLiveInstanceChange(liveInstances, changeContext);
 
-      liveInstanceNames.clear();
+      List<String> instanceNames = new ArrayList<>(liveInstances.size());
       for (LiveInstance instance : liveInstances) {
-        liveInstanceNames.add(instance.getInstanceName());
+        instanceNames.add(instance.getInstanceName());
       }
+      liveInstanceNames = Collections.unmodifiableList(instanceNames);
 
       LOG.info("Detected change in liveliness of Collector instances. " +
         "LiveIsntances = " + joiner.join(liveInstanceNames));
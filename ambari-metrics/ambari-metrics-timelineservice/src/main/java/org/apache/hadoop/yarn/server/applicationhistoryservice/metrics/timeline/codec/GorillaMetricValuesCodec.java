@@ -0,0 +1,278 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.codec;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Gorilla style codec: timestamps are stored as delta-of-delta with variable
+ * length buckets and values as XOR against the previous value, keeping only
+ * the meaningful bits.
+ *
+ * Layout: version byte, point count (varint), first timestamp and value as
+ * raw 64 bit words, then one (timestamp, value) bit group per further point.
+ * Null values are stored as NaN.
+ */
+public class GorillaMetricValuesCodec implements MetricValuesCodec {
+
+  static final byte FORMAT_VERSION = 1;
+
+  @Override
+  public byte[] encode(TreeMap<Long, Double> metricValues) {
+    BitWriter writer = new BitWriter(16 + metricValues.size() * 4);
+    writer.writeBits(FORMAT_VERSION, 8);
+    writer.writeVarInt(metricValues.size());
+
+    long prevTimestamp = 0;
+    long prevDelta = 0;
+    long prevValue = 0;
+    int prevLeading = -1;
+    int prevTrailing = 0;
+    boolean first = true;
+
+    for (Map.Entry<Long, Double> entry : metricValues.entrySet()) {
+      long timestamp = entry.getKey();
+      long value = Double.doubleToRawLongBits(entry.getValue() == null ?
+        Double.NaN : entry.getValue());
+
+      if (first) {
+        writer.writeBits(timestamp, 64);
+        writer.writeBits(value, 64);
+        first = false;
+      } else {
+        long delta = timestamp - prevTimestamp;
+        writeDeltaOfDelta(writer, delta - prevDelta);
+        prevDelta = delta;
+
+        long xor = value ^ prevValue;
+        if (xor == 0) {
+          writer.writeBit(false);
+        } else {
+          writer.writeBit(true);
+          int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+          int trailing = Long.numberOfTrailingZeros(xor);
+          if (prevLeading >= 0 && leading >= prevLeading && trailing >= prevTrailing) {
+            // Fits into the previous meaningful window
+            writer.writeBit(false);
+            writer.writeBits(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+          } else {
+            int significant = 64 - leading - trailing;
+            writer.writeBit(true);
+            writer.writeBits(leading, 5);
+            // 1..64 significant bits stored as 0..63
+            writer.writeBits(significant - 1, 6);
+            writer.writeBits(xor >>> trailing, significant);
+            prevLeading = leading;
+            prevTrailing = trailing;
+          }
+        }
+      }
+      prevTimestamp = timestamp;
+      prevValue = value;
+    }
+    return writer.toByteArray();
+  }
+
+  @Override
+  public TreeMap<Long, Double> decode(byte[] bytes) throws IOException {
+    TreeMap<Long, Double> metricValues = new TreeMap<Long, Double>();
+    if (bytes == null || bytes.length == 0) {
+      return metricValues;
+    }
+    try {
+      BitReader reader = new BitReader(bytes);
+      int version = (int) reader.readBits(8);
+      if (version != FORMAT_VERSION) {
+        throw new IOException("Unsupported metric values format version: " + version);
+      }
+      int count = reader.readVarInt();
+      if (count == 0) {
+        return metricValues;
+      }
+
+      long timestamp = reader.readBits(64);
+      long value = reader.readBits(64);
+      metricValues.put(timestamp, Double.longBitsToDouble(value));
+
+      long delta = 0;
+      int leading = 0;
+      int trailing = 0;
+      for (int i = 1; i < count; i++) {
+        delta += readDeltaOfDelta(reader);
+        timestamp += delta;
+
+        if (reader.readBit()) {
+          if (reader.readBit()) {
+            leading = (int) reader.readBits(5);
+            int significant = (int) reader.readBits(6) + 1;
+            trailing = 64 - leading - significant;
+          }
+          value ^= reader.readBits(64 - leading - trailing) << trailing;
+        }
+        metricValues.put(timestamp, Double.longBitsToDouble(value));
+      }
+    } catch (IndexOutOfBoundsException e) {
+      throw new IOException("Truncated metric values encoding", e);
+    }
+    return metricValues;
+  }
+
+  /**
+   * Control bits: 0 -> 0, 10 -> 7 bits, 110 -> 9 bits, 1110 -> 12 bits,
+   * 11110 -> 32 bits, 11111 -> 64 bits.
+   */
+  private static void writeDeltaOfDelta(BitWriter writer, long dod) {
+    if (dod == 0) {
+      writer.writeBit(false);
+    } else if (fits(dod, 7)) {
+      writer.writeBits(0x2, 2);
+      writer.writeBits(dod, 7);
+    } else if (fits(dod, 9)) {
+      writer.writeBits(0x6, 3);
+      writer.writeBits(dod, 9);
+    } else if (fits(dod, 12)) {
+      writer.writeBits(0xE, 4);
+      writer.writeBits(dod, 12);
+    } else if (fits(dod, 32)) {
+      writer.writeBits(0x1E, 5);
+      writer.writeBits(dod, 32);
+    } else {
+      writer.writeBits(0x1F, 5);
+      writer.writeBits(dod, 64);
+    }
+  }
+
+  private static long readDeltaOfDelta(BitReader reader) {
+    int controlBits = 0;
+    while (controlBits < 5 && reader.readBit()) {
+      controlBits++;
+    }
+    switch (controlBits) {
+      case 0:
+        return 0;
+      case 1:
+        return signExtend(reader.readBits(7), 7);
+      case 2:
+        return signExtend(reader.readBits(9), 9);
+      case 3:
+        return signExtend(reader.readBits(12), 12);
+      case 4:
+        return signExtend(reader.readBits(32), 32);
+      default:
+        return reader.readBits(64);
+    }
+  }
+
+  private static boolean fits(long value, int bits) {
+    long min = -(1L << (bits - 1));
+    long max = (1L << (bits - 1)) - 1;
+    return value >= min && value <= max;
+  }
+
+  private static long signExtend(long value, int bits) {
+    int shift = 64 - bits;
+    return (value << shift) >> shift;
+  }
+
+  static class BitWriter {
+    private byte[] buffer;
+    private int bitPosition = 0;
+
+    BitWriter(int initialCapacity) {
+      buffer = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    void writeBit(boolean bit) {
+      ensureCapacity(1);
+      if (bit) {
+        buffer[bitPosition >>> 3] |= (byte) (0x80 >>> (bitPosition & 7));
+      }
+      bitPosition++;
+    }
+
+    /**
+     * Write the lowest {@code count} bits of value, most significant first.
+     */
+    void writeBits(long value, int count) {
+      ensureCapacity(count);
+      for (int i = count - 1; i >= 0; i--) {
+        if (((value >>> i) & 1L) != 0) {
+          buffer[bitPosition >>> 3] |= (byte) (0x80 >>> (bitPosition & 7));
+        }
+        bitPosition++;
+      }
+    }
+
+    void writeVarInt(int value) {
+      while ((value & ~0x7F) != 0) {
+        writeBits((value & 0x7F) | 0x80, 8);
+        value >>>= 7;
+      }
+      writeBits(value, 8);
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, (bitPosition + 7) >>> 3);
+    }
+
+    private void ensureCapacity(int bits) {
+      int required = (bitPosition + bits + 7) >>> 3;
+      if (required > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length * 2));
+      }
+    }
+  }
+
+  static class BitReader {
+    private final byte[] buffer;
+    private int bitPosition = 0;
+
+    BitReader(byte[] buffer) {
+      this.buffer = buffer;
+    }
+
+    boolean readBit() {
+      boolean bit = (buffer[bitPosition >>> 3] & (0x80 >>> (bitPosition & 7))) != 0;
+      bitPosition++;
+      return bit;
+    }
+
+    long readBits(int count) {
+      long value = 0;
+      for (int i = 0; i < count; i++) {
+        value = (value << 1) | (readBit() ? 1L : 0L);
+      }
+      return value;
+    }
+
+    int readVarInt() {
+      int value = 0;
+      int shift = 0;
+      int b;
+      do {
+        b = (int) readBits(8);
+        value |= (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return value;
+    }
+  }
+}
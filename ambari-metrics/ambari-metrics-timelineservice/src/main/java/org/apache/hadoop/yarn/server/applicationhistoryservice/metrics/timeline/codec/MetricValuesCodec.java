@@ -15,24 +15,31 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.codec;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
+import java.io.IOException;
+import java.util.TreeMap;
 
-public class MetricsCacheCommitterThread implements Runnable {
+/**
+ * Encodes the time series of a single METRIC_RECORD row into the binary
+ * METRICS_BIN column and back.
+ */
+public interface MetricValuesCodec {
 
-    private static final Log LOG = LogFactory.getLog(MetricsCacheCommitterThread.class);
-    private static PhoenixHBaseAccessor phoenixHBaseAccessor;
+  /**
+   * Encode a time series sorted by timestamp.
+   *
+   * @param metricValues timestamp to value map
+   * @return encoded bytes, never null
+   */
+  byte[] encode(TreeMap<Long, Double> metricValues);
 
-    public MetricsCacheCommitterThread(PhoenixHBaseAccessor phoenixHBaseAccessor) {
-        this.phoenixHBaseAccessor = phoenixHBaseAccessor;
-    }
-    @Override
-    public void run() {
-        LOG.debug("Checking if metrics cache is empty");
-        if (!phoenixHBaseAccessor.isInsertCacheEmpty()) {
-            phoenixHBaseAccessor.commitMetricsFromCache();
-        }
-    }
+  /**
+   * Decode bytes produced by {@link #encode(TreeMap)}.
+   *
+   * @param bytes encoded series
+   * @return timestamp to value map
+   * @throws IOException if the bytes are not a valid encoding
+   */
+  TreeMap<Long, Double> decode(byte[] bytes) throws IOException;
 }
@@ -0,0 +1,62 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.codec;
+
+/**
+ * Storage format used for the values of METRIC_RECORD rows.
+ * Reads always fall back to the other column, so the mode can be switched
+ * without losing access to rows written before the switch.
+ */
+public enum MetricValuesEncoding {
+  /**
+   * Legacy JSON string in the METRICS column.
+   */
+  JSON,
+  /**
+   * Codec encoded bytes in the METRICS_BIN column.
+   */
+  BINARY,
+  /**
+   * Write both columns, read the binary one first. Used while migrating so
+   * that a collector downgraded to the JSON mode still sees every row.
+   */
+  DUAL;
+
+  public boolean writesJson() {
+    return this != BINARY;
+  }
+
+  public boolean writesBinary() {
+    return this != JSON;
+  }
+
+  public boolean readsBinaryFirst() {
+    return this != JSON;
+  }
+
+  public static MetricValuesEncoding getEncoding(String name) {
+    if (name == null || name.trim().isEmpty()) {
+      return JSON;
+    }
+    try {
+      return MetricValuesEncoding.valueOf(name.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unsupported metric values encoding: " + name);
+    }
+  }
+}
@@ -29,15 +29,19 @@ import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricMetadata;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixHBaseAccessor;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.TimelineClusterMetric;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -49,11 +53,20 @@ import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.ti
 
 public class TimelineMetricMetadataManager {
   private static final Log LOG = LogFactory.getLog(TimelineMetricMetadataManager.class);
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  // Metric id followed by host id
+  public static final int UUID_LENGTH = 8;
+  // Never assigned, stands for no host
+  static final int NO_UUID = 0;
   private boolean isDisabled = false;
   // Cache all metadata on retrieval
   private final Map<TimelineMetricMetadataKey, TimelineMetricMetadata> METADATA_CACHE = new ConcurrentHashMap<>();
   // Map to lookup apps on a host
   private final Map<String, Set<String>> HOSTED_APPS_MAP = new ConcurrentHashMap<>();
+  // Compact ids of the metric keys and hosts, both ways
+  private final ConcurrentMap<Integer, TimelineMetricMetadataKey> UUID_KEY_MAP = new ConcurrentHashMap<>();
+  private final Map<String, Integer> HOST_UUID_MAP = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Integer, String> UUID_HOST_MAP = new ConcurrentHashMap<>();
   // Sync only when needed
   AtomicBoolean SYNC_HOSTED_APPS_METADATA = new AtomicBoolean(false);
 
@@ -98,11 +111,18 @@ public class TimelineMetricMetadataManager {
         LOG.info("Retrieved " + metadata.size() + ", metadata objects from store.");
         // Store in the cache
         METADATA_CACHE.putAll(metadata);
+        for (Map.Entry<TimelineMetricMetadataKey, TimelineMetricMetadata> entry : metadata.entrySet()) {
+          assignUuid(entry.getKey(), entry.getValue());
+        }
 
         Map<String, Set<String>> hostedAppData = getHostedAppsFromStore();
 
         LOG.info("Retrieved " + hostedAppData.size() + " host objects from store.");
         HOSTED_APPS_MAP.putAll(hostedAppData);
+        Map<String, Integer> hostUuids = getHostUuidsFromStore();
+        for (String hostname : hostedAppData.keySet()) {
+          assignHostUuid(hostname, hostUuids.get(hostname));
+        }
 
       } catch (SQLException e) {
         LOG.warn("Exception loading metric metadata", e);
@@ -160,6 +180,7 @@ public class TimelineMetricMetadataManager {
       try {
         if (metadataFromCache.needsToBeSynced(metadata)) {
           metadata.setIsPersisted(false); // Set the flag to ensure sync to store on next run
+          metadata.setUuid(metadataFromCache.getUuid());
           METADATA_CACHE.put(key, metadata);
         }
       } catch (MetadataException e) {
@@ -167,6 +188,7 @@ public class TimelineMetricMetadataManager {
       }
 
     } else {
+      assignUuid(key, metadata);
       METADATA_CACHE.put(key, metadata);
     }
   }
@@ -181,6 +203,7 @@ public class TimelineMetricMetadataManager {
     if (apps == null) {
       apps = new HashSet<>();
       HOSTED_APPS_MAP.put(hostname, apps);
+      assignHostUuid(hostname, null);
     }
 
     if (!apps.contains(appId)) {
@@ -194,7 +217,119 @@ public class TimelineMetricMetadataManager {
   }
 
   public void persistHostedAppsMetadata(Map<String, Set<String>> hostedApps) throws SQLException {
-    hBaseAccessor.saveHostAppsMetadata(hostedApps);
+    hBaseAccessor.saveHostAppsMetadata(hostedApps, HOST_UUID_MAP);
+  }
+
+  /**
+   * Fixed width key of a metric: the 4 byte id of the metric name and app id
+   * followed by the 4 byte id of the host, so that schemas can use it in
+   * place of the strings.
+   *
+   * @return null if the metric has no id, e.g. it was not seen yet or is
+   * filtered from the metadata
+   */
+  public byte[] getUuid(TimelineMetric metric) {
+    Integer metricUuid = getUuid(metric.getMetricName(), metric.getAppId());
+    if (metricUuid == null) {
+      return null;
+    }
+    int hostUuid = NO_UUID;
+    if (metric.getHostName() != null) {
+      Integer uuid = HOST_UUID_MAP.get(metric.getHostName());
+      if (uuid == null) {
+        return null;
+      }
+      hostUuid = uuid;
+    }
+    return ByteBuffer.allocate(UUID_LENGTH).putInt(metricUuid).putInt(hostUuid).array();
+  }
+
+  /**
+   * @return metric name, app id and host name of a key built by
+   * {@link #getUuid(TimelineMetric)}, null if an id is unknown
+   */
+  public TimelineMetric getMetricFromUuid(byte[] uuid) {
+    ByteBuffer buffer = ByteBuffer.wrap(uuid);
+    TimelineMetricMetadataKey key = UUID_KEY_MAP.get(buffer.getInt());
+    int hostUuid = buffer.getInt();
+    String hostname = hostUuid == NO_UUID ? null : UUID_HOST_MAP.get(hostUuid);
+    if (key == null || (hostUuid != NO_UUID && hostname == null)) {
+      return null;
+    }
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName(key.getMetricName());
+    metric.setAppId(key.getAppId());
+    metric.setHostName(hostname);
+    return metric;
+  }
+
+  public Integer getUuid(String metricName, String appId) {
+    TimelineMetricMetadata metadata = METADATA_CACHE.get(new TimelineMetricMetadataKey(metricName, appId));
+    return metadata == null ? null : metadata.getUuid();
+  }
+
+  public Integer getHostUuid(String hostname) {
+    return HOST_UUID_MAP.get(hostname);
+  }
+
+  /**
+   * Give the metadata an id, keeping the one read from the store unless
+   * another key holds it already. A new or changed id is marked for sync.
+   */
+  void assignUuid(TimelineMetricMetadataKey key, TimelineMetricMetadata metadata) {
+    Integer uuid = metadata.getUuid();
+    if (uuid != null && uuid != NO_UUID && claimUuid(UUID_KEY_MAP, uuid, key)) {
+      return;
+    }
+    metadata.setUuid(claimFreeUuid(UUID_KEY_MAP, key.getMetricName() + "\0" +
+      (key.getAppId() == null ? "" : key.getAppId()), key));
+    metadata.setIsPersisted(false);
+  }
+
+  /**
+   * Same as {@link #assignUuid} for a host, persistedUuid is the id read
+   * from the store if any.
+   */
+  void assignHostUuid(String hostname, Integer persistedUuid) {
+    if (HOST_UUID_MAP.containsKey(hostname)) {
+      return;
+    }
+    Integer uuid = persistedUuid;
+    if (uuid == null || uuid == NO_UUID || !claimUuid(UUID_HOST_MAP, uuid, hostname)) {
+      uuid = claimFreeUuid(UUID_HOST_MAP, hostname, hostname);
+    }
+    HOST_UUID_MAP.put(hostname, uuid);
+    if (!uuid.equals(persistedUuid)) {
+      SYNC_HOSTED_APPS_METADATA.set(true);
+    }
+  }
+
+  private static <T> boolean claimUuid(ConcurrentMap<Integer, T> uuids, int uuid, T owner) {
+    T existing = uuids.putIfAbsent(uuid, owner);
+    return existing == null || existing.equals(owner);
+  }
+
+  /**
+   * Ids are derived from the key so that collectors sharing the store mostly
+   * agree on them without coordination; a collision moves on to the next
+   * free id.
+   */
+  private static <T> int claimFreeUuid(ConcurrentMap<Integer, T> uuids, String key, T owner) {
+    int uuid = hash(key);
+    while (uuid == NO_UUID || !claimUuid(uuids, uuid, owner)) {
+      uuid++;
+    }
+    return uuid;
+  }
+
+  // 32 bit FNV-1a
+  private static int hash(String key) {
+    int hash = 0x811c9dc5;
+    for (byte b : key.getBytes(UTF_8)) {
+      hash ^= (b & 0xff);
+      hash *= 0x01000193;
+    }
+    return hash;
   }
 
   public TimelineMetricMetadata getTimelineMetricMetadata(TimelineMetric timelineMetric, boolean isWhitelisted) {
@@ -233,6 +368,15 @@ public class TimelineMetricMetadataManager {
     return hBaseAccessor.getHostedAppsMetadata();
   }
 
+  /**
+   * Fetch host ids from store
+   * @throws SQLException
+   */
+  Map<String, Integer> getHostUuidsFromStore() throws SQLException {
+    Map<String, Integer> hostUuids = hBaseAccessor.getHostUuidsMetadata();
+    return hostUuids == null ? Collections.<String, Integer>emptyMap() : hostUuids;
+  }
+
   private boolean supportAggregates(TimelineMetric metric) {
     return MapUtils.isEmpty(metric.getMetadata()) ||
       !(String.valueOf(true).equals(metric.getMetadata().get("skipAggregation")));
@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.discovery;
 
+import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricMetadata;
@@ -104,6 +105,7 @@ public class TimelineMetricMetadataSync implements Runnable {
 
       for (Map.Entry<TimelineMetricMetadataKey, TimelineMetricMetadata> metadataEntry : metadataFromStore.entrySet()) {
         if (!cachedMetadata.containsKey(metadataEntry.getKey())) {
+          cacheManager.assignUuid(metadataEntry.getKey(), metadataEntry.getValue());
           cachedMetadata.put(metadataEntry.getKey(), metadataEntry.getValue());
         }
       }
@@ -116,8 +118,10 @@ public class TimelineMetricMetadataSync implements Runnable {
   private void persistHostAppsMetadata() {
     if (cacheManager.syncHostedAppsMetadata()) {
       Map<String, Set<String>> persistedData = null;
+      Map<String, Integer> persistedUuids = null;
       try {
         persistedData = cacheManager.getHostedAppsFromStore();
+        persistedUuids = cacheManager.getHostUuidsFromStore();
       } catch (SQLException e) {
         LOG.warn("Failed on fetching hosted apps data from store.", e);
         return; // Something wrong with store
@@ -130,7 +134,9 @@ public class TimelineMetricMetadataSync implements Runnable {
           // No persistence / stale data in store
           if (persistedData == null || persistedData.isEmpty() ||
             !persistedData.containsKey(cacheEntry.getKey()) ||
-            !persistedData.get(cacheEntry.getKey()).containsAll(cacheEntry.getValue())) {
+            !persistedData.get(cacheEntry.getKey()).containsAll(cacheEntry.getValue()) ||
+            !ObjectUtils.equals(cacheManager.getHostUuid(cacheEntry.getKey()),
+              persistedUuids.get(cacheEntry.getKey()))) {
             dataToSync.put(cacheEntry.getKey(), cacheEntry.getValue());
           }
         }
@@ -151,7 +157,9 @@ public class TimelineMetricMetadataSync implements Runnable {
    */
   private void refreshHostAppsMetadata() {
     Map<String, Set<String>> hostedAppsDataFromStore = null;
+    Map<String, Integer> hostUuidsFromStore = null;
     try {
+      hostUuidsFromStore = cacheManager.getHostUuidsFromStore();
       hostedAppsDataFromStore = cacheManager.getHostedAppsFromStore();
     } catch (SQLException e) {
       LOG.warn("Error refreshing metadata from store.", e);
@@ -161,6 +169,7 @@ public class TimelineMetricMetadataSync implements Runnable {
 
       for (Map.Entry<String, Set<String>> storeEntry : hostedAppsDataFromStore.entrySet()) {
         if (!cachedData.containsKey(storeEntry.getKey())) {
+          cacheManager.assignHostUuid(storeEntry.getKey(), hostUuidsFromStore.get(storeEntry.getKey()));
           cachedData.put(storeEntry.getKey(), storeEntry.getValue());
         }
       }
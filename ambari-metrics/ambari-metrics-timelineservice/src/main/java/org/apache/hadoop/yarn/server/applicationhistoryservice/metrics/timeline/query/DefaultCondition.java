@@ -378,6 +378,10 @@ public class DefaultCondition implements Condition {
     return false;
   }
 
+  public boolean isMetricNamesNotCondition() {
+    return metricNamesNotCondition;
+  }
+
   public void setMetricNamesNotCondition(boolean metricNamesNotCondition) {
     this.metricNamesNotCondition = metricNamesNotCondition;
   }
@@ -51,7 +51,8 @@ public class PhoenixTransactSQL {
     "METRIC_COUNT UNSIGNED_INT, " +
     "METRIC_MAX DOUBLE, " +
     "METRIC_MIN DOUBLE, " +
-    "METRICS VARCHAR CONSTRAINT pk " +
+    "METRICS VARCHAR, " +
+    "METRICS_BIN VARBINARY CONSTRAINT pk " +
     "PRIMARY KEY (METRIC_NAME, HOSTNAME, SERVER_TIME, APP_ID, " +
     "INSTANCE_ID)) DATA_BLOCK_ENCODING='%s', IMMUTABLE_ROWS=true, " +
     "TTL=%s, COMPRESSION='%s'";
@@ -138,19 +139,33 @@ public class PhoenixTransactSQL {
       "TYPE CHAR(20), " +
       "START_TIME UNSIGNED_LONG, " +
       "SUPPORTS_AGGREGATION BOOLEAN, " +
-      "IS_WHITELISTED BOOLEAN " +
+      "IS_WHITELISTED BOOLEAN, " +
+      "UUID INTEGER " +
       "CONSTRAINT pk PRIMARY KEY (METRIC_NAME, APP_ID)) " +
       "DATA_BLOCK_ENCODING='%s', COMPRESSION='%s'";
 
   public static final String CREATE_HOSTED_APPS_METADATA_TABLE_SQL =
     "CREATE TABLE IF NOT EXISTS HOSTED_APPS_METADATA " +
-      "(HOSTNAME VARCHAR, APP_IDS VARCHAR, " +
+      "(HOSTNAME VARCHAR, APP_IDS VARCHAR, UUID INTEGER, " +
       "CONSTRAINT pk PRIMARY KEY (HOSTNAME))" +
       "DATA_BLOCK_ENCODING='%s', COMPRESSION='%s'";
 
   public static final String ALTER_METRICS_METADATA_TABLE =
     "ALTER TABLE METRICS_METADATA ADD IF NOT EXISTS IS_WHITELISTED BOOLEAN";
 
+  public static final String ALTER_METRICS_METADATA_TABLE_ADD_UUID =
+    "ALTER TABLE METRICS_METADATA ADD IF NOT EXISTS UUID INTEGER";
+
+  public static final String ALTER_HOSTED_APPS_METADATA_TABLE_ADD_UUID =
+    "ALTER TABLE HOSTED_APPS_METADATA ADD IF NOT EXISTS UUID INTEGER";
+
+  /**
+   * Binary encoded values column for metric records created before the
+   * column was introduced.
+   */
+  public static final String ALTER_METRICS_TABLE_ADD_BINARY_VALUES =
+    "ALTER TABLE METRIC_RECORD ADD IF NOT EXISTS METRICS_BIN VARBINARY";
+
   /**
    * ALTER table to set new options
    */
@@ -169,6 +184,33 @@ public class PhoenixTransactSQL {
     "METRICS) VALUES " +
     "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
+  /**
+   * Insert into metric records table with codec encoded values.
+   */
+  public static final String UPSERT_METRICS_BINARY_SQL = "UPSERT INTO %s " +
+    "(METRIC_NAME, HOSTNAME, APP_ID, INSTANCE_ID, SERVER_TIME, START_TIME, " +
+    "UNITS, " +
+    "METRIC_SUM, " +
+    "METRIC_MAX, " +
+    "METRIC_MIN, " +
+    "METRIC_COUNT, " +
+    "METRICS_BIN) VALUES " +
+    "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+  /**
+   * Insert into metric records table with both JSON and codec encoded values.
+   */
+  public static final String UPSERT_METRICS_DUAL_SQL = "UPSERT INTO %s " +
+    "(METRIC_NAME, HOSTNAME, APP_ID, INSTANCE_ID, SERVER_TIME, START_TIME, " +
+    "UNITS, " +
+    "METRIC_SUM, " +
+    "METRIC_MAX, " +
+    "METRIC_MIN, " +
+    "METRIC_COUNT, " +
+    "METRICS, " +
+    "METRICS_BIN) VALUES " +
+    "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
   public static final String UPSERT_CONTAINER_METRICS_SQL = "UPSERT INTO %s " +
       "(APP_ID,"
       + " CONTAINER_ID,"
@@ -224,11 +266,11 @@ public class PhoenixTransactSQL {
 
   public static final String UPSERT_METADATA_SQL =
     "UPSERT INTO METRICS_METADATA (METRIC_NAME, APP_ID, UNITS, TYPE, " +
-      "START_TIME, SUPPORTS_AGGREGATION, IS_WHITELISTED) " +
-      "VALUES (?, ?, ?, ?, ?, ?, ?)";
+      "START_TIME, SUPPORTS_AGGREGATION, IS_WHITELISTED, UUID) " +
+      "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
 
   public static final String UPSERT_HOSTED_APPS_METADATA_SQL =
-    "UPSERT INTO HOSTED_APPS_METADATA (HOSTNAME, APP_IDS) VALUES (?, ?)";
+    "UPSERT INTO HOSTED_APPS_METADATA (HOSTNAME, APP_IDS, UUID) VALUES (?, ?, ?)";
 
   /**
    * Retrieve a set of rows from metrics records table.
@@ -239,7 +281,8 @@ public class PhoenixTransactSQL {
     "METRIC_MAX, " +
     "METRIC_MIN, " +
     "METRIC_COUNT, " +
-    "METRICS " +
+    "METRICS, " +
+    "METRICS_BIN " +
     "FROM %s";
 
   /**
@@ -254,7 +297,8 @@ public class PhoenixTransactSQL {
     "E.SERVER_TIME AS SERVER_TIME, E.START_TIME AS START_TIME, " +
     "E.UNITS AS UNITS, E.METRIC_SUM AS METRIC_SUM, " +
     "E.METRIC_MAX AS METRIC_MAX, E.METRIC_MIN AS METRIC_MIN, " +
-    "E.METRIC_COUNT AS METRIC_COUNT, E.METRICS AS METRICS " +
+    "E.METRIC_COUNT AS METRIC_COUNT, E.METRICS AS METRICS, " +
+    "E.METRICS_BIN AS METRICS_BIN " +
     "FROM %s AS E " +
     "INNER JOIN " +
     "(SELECT METRIC_NAME, HOSTNAME, MAX(SERVER_TIME) AS MAX_SERVER_TIME, " +
@@ -304,11 +348,14 @@ public class PhoenixTransactSQL {
 
   public static final String GET_METRIC_METADATA_SQL = "SELECT " +
     "METRIC_NAME, APP_ID, UNITS, TYPE, START_TIME, " +
-    "SUPPORTS_AGGREGATION, IS_WHITELISTED FROM METRICS_METADATA";
+    "SUPPORTS_AGGREGATION, IS_WHITELISTED, UUID FROM METRICS_METADATA";
 
   public static final String GET_HOSTED_APPS_METADATA_SQL = "SELECT " +
     "HOSTNAME, APP_IDS FROM HOSTED_APPS_METADATA";
 
+  public static final String GET_HOST_UUIDS_METADATA_SQL = "SELECT " +
+    "HOSTNAME, UUID FROM HOSTED_APPS_METADATA";
+
   /**
    * Aggregate host metrics using a GROUP BY clause to take advantage of
    * N - way parallel scan where N = number of regions.
@@ -527,7 +574,7 @@ public class PhoenixTransactSQL {
     }
   }
 
-  private static void validateRowCountLimit(Condition condition) {
+  public static void validateRowCountLimit(Condition condition) {
     if (condition.getMetricNames() == null
       || condition.getMetricNames().isEmpty()) {
       //aggregator can use empty metrics query
@@ -0,0 +1,75 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.webapp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.Provider;
+
+import org.apache.hadoop.yarn.webapp.YarnJacksonJaxbJsonProvider;
+
+import com.google.inject.Singleton;
+
+/**
+ * JSON provider of the timeline web services that also reads request bodies
+ * sent with "Content-Encoding: gzip", which the metrics sinks can be
+ * configured to use. A body already inflated by a container filter has the
+ * header removed and is read as is.
+ */
+@Singleton
+@Provider
+public class TimelineJacksonJaxbJsonProvider extends YarnJacksonJaxbJsonProvider {
+
+  private static final String GZIP_ENCODING = "gzip";
+
+  @Override
+  public Object readFrom(Class<Object> type, Type genericType,
+                         Annotation[] annotations, MediaType mediaType,
+                         MultivaluedMap<String, String> httpHeaders,
+                         InputStream entityStream) throws IOException {
+    if (isGzipEncoded(httpHeaders)) {
+      entityStream = new GZIPInputStream(entityStream);
+    }
+    return super.readFrom(type, genericType, annotations, mediaType,
+      httpHeaders, entityStream);
+  }
+
+  private static boolean isGzipEncoded(MultivaluedMap<String, String> httpHeaders) {
+    if (httpHeaders == null) {
+      return false;
+    }
+    List<String> encodings = httpHeaders.get(HttpHeaders.CONTENT_ENCODING);
+    if (encodings == null) {
+      return false;
+    }
+    for (String encoding : encodings) {
+      if (GZIP_ENCODING.equalsIgnoreCase(encoding.trim())) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
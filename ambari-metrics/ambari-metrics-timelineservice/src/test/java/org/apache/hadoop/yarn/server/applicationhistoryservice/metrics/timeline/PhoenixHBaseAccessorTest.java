@@ -222,15 +222,23 @@ public class PhoenixHBaseAccessorTest {
     metricsConf.setStrings(TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_COMMIT_INTERVAL, "100");
     final Connection connection = EasyMock.createNiceMock(Connection.class);
 
+    PhoenixConnectionProvider connectionProvider = new PhoenixConnectionProvider() {
+      @Override
+      public HBaseAdmin getHBaseAdmin() throws IOException {
+        return null;
+      }
 
-    PhoenixHBaseAccessor accessor = new PhoenixHBaseAccessor(hbaseConf, metricsConf) {
       @Override
-      public void commitMetrics(Collection<TimelineMetrics> timelineMetricsCollection) {
-        try {
-          connection.commit();
-        } catch (SQLException e) {
-          e.printStackTrace();
-        }
+      public Connection getConnection() throws SQLException {
+        return connection;
+      }
+    };
+
+    PhoenixHBaseAccessor accessor = new PhoenixHBaseAccessor(hbaseConf, metricsConf, connectionProvider) {
+      @Override
+      void commitMetrics(Connection conn, Collection<TimelineMetrics> timelineMetricsCollection)
+          throws SQLException {
+        conn.commit();
       }
     };
 
@@ -248,6 +256,54 @@ public class PhoenixHBaseAccessorTest {
     EasyMock.verify(timelineMetrics, connection);
   }
 
+  @Test
+  public void testMetricsCommitterLanes() throws Exception {
+    Configuration hbaseConf = new Configuration();
+    hbaseConf.setStrings(ZOOKEEPER_QUORUM, "quorum");
+    Configuration metricsConf = new Configuration();
+    metricsConf.setStrings(TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_ENABLED, "false");
+    metricsConf.setStrings(TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_COMMIT_INTERVAL, "100");
+    metricsConf.setStrings(TimelineMetricConfiguration.TIMELINE_METRICS_COMMITTER_LANES, "4");
+    metricsConf.setStrings(TimelineMetricConfiguration.TIMELINE_METRICS_COMMITTER_PARTITION_KEY, "host");
+
+    final List<String> committedHosts = Collections.synchronizedList(new LinkedList<String>());
+    PhoenixHBaseAccessor accessor = new PhoenixHBaseAccessor(hbaseConf, metricsConf,
+        EasyMock.createNiceMock(PhoenixConnectionProvider.class)) {
+      @Override
+      void commitMetrics(Connection conn, Collection<TimelineMetrics> timelineMetricsCollection) {
+        for (TimelineMetrics metrics : timelineMetricsCollection) {
+          for (TimelineMetric metric : metrics.getMetrics()) {
+            committedHosts.add(metric.getHostName());
+          }
+        }
+      }
+    };
+    MetricsCommitterPool pool = new MetricsCommitterPool(accessor, metricsConf);
+
+    TimelineMetrics timelineMetrics = new TimelineMetrics();
+    for (int i = 0; i < 20; i++) {
+      TimelineMetric metric = new TimelineMetric();
+      metric.setMetricName("m1");
+      metric.setHostName("h" + i);
+      timelineMetrics.getMetrics().add(metric);
+    }
+    pool.putMetrics(timelineMetrics);
+
+    long backlog = 0;
+    for (int i = 0; i < pool.getLaneCount(); i++) {
+      backlog += pool.getLaneBacklog(i);
+    }
+    assertEquals(20, backlog);
+
+    TimelineMetric metric = new TimelineMetric();
+    metric.setHostName("h1");
+    assertEquals(pool.getLaneIndex(metric), pool.getLaneIndex(metric));
+
+    pool.shutdown();
+    assertEquals(20, committedHosts.size());
+    assertEquals(true, pool.isEmpty());
+  }
+
   @Test
   public void testMetricsAggregatorSink() throws IOException, SQLException {
     Configuration hbaseConf = new Configuration();
@@ -0,0 +1,141 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.Precision;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.Condition;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.DefaultCondition;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_HOT_TIER_MAX_BYTES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimelineMetricHotTierTest {
+
+  @Test
+  public void testRowsMatchCondition() {
+    TimelineMetricHotTier hotTier = new TimelineMetricHotTier(new Configuration());
+    long now = System.currentTimeMillis();
+    hotTier.put(createMetric("disk_free", "h1", "host"), now, aggregates());
+    hotTier.put(createMetric("disk_free", "h2", "host"), now, aggregates());
+    hotTier.put(createMetric("disk_total", "h1", "host"), now + 10, aggregates());
+    hotTier.put(createMetric("mem_free", "h1", "host"), now + 10, aggregates());
+    hotTier.put(createMetric("disk_free", "h1", "datanode"), now + 20, aggregates());
+
+    Condition condition = new DefaultCondition(Arrays.asList("disk%"),
+      Collections.singletonList("h1"), "host", null, now, now + 1000, null, null, true);
+    assertTrue(TimelineMetricHotTier.isQueryable(condition));
+    List<TimelineMetricHotTier.Row> rows = hotTier.getRows(condition, now, now + 1000);
+    assertEquals(2, rows.size());
+    assertEquals("disk_free", rows.get(0).metric.getMetricName());
+    assertEquals("disk_total", rows.get(1).metric.getMetricName());
+    assertEquals(now + 10, rows.get(1).metric.getTimestamp());
+
+    DefaultCondition notCondition = new DefaultCondition(Arrays.asList("disk_free"),
+      Collections.singletonList("h1"), "host", null, now, now + 1000, null, null, true);
+    notCondition.setMetricNamesNotCondition(true);
+    rows = hotTier.getRows(notCondition, now, now + 1000);
+    assertEquals(2, rows.size());
+    assertEquals("disk_total", rows.get(0).metric.getMetricName());
+    assertEquals("mem_free", rows.get(1).metric.getMetricName());
+
+    // Server time range is [from, to)
+    rows = hotTier.getRows(condition, now, now + 10);
+    assertEquals(1, rows.size());
+  }
+
+  @Test
+  public void testQueryableConditions() {
+    long now = System.currentTimeMillis();
+    assertTrue(TimelineMetricHotTier.isQueryable(new DefaultCondition(
+      Arrays.asList("m1"), Arrays.asList("h1"), "host", null, now - 3600000, now, null, null, true)));
+    // Resolves to minute precision
+    assertFalse(TimelineMetricHotTier.isQueryable(new DefaultCondition(
+      Arrays.asList("m1"), Arrays.asList("h1"), "host", null, now - 3 * 3600000, now, null, null, true)));
+    assertFalse(TimelineMetricHotTier.isQueryable(new DefaultCondition(
+      Arrays.asList("m1"), Arrays.asList("h1"), "host", null, now - 60000, now, Precision.MINUTES, null, true)));
+    // Point in time
+    assertFalse(TimelineMetricHotTier.isQueryable(new DefaultCondition(
+      Arrays.asList("m1"), Arrays.asList("h1"), "host", null, null, null, null, null, true)));
+  }
+
+  @Test
+  public void testCoverage() {
+    TimelineMetricHotTier hotTier = new TimelineMetricHotTier(new Configuration());
+    assertEquals(TimelineMetricHotTier.NOT_COVERED, hotTier.getCoveredSince());
+
+    long serverTime = System.currentTimeMillis() - 1000;
+    hotTier.put(createMetric("m1", "h1", "host"), serverTime, aggregates());
+    hotTier.put(createMetric("m1", "h1", "host"), serverTime + 10, aggregates());
+    assertEquals(serverTime, hotTier.getCoveredSince());
+    assertEquals(2, hotTier.getRowCount());
+
+    // Upsert of the same row key replaces the row
+    hotTier.put(createMetric("m1", "h1", "host"), serverTime + 10, aggregates());
+    assertEquals(2, hotTier.getRowCount());
+
+    hotTier.invalidate();
+    assertTrue(hotTier.getCoveredSince() > serverTime);
+
+    hotTier.evictBefore(serverTime + 10);
+    assertEquals(1, hotTier.getRowCount());
+  }
+
+  @Test
+  public void testOverflowMovesCoverage() {
+    Configuration metricsConf = new Configuration();
+    metricsConf.setLong(TIMELINE_METRICS_HOT_TIER_MAX_BYTES, 2000);
+    TimelineMetricHotTier hotTier = new TimelineMetricHotTier(metricsConf);
+
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < 20; i++) {
+      hotTier.put(createMetric("m1", "h1", "host"), now - 60000 + i * 1000, aggregates());
+    }
+    assertTrue(hotTier.getEstimatedBytes() <= 2000);
+    assertTrue(hotTier.getRowCount() < 20);
+    // The evicted rows are no longer claimed to be covered
+    assertTrue(hotTier.getCoveredSince() > now - 50000);
+  }
+
+  private static TimelineMetric createMetric(String metricName, String hostname, String appId) {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName(metricName);
+    metric.setHostName(hostname);
+    metric.setAppId(appId);
+    metric.setStartTime(System.currentTimeMillis());
+    metric.setUnits("bytes");
+    TreeMap<Long, Double> values = new TreeMap<>();
+    values.put(metric.getStartTime(), 1.0);
+    values.put(metric.getStartTime() + 10000, 3.0);
+    metric.setMetricValues(values);
+    return metric;
+  }
+
+  private static double[] aggregates() {
+    return new double[] { 4.0, 3.0, 1.0, 2 };
+  }
+}
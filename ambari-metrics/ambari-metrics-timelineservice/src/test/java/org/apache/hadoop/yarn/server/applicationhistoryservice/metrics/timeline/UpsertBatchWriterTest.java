@@ -0,0 +1,192 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.junit.Test;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class UpsertBatchWriterTest {
+  private static final String TABLE = "METRIC_RECORD";
+
+  @Test
+  public void testFlushOnMaxRows() throws Exception {
+    Connection connection = createNiceMock(Connection.class);
+    PreparedStatement statement = createNiceMock(PreparedStatement.class);
+    expect(connection.prepareStatement(anyString())).andReturn(statement).once();
+    statement.addBatch();
+    expectLastCall().times(5);
+    expect(statement.executeBatch()).andReturn(new int[] { 1, 1 }).times(3);
+    connection.commit();
+    expectLastCall().times(3);
+    replay(connection, statement);
+
+    UpsertBatchMetrics metrics = new UpsertBatchMetrics();
+    UpsertBatchWriter writer = new UpsertBatchWriter(connection, "UPSERT", TABLE,
+      2, Long.MAX_VALUE, Long.MAX_VALUE, metrics);
+    for (int i = 0; i < 5; i++) {
+      writer.addRow(10);
+    }
+    writer.flush();
+    writer.close();
+
+    verify(connection, statement);
+    assertEquals(5, writer.getTotalRows());
+    assertEquals(5, metrics.getRows(TABLE));
+    assertEquals(3, metrics.getBatches(TABLE));
+    // All batches fall into the 1 - 10 rows bucket
+    assertEquals(3, metrics.getBatchSizeCount(TABLE, 0));
+  }
+
+  @Test
+  public void testFlushOnMaxBytes() throws Exception {
+    Connection connection = createNiceMock(Connection.class);
+    PreparedStatement statement = createNiceMock(PreparedStatement.class);
+    expect(connection.prepareStatement(anyString())).andReturn(statement).once();
+    expect(statement.executeBatch()).andReturn(new int[] { 1, 1, 1 }).once();
+    connection.commit();
+    expectLastCall().once();
+    replay(connection, statement);
+
+    UpsertBatchMetrics metrics = new UpsertBatchMetrics();
+    UpsertBatchWriter writer = new UpsertBatchWriter(connection, "UPSERT", TABLE,
+      1000, 300, Long.MAX_VALUE, metrics);
+    writer.addRow(100);
+    writer.addRow(100);
+    assertEquals(0, metrics.getBatches(TABLE));
+    writer.addRow(100);
+    assertEquals(1, metrics.getBatches(TABLE));
+    // Nothing left to flush
+    writer.flush();
+
+    verify(connection, statement);
+  }
+
+  @Test
+  public void testFailedRowsDoNotFailTheBatch() throws Exception {
+    Connection connection = createNiceMock(Connection.class);
+    PreparedStatement statement = createNiceMock(PreparedStatement.class);
+    expect(connection.prepareStatement(anyString())).andReturn(statement).once();
+    expect(statement.executeBatch()).andThrow(new BatchUpdateException(
+      new int[] { 1, Statement.EXECUTE_FAILED, 1 })).once();
+    // The rejected row and the one the driver did not get to are replayed
+    statement.setString(1, "row0");
+    expectLastCall().once();
+    statement.setString(1, "row1");
+    expectLastCall().times(2);
+    statement.setString(1, "row2");
+    expectLastCall().once();
+    statement.setString(1, "row3");
+    expectLastCall().times(2);
+    expect(statement.executeUpdate()).andThrow(new SQLException("bad row")).once();
+    expect(statement.executeUpdate()).andReturn(1).once();
+    connection.commit();
+    expectLastCall().once();
+    replay(connection, statement);
+
+    UpsertBatchMetrics metrics = new UpsertBatchMetrics();
+    UpsertBatchWriter writer = new UpsertBatchWriter(connection, "UPSERT", TABLE,
+      1000, Long.MAX_VALUE, Long.MAX_VALUE, metrics);
+    for (int i = 0; i < 4; i++) {
+      writer.setString(1, "row" + i);
+      writer.addRow(10);
+    }
+    writer.flush();
+
+    verify(connection, statement);
+    // Only the bad row is lost
+    assertEquals(3, metrics.getRows(TABLE));
+  }
+
+  @Test
+  public void testFailedBatchIsReplayedRowByRow() throws Exception {
+    Connection connection = createNiceMock(Connection.class);
+    PreparedStatement statement = createNiceMock(PreparedStatement.class);
+    expect(connection.prepareStatement(anyString())).andReturn(statement).once();
+    expect(statement.executeBatch()).andThrow(new SQLException("region too busy")).once();
+    // Bound once for the batch and once more for the replay
+    for (int i = 0; i < 3; i++) {
+      statement.setString(1, "row" + i);
+      expectLastCall().times(2);
+    }
+    expect(statement.executeUpdate()).andReturn(1).once();
+    expect(statement.executeUpdate()).andThrow(new SQLException("bad row")).once();
+    expect(statement.executeUpdate()).andReturn(1).once();
+    connection.commit();
+    expectLastCall().once();
+    replay(connection, statement);
+
+    UpsertBatchMetrics metrics = new UpsertBatchMetrics();
+    UpsertBatchWriter writer = new UpsertBatchWriter(connection, "UPSERT", TABLE,
+      1000, Long.MAX_VALUE, Long.MAX_VALUE, metrics);
+    for (int i = 0; i < 3; i++) {
+      writer.setString(1, "row" + i);
+      writer.addRow(10);
+    }
+    writer.flush();
+
+    verify(connection, statement);
+    // Only the bad row is lost
+    assertEquals(2, metrics.getRows(TABLE));
+  }
+
+  @Test
+  public void testFailedCommitIsThrownByTheLastFlush() throws Exception {
+    Connection connection = createNiceMock(Connection.class);
+    PreparedStatement statement = createNiceMock(PreparedStatement.class);
+    expect(connection.prepareStatement(anyString())).andReturn(statement).once();
+    expect(statement.executeBatch()).andReturn(new int[] { 1, 1 }).times(2);
+    SQLException commitFailure = new SQLException("commit failed");
+    connection.commit();
+    expectLastCall().andThrow(commitFailure).once();
+    connection.commit();
+    expectLastCall().once();
+    replay(connection, statement);
+
+    UpsertBatchMetrics metrics = new UpsertBatchMetrics();
+    UpsertBatchWriter writer = new UpsertBatchWriter(connection, "UPSERT", TABLE,
+      2, Long.MAX_VALUE, Long.MAX_VALUE, metrics);
+    // The failed commit of the first batch does not stop the second one
+    for (int i = 0; i < 4; i++) {
+      writer.addRow(10);
+    }
+    try {
+      writer.flush();
+      fail("Expected the failed commit");
+    } catch (SQLException e) {
+      assertSame(commitFailure, e);
+    }
+
+    verify(connection, statement);
+    assertEquals(2, metrics.getRows(TABLE));
+  }
+}
@@ -25,6 +25,7 @@ import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 
 import java.sql.ResultSet;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,6 +33,7 @@ import java.util.TreeMap;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.discovery.TimelineMetricMetadataKey;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.discovery.TimelineMetricMetadataManager;
 import org.codehaus.jackson.map.ObjectMapper;
@@ -403,4 +405,136 @@ public class TimelineMetricClusterAggregatorSecondTest {
     Assert.assertEquals(2d, a1.getSum());
     Assert.assertEquals(3d, a2.getSum());
   }
+
+  @Test
+  public void testLiveHostCounterMetricsFromStreamingBuffer() throws Exception {
+    long aggregatorInterval = 120000;
+    long sliceInterval = 30000;
+
+    Configuration configuration = new Configuration();
+    TimelineMetricMetadataManager metricMetadataManagerMock = createNiceMock(TimelineMetricMetadataManager.class);
+
+    expect(metricMetadataManagerMock.getMetadataCacheValue((TimelineMetricMetadataKey) anyObject())).andReturn(null).anyTimes();
+    replay(metricMetadataManagerMock);
+
+    TimelineMetricStreamingBuffer streamingBuffer = new TimelineMetricStreamingBuffer(configuration);
+    TimelineMetricClusterAggregatorSecond secondAggregator = new TimelineMetricClusterAggregatorSecond(
+      METRIC_AGGREGATE_SECOND, metricMetadataManagerMock, null, configuration, null,
+      aggregatorInterval, 2, "false", "", "", aggregatorInterval,
+      sliceInterval, null, streamingBuffer);
+
+    long now = System.currentTimeMillis();
+    long startTime = now - 120000;
+    long seconds = 1000;
+    List<Long[]> slices = secondAggregator.getTimeSlices(startTime, now);
+
+    TreeMap<Long, Double> metricValues = new TreeMap<>();
+    metricValues.put(startTime + 15*seconds, 1.0);
+    metricValues.put(startTime + 45*seconds, 2.0);
+    metricValues.put(startTime + 75*seconds, 3.0);
+    metricValues.put(startTime + 105*seconds, 4.0);
+
+    // Same series as testLiveHostCounterMetrics, out of row key order
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.getMetrics().add(createMetric("m2", "h3", "a2", startTime, metricValues));
+    metrics.getMetrics().add(createMetric("m2", "h1", "a1", startTime, metricValues));
+    metrics.getMetrics().add(createMetric("m1", "h1", "a1", startTime, metricValues));
+    metrics.getMetrics().add(createMetric("m2", "h2", "a2", startTime, metricValues));
+    metrics.getMetrics().add(createMetric("m2", "h1", "a2", startTime, metricValues));
+    metrics.getMetrics().add(createMetric("m2", "h2", "a1", startTime, metricValues));
+    streamingBuffer.putMetrics(metrics, now - 150000);
+
+    List<TimelineMetric> bufferedMetrics = streamingBuffer.getMetrics(now - 200000, now);
+    Assert.assertEquals(6, bufferedMetrics.size());
+    Assert.assertEquals("m1", bufferedMetrics.get(0).getMetricName());
+    Assert.assertEquals("h3", bufferedMetrics.get(5).getHostName());
+
+    Map<TimelineClusterMetric, MetricClusterAggregate> aggregates =
+      secondAggregator.aggregateMetrics(bufferedMetrics, slices);
+
+    MetricClusterAggregate a1 = null, a2 = null;
+
+    for (Map.Entry<TimelineClusterMetric, MetricClusterAggregate> m : aggregates.entrySet()) {
+      if (m.getKey().getMetricName().equals("live_hosts") && m.getKey().getAppId().equals("a1")) {
+        a1 = m.getValue();
+      }
+      if (m.getKey().getMetricName().equals("live_hosts") && m.getKey().getAppId().equals("a2")) {
+        a2 = m.getValue();
+      }
+    }
+
+    Assert.assertNotNull(a1);
+    Assert.assertNotNull(a2);
+    Assert.assertEquals(2d, a1.getSum());
+    Assert.assertEquals(3d, a2.getSum());
+
+    for (Map.Entry<TimelineClusterMetric, MetricClusterAggregate> m : aggregates.entrySet()) {
+      if (m.getKey().getMetricName().equals("m2") && m.getKey().getAppId().equals("a2")) {
+        Assert.assertEquals(3, m.getValue().getNumberOfHosts());
+      }
+    }
+  }
+
+  @Test
+  public void testStreamingBufferWindowAndEviction() throws Exception {
+    Configuration configuration = new Configuration();
+    TimelineMetricStreamingBuffer streamingBuffer = new TimelineMetricStreamingBuffer(configuration);
+
+    long now = System.currentTimeMillis();
+    TreeMap<Long, Double> firstValues = new TreeMap<>();
+    firstValues.put(now - 20000, 1.0);
+    TreeMap<Long, Double> secondValues = new TreeMap<>();
+    secondValues.put(now - 10000, 2.0);
+
+    Assert.assertFalse(streamingBuffer.covers(now));
+
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.getMetrics().add(createMetric("m1", "h1", "a1", now - 20000, firstValues));
+    // Out of band, dropped like in the precision table write path
+    metrics.getMetrics().add(createMetric("m1", "h2", "a1", now - 3600000, firstValues));
+    streamingBuffer.putMetrics(metrics, now - 10000);
+
+    metrics = new TimelineMetrics();
+    metrics.getMetrics().add(createMetric("m1", "h1", "a1", now - 10000, secondValues));
+    streamingBuffer.putMetrics(metrics, now);
+
+    Assert.assertTrue(streamingBuffer.covers(now - 10000));
+    Assert.assertFalse(streamingBuffer.covers(now - 10001));
+    Assert.assertEquals(2, streamingBuffer.size());
+
+    // Rows of the same host are merged, the first row provides the times
+    List<TimelineMetric> bufferedMetrics = streamingBuffer.getMetrics(now - 10000, now + 1);
+    Assert.assertEquals(1, bufferedMetrics.size());
+    Assert.assertEquals(2, bufferedMetrics.get(0).getMetricValues().size());
+    Assert.assertEquals(now - 10000, bufferedMetrics.get(0).getTimestamp());
+    Assert.assertEquals(now - 20000, bufferedMetrics.get(0).getStartTime());
+
+    bufferedMetrics = streamingBuffer.getMetrics(now, now + 1);
+    Assert.assertEquals(1, bufferedMetrics.get(0).getMetricValues().size());
+
+    streamingBuffer.evictBefore(now);
+    Assert.assertEquals(1, streamingBuffer.size());
+    Assert.assertTrue(streamingBuffer.getMetrics(now - 10000, now).isEmpty());
+  }
+
+  @Test
+  public void testStreamingSkipPatterns() {
+    List<String> skipPatterns = Arrays.asList("dfs.%", "cpu_idle", "jvm.JvmMetrics.Mem_eap%");
+    Assert.assertTrue(TimelineMetricClusterAggregatorSecond.matchesAny("dfs.datanode.BytesWritten", skipPatterns));
+    Assert.assertTrue(TimelineMetricClusterAggregatorSecond.matchesAny("cpu_idle", skipPatterns));
+    Assert.assertTrue(TimelineMetricClusterAggregatorSecond.matchesAny("jvm.JvmMetrics.MemHeapUsedM", skipPatterns));
+    Assert.assertFalse(TimelineMetricClusterAggregatorSecond.matchesAny("cpu_idle2", skipPatterns));
+    Assert.assertFalse(TimelineMetricClusterAggregatorSecond.matchesAny("dfsX", skipPatterns));
+  }
+
+  private static TimelineMetric createMetric(String metricName, String hostName, String appId,
+                                             long startTime, TreeMap<Long, Double> metricValues) {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName(metricName);
+    metric.setHostName(hostName);
+    metric.setAppId(appId);
+    metric.setStartTime(startTime);
+    metric.setMetricValues(new TreeMap<>(metricValues));
+    return metric;
+  }
 }
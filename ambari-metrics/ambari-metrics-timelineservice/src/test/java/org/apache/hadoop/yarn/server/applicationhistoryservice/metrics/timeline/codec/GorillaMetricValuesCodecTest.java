@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.codec;
+
+import junit.framework.Assert;
+import org.apache.hadoop.yarn.util.timeline.TimelineUtils;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class GorillaMetricValuesCodecTest {
+
+  private final MetricValuesCodec codec = new GorillaMetricValuesCodec();
+
+  @Test
+  public void testEmptySeries() throws Exception {
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    Assert.assertEquals(values, codec.decode(codec.encode(values)));
+    Assert.assertTrue(codec.decode(null).isEmpty());
+  }
+
+  @Test
+  public void testRegularSeriesIsSmallerThanJson() throws Exception {
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    long startTime = 1466000000000L;
+    for (int i = 0; i < 60; i++) {
+      values.put(startTime + i * 10000, 42.0 + (i % 3));
+    }
+
+    byte[] bytes = codec.encode(values);
+    Assert.assertEquals(values, codec.decode(bytes));
+
+    String json = TimelineUtils.dumpTimelineRecordtoJSON(values);
+    Assert.assertTrue(bytes.length * 5 < json.length());
+  }
+
+  @Test
+  public void testIrregularSeriesRoundTrip() throws Exception {
+    Random random = new Random(7);
+    for (int n = 0; n < 200; n++) {
+      TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+      long timestamp = System.currentTimeMillis();
+      for (int i = 0; i < random.nextInt(50) + 1; i++) {
+        timestamp += (n % 2 == 0) ? 10000 + random.nextInt(10) : random.nextInt(Integer.MAX_VALUE);
+        double value = (i % 5 == 0) ? Double.NaN : random.nextDouble() * Math.pow(10, random.nextInt(12));
+        values.put(timestamp, value);
+      }
+      Assert.assertEquals(values, codec.decode(codec.encode(values)));
+    }
+  }
+
+  @Test
+  public void testNullValueStoredAsNaN() throws Exception {
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    values.put(1000L, 1.0);
+    values.put(2000L, null);
+
+    TreeMap<Long, Double> decoded = codec.decode(codec.encode(values));
+    Assert.assertEquals(1.0, decoded.get(1000L));
+    Assert.assertTrue(decoded.get(2000L).isNaN());
+  }
+
+  @Test(expected = IOException.class)
+  public void testTruncatedInput() throws Exception {
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    values.put(1000L, 1.0);
+    values.put(2000L, 2.0);
+    byte[] bytes = codec.encode(values);
+    byte[] truncated = new byte[bytes.length - 4];
+    System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+    codec.decode(truncated);
+  }
+
+  @Test
+  public void testEncodingModes() {
+    Assert.assertEquals(MetricValuesEncoding.JSON, MetricValuesEncoding.getEncoding(null));
+    Assert.assertEquals(MetricValuesEncoding.DUAL, MetricValuesEncoding.getEncoding("dual"));
+    Assert.assertTrue(MetricValuesEncoding.DUAL.writesJson());
+    Assert.assertTrue(MetricValuesEncoding.DUAL.writesBinary());
+    Assert.assertFalse(MetricValuesEncoding.BINARY.writesJson());
+    Assert.assertFalse(MetricValuesEncoding.JSON.writesBinary());
+  }
+}
@@ -19,6 +19,7 @@ package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline
 
 import junit.framework.Assert;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricMetadata;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixHBaseAccessor;
 import org.junit.Test;
@@ -113,4 +114,56 @@ public class TestMetadataSync {
     Assert.assertEquals(1, metadata.size());
     Assert.assertEquals("xxx.pqr.zzz", metadata.keySet().iterator().next().getMetricName());
   }
+
+  @Test
+  public void testUuidAssignment() throws Exception {
+    Configuration configuration = createNiceMock(Configuration.class);
+    PhoenixHBaseAccessor hBaseAccessor = createNiceMock(PhoenixHBaseAccessor.class);
+    replay(configuration, hBaseAccessor);
+
+    TimelineMetricMetadataManager metadataManager = new
+      TimelineMetricMetadataManager(hBaseAccessor, configuration);
+    metadataManager.putIfModifiedTimelineMetricMetadata(new TimelineMetricMetadata(
+      "m1", "a1", "", GAUGE.name(), System.currentTimeMillis(), true, false));
+    metadataManager.putIfModifiedTimelineMetricMetadata(new TimelineMetricMetadata(
+      "m2", "a1", "", GAUGE.name(), System.currentTimeMillis(), true, false));
+    metadataManager.putIfModifiedHostedAppsMetadata("h1", "a1");
+
+    Integer uuid1 = metadataManager.getUuid("m1", "a1");
+    Integer uuid2 = metadataManager.getUuid("m2", "a1");
+    Assert.assertNotNull(uuid1);
+    Assert.assertNotNull(uuid2);
+    Assert.assertFalse(uuid1.equals(uuid2));
+    Assert.assertNotNull(metadataManager.getHostUuid("h1"));
+    Assert.assertTrue(metadataManager.syncHostedAppsMetadata());
+
+    // A changed metadata keeps its id
+    metadataManager.putIfModifiedTimelineMetricMetadata(new TimelineMetricMetadata(
+      "m1", "a1", "bytes", GAUGE.name(), System.currentTimeMillis(), true, false));
+    Assert.assertEquals(uuid1, metadataManager.getUuid("m1", "a1"));
+
+    // Ids read from the store are kept
+    TimelineMetricMetadata stored = new TimelineMetricMetadata(
+      "m3", "a1", "", GAUGE.name(), System.currentTimeMillis(), true, false);
+    stored.setUuid(42);
+    stored.setIsPersisted(true);
+    metadataManager.assignUuid(new TimelineMetricMetadataKey("m3", "a1"), stored);
+    Assert.assertEquals(Integer.valueOf(42), stored.getUuid());
+    Assert.assertTrue(stored.isPersisted());
+
+    // Fixed width key round trip
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName("m2");
+    metric.setAppId("a1");
+    metric.setHostName("h1");
+    byte[] uuid = metadataManager.getUuid(metric);
+    Assert.assertEquals(TimelineMetricMetadataManager.UUID_LENGTH, uuid.length);
+    TimelineMetric decoded = metadataManager.getMetricFromUuid(uuid);
+    Assert.assertEquals("m2", decoded.getMetricName());
+    Assert.assertEquals("a1", decoded.getAppId());
+    Assert.assertEquals("h1", decoded.getHostName());
+
+    metric.setHostName("unknown");
+    Assert.assertNull(metadataManager.getUuid(metric));
+  }
 }
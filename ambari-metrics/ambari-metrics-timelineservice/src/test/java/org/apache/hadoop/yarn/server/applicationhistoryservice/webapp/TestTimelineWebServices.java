@@ -20,10 +20,16 @@ package org.apache.hadoop.yarn.server.applicationhistoryservice.webapp;
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
+
 import javax.ws.rs.core.MediaType;
 
 import junit.framework.Assert;
 
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.apache.hadoop.yarn.api.records.timeline.TimelineEntities;
 import org.apache.hadoop.yarn.api.records.timeline.TimelineEntity;
@@ -48,6 +54,7 @@ import com.sun.jersey.api.client.config.DefaultClientConfig;
 import com.sun.jersey.guice.spi.container.servlet.GuiceContainer;
 import com.sun.jersey.test.framework.JerseyTest;
 import com.sun.jersey.test.framework.WebAppDescriptor;
+import org.codehaus.jackson.map.ObjectMapper;
 
 
 public class TestTimelineWebServices extends JerseyTest {
@@ -60,7 +67,7 @@ public class TestTimelineWebServices extends JerseyTest {
 
     @Override
     protected void configureServlets() {
-      bind(YarnJacksonJaxbJsonProvider.class);
+      bind(TimelineJacksonJaxbJsonProvider.class);
       bind(TimelineWebServices.class);
       bind(GenericExceptionHandler.class);
       try{
@@ -388,4 +395,35 @@ public class TestTimelineWebServices extends JerseyTest {
     assertEquals(MediaType.APPLICATION_JSON_TYPE, response.getType());
     verifyMetrics(response.getEntity(TimelineMetrics.class));
   }
+
+  @Test
+  public void testPostGzipMetrics() throws Exception {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName("cpu_user");
+    metric.setHostName("h1");
+    metric.setAppId("HOST");
+    metric.setStartTime(1000L);
+    TreeMap<Long, Double> metricValues = new TreeMap<Long, Double>();
+    metricValues.put(1000L, 1.0);
+    metric.setMetricValues(metricValues);
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.setMetrics(Collections.singletonList(metric));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+    new ObjectMapper().writeValue(gzip, metrics);
+    gzip.close();
+
+    WebResource r = resource();
+    ClientResponse response = r.path("ws").path("v1").path("timeline")
+      .path("metrics")
+      .type(MediaType.APPLICATION_JSON)
+      .header("Content-Encoding", "gzip")
+      .accept(MediaType.APPLICATION_JSON)
+      .post(ClientResponse.class, bytes.toByteArray());
+    assertEquals(200, response.getStatus());
+    TimelinePutResponse putResponse = response.getEntity(TimelinePutResponse.class);
+    Assert.assertNotNull(putResponse);
+    Assert.assertEquals(0, putResponse.getErrors().size());
+  }
 }
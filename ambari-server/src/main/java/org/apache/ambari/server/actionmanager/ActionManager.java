@@ -165,6 +165,15 @@ public class ActionManager {
     }
 
     db.updateHostRoleStates(reportsToProcess);
+
+    // completed commands can let the next commands or stages start, so don't
+    // wait for the scheduler to poll for them
+    for (CommandReport report : reportsToProcess) {
+      if (HostRoleStatus.valueOf(report.getStatus()).isCompletedState()) {
+        scheduler.awake();
+        break;
+      }
+    }
   }
 
   /**
@@ -183,10 +192,9 @@ public class ActionManager {
   }
 
   public void handleLostHost(String host) {
-    //Do nothing, the task will timeout anyway.
-    //The actions can be failed faster as an optimization
-    //if action timeout happens to be much larger than
-    //heartbeat timeout.
+    // the scheduler aborts the commands in progress on hosts which have lost
+    // their heartbeat; wake it up instead of waiting for the commands to time out
+    scheduler.awake();
   }
 
   public long getNextRequestId() {
@@ -256,6 +264,7 @@ public class ActionManager {
 
   public void resubmitTasks(List<Long> taskIds) {
     db.resubmitTasks(taskIds);
+    scheduler.awake();
   }
 
 }
@@ -179,6 +179,14 @@ class ActionScheduler implements Runnable {
    * we receive awake() request during running a scheduler iteration.
    */
   private boolean activeAwakeRequest = false;
+
+  /**
+   * The time, in milliseconds, by which the stages in progress have to be
+   * re-evaluated even if the scheduler is not awoken, such as when the first
+   * command in progress could time out. Only used by the scheduler thread.
+   */
+  private long nextWorkTime = 0;
+
   //Cache for clusterHostinfo, key - stageId-requestId
   private Cache<String, Map<String, Set<String>>> clusterHostInfoCache;
   private Cache<String, Map<String, String>> commandParamsStageCache;
@@ -204,7 +212,7 @@ class ActionScheduler implements Runnable {
     this.jpaPublisher = jpaPublisher;
     this.jpaPublisher.register(this);
 
-    serverActionExecutor = new ServerActionExecutor(db, sleepTime);
+    serverActionExecutor = createServerActionExecutor();
 
     initializeCaches();
   }
@@ -246,10 +254,26 @@ class ActionScheduler implements Runnable {
     this.hostRoleCommandFactory = hostRoleCommandFactory;
     jpaPublisher = null;
 
-    serverActionExecutor = new ServerActionExecutor(db, sleepTime);
+    serverActionExecutor = createServerActionExecutor();
     initializeCaches();
   }
 
+  /**
+   * Creates the {@link ServerActionExecutor} which wakes this scheduler up
+   * whenever it finishes a server-side task.
+   */
+  private ServerActionExecutor createServerActionExecutor() {
+    ServerActionExecutor executor = new ServerActionExecutor(db, sleepTime);
+    executor.setTaskCompletionListener(new Runnable() {
+      @Override
+      public void run() {
+        awake();
+      }
+    });
+
+    return executor;
+  }
+
   /**
    * Initializes the caches.
    */
@@ -301,13 +325,22 @@ class ActionScheduler implements Runnable {
   public void run() {
     while (shouldRun) {
       try {
+        boolean awoken;
         synchronized (wakeupSyncObject) {
           if (!activeAwakeRequest) {
             wakeupSyncObject.wait(sleepTime);
           }
+          awoken = activeAwakeRequest;
           activeAwakeRequest = false;
         }
 
+        // requests, command reports, cancellations and lost hosts awake the
+        // scheduler; otherwise there is nothing to do until a command could
+        // time out
+        if (!awoken && System.currentTimeMillis() < nextWorkTime) {
+          continue;
+        }
+
         doWork();
 
       } catch (InterruptedException ex) {
@@ -316,14 +349,22 @@ class ActionScheduler implements Runnable {
       } catch (Exception ex) {
         LOG.warn("Exception received", ex);
         requestsInProgress.clear();
+        nextWorkTime = 0;
       } catch (Throwable t) {
         LOG.warn("ERROR", t);
         requestsInProgress.clear();
+        nextWorkTime = 0;
       }
     }
   }
 
   public void doWork() throws AmbariException {
+    // stages are re-evaluated at least once per idle wait in case an agent
+    // restarted during an operation; stages with commands which could time out
+    // earlier bring this forward while they are processed
+    long idleWait = configuration.getExecutionSchedulerIdleWait();
+    nextWorkTime = idleWait > sleepTime ? System.currentTimeMillis() + idleWait : 0;
+
     try {
       unitOfWork.begin();
 
@@ -343,6 +384,7 @@ class ActionScheduler implements Runnable {
         }
 
         actionQueue.updateListOfHostsWithPendingTask(null);
+        actionQueue.updateListOfHostsWithUnsentTask(null);
         return;
       }
 
@@ -360,6 +402,7 @@ class ActionScheduler implements Runnable {
         }
 
         actionQueue.updateListOfHostsWithPendingTask(null);
+        actionQueue.updateListOfHostsWithUnsentTask(null);
         return;
       }
 
@@ -367,6 +410,7 @@ class ActionScheduler implements Runnable {
 
       HashSet<String> hostsWithTasks = getListOfHostsWithPendingTask(stages);
       actionQueue.updateListOfHostsWithPendingTask(hostsWithTasks);
+      actionQueue.updateListOfHostsWithUnsentTask(getListOfHostsWithUnsentTask(stages));
 
       stages = filterParallelPerHostStages(stages);
       // At this point the stages is a filtered list
@@ -547,6 +591,28 @@ class ActionScheduler implements Runnable {
     return hostsWithTasks;
   }
 
+  /**
+   * Returns the list of hosts that have a task which was not sent to them yet,
+   * i.e. a task of a later stage that will be queued for the host
+   *
+   * @param stages
+   * @return
+   */
+  private HashSet<String> getListOfHostsWithUnsentTask(List<Stage> stages) {
+    HashSet<String> hostsWithTasks = new HashSet<String>();
+    for (Stage s : stages) {
+      for (Map.Entry<String, Map<String, HostRoleCommand>> hostCommands : s.getHostRoleCommands().entrySet()) {
+        for (HostRoleCommand command : hostCommands.getValue().values()) {
+          if (command.getStatus() == HostRoleStatus.PENDING) {
+            hostsWithTasks.add(hostCommands.getKey());
+            break;
+          }
+        }
+      }
+    }
+    return hostsWithTasks;
+  }
+
   /**
    * Returns filtered list of stages such that the returned list is an ordered list of stages that may
    * be executed in parallel or in the order in which they are presented
@@ -785,6 +851,15 @@ class ActionScheduler implements Runnable {
           }
         }
 
+        // make sure the scheduler runs again by the time this command could
+        // time out
+        if (status.equals(HostRoleStatus.QUEUED) || status.equals(HostRoleStatus.IN_PROGRESS)) {
+          String hostName = (null == hostObj) ? null : hostObj.getHostName();
+          scheduleWorkBy(s.getLastAttemptTime(hostName, roleStr) + commandTimeout);
+        } else if (status.equals(HostRoleStatus.PENDING)) {
+          scheduleWorkBy(now + commandTimeout);
+        }
+
         // Check that service host component is not deleted
         if (hostDeleted) {
 
@@ -889,6 +964,17 @@ class ActionScheduler implements Runnable {
     return roleStats;
   }
 
+  /**
+   * Brings the next re-evaluation of the stages in progress forward to
+   * <code>time</code> if it is earlier than already planned.
+   *
+   * @param time
+   *          the time, in milliseconds, by which the scheduler has to run.
+   */
+  private void scheduleWorkBy(long time) {
+    nextWorkTime = Math.min(nextWorkTime, time);
+  }
+
   /**
    * Returns true if all command dependencies are already finished (not IN_PROGRESS states).
    * @param command
@@ -44,6 +44,12 @@ public class ExecutionCommandWrapper {
   String jsonExecutionCommand = null;
   ExecutionCommand executionCommand = null;
 
+  /**
+   * The command type read from {@link #jsonExecutionCommand}, so that the JSON
+   * is only de-serialized once when just the type is needed.
+   */
+  private AgentCommandType commandType = null;
+
   @Inject
   Clusters clusters;
 
@@ -194,7 +200,8 @@ public class ExecutionCommandWrapper {
 
   /**
    * Gets the type of command by deserializing the JSON and invoking
-   * {@link ExecutionCommand#getCommandType()}.
+   * {@link ExecutionCommand#getCommandType()}. The type is kept so that the
+   * JSON is de-serialized only once.
    *
    * @return
    */
@@ -208,8 +215,12 @@ public class ExecutionCommandWrapper {
           "Invalid ExecutionCommandWrapper, both object and string" + " representations are null");
     }
 
-    return gson.fromJson(jsonExecutionCommand,
-        ExecutionCommand.class).getCommandType();
+    if (null == commandType) {
+      commandType = gson.fromJson(jsonExecutionCommand,
+          ExecutionCommand.class).getCommandType();
+    }
+
+    return commandType;
   }
 
   public String getJson() {
@@ -28,6 +28,7 @@ import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.ambari.server.agent.AgentCommand.AgentCommandType;
 import org.slf4j.Logger;
@@ -46,6 +47,8 @@ public class ActionQueue {
 
   HashSet<String> hostsWithPendingTask = new HashSet<String>();
 
+  HashSet<String> hostsWithUnsentTask = new HashSet<String>();
+
   public ActionQueue() {
     hostQueues = new ConcurrentHashMap<String, Queue<AgentCommand>>();
   }
@@ -64,6 +67,7 @@ public class ActionQueue {
     Queue<AgentCommand> q = getHostQueue(hostname);
 
     q.add(cmd);
+    signal(q);
   }
 
   /**
@@ -76,6 +80,43 @@ public class ActionQueue {
     Queue<AgentCommand> q = getHostQueue(hostname);
 
     q.addAll(commands);
+    signal(q);
+  }
+
+  /**
+   * Waits until there are commands queued for the given hostname.
+   * @param hostname - hostname of node
+   * @param timeout - the longest time to wait
+   * @param unit - the unit of the timeout
+   * @return {@code true} if there are commands queued for the host
+   * @throws InterruptedException - if interrupted while waiting
+   */
+  public boolean awaitCommands(String hostname, long timeout, TimeUnit unit)
+      throws InterruptedException {
+    Queue<AgentCommand> q = getHostQueue(hostname);
+
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    synchronized (q) {
+      while (q.isEmpty()) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          return false;
+        }
+
+        TimeUnit.NANOSECONDS.timedWait(q, remaining);
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Wakes up the requests waiting for commands on the given queue.
+   */
+  private void signal(Queue<AgentCommand> q) {
+    synchronized (q) {
+      q.notifyAll();
+    }
   }
 
   private Queue<AgentCommand> getHostQueue(String hostname) {
@@ -223,6 +264,29 @@ public class ActionQueue {
     }
   }
 
+  /**
+   * Update the cache of hosts that have tasks which were not sent to them yet
+   *
+   * @param hosts
+   */
+  public void updateListOfHostsWithUnsentTask(HashSet<String> hosts) {
+    if (hosts != null) {
+      hostsWithUnsentTask = hosts;
+    } else if (hostsWithUnsentTask.size() > 0) {
+      hostsWithUnsentTask = EMPTY_HOST_LIST;
+    }
+  }
+
+  /**
+   * Checks whether host has tasks which will be queued for it later, e.g.
+   * those of the next stage of a request
+   * @param hostName
+   * @return
+   */
+  public boolean hasUnsentTask(String hostName) {
+    return hostsWithUnsentTask.contains(hostName);
+  }
+
   /**
    * Checks whether host has pending tasks
    * @param hostName
@@ -27,11 +27,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.HostNotFoundException;
 import org.apache.ambari.server.actionmanager.ActionManager;
+import org.apache.ambari.server.actionmanager.HostRoleStatus;
 import org.apache.ambari.server.api.services.AmbariMetaInfo;
 import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.serveraction.kerberos.KerberosIdentityDataFileReader;
@@ -114,6 +117,12 @@ public class HeartBeatHandler {
 
   private Map<String, HeartBeatResponse> hostResponses = new ConcurrentHashMap<String, HeartBeatResponse>();
 
+  /**
+   * Limits the number of agent requests held waiting for commands, so that
+   * other heartbeats can still be handled.
+   */
+  private final Semaphore commandWaiters;
+
   @Inject
   public HeartBeatHandler(Clusters fsm, ActionQueue aq, ActionManager am,
                           Injector injector) {
@@ -123,6 +132,7 @@ public class HeartBeatHandler {
     heartbeatMonitor = new HeartbeatMonitor(fsm, aq, am, 60000, injector);
     heartbeatProcessor = new HeartbeatProcessor(fsm, am, heartbeatMonitor, injector); //TODO modify to match pattern
     injector.injectMembers(this);
+    commandWaiters = new Semaphore(Math.max(1, config.getAgentThreadPoolSize() / 2));
   }
 
   public void start() {
@@ -253,6 +263,7 @@ public class HeartBeatHandler {
 
     // Send commands if node is active
     if (hostObject.getState().equals(HostState.HEALTHY)) {
+      awaitCommands(heartbeat);
       sendCommands(hostname, response);
       annotateResponse(hostname, response);
     }
@@ -262,6 +273,60 @@ public class HeartBeatHandler {
 
 
 
+  /**
+   * Holds the heartbeat of a host with tasks which were not sent to it yet
+   * and which reports a finished command until the next commands for the host
+   * are queued, so that they are sent in this response instead of waiting for
+   * the next heartbeat.
+   *
+   * @param heartbeat
+   *          the heartbeat being handled.
+   * @return {@code true} if the heartbeat was held.
+   */
+  boolean awaitCommands(HeartBeat heartbeat) {
+    String hostname = heartbeat.getHostname();
+    long timeout = config.getAgentCommandsWaitTimeout();
+    if (timeout <= 0 || !actionQueue.hasUnsentTask(hostname) || actionQueue.size(hostname) > 0) {
+      return false;
+    }
+
+    boolean finishedCommand = false;
+    for (CommandReport report : heartbeat.getReports()) {
+      if (isCompletedStatus(report.getStatus())) {
+        finishedCommand = true;
+        break;
+      }
+    }
+
+    if (!finishedCommand || !commandWaiters.tryAcquire()) {
+      return false;
+    }
+
+    try {
+      actionQueue.awaitCommands(hostname, timeout, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      commandWaiters.release();
+    }
+    return true;
+  }
+
+  /**
+   * Unknown statuses are left to the heartbeat processor, which reports them.
+   */
+  private static boolean isCompletedStatus(String status) {
+    if (null == status) {
+      return false;
+    }
+
+    try {
+      return HostRoleStatus.valueOf(status).isCompletedState();
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
   protected void processRecoveryReport(RecoveryReport recoveryReport, String hostname) throws AmbariException {
     LOG.debug("Received recovery report: " + recoveryReport.toString());
     Host host = clusterFsm.getHost(hostname);
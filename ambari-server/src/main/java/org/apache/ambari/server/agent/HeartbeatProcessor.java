@@ -19,12 +19,14 @@ package org.apache.ambari.server.agent;
 
 
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
@@ -39,6 +41,7 @@ import org.apache.ambari.server.actionmanager.HostRoleCommand;
 import org.apache.ambari.server.actionmanager.HostRoleStatus;
 import org.apache.ambari.server.agent.ExecutionCommand.KeyNames;
 import org.apache.ambari.server.api.services.AmbariMetaInfo;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.MaintenanceStateHelper;
 import org.apache.ambari.server.events.ActionFinalReportReceivedEvent;
 import org.apache.ambari.server.events.AlertEvent;
@@ -48,6 +51,8 @@ import org.apache.ambari.server.events.publishers.AlertEventPublisher;
 import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
 import org.apache.ambari.server.events.publishers.VersionEventPublisher;
 import org.apache.ambari.server.metadata.ActionMetadata;
+import org.apache.ambari.server.metrics.system.impl.HeartbeatMetricsSource;
+import org.apache.ambari.server.metrics.system.impl.RegistryMetricsSource;
 import org.apache.ambari.server.orm.dao.KerberosPrincipalHostDAO;
 import org.apache.ambari.server.state.Alert;
 import org.apache.ambari.server.state.Cluster;
@@ -75,6 +80,9 @@ import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Timer;
 import com.google.common.util.concurrent.AbstractService;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.Gson;
@@ -84,23 +92,41 @@ import com.google.inject.Inject;
 import com.google.inject.Injector;
 
 /**
- * HeartbeatProcessor class is used for bulk processing data retrieved from agents in background
+ * HeartbeatProcessor class is used for bulk processing data retrieved from agents in background.
  *
+ * Heartbeats are partitioned by host. Every partition runs two stages, alerts
+ * and state updates (status reports, command reports and host status), each
+ * on its own thread with a bounded queue. The heartbeats of a host therefore
+ * go through each stage in arrival order, while different hosts are processed
+ * in parallel and slow state updates do not hold back alerts. Once a queue is
+ * full {@link #addHeartbeat(HeartBeat)} blocks the agent request until the
+ * partition catches up.
  */
 public class HeartbeatProcessor extends AbstractService{
   private static final Logger LOG = LoggerFactory.getLogger(HeartbeatProcessor.class);
 
-  private ScheduledExecutorService executor;
+  static final String METRICS_PREFIX = "heartbeat.processor";
 
-  private ConcurrentLinkedQueue<HeartBeat> heartBeatsQueue = new ConcurrentLinkedQueue<>();
+  /**
+   * Processing stages of a heartbeat.
+   */
+  enum Stage {
+    ALERTS,
+    STATE
+  }
 
-  private volatile boolean shouldRun = true;
+  private ExecutorService executor;
+
+  private final StageLane[][] lanes;
 
-  //TODO rewrite to correlate with heartbeat frequency, hardcoded in agent as of now
-  private long delay = 5000;
-  private long period = 1000;
+  private final Map<Stage, Timer> stageLatency = new EnumMap<>(Stage.class);
 
-  private int poolSize = 1;
+  private final Map<Stage, Counter> stageQueueFull = new EnumMap<>(Stage.class);
+
+  private volatile boolean shouldRun = true;
+
+  // how long an idle lane waits for a heartbeat before checking for shutdown
+  private long pollTimeout = 1000;
 
   private Clusters clusterFsm;
   private HeartbeatMonitor heartbeatMonitor;
@@ -134,6 +160,9 @@ public class HeartbeatProcessor extends AbstractService{
   @Inject
   Gson gson;
 
+  @Inject
+  Configuration configuration;
+
   @Inject
   public HeartbeatProcessor(Clusters clusterFsm, ActionManager am, HeartbeatMonitor heartbeatMonitor,
                             Injector injector) {
@@ -143,16 +172,31 @@ public class HeartbeatProcessor extends AbstractService{
     this.heartbeatMonitor = heartbeatMonitor;
     this.clusterFsm = clusterFsm;
     actionManager = am;
+
+    int partitions = configuration.getHeartbeatProcessingPartitions();
+    int queueSize = configuration.getHeartbeatProcessingQueueSize();
+    Stage[] stages = Stage.values();
+    lanes = new StageLane[partitions][stages.length];
+    for (int i = 0; i < partitions; i++) {
+      for (Stage stage : stages) {
+        lanes[i][stage.ordinal()] = new StageLane(stage, queueSize);
+      }
+    }
+    registerMetrics();
+
     ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("ambari-heartbeat-processor-%d").build();
-    executor = Executors.newScheduledThreadPool(poolSize, threadFactory);
+    executor = Executors.newFixedThreadPool(partitions * stages.length, threadFactory);
   }
 
   @Override
   protected void doStart() {
     LOG.info("**** Starting heartbeats processing threads ****");
-    for (int i=0; i< poolSize; i++) {
-      executor.scheduleAtFixedRate(new HeartbeatProcessingTask(), delay, period, TimeUnit.MILLISECONDS);
+    for (StageLane[] partitionLanes : lanes) {
+      for (StageLane lane : partitionLanes) {
+        executor.execute(lane);
+      }
     }
+    notifyStarted();
   }
 
   @Override
@@ -160,38 +204,132 @@ public class HeartbeatProcessor extends AbstractService{
     LOG.info("**** Stopping heartbeats processing threads ****");
     shouldRun = false;
     executor.shutdown();
+    notifyStopped();
   }
 
+  /**
+   * Queue the heartbeat on every stage of its host's partition. Blocks while
+   * a queue of the partition is full.
+   *
+   * @param heartBeat the heartbeat to process in background
+   */
   public void addHeartbeat(HeartBeat heartBeat) {
-    heartBeatsQueue.add(heartBeat);
+    StageLane[] partitionLanes = lanes[getPartition(heartBeat.getHostname(), lanes.length)];
+    long now = System.nanoTime();
+    try {
+      for (StageLane lane : partitionLanes) {
+        lane.put(new QueuedHeartbeat(heartBeat, now));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOG.warn("Interrupted while queueing heartbeat from " + heartBeat.getHostname() +
+          ", it will not be fully processed");
+    }
+  }
+
+  /**
+   * @return the number of heartbeats waiting in the given stage over all partitions
+   */
+  int getQueueSize(Stage stage) {
+    int size = 0;
+    for (StageLane[] partitionLanes : lanes) {
+      size += partitionLanes[stage.ordinal()].queue.size();
+    }
+    return size;
+  }
+
+  /**
+   * @return the number of heartbeats waiting in the most loaded partition of the given stage
+   */
+  int getMaxPartitionQueueSize(Stage stage) {
+    int max = 0;
+    for (StageLane[] partitionLanes : lanes) {
+      max = Math.max(max, partitionLanes[stage.ordinal()].queue.size());
+    }
+    return max;
   }
 
-  private HeartBeat pollHeartbeat() {
-    return heartBeatsQueue.poll();
+  static int getPartition(String hostname, int partitions) {
+    return (hostname == null ? 0 : hostname.hashCode() & Integer.MAX_VALUE) % partitions;
+  }
+
+  private void registerMetrics() {
+    for (final Stage stage : Stage.values()) {
+      String prefix = METRICS_PREFIX + "." + stage.name().toLowerCase();
+      RegistryMetricsSource.register(HeartbeatMetricsSource.class, prefix + ".queue.size", new Gauge<Integer>() {
+        @Override
+        public Integer getValue() {
+          return getQueueSize(stage);
+        }
+      });
+      RegistryMetricsSource.register(HeartbeatMetricsSource.class, prefix + ".queue.size.max", new Gauge<Integer>() {
+        @Override
+        public Integer getValue() {
+          return getMaxPartitionQueueSize(stage);
+        }
+      });
+      stageQueueFull.put(stage,
+          RegistryMetricsSource.register(HeartbeatMetricsSource.class, prefix + ".queue.full", new Counter()));
+      stageLatency.put(stage,
+          RegistryMetricsSource.register(HeartbeatMetricsSource.class, prefix + ".latency", new Timer()));
+    }
   }
 
   /**
-   * Processing task to be scheduled for execution
+   * A heartbeat along with the time it was queued at.
    */
-  private class HeartbeatProcessingTask implements Runnable {
+  private static class QueuedHeartbeat {
+    private final HeartBeat heartbeat;
+    private final long queuedNanos;
+
+    private QueuedHeartbeat(HeartBeat heartbeat, long queuedNanos) {
+      this.heartbeat = heartbeat;
+      this.queuedNanos = queuedNanos;
+    }
+  }
+
+  /**
+   * Processing task running one stage of one partition
+   */
+  private class StageLane implements Runnable {
+    private final Stage stage;
+    private final BlockingQueue<QueuedHeartbeat> queue;
+
+    private StageLane(Stage stage, int queueSize) {
+      this.stage = stage;
+      queue = new ArrayBlockingQueue<>(queueSize);
+    }
+
+    private void put(QueuedHeartbeat queuedHeartbeat) throws InterruptedException {
+      if (!queue.offer(queuedHeartbeat)) {
+        stageQueueFull.get(stage).inc();
+        queue.put(queuedHeartbeat);
+      }
+    }
 
     @Override
     public void run() {
       while (shouldRun) {
         try {
-          HeartBeat heartbeat = pollHeartbeat();
-          if (heartbeat == null) {
-            break;
+          QueuedHeartbeat queuedHeartbeat = queue.poll(pollTimeout, TimeUnit.MILLISECONDS);
+          if (queuedHeartbeat == null) {
+            continue;
+          }
+          try {
+            processStage(stage, queuedHeartbeat.heartbeat);
+          } finally {
+            stageLatency.get(stage).update(System.nanoTime() - queuedHeartbeat.queuedNanos,
+                TimeUnit.NANOSECONDS);
           }
-          processHeartbeat(heartbeat);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
         } catch (Exception e) {
           LOG.error("Exception received while processing heartbeat", e);
         } catch (Throwable throwable) {
           //catch everything to prevent task suppression
           LOG.error("ERROR: ", throwable);
         }
-
-
       }
     }
   }
@@ -202,9 +340,34 @@ public class HeartbeatProcessor extends AbstractService{
    * @throws AmbariException
    */
   public void processHeartbeat(HeartBeat heartbeat) throws AmbariException {
-    long now = System.currentTimeMillis();
-
     processAlerts(heartbeat);
+    processStateUpdates(heartbeat);
+  }
+
+  /**
+   * Run one stage of the heartbeat processing
+   * @param stage the stage to run
+   * @param heartbeat Agent heartbeat object
+   * @throws AmbariException
+   */
+  protected void processStage(Stage stage, HeartBeat heartbeat) throws AmbariException {
+    switch (stage) {
+      case ALERTS:
+        processAlerts(heartbeat);
+        break;
+      case STATE:
+        processStateUpdates(heartbeat);
+        break;
+    }
+  }
+
+  /**
+   * Updates component and host state from the reports of the heartbeat
+   * @param heartbeat Agent heartbeat object
+   * @throws AmbariException
+   */
+  protected void processStateUpdates(HeartBeat heartbeat) throws AmbariException {
+    long now = System.currentTimeMillis();
 
     //process status reports before command reports to prevent status override immediately after task finish
     processStatusReports(heartbeat);
@@ -579,7 +742,9 @@ public class HeartbeatProcessor extends AbstractService{
   }
 
   /**
-   * Process reports of status commands
+   * Process reports of status commands. Agents still report the full status
+   * of their components; there is no delta protocol. Reports repeating the
+   * known live state or stack version are not written again.
    * @param heartbeat heartbeat to process
    * @throws AmbariException
    */
@@ -603,18 +768,18 @@ public class HeartbeatProcessor extends AbstractService{
                   org.apache.ambari.server.state.State.valueOf(org.apache.ambari.server.state.State.class,
                       status.getStatus());
               //ignore reports from status commands if component is in INIT or any "in progress" state
-              if (prevState.equals(org.apache.ambari.server.state.State.INSTALLED)
+              //most reports repeat the current state, which doesn't need to be written again
+              if ((prevState.equals(org.apache.ambari.server.state.State.INSTALLED)
                   || prevState.equals(org.apache.ambari.server.state.State.STARTED)
-                  || prevState.equals(org.apache.ambari.server.state.State.UNKNOWN)) {
+                  || prevState.equals(org.apache.ambari.server.state.State.UNKNOWN))
+                  && !prevState.equals(liveState)) {
                 scHost.setState(liveState);
-                if (!prevState.equals(liveState)) {
-                  LOG.info("State of service component " + componentName
-                      + " of service " + status.getServiceName()
-                      + " of cluster " + status.getClusterName()
-                      + " has changed from " + prevState + " to " + liveState
-                      + " at host " + hostname
-                      + " according to STATUS_COMMAND report");
-                }
+                LOG.info("State of service component " + componentName
+                    + " of service " + status.getServiceName()
+                    + " of cluster " + status.getClusterName()
+                    + " has changed from " + prevState + " to " + liveState
+                    + " at host " + hostname
+                    + " according to STATUS_COMMAND report");
               }
 
               SecurityState prevSecurityState = scHost.getSecurityState();
@@ -637,7 +802,10 @@ public class HeartbeatProcessor extends AbstractService{
               }
 
               if (null != status.getStackVersion() && !status.getStackVersion().isEmpty()) {
-                scHost.setStackVersion(gson.fromJson(status.getStackVersion(), StackId.class));
+                StackId stackId = gson.fromJson(status.getStackVersion(), StackId.class);
+                if (!scHost.getStackVersion().equals(stackId)) {
+                  scHost.setStackVersion(stackId);
+                }
               }
 
               if (null != status.getConfigTags()) {
@@ -19,7 +19,10 @@ package org.apache.ambari.server.api.query;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.persistence.EntityManager;
 import javax.persistence.criteria.CriteriaBuilder;
@@ -35,6 +38,8 @@ import org.apache.ambari.server.controller.predicate.ComparisonPredicate;
 import org.apache.ambari.server.controller.predicate.PredicateVisitor;
 import org.apache.ambari.server.controller.predicate.UnaryPredicate;
 import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.SortRequest;
+import org.apache.ambari.server.controller.spi.SortRequestProperty;
 import org.apache.ambari.server.controller.utilities.PredicateHelper;
 
 /**
@@ -58,10 +63,16 @@ public abstract class JpaPredicateVisitor<T> implements PredicateVisitor {
   final private Root<T> m_root;
 
   /**
-   * The query to submit to JPA.
+   * The query to submit to JPA, {@code null} for a count query.
    */
   final private CriteriaQuery<T> m_query;
 
+  /**
+   * The query counting the matching entities, {@code null} unless the visitor
+   * was created for counting.
+   */
+  final private CriteriaQuery<Long> m_countQuery;
+
   /**
    * The entity class that the root of the query is built from.
    */
@@ -81,6 +92,18 @@ public abstract class JpaPredicateVisitor<T> implements PredicateVisitor {
   private ArrayDeque<List<javax.persistence.criteria.Predicate>> m_queue =
       new ArrayDeque<List<javax.persistence.criteria.Predicate>>();
 
+  /**
+   * The properties of comparisons which could not be converted and were left
+   * out of the JPA predicate.
+   */
+  private final Set<String> m_unconvertedPropertyIds = new HashSet<String>();
+
+  /**
+   * Whether a predicate which can not be converted at all (unary or category
+   * predicates) was left out of the JPA predicate.
+   */
+  private boolean m_unsupportedPredicate = false;
+
   /**
    * Constructor.
    *
@@ -90,11 +113,34 @@ public abstract class JpaPredicateVisitor<T> implements PredicateVisitor {
    *          the entity class being queried from.
    */
   public JpaPredicateVisitor(EntityManager entityManager, Class<T> entityClass) {
+    this(entityManager, entityClass, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param entityManager
+   *          the EM used to get a {@link CriteriaBuilder}.
+   * @param entityClass
+   *          the entity class being queried from.
+   * @param count
+   *          {@code true} to build a query counting the matching entities
+   *          (see {@link #getCountQuery()}) instead of selecting them.
+   */
+  public JpaPredicateVisitor(EntityManager entityManager, Class<T> entityClass, boolean count) {
     m_entityManager = entityManager;
     m_builder = m_entityManager.getCriteriaBuilder();
     m_entityClass = entityClass;
-    m_query = m_builder.createQuery(entityClass);
-    m_root = m_query.from(entityClass);
+    if (count) {
+      m_query = null;
+      m_countQuery = m_builder.createQuery(Long.class);
+      m_root = m_countQuery.from(entityClass);
+      m_countQuery.select(m_builder.count(m_root));
+    } else {
+      m_query = m_builder.createQuery(entityClass);
+      m_countQuery = null;
+      m_root = m_query.from(entityClass);
+    }
   }
 
   /**
@@ -129,12 +175,53 @@ public abstract class JpaPredicateVisitor<T> implements PredicateVisitor {
   /**
    * Gets the query to use along with {@link #getJpaPredicate()}.
    *
-   * @return the query (not {@code null}).
+   * @return the query, or {@code null} if the visitor was created for
+   *         counting.
    */
   public CriteriaQuery<T> getCriteriaQuery() {
     return m_query;
   }
 
+  /**
+   * Gets the count query to use along with {@link #getJpaPredicate()}.
+   *
+   * @return the count query, or {@code null} if the visitor was not created
+   *         for counting.
+   */
+  public CriteriaQuery<Long> getCountQuery() {
+    return m_countQuery;
+  }
+
+  /**
+   * Determines whether the database can be left to sort and page the results
+   * of the visited predicate. This is the case if the whole predicate was
+   * converted into the JPA predicate and every sort property is mapped;
+   * otherwise the results must be filtered in memory before they are paged.
+   *
+   * @param sortRequest
+   *          the sort request, or {@code null} for none.
+   * @param ignoredPropertyIds
+   *          properties that may be left out of the JPA predicate since they
+   *          do not narrow the result (e.g. the cluster name of entities that
+   *          are already selected by a globally unique key).
+   * @return {@code true} if the query can be sorted and paged by JPA.
+   */
+  public boolean isPageable(SortRequest sortRequest, Collection<String> ignoredPropertyIds) {
+    if (m_unsupportedPredicate || !ignoredPropertyIds.containsAll(m_unconvertedPropertyIds)) {
+      return false;
+    }
+
+    if (null != sortRequest && null != sortRequest.getProperties()) {
+      for (SortRequestProperty sort : sortRequest.getProperties()) {
+        List<? extends SingularAttribute<?, ?>> singularAttributes = getPredicateMapping(sort.getPropertyId());
+        if (null == singularAttributes || singularAttributes.isEmpty()) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
   /**
    * Gets the criteria builder used to construct the query and predicates.
    *
@@ -155,6 +242,7 @@ public abstract class JpaPredicateVisitor<T> implements PredicateVisitor {
     List<? extends SingularAttribute<?, ?>> singularAttributes = getPredicateMapping(propertyId);
 
     if (null == singularAttributes || singularAttributes.size() == 0) {
+      m_unconvertedPropertyIds.add(propertyId);
       return;
     }
 
@@ -174,6 +262,7 @@ public abstract class JpaPredicateVisitor<T> implements PredicateVisitor {
     }
 
     if (null == path) {
+      m_unconvertedPropertyIds.add(propertyId);
       return;
     }
 
@@ -203,6 +292,7 @@ public abstract class JpaPredicateVisitor<T> implements PredicateVisitor {
     }
 
     if (null == jpaPredicate) {
+      m_unconvertedPropertyIds.add(propertyId);
       return;
     }
 
@@ -259,6 +349,7 @@ public abstract class JpaPredicateVisitor<T> implements PredicateVisitor {
    */
   @Override
   public void acceptUnaryPredicate(UnaryPredicate predicate) {
+    m_unsupportedPredicate = true;
   }
 
   /**
@@ -273,5 +364,6 @@ public abstract class JpaPredicateVisitor<T> implements PredicateVisitor {
    */
   @Override
   public void acceptCategoryPredicate(CategoryPredicate predicate) {
+    m_unsupportedPredicate = true;
   }
 }
\ No newline at end of file
@@ -36,6 +36,7 @@ import org.apache.ambari.server.api.services.parsers.RequestBodyParser;
 import org.apache.ambari.server.api.services.serializers.CsvSerializer;
 import org.apache.ambari.server.api.services.serializers.JsonSerializer;
 import org.apache.ambari.server.api.services.serializers.ResultSerializer;
+import org.apache.ambari.server.api.services.serializers.StreamingJsonSerializer;
 import org.apache.ambari.server.audit.request.RequestAuditLogger;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.utils.RetryHelper;
@@ -62,7 +63,7 @@ public abstract class BaseService {
   /**
    * Result serializer.
    */
-  private ResultSerializer m_serializer = new JsonSerializer();
+  private ResultSerializer m_serializer = new StreamingJsonSerializer();
 
   protected static RequestAuditLogger requestAuditLogger;
 
@@ -184,7 +185,8 @@ public abstract class BaseService {
    */
   protected ResultSerializer getResultSerializer(final MediaType mediaType) {
 
-    final ResultSerializer serializer = getResultSerializer();
+    // these media types need the result as a whole, not streamed
+    final ResultSerializer serializer = new JsonSerializer();
 
     if (mediaType.equals(MediaType.TEXT_PLAIN_TYPE)){
       return new ResultSerializer() {
@@ -219,7 +221,7 @@ public abstract class BaseService {
   }
 
   /**
-   * Get the default serializer.
+   * Get the default serializer. Results are streamed to the client as JSON.
    *
    * @return the default serializer
    */
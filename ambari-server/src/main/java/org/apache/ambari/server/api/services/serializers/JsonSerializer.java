@@ -20,6 +20,7 @@ package org.apache.ambari.server.api.services.serializers;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.Charset;
 import java.util.LinkedHashMap;
@@ -35,6 +36,7 @@ import org.apache.ambari.server.controller.spi.Resource;
 import org.codehaus.jackson.JsonFactory;
 import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.SerializationConfig;
 import org.codehaus.jackson.util.DefaultPrettyPrinter;
 
 /**
@@ -48,7 +50,8 @@ public class JsonSerializer implements ResultSerializer {
    */
   JsonFactory m_factory = new JsonFactory();
 
-  ObjectMapper m_mapper = new ObjectMapper(m_factory);
+  ObjectMapper m_mapper = new ObjectMapper(m_factory).configure(
+      SerializationConfig.Feature.FLUSH_AFTER_WRITE_VALUE, false);
 
   /**
    * Generator which writes JSON.
@@ -59,16 +62,8 @@ public class JsonSerializer implements ResultSerializer {
   @Override
   public Object serialize(Result result) {
     try {
-      ByteArrayOutputStream bytesOut = init();
-
-      if (result.getStatus().isErrorState()) {
-        return serializeError(result.getStatus());
-      }
-
-      TreeNode<Resource> treeNode = result.getResultTree();
-      processNode(treeNode);
-      processResultMetadata(result.getResultMetadata());
-      m_generator.close();
+      ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+      serialize(result, bytesOut);
       return bytesOut.toString("UTF-8");
     } catch (IOException e) {
       //todo: exception handling.  Create ResultStatus 500 and call serializeError
@@ -79,13 +74,8 @@ public class JsonSerializer implements ResultSerializer {
   @Override
   public Object serializeError(ResultStatus error) {
     try {
-      ByteArrayOutputStream bytesOut = init();
-      //m_mapper.writeValue(m_generator, error);
-      m_generator.writeStartObject();
-      m_generator.writeNumberField("status", error.getStatus().getStatus());
-      m_generator.writeStringField("message", error.getMessage());
-      m_generator.writeEndObject();
-      m_generator.close();
+      ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+      serializeError(error, bytesOut);
       return bytesOut.toString("UTF-8");
 
     } catch (IOException e) {
@@ -94,15 +84,54 @@ public class JsonSerializer implements ResultSerializer {
     }
   }
 
-  private ByteArrayOutputStream init() throws IOException {
-    ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
-    m_generator = createJsonGenerator(bytesOut);
+  /**
+   * Serialize the given result as JSON to the given stream. Resources are
+   * written as the result tree is walked, so only the generator buffers are
+   * held in memory. The stream is flushed but not closed.
+   *
+   * @param result  internal result
+   * @param out     the stream to write to
+   *
+   * @throws IOException if writing to the stream fails
+   */
+  public void serialize(Result result, OutputStream out) throws IOException {
+    if (result.getStatus().isErrorState()) {
+      serializeError(result.getStatus(), out);
+      return;
+    }
+
+    init(out);
+    TreeNode<Resource> treeNode = result.getResultTree();
+    processNode(treeNode);
+    processResultMetadata(result.getResultMetadata());
+    m_generator.close();
+  }
+
+  /**
+   * Serialize an error result as JSON to the given stream. The stream is
+   * flushed but not closed.
+   *
+   * @param error  the error result
+   * @param out    the stream to write to
+   *
+   * @throws IOException if writing to the stream fails
+   */
+  public void serializeError(ResultStatus error, OutputStream out) throws IOException {
+    init(out);
+    //m_mapper.writeValue(m_generator, error);
+    m_generator.writeStartObject();
+    m_generator.writeNumberField("status", error.getStatus().getStatus());
+    m_generator.writeStringField("message", error.getMessage());
+    m_generator.writeEndObject();
+    m_generator.close();
+  }
+
+  private void init(OutputStream out) throws IOException {
+    m_generator = createJsonGenerator(out);
 
     DefaultPrettyPrinter p = new DefaultPrettyPrinter();
     p.indentArraysWith(new DefaultPrettyPrinter.Lf2SpacesIndenter());
     m_generator.setPrettyPrinter(p);
-
-    return bytesOut;
   }
 
   private void processResultMetadata(ResultMetadata resultMetadata) throws IOException {
@@ -245,9 +274,11 @@ public class JsonSerializer implements ResultSerializer {
     }
   }
 
-  private JsonGenerator createJsonGenerator(ByteArrayOutputStream baos) throws IOException {
-    JsonGenerator generator = m_factory.createJsonGenerator(new OutputStreamWriter(baos,
+  private JsonGenerator createJsonGenerator(OutputStream out) throws IOException {
+    JsonGenerator generator = m_factory.createJsonGenerator(new OutputStreamWriter(out,
         Charset.forName("UTF-8").newEncoder()));
+    // leave closing the stream to its owner, close() still flushes
+    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
 
     DefaultPrettyPrinter p = new DefaultPrettyPrinter();
     p.indentArraysWith(new DefaultPrettyPrinter.Lf2SpacesIndenter());
@@ -0,0 +1,64 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.api.services.serializers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.ambari.server.api.services.Result;
+import org.apache.ambari.server.api.services.ResultStatus;
+
+/**
+ * Streaming JSON serializer.
+ * Represents a result as JSON which is written straight to the response
+ * stream once the response is sent, instead of being built up in memory
+ * first. As the length of the response is not known up front, it is sent
+ * with chunked transfer encoding.
+ */
+public class StreamingJsonSerializer implements ResultSerializer {
+
+  /**
+   * @return a {@link StreamingOutput} writing the result as JSON
+   */
+  @Override
+  public Object serialize(final Result result) {
+    return new StreamingOutput() {
+      @Override
+      public void write(OutputStream output) throws IOException, WebApplicationException {
+        new JsonSerializer().serialize(result, output);
+      }
+    };
+  }
+
+  /**
+   * @return a {@link StreamingOutput} writing the error result as JSON
+   */
+  @Override
+  public Object serializeError(final ResultStatus error) {
+    return new StreamingOutput() {
+      @Override
+      public void write(OutputStream output) throws IOException, WebApplicationException {
+        new JsonSerializer().serializeError(error, output);
+      }
+    };
+  }
+}
@@ -1173,11 +1173,32 @@ public class Configuration {
 
 
   /**
-   * Enable the profiling of internal locks.
+   * Enable the profiling of internal locks. The statistics are exposed via JMX.
    */
-  @Markdown(description = "Enable the profiling of internal locks.")
+  @Markdown(description = "Enable the profiling of internal locks. The wait time, hold time and number of acquisitions of each lock are exposed via JMX as `org.apache.ambari:type=Locks`.")
   public static final ConfigurationProperty<Boolean> SERVER_LOCKS_PROFILING = new ConfigurationProperty<>("server.locks.profiling", Boolean.FALSE);
 
+  /**
+   * The number of partitions Ambari events are delivered on.
+   */
+  @Markdown(description = "The number of partitions, each served by one thread, that the Ambari event publisher delivers events on. Events of the same cluster are always delivered in order.")
+  public static final ConfigurationProperty<Integer> EVENT_PUBLISHER_PARTITIONS = new ConfigurationProperty<>(
+      "server.events.publisher.partitions", 4);
+
+  /**
+   * The number of Ambari events which can be waiting on each partition.
+   */
+  @Markdown(description = "The number of events which can be waiting on each partition of the Ambari event publisher. Publishing never blocks; events beyond this size are queued anyway and counted as overflow.<br/><br/> This property is related to `server.events.publisher.partitions`.")
+  public static final ConfigurationProperty<Integer> EVENT_PUBLISHER_QUEUE_SIZE = new ConfigurationProperty<>(
+      "server.events.publisher.queue.size", 10000);
+
+  /**
+   * The time after which handling an Ambari event is logged as slow.
+   */
+  @Markdown(description = "The time, in milliseconds, after which the handling of an Ambari event by its listeners is logged as slow to the event dead letter log.")
+  public static final ConfigurationProperty<Long> EVENT_PUBLISHER_SLOW_THRESHOLD = new ConfigurationProperty<>(
+      "server.events.publisher.slow.threshold", 10000L);
+
   /**
    * The size of the cache used to hold {@link HostRoleCommand} instances in-memory.
    */
@@ -1232,6 +1253,14 @@ public class Configuration {
   public static final ConfigurationProperty<Integer> SERVER_STALE_CONFIG_CACHE_EXPIRATION = new ConfigurationProperty<>(
       "server.cache.isStale.expiration", 600);
 
+  /**
+   * The number of configuration types, with their config group overrides
+   * merged in, whose effective properties are cached.
+   */
+  @Markdown(description = "The number of configuration types, with their config group overrides merged in, whose effective properties are cached for building commands and responses. A value of `0` disables the cache.")
+  public static final ConfigurationProperty<Integer> SERVER_EFFECTIVE_CONFIGS_CACHE_SIZE = new ConfigurationProperty<>(
+      "server.cache.effectiveConfigs.size", 5000);
+
   /**
    * The {@link PersistenceType} of the database.
    */
@@ -1746,6 +1775,15 @@ public class Configuration {
   public static final ConfigurationProperty<Long> EXECUTION_SCHEDULER_WAIT = new ConfigurationProperty<>(
       "server.execution.scheduler.wait", 1L);
 
+  /**
+   * The longest time that the action scheduler will wait before checking the
+   * commands in progress when nothing has changed. Measured in
+   * {@link TimeUnit#SECONDS}.
+   */
+  @Markdown(description = "The longest time, in seconds, that the action scheduler will wait before re-evaluating the stages in progress when no commands have been reported, no requests have been submitted and no commands are about to time out. Values not greater than `server.execution.scheduler.wait` re-evaluate the stages on every wake up.")
+  public static final ConfigurationProperty<Long> EXECUTION_SCHEDULER_IDLE_WAIT = new ConfigurationProperty<>(
+      "server.execution.scheduler.idle.wait", 10L);
+
   /**
    * The location on the Ambari Server where temporary artifacts can be created.
    */
@@ -1958,6 +1996,33 @@ public class Configuration {
   public static final ConfigurationProperty<Integer> AGENT_PACKAGE_PARALLEL_COMMANDS_LIMIT = new ConfigurationProperty<>(
       "agent.package.parallel.commands.limit", 100);
 
+  /**
+   * The number of host partitions agent heartbeats are processed in. The
+   * heartbeats of a host always go to the same partition and are processed in
+   * arrival order.
+   */
+  @Markdown(description = "The number of partitions agent heartbeats are processed in, in parallel. Heartbeats of the same host are always processed in order by the same partition. A value of `0` uses the number of available processors.")
+  public static final ConfigurationProperty<Integer> AGENT_HEARTBEAT_PROCESSING_PARTITIONS = new ConfigurationProperty<>(
+      "agent.heartbeat.processing.partitions", 0);
+
+  /**
+   * The number of heartbeats each partition queues per processing stage
+   * before agent requests block.
+   */
+  @Markdown(description = "The number of heartbeats each heartbeat processing partition queues per stage. Once full, heartbeat requests wait until the partition catches up.")
+  public static final ConfigurationProperty<Integer> AGENT_HEARTBEAT_PROCESSING_QUEUE_SIZE = new ConfigurationProperty<>(
+      "agent.heartbeat.processing.queue.size", 1000);
+
+  /**
+   * The time, in milliseconds, that the heartbeat of an agent which reports a
+   * finished command is held until the next commands for it are queued.
+   */
+  @Markdown(
+      relatedTo = "agent.threadpool.size.max",
+      description = "The time, in milliseconds, that the heartbeat of an agent which reports a finished command is held while the host has pending tasks, so that its next commands are sent in the heartbeat response instead of the following heartbeat. At most half of the agent threads wait at the same time. A value of `0` disables waiting.")
+  public static final ConfigurationProperty<Long> AGENT_COMMANDS_WAIT_TIMEOUT = new ConfigurationProperty<>(
+      "agent.commands.wait.timeout", 500L);
+
   /**
    * Server side task (default) timeout value
    */
@@ -2187,6 +2252,18 @@ public class Configuration {
   public static final ConfigurationProperty<Long> TIMELINE_METRICS_REQUEST_CATCHUP_INTERVAL = new ConfigurationProperty<>(
       "server.timeline.metrics.cache.catchup.interval", 300000L);
 
+  /**
+   * The time, in {@link TimeUnit#MILLISECONDS}, within which a cached Ambari
+   * Metrics entry that was just refreshed is served again without another
+   * request to Ambari Metrics.
+   */
+  @Markdown(
+      relatedTo = "server.timeline.metrics.cache.disabled",
+      description = "The time, in milliseconds, within which requests for a cached Ambari Metrics entry that was just refreshed are served from the cache instead of being sent to Ambari Metrics again. "
+          + "This coalesces the requests of many users viewing the same dashboard. A value of `0` disables coalescing.")
+  public static final ConfigurationProperty<Long> TIMELINE_METRICS_CACHE_COALESCE_INTERVAL = new ConfigurationProperty<>(
+      "server.timeline.metrics.cache.coalesce.interval.millis", 5000L);
+
   /**
    * The amount of heap on the Ambari Server dedicated to the caching values from Ambari Metrics.
    */
@@ -2295,6 +2372,20 @@ public class Configuration {
   public static final ConfigurationProperty<Integer> ALERTS_CACHE_SIZE = new ConfigurationProperty<>(
       "alerts.cache.size", 50000);
 
+  /**
+   * The time after which alert state changes received from the agents are
+   * written to the database together. Measured in
+   * {@link TimeUnit#MILLISECONDS}.
+   */
+  @ConfigurationMarkdown(
+      group = ConfigurationGrouping.ALERTS,
+      markdown = @Markdown(
+          relatedTo = "alerts.cache.enabled",
+          description = "The time, in milliseconds, that alert state changes received from the agents are collected before they are written to the database in a single transaction. "
+              + "Only used when current alerts are cached. A value of `0` writes the alerts of every heartbeat in its own transaction."))
+  public static final ConfigurationProperty<Integer> ALERTS_CACHE_WRITE_BEHIND_INTERVAL = new ConfigurationProperty<>(
+      "alerts.cache.write.behind.interval", 1000);
+
   /**
    * When using SSL, this will be used to set the {@code Strict-Transport-Security} response header.
    */
@@ -4397,6 +4488,14 @@ public class Configuration {
     return Integer.parseInt(getProperty(SERVER_STALE_CONFIG_CACHE_EXPIRATION));
   }
 
+  /**
+   * @return the maximum number of cached effective configuration types, or
+   *         {@code 0} if they are not cached
+   */
+  public int getEffectiveConfigsCacheSize() {
+    return Integer.parseInt(getProperty(SERVER_EFFECTIVE_CONFIGS_CACHE_SIZE));
+  }
+
   /**
    * @return a string array of suffixes used to validate repo URLs.
    */
@@ -4479,6 +4578,16 @@ public class Configuration {
     return sleepTime*1000;
   }
 
+  /**
+   * Gets the longest time that the action scheduler waits before re-evaluating
+   * the stages in progress when nothing has changed.
+   *
+   * @return the idle wait, in milliseconds.
+   */
+  public long getExecutionSchedulerIdleWait() {
+    return Long.parseLong(getProperty(EXECUTION_SCHEDULER_IDLE_WAIT)) * 1000;
+  }
+
   public Integer getExternalScriptTimeout() {
     return Integer.parseInt(getProperty(EXTERNAL_SCRIPT_TIMEOUT));
   }
@@ -4501,6 +4610,37 @@ public class Configuration {
     return getProperty(CUSTOM_ACTION_DEFINITION);
   }
 
+  /**
+   * @return the number of heartbeat processing partitions, the number of
+   *         available processors by default
+   */
+  public int getHeartbeatProcessingPartitions() {
+    int value = Integer.parseInt(getProperty(AGENT_HEARTBEAT_PROCESSING_PARTITIONS));
+    if (value < 1) {
+      value = Runtime.getRuntime().availableProcessors();
+    }
+    return value;
+  }
+
+  /**
+   * @return the time, in milliseconds, that heartbeats wait for the next
+   *         commands of their host
+   */
+  public long getAgentCommandsWaitTimeout() {
+    return Long.parseLong(getProperty(AGENT_COMMANDS_WAIT_TIMEOUT));
+  }
+
+  /**
+   * @return the number of heartbeats queued per partition and stage
+   */
+  public int getHeartbeatProcessingQueueSize() {
+    int value = Integer.parseInt(getProperty(AGENT_HEARTBEAT_PROCESSING_QUEUE_SIZE));
+    if (value < 1) {
+      value = 1;
+    }
+    return value;
+  }
+
   public int getAgentPackageParallelCommandsLimit() {
     int value = Integer.parseInt(getProperty(AGENT_PACKAGE_PARALLEL_COMMANDS_LIMIT));
     if (value < 1) {
@@ -5065,6 +5205,16 @@ public class Configuration {
     return Long.parseLong(getProperty(TIMELINE_METRICS_REQUEST_CATCHUP_INTERVAL));
   }
 
+  /**
+   * Ambari Metrics cache coalescing interval.
+   *
+   * @return the time, in milliseconds, that a refreshed cache entry is served
+   *         without requesting Ambari Metrics again.
+   */
+  public long getMetricCacheCoalesceIntervalMillis() {
+    return Long.parseLong(getProperty(TIMELINE_METRICS_CACHE_COALESCE_INTERVAL));
+  }
+
   /**
    * Percentage of total heap allocated to metrics cache, default is 15%.
    * Default heap setting for the server is 2 GB so max allocated heap size
@@ -5192,6 +5342,18 @@ public class Configuration {
     return Integer.parseInt(getProperty(ALERTS_CACHE_SIZE));
   }
 
+  /**
+   * Gets the interval at which alert state changes are written to the
+   * database, if the alert cache is enabled.
+   *
+   * @return the write behind interval in milliseconds, or {@code 0} if alerts
+   *         are written as they are received.
+   */
+  @Experimental(feature = ExperimentalFeature.ALERT_CACHING)
+  public int getAlertCacheWriteBehindInterval() {
+    return Integer.parseInt(getProperty(ALERTS_CACHE_WRITE_BEHIND_INTERVAL));
+  }
+
   /**
    * Get the ambari display URL
    * @return
@@ -5255,6 +5417,27 @@ public class Configuration {
     return Boolean.parseBoolean(getProperty(SERVER_LOCKS_PROFILING));
   }
 
+  /**
+   * @return the number of partitions of the Ambari event publisher
+   */
+  public int getEventPublisherPartitions() {
+    return Integer.parseInt(getProperty(EVENT_PUBLISHER_PARTITIONS));
+  }
+
+  /**
+   * @return the number of events which can be waiting on each partition of the Ambari event publisher
+   */
+  public int getEventPublisherQueueSize() {
+    return Integer.parseInt(getProperty(EVENT_PUBLISHER_QUEUE_SIZE));
+  }
+
+  /**
+   * @return the time, in milliseconds, after which handling an Ambari event is logged as slow
+   */
+  public long getEventPublisherSlowThreshold() {
+    return Long.parseLong(getProperty(EVENT_PUBLISHER_SLOW_THRESHOLD));
+  }
+
   /**
    * @return the capacity of async audit logger
    */
@@ -220,8 +220,19 @@ public class AlertHistoryResourceProvider extends ReadOnlyResourceProvider imple
       throws SystemException, UnsupportedPropertyException,
       NoSuchResourceException, NoSuchParentResourceException {
 
+    Set<Resource> results = getResources(request, predicate);
+
+    // predicates and sorts which JPA can't express leave the paging to the
+    // cluster controller
+    AlertHistoryRequest historyRequest = new AlertHistoryRequest();
+    historyRequest.Predicate = predicate;
+    historyRequest.Sort = request.getSortRequest();
+    if (!s_dao.isPageable(historyRequest)) {
+      return new QueryResponseImpl(results);
+    }
+
     return new QueryResponseImpl(
-        getResources(request, predicate),
+        results,
         request.getSortRequest() != null,
         request.getPageRequest() != null,
         s_dao.getCount(predicate));
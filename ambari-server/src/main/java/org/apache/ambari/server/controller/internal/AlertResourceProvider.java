@@ -157,9 +157,20 @@ public class AlertResourceProvider extends ReadOnlyResourceProvider implements
       throws SystemException, UnsupportedPropertyException, NoSuchResourceException,
       NoSuchParentResourceException {
 
-    return new QueryResponseImpl(getResources(request, predicate),
+    Set<Resource> results = getResources(request, predicate);
+
+    // predicates and sorts which JPA can't express leave the paging to the
+    // cluster controller
+    AlertCurrentRequest alertCurrentRequest = new AlertCurrentRequest();
+    alertCurrentRequest.Predicate = predicate;
+    alertCurrentRequest.Sort = request.getSortRequest();
+    if (!alertsDAO.isPageable(alertCurrentRequest)) {
+      return new QueryResponseImpl(results);
+    }
+
+    return new QueryResponseImpl(results,
         request.getSortRequest() != null, request.getPageRequest() != null,
-        alertsDAO.getCount(predicate));
+        alertsDAO.getCurrentCount(predicate));
   }
 
   @Override
@@ -30,9 +30,11 @@ import org.apache.ambari.server.StaticallyInject;
 import org.apache.ambari.server.actionmanager.HostRoleCommand;
 import org.apache.ambari.server.actionmanager.HostRoleCommandFactory;
 import org.apache.ambari.server.controller.AmbariManagementController;
+import org.apache.ambari.server.controller.spi.ExtendedResourceProvider;
 import org.apache.ambari.server.controller.spi.NoSuchParentResourceException;
 import org.apache.ambari.server.controller.spi.NoSuchResourceException;
 import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.QueryResponse;
 import org.apache.ambari.server.controller.spi.Request;
 import org.apache.ambari.server.controller.spi.RequestStatus;
 import org.apache.ambari.server.controller.spi.Resource;
@@ -51,7 +53,7 @@ import com.google.inject.Inject;
  * Resource provider for task resources.
  */
 @StaticallyInject
-public class TaskResourceProvider extends AbstractControllerResourceProvider {
+public class TaskResourceProvider extends AbstractControllerResourceProvider implements ExtendedResourceProvider {
 
   // ----- Property ID constants ---------------------------------------------
 
@@ -144,6 +146,36 @@ public class TaskResourceProvider extends AbstractControllerResourceProvider {
     super(propertyIds, keyPropertyIds, managementController);
   }
 
+  // ----- ExtendedResourceProvider ----------------------------------------
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Tasks are sorted and paged in the database whenever the predicate allows
+   * it, in which case the response carries the total number of tasks.
+   */
+  @Override
+  public QueryResponse queryForResources(Request request, Predicate predicate)
+      throws SystemException, UnsupportedPropertyException, NoSuchResourceException,
+      NoSuchParentResourceException {
+
+    boolean pageable = s_dao.isPageable(request, predicate);
+    Set<Resource> results = getResources(request, predicate);
+    if (!pageable) {
+      return new QueryResponseImpl(results);
+    }
+
+    // tasks of a topology request which are not persisted yet come from the
+    // TopologyManager and are left to be paged by the cluster controller
+    int total = s_dao.getCount(predicate);
+    if (total == 0) {
+      return new QueryResponseImpl(results);
+    }
+
+    return new QueryResponseImpl(results, request.getSortRequest() != null,
+        request.getPageRequest() != null, total);
+  }
+
   // ----- ResourceProvider ------------------------------------------------
 
   @Override
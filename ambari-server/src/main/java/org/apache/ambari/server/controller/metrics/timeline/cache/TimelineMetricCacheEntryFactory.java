@@ -26,6 +26,8 @@ import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.internal.URLStreamProvider;
 import org.apache.ambari.server.controller.metrics.timeline.MetricsRequestHelper;
 import org.apache.ambari.server.controller.spi.TemporalInfo;
+import org.apache.ambari.server.metrics.system.impl.MetricsCacheMetricsSource;
+import org.apache.ambari.server.metrics.system.impl.RegistryMetricsSource;
 import org.apache.hadoop.metrics2.sink.timeline.Precision;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
@@ -33,6 +35,9 @@ import org.apache.http.client.utils.URIBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Timer;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
@@ -46,6 +51,12 @@ public class TimelineMetricCacheEntryFactory implements UpdatingCacheEntryFactor
   private MetricsRequestHelper requestHelperForGets;
   private MetricsRequestHelper requestHelperForUpdates;
   private final Long BUFFER_TIME_DIFF_CATCHUP_INTERVAL;
+  // Entries refreshed within this interval are served without another fetch
+  private final long COALESCE_INTERVAL;
+
+  private final Timer fetchLatency;
+  private final Counter fetchedRequests;
+  private final Counter coalescedRequests;
 
   @Inject
   public TimelineMetricCacheEntryFactory(Configuration configuration) {
@@ -63,6 +74,22 @@ public class TimelineMetricCacheEntryFactory implements UpdatingCacheEntryFactor
       ComponentSSLConfiguration.instance()));
 
     BUFFER_TIME_DIFF_CATCHUP_INTERVAL = configuration.getMetricRequestBufferTimeCatchupInterval();
+    COALESCE_INTERVAL = configuration.getMetricCacheCoalesceIntervalMillis();
+
+    fetchLatency = RegistryMetricsSource.register(MetricsCacheMetricsSource.class,
+      "fetch.latency", new Timer());
+    fetchedRequests = RegistryMetricsSource.register(MetricsCacheMetricsSource.class,
+      "requests.fetched", new Counter());
+    coalescedRequests = RegistryMetricsSource.register(MetricsCacheMetricsSource.class,
+      "requests.coalesced", new Counter());
+    RegistryMetricsSource.register(MetricsCacheMetricsSource.class, "requests.coalesced.ratio", new Gauge<Double>() {
+      @Override
+      public Double getValue() {
+        long coalesced = coalescedRequests.getCount();
+        long total = coalesced + fetchedRequests.getCount();
+        return total == 0 ? 0.0 : (double) coalesced / total;
+      }
+    });
   }
 
   /**
@@ -81,7 +108,7 @@ public class TimelineMetricCacheEntryFactory implements UpdatingCacheEntryFactor
     TimelineMetrics timelineMetrics = null;
     try {
       URIBuilder uriBuilder = new URIBuilder(metricCacheKey.getSpec());
-      timelineMetrics = requestHelperForGets.fetchTimelineMetrics(uriBuilder,
+      timelineMetrics = fetchTimelineMetrics(requestHelperForGets, uriBuilder,
         metricCacheKey.getTemporalInfo().getStartTimeMillis(),
         metricCacheKey.getTemporalInfo().getEndTimeMillis());
     } catch (IOException io) {
@@ -135,6 +162,17 @@ public class TimelineMetricCacheEntryFactory implements UpdatingCacheEntryFactor
     Precision requestedPrecision = Precision.getPrecision(requestedStartTime, requestedEndTime);
     Precision currentPrecision = existingMetrics.getPrecision();
 
+    // Requests for the same key are serialized by the cache, so everyone
+    // queued behind a refresh would fetch the same delta again: serve them
+    // the freshly updated entry instead, as long as it covers their window
+    if (isRecentlyRefreshed(existingMetrics) && requestedPrecision.equals(currentPrecision)
+        && getMillisecondsTime(requestedStartTime) >= getMillisecondsTime(existingSeriesStartTime)
+        && getMillisecondsTime(requestedEndTime) <= getMillisecondsTime(existingSeriesEndTime) + COALESCE_INTERVAL) {
+      LOG.debug("Coalescing request with refresh at " + new Date(existingMetrics.getRefreshTime()));
+      coalescedRequests.inc();
+      return;
+    }
+
     Long newStartTime = null;
     Long newEndTime = null;
     if(!requestedPrecision.equals(currentPrecision)) {
@@ -171,7 +209,7 @@ public class TimelineMetricCacheEntryFactory implements UpdatingCacheEntryFactor
       uriBuilder.setParameter("precision",requestedPrecision.toString());
 
       try {
-        TimelineMetrics newTimeSeries = requestHelperForUpdates.fetchTimelineMetrics(uriBuilder, newStartTime, newEndTime);
+        TimelineMetrics newTimeSeries = fetchTimelineMetrics(requestHelperForUpdates, uriBuilder, newStartTime, newEndTime);
 
         // Update existing time series with new values
         updateTimelineMetricsInCache(newTimeSeries, existingMetrics,
@@ -182,6 +220,7 @@ public class TimelineMetricCacheEntryFactory implements UpdatingCacheEntryFactor
         existingMetrics.setStartTime(requestedStartTime);
         existingMetrics.setEndTime(requestedEndTime);
         existingMetrics.setPrecision(requestedPrecision);
+        existingMetrics.setRefreshTime(System.currentTimeMillis());
 
       } catch (IOException io) {
         if (LOG.isDebugEnabled()) {
@@ -196,6 +235,25 @@ public class TimelineMetricCacheEntryFactory implements UpdatingCacheEntryFactor
     }
   }
 
+  /**
+   * Fetch metrics from AMS, accounting for the latency of the request.
+   */
+  private TimelineMetrics fetchTimelineMetrics(MetricsRequestHelper requestHelper,
+      URIBuilder uriBuilder, Long startTime, Long endTime) throws IOException {
+    fetchedRequests.inc();
+    Timer.Context context = fetchLatency.time();
+    try {
+      return requestHelper.fetchTimelineMetrics(uriBuilder, startTime, endTime);
+    } finally {
+      context.stop();
+    }
+  }
+
+  private boolean isRecentlyRefreshed(TimelineMetricsCacheValue value) {
+    return COALESCE_INTERVAL > 0 &&
+      System.currentTimeMillis() - value.getRefreshTime() < COALESCE_INTERVAL;
+  }
+
   /**
    * Update cache with new timeseries data
    */
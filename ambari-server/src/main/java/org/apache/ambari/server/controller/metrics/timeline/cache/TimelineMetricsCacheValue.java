@@ -33,12 +33,15 @@ public class TimelineMetricsCacheValue {
   // Same metrics could be requested across hosts
   private TimelineMetrics timelineMetrics = new TimelineMetrics();
   private Precision precision;
+  // Wall clock time of the last fetch from AMS
+  private volatile long refreshTime;
 
   public TimelineMetricsCacheValue(Long startTime, Long endTime, TimelineMetrics timelineMetrics, Precision precision) {
     this.startTime = startTime;
     this.endTime = endTime;
     this.timelineMetrics = timelineMetrics;
     this.precision = precision;
+    this.refreshTime = System.currentTimeMillis();
   }
 
   public TimelineMetrics getTimelineMetrics() {
@@ -106,4 +109,15 @@ public class TimelineMetricsCacheValue {
   public void setPrecision(Precision precision) {
     this.precision = precision;
   }
+
+  /**
+   * @return the time, in milliseconds, this value was last fetched from AMS
+   */
+  public long getRefreshTime() {
+    return refreshTime;
+  }
+
+  public void setRefreshTime(long refreshTime) {
+    this.refreshTime = refreshTime;
+  }
 }
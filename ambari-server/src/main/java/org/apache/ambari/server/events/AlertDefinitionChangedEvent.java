@@ -51,4 +51,14 @@ public class AlertDefinitionChangedEvent extends ClusterEvent {
   public AlertDefinition getDefinition() {
     return m_definition;
   }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Delivered after the registration of the definition.
+   */
+  @Override
+  public Object getPartitionKey() {
+    return m_definition.getDefinitionId();
+  }
 }
@@ -52,4 +52,14 @@ public class AlertDefinitionDeleteEvent extends ClusterEvent {
   public AlertDefinition getDefinition() {
     return m_definition;
   }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Delivered after every earlier event of the definition.
+   */
+  @Override
+  public Object getPartitionKey() {
+    return m_definition.getDefinitionId();
+  }
 }
@@ -51,4 +51,14 @@ public class AlertDefinitionDisabledEvent extends ClusterEvent {
   public long getDefinitionId() {
     return m_definitionId;
   }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Keyed by the definition, like its registration and changes.
+   */
+  @Override
+  public Object getPartitionKey() {
+    return m_definitionId;
+  }
 }
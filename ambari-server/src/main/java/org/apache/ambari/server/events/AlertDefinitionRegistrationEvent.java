@@ -54,4 +54,15 @@ public class AlertDefinitionRegistrationEvent extends ClusterEvent {
   public AlertDefinition getDefinition() {
     return m_definition;
   }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Ordered with the later events of the same alert definition only; the
+   * definitions of a cluster are spread over all partitions.
+   */
+  @Override
+  public Object getPartitionKey() {
+    return m_definition.getDefinitionId();
+  }
 }
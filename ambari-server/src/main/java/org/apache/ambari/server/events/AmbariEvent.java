@@ -167,6 +167,32 @@ public abstract class AmbariEvent {
     return m_eventType;
   }
 
+  /**
+   * Gets the key which orders this event relative to other events. Events
+   * with the same key are delivered to the listeners in the order they were
+   * published, while events with different keys may be delivered in parallel.
+   * Events without a key are delivered in order with every other event.
+   * <p/>
+   * The keys follow the ordering the listeners rely on:
+   * <ul>
+   * <li>cluster events are keyed by cluster; the
+   * {@code HostVersionOutOfSyncListener} relies on the service, component and
+   * host membership events of a cluster being delivered in order, and the
+   * alert listeners on a service being installed before it is removed</li>
+   * <li>alert definition events are keyed by definition; their listeners only
+   * rely on the lifecycle of a single definition</li>
+   * <li>host events and events which are not scoped to a single cluster have
+   * no key, so that for instance a host is registered before the cluster events
+   * about it are delivered</li>
+   * </ul>
+   *
+   * @return the key, or {@code null} for events which must be ordered with all
+   *         other events.
+   */
+  public Object getPartitionKey() {
+    return null;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -47,6 +47,7 @@ import org.apache.ambari.server.state.Clusters;
 import org.apache.ambari.server.state.ConfigHelper;
 import org.apache.ambari.server.state.MaintenanceState;
 import org.apache.ambari.server.state.alert.SourceType;
+import org.apache.ambari.server.state.services.AlertWriteBehindService;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.math.NumberUtils;
 import org.slf4j.Logger;
@@ -98,6 +99,13 @@ public class AlertReceivedListener {
   @Inject
   private Provider<MaintenanceStateHelper> m_maintenanceStateHelper;
 
+  /**
+   * Used to write state changes to the database in batches when the alert
+   * cache is enabled.
+   */
+  @Inject
+  private Provider<AlertWriteBehindService> m_alertWriteBehindService;
+
   /**
    * Receives and publishes {@link AlertEvent} instances.
    */
@@ -342,6 +350,16 @@ public class AlertReceivedListener {
       }
     }
 
+    // when write-behind is running, the state changes are written and their
+    // events are broadcast with the next batch
+    if (m_alertWriteBehindService.get().offer(toCreateHistoryAndMerge, alertEvents)) {
+      for (AlertCurrentEntity entity : toMerge) {
+        m_alertsDao.merge(entity, true);
+      }
+
+      return;
+    }
+
     // invokes the EntityManager create/merge on various entities in a single
     // transaction
     saveEntities(toMerge, toCreateHistoryAndMerge);
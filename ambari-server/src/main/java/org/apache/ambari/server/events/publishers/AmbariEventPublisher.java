@@ -17,25 +17,34 @@
  */
 package org.apache.ambari.server.events.publishers;
 
-import java.util.concurrent.Executors;
-
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.events.AmbariEvent;
 
-import com.google.common.eventbus.AsyncEventBus;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
+import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
 /**
  * The {@link AmbariEventPublisher} is used to publish instances of
  * {@link AmbariEvent} to any {@link Subscribe} methods interested. It uses a
- * single-threaded {@link AsyncEventBus}.
+ * {@link PartitionedEventBus} which delivers the events of the same cluster in
+ * order, while those of different clusters (and of different alert
+ * definitions) are delivered in parallel. See
+ * {@link AmbariEvent#getPartitionKey()} for the ordering listeners can rely
+ * on.
  */
 @Singleton
 public class AmbariEventPublisher {
 
   /**
-   * A single threaded event bus for processing Ambari events in serial.
+   * The name of the event bus.
+   */
+  private static final String EVENT_BUS_NAME = "ambari-event-bus";
+
+  /**
+   * A partitioned event bus for processing Ambari events in serial per
+   * partition key.
    */
   private final EventBus m_eventBus;
 
@@ -43,8 +52,26 @@ public class AmbariEventPublisher {
    * Constructor.
    */
   public AmbariEventPublisher() {
-    m_eventBus = new AsyncEventBus("ambari-event-bus",
-        Executors.newSingleThreadExecutor());
+    this(Configuration.EVENT_PUBLISHER_PARTITIONS.getDefaultValue(),
+        Configuration.EVENT_PUBLISHER_QUEUE_SIZE.getDefaultValue(),
+        Configuration.EVENT_PUBLISHER_SLOW_THRESHOLD.getDefaultValue());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param configuration
+   *          the configuration with the partitioning of the event bus.
+   */
+  @Inject
+  public AmbariEventPublisher(Configuration configuration) {
+    this(configuration.getEventPublisherPartitions(),
+        configuration.getEventPublisherQueueSize(),
+        configuration.getEventPublisherSlowThreshold());
+  }
+
+  private AmbariEventPublisher(int partitions, int queueSize, long slowThreshold) {
+    m_eventBus = new PartitionedEventBus(EVENT_BUS_NAME, partitions, queueSize, slowThreshold);
   }
 
   /**
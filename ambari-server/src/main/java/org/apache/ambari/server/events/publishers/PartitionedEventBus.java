@@ -0,0 +1,363 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.events.publishers;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ambari.server.events.AmbariEvent;
+import org.apache.ambari.server.metrics.system.impl.EventMetricsSource;
+import org.apache.ambari.server.metrics.system.impl.RegistryMetricsSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Timer;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.SubscriberExceptionContext;
+import com.google.common.eventbus.SubscriberExceptionHandler;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * The {@link PartitionedEventBus} is an {@link EventBus} which delivers events
+ * asynchronously on a fixed number of partitions, each served by a single
+ * thread. Events are assigned to a partition by their
+ * {@link AmbariEvent#getPartitionKey()}, so events with the same key are
+ * delivered in the order they were published, while events with different keys
+ * can be delivered in parallel. Listeners which are not annotated with
+ * {@link com.google.common.eventbus.AllowConcurrentEvents} are still never
+ * invoked concurrently.
+ * <p/>
+ * Events without a key are delivered in order with all other events, as on a
+ * single threaded bus: every partition first delivers the events published
+ * before, then waits while the event is delivered. These events should be
+ * rare, since they stall the whole bus.
+ * <p/>
+ * Publishing never blocks, since publishers often hold cluster locks which the
+ * listeners need. Once the queue of a partition is full, further events are
+ * queued beyond its size and counted as overflow until the partition catches
+ * up.
+ * <p/>
+ * Listeners which throw an exception and events which take longer than the
+ * configured threshold to be handled are logged to the {@code eventdeadletter}
+ * log.
+ */
+final class PartitionedEventBus extends EventBus {
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(PartitionedEventBus.class);
+
+  /**
+   * Log of the events which failed or took too long to be handled.
+   */
+  private static final Logger DEAD_LETTER_LOG = LoggerFactory.getLogger("eventdeadletter");
+
+  /**
+   * The name of the bus, used for thread and metric names.
+   */
+  private final String m_name;
+
+  private final Partition[] m_partitions;
+
+  /**
+   * Queues events without a key on all partitions in the same order, so that
+   * the partitions can't wait for each other.
+   */
+  private final Object m_unkeyedLock = new Object();
+
+  /**
+   * Events taking longer than this to be handled are logged.
+   */
+  private final long m_slowDispatchNanos;
+
+  /**
+   * The number of events queued beyond the size of a full partition.
+   */
+  private final Counter m_queueFull;
+
+  /**
+   * Time taken to handle an event by all of its listeners, by event class.
+   */
+  private final ConcurrentMap<Class<?>, Timer> m_dispatchTimers = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor.
+   *
+   * @param name
+   *          the name of the bus.
+   * @param partitions
+   *          the number of partitions (at least 1).
+   * @param queueSize
+   *          the number of events which can be waiting on each partition.
+   * @param slowDispatchMillis
+   *          the time after which the handling of an event is logged as slow.
+   */
+  PartitionedEventBus(String name, int partitions, int queueSize, long slowDispatchMillis) {
+    super(new DeadLetterExceptionHandler());
+
+    m_name = name;
+    m_slowDispatchNanos = TimeUnit.MILLISECONDS.toNanos(slowDispatchMillis);
+    m_partitions = new Partition[Math.max(1, partitions)];
+    for (int i = 0; i < m_partitions.length; i++) {
+      m_partitions[i] = new Partition(name + "-" + i, queueSize);
+    }
+
+    LOG.info("Delivering {} events on {} partitions", name, m_partitions.length);
+
+    m_queueFull = RegistryMetricsSource.register(EventMetricsSource.class, name + ".queue.full", new Counter());
+    RegistryMetricsSource.register(EventMetricsSource.class, name + ".queue.size", new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        int size = 0;
+        for (Partition partition : m_partitions) {
+          size += partition.m_size.get();
+        }
+        return size;
+      }
+    });
+    RegistryMetricsSource.register(EventMetricsSource.class, name + ".queue.size.max", new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        int max = 0;
+        for (Partition partition : m_partitions) {
+          max = Math.max(max, partition.m_size.get());
+        }
+        return max;
+      }
+    });
+  }
+
+  /**
+   * Queues the event on its partition.
+   */
+  @Override
+  public void post(Object event) {
+    Object key = event instanceof AmbariEvent ? ((AmbariEvent) event).getPartitionKey() : null;
+    if (null == key && m_partitions.length > 1) {
+      postToAllPartitions(event);
+      return;
+    }
+
+    m_partitions[getPartition(key, m_partitions.length)].submit(event);
+  }
+
+  /**
+   * Queues an event on every partition. The first partition delivers it once
+   * all partitions have reached it; the others wait until it was delivered.
+   * The queue bounds are not applied, since a publisher holding the lock must
+   * not wait for a partition whose listener waits for the lock.
+   */
+  private void postToAllPartitions(final Object event) {
+    final CountDownLatch arrived = new CountDownLatch(m_partitions.length);
+    final CountDownLatch delivered = new CountDownLatch(1);
+
+    synchronized (m_unkeyedLock) {
+      for (int i = 0; i < m_partitions.length; i++) {
+        final boolean deliver = i == 0;
+        boolean queued = m_partitions[i].execute(event, false, new Runnable() {
+          @Override
+          public void run() {
+            arrived.countDown();
+            if (!deliver) {
+              awaitUninterruptibly(delivered);
+              return;
+            }
+
+            awaitUninterruptibly(arrived);
+            try {
+              dispatch(event);
+            } finally {
+              delivered.countDown();
+            }
+          }
+        });
+
+        if (!queued) {
+          arrived.countDown();
+          if (deliver) {
+            delivered.countDown();
+          }
+        }
+      }
+    }
+  }
+
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        latch.await();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Gets the partition that events with the specified key are delivered on.
+   *
+   * @param key
+   *          the partition key, or {@code null}.
+   * @param partitions
+   *          the number of partitions.
+   * @return the partition index.
+   */
+  static int getPartition(Object key, int partitions) {
+    if (null == key) {
+      return 0;
+    }
+
+    return (key.hashCode() & Integer.MAX_VALUE) % partitions;
+  }
+
+  /**
+   * Delivers the event to the listeners on the current thread.
+   */
+  private void dispatch(Object event) {
+    long start = System.nanoTime();
+    try {
+      super.post(event);
+    } finally {
+      long elapsed = System.nanoTime() - start;
+      getDispatchTimer(event.getClass()).update(elapsed, TimeUnit.NANOSECONDS);
+      if (elapsed > m_slowDispatchNanos) {
+        DEAD_LETTER_LOG.warn("{} took {} ms to be handled by the listeners of {}", event,
+            TimeUnit.NANOSECONDS.toMillis(elapsed), m_name);
+      }
+    }
+  }
+
+  private Timer getDispatchTimer(Class<?> eventClass) {
+    Timer timer = m_dispatchTimers.get(eventClass);
+    if (null == timer) {
+      timer = new Timer();
+      Timer existing = m_dispatchTimers.putIfAbsent(eventClass, timer);
+      if (null != existing) {
+        return existing;
+      }
+
+      RegistryMetricsSource.register(EventMetricsSource.class,
+          m_name + ".dispatch." + eventClass.getSimpleName(), timer);
+    }
+
+    return timer;
+  }
+
+  /**
+   * A single threaded queue of events, which overflows once it holds more
+   * events than its size.
+   */
+  private final class Partition {
+    private final ExecutorService m_executor;
+    private final Semaphore m_permits;
+    private final AtomicInteger m_size = new AtomicInteger();
+
+    /**
+     * Set while the partition is over its size, so that the overflow is only
+     * logged once each time the partition fills up.
+     */
+    private final AtomicBoolean m_overflowing = new AtomicBoolean();
+
+    private Partition(String threadName, int queueSize) {
+      m_executor = Executors.newSingleThreadExecutor(
+          new ThreadFactoryBuilder().setNameFormat(threadName).build());
+      m_permits = new Semaphore(Math.max(1, queueSize));
+    }
+
+    private void submit(final Object event) {
+      // waiting for room could deadlock with listeners needing the locks
+      // held by the publisher, so a full partition overflows instead
+      final boolean bounded = m_permits.tryAcquire();
+      if (bounded) {
+        m_overflowing.set(false);
+      } else {
+        m_queueFull.inc();
+        if (m_overflowing.compareAndSet(false, true)) {
+          LOG.warn("The {} events waiting on {} exceed its queue size, queueing {} anyway",
+              m_size.get(), m_name, event);
+        }
+      }
+
+      execute(event, bounded, new Runnable() {
+        @Override
+        public void run() {
+          dispatch(event);
+        }
+      });
+    }
+
+    /**
+     * Queues a task delivering the event.
+     *
+     * @return {@code false} if the task could not be queued.
+     */
+    private boolean execute(Object event, final boolean bounded, final Runnable task) {
+      m_size.incrementAndGet();
+      try {
+        m_executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            m_size.decrementAndGet();
+            if (bounded) {
+              m_permits.release();
+            }
+
+            task.run();
+          }
+        });
+        return true;
+      } catch (RejectedExecutionException e) {
+        m_size.decrementAndGet();
+        if (bounded) {
+          m_permits.release();
+        }
+
+        DEAD_LETTER_LOG.error("{} could not be queued on {}", event, m_name, e);
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Logs the listeners failing to handle an event to the dead letter log.
+   */
+  private static final class DeadLetterExceptionHandler implements SubscriberExceptionHandler {
+    @Override
+    public void handleException(Throwable exception, SubscriberExceptionContext context) {
+      DEAD_LETTER_LOG.error("{}#{} failed to handle {}",
+          context.getSubscriber().getClass().getName(),
+          context.getSubscriberMethod().getName(), context.getEvent(), exception);
+    }
+  }
+}
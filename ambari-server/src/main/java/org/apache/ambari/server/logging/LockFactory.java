@@ -17,13 +17,20 @@
  */
 package org.apache.ambari.server.logging;
 
-import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import org.apache.ambari.server.configuration.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,22 +43,34 @@ import com.google.inject.Singleton;
  * Factory to create locks depending on configuration.  If lock profiling is enabled,
  * it creates instrumented locks that collect statistics and log requests.  If profiling is
  * disabled, it creates regular reentrant locks.
+ * <p>
+ * With profiling enabled, the statistics of all locks are also exposed via JMX
+ * as {@value #MBEAN_NAME}, aggregated by lock name.
  *
  * @see Configuration#isServerLocksProfilingEnabled()
  */
 @Singleton
-public class LockFactory {
+public class LockFactory implements LockStatisticsMXBean {
 
   private static final Logger LOG = LoggerFactory.getLogger(LockFactory.class);
 
+  static final String MBEAN_NAME = "org.apache.ambari:type=Locks";
+
   private final boolean profiling;
-  private final Set<ProfiledLock> profiledLocks;
+
+  /**
+   * Profiled locks mapped to the name their statistics are reported under.
+   */
+  private final ConcurrentMap<ProfiledLock, String> profiledLocks;
 
   @Inject
   public LockFactory(Configuration config) {
     profiling = config.isServerLocksProfilingEnabled();
-    profiledLocks = profiling ? new CopyOnWriteArraySet<ProfiledLock>() : null;
+    profiledLocks = profiling ? new ConcurrentHashMap<ProfiledLock, String>() : null;
     LOG.info("Lock profiling is {}", profiling ? "enabled" : "disabled");
+    if (profiling) {
+      registerMBean();
+    }
   }
 
   /**
@@ -68,7 +87,7 @@ public class LockFactory {
     ReentrantLock baseLock = new ReentrantLock();
     if (profiling) {
       ProfiledReentrantLock profiledLock = new ProfiledReentrantLock(baseLock, Ticker.systemTicker(), label);
-      profiledLocks.add(profiledLock);
+      profiledLocks.put(profiledLock, profiledLock.getLabel().trim());
       return profiledLock;
     }
     return baseLock;
@@ -88,8 +107,8 @@ public class LockFactory {
     ReentrantReadWriteLock baseLock = new ReentrantReadWriteLock();
     if (profiling) {
       ProfiledReentrantReadWriteLock profiledLock = new ProfiledReentrantReadWriteLock(baseLock, Ticker.systemTicker(), label);
-      profiledLocks.add(profiledLock.readLock());
-      profiledLocks.add(profiledLock.writeLock());
+      profiledLocks.put(profiledLock.readLock(), profiledLock.readLock().getLabel().trim() + " (read)");
+      profiledLocks.put(profiledLock.writeLock(), profiledLock.writeLock().getLabel().trim() + " (write)");
       return profiledLock;
     }
     return baseLock;
@@ -102,7 +121,7 @@ public class LockFactory {
   public void debugDump(StringBuilder sb) {
     if (profiling) {
       sb.append("\n\t\tLocks: [");
-      for (ProfiledLock lock : profiledLocks) {
+      for (ProfiledLock lock : profiledLocks.keySet()) {
         sb.append("\n\t\t\t").append(lock.getLabel())
           .append(lock)
           .append(" waited: ").append(lock.getTimeSpentWaitingForLock())
@@ -116,6 +135,73 @@ public class LockFactory {
     }
   }
 
+  // ----- LockStatisticsMXBean ---------------------------------------------
+
+  @Override
+  public Map<String, Long> getTimeSpentWaitingForLock() {
+    Map<String, Long> result = new TreeMap<>();
+    if (profiling) {
+      for (Map.Entry<ProfiledLock, String> entry : profiledLocks.entrySet()) {
+        add(result, entry.getValue(), sum(entry.getKey().getTimeSpentWaitingForLock()));
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public Map<String, Long> getTimeSpentLocked() {
+    Map<String, Long> result = new TreeMap<>();
+    if (profiling) {
+      for (Map.Entry<ProfiledLock, String> entry : profiledLocks.entrySet()) {
+        add(result, entry.getValue(), sum(entry.getKey().getTimeSpentLocked()));
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public Map<String, Long> getLockCount() {
+    Map<String, Long> result = new TreeMap<>();
+    if (profiling) {
+      for (Map.Entry<ProfiledLock, String> entry : profiledLocks.entrySet()) {
+        add(result, entry.getValue(), sum(entry.getKey().getLockCount()));
+      }
+    }
+    return result;
+  }
+
+  private static long sum(Map<String, ? extends Number> valuesByThread) {
+    long sum = 0;
+    for (Number value : valuesByThread.values()) {
+      sum += value.longValue();
+    }
+    return sum;
+  }
+
+  private static void add(Map<String, Long> result, String name, long value) {
+    Long current = result.get(name);
+    result.put(name, current == null ? value : current + value);
+  }
+
+  /**
+   * Registers the lock statistics with the platform MBean server, replacing
+   * those of a previously created factory.
+   */
+  private void registerMBean() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(MBEAN_NAME);
+      try {
+        server.registerMBean(this, name);
+      } catch (InstanceAlreadyExistsException e) {
+        server.unregisterMBean(name);
+        server.registerMBean(this, name);
+      }
+    } catch (Exception e) {
+      LOG.warn("Unable to register lock statistics with JMX", e);
+    }
+  }
+
   private static String getDefaultPrefix() {
     StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
     // 0: getStackTrace()
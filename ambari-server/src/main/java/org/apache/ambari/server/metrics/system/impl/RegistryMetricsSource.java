@@ -0,0 +1,132 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.metrics.system.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.metrics.system.MetricsSink;
+import org.apache.ambari.server.metrics.system.SingleMetric;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+/**
+ * {@link RegistryMetricsSource} periodically publishes the gauges, counters and
+ * timers of a {@link MetricRegistry} to the Metrics Sink. Every subclass has
+ * its own registry, which server components register their metrics on through
+ * {@link #register(Class, String, Metric)}.
+ */
+public abstract class RegistryMetricsSource extends AbstractMetricsSource {
+  private static Logger LOG = LoggerFactory.getLogger(RegistryMetricsSource.class);
+  private static final ConcurrentMap<Class<? extends RegistryMetricsSource>, MetricRegistry> registries =
+      new ConcurrentHashMap<>();
+  private ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
+  private int interval = 10;
+
+  /**
+   * @return the registry the metrics of the given source are registered on
+   */
+  public static MetricRegistry getRegistry(Class<? extends RegistryMetricsSource> source) {
+    MetricRegistry registry = registries.get(source);
+    if (registry == null) {
+      registries.putIfAbsent(source, new MetricRegistry());
+      registry = registries.get(source);
+    }
+    return registry;
+  }
+
+  /**
+   * Register a metric of the given source, replacing one registered earlier
+   * under the same name (e.g. by a previous instance of the component).
+   */
+  public static <T extends Metric> T register(Class<? extends RegistryMetricsSource> source,
+                                              String name, T metric) {
+    MetricRegistry registry = getRegistry(source);
+    registry.remove(name);
+    return registry.register(name, metric);
+  }
+
+  /**
+   * @return the registry to publish the metrics of
+   */
+  protected MetricRegistry getMetricRegistry() {
+    return getRegistry(getClass());
+  }
+
+  @Override
+  public void init(MetricsConfiguration configuration, MetricsSink sink) {
+    super.init(configuration, sink);
+    interval = Integer.parseInt(configuration.getProperty("interval", "10"));
+    LOG.info("{} initialized.", getClass().getSimpleName());
+  }
+
+  @Override
+  public void start() {
+    LOG.info("Starting {}...", getClass().getSimpleName());
+    try {
+      executor.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          sink.publish(getMetrics());
+          LOG.debug("********* Published {} metrics to sink **********", getClass().getSimpleName());
+        }
+      }, interval, interval, TimeUnit.SECONDS);
+    } catch (Exception e) {
+      LOG.info("Throwing exception when starting metric source", e);
+    }
+  }
+
+  public List<SingleMetric> getMetrics() {
+    MetricRegistry registry = getMetricRegistry();
+    List<SingleMetric> metrics = new ArrayList<>();
+    long now = System.currentTimeMillis();
+
+    for (Map.Entry<String, Gauge> entry : registry.getGauges().entrySet()) {
+      Number value = (Number) entry.getValue().getValue();
+      metrics.add(new SingleMetric(entry.getKey(), value.doubleValue(), now));
+    }
+    for (Map.Entry<String, Counter> entry : registry.getCounters().entrySet()) {
+      metrics.add(new SingleMetric(entry.getKey(), entry.getValue().getCount(), now));
+    }
+    for (Map.Entry<String, Timer> entry : registry.getTimers().entrySet()) {
+      Snapshot snapshot = entry.getValue().getSnapshot();
+      metrics.add(new SingleMetric(entry.getKey() + ".mean.ms", toMillis(snapshot.getMean()), now));
+      metrics.add(new SingleMetric(entry.getKey() + ".p95.ms", toMillis(snapshot.get95thPercentile()), now));
+      metrics.add(new SingleMetric(entry.getKey() + ".max.ms", toMillis(snapshot.getMax()), now));
+    }
+
+    return metrics;
+  }
+
+  private static double toMillis(double nanos) {
+    return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+}
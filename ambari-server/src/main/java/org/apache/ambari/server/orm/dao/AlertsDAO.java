@@ -18,6 +18,7 @@
 package org.apache.ambari.server.orm.dao;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.EnumSet;
@@ -44,6 +45,8 @@ import org.apache.ambari.server.cleanup.TimeBasedCleanupPolicy;
 import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.AlertCurrentRequest;
 import org.apache.ambari.server.controller.AlertHistoryRequest;
+import org.apache.ambari.server.controller.internal.AlertHistoryResourceProvider;
+import org.apache.ambari.server.controller.internal.AlertResourceProvider;
 import org.apache.ambari.server.controller.spi.Predicate;
 import org.apache.ambari.server.controller.utilities.PredicateHelper;
 import org.apache.ambari.server.events.AggregateAlertRecalculateEvent;
@@ -90,6 +93,19 @@ public class AlertsDAO implements Cleanable {
    */
   private static final Logger LOG = LoggerFactory.getLogger(AlertsDAO.class);
 
+  /**
+   * Historical alerts are not mapped to their cluster; as with the existing
+   * queries, the cluster name is not part of a paged history query.
+   */
+  private static final Set<String> HISTORY_PAGING_IGNORED_PROPERTY_IDS =
+      Collections.singleton(AlertHistoryResourceProvider.ALERT_HISTORY_CLUSTER_NAME);
+
+  /**
+   * Current alerts are not mapped to their cluster either.
+   */
+  private static final Set<String> CURRENT_PAGING_IGNORED_PROPERTY_IDS =
+      Collections.singleton(AlertResourceProvider.ALERT_CLUSTER_NAME);
+
   /**
    * A template of JPQL for getting the number of hosts in various states.
    */
@@ -337,7 +353,9 @@ public class AlertsDAO implements Cleanable {
   /**
    * Finds all {@link AlertHistoryEntity} that match the provided
    * {@link AlertHistoryRequest}. This method will make JPA do the heavy lifting
-   * of providing a slice of the result set.
+   * of providing a slice of the result set if
+   * {@link #isPageable(AlertHistoryRequest)}; otherwise all matching entities
+   * are returned and must be paged by the caller.
    *
    * @param request
    * @return
@@ -364,18 +382,53 @@ public class AlertsDAO implements Cleanable {
 
     // pagination
     TypedQuery<AlertHistoryEntity> typedQuery = entityManager.createQuery(query);
-    if (null != request.Pagination) {
-      typedQuery.setFirstResult(request.Pagination.getOffset());
+    if (null != request.Pagination
+        && visitor.isPageable(request.Sort, HISTORY_PAGING_IGNORED_PROPERTY_IDS)) {
+      typedQuery.setFirstResult(Math.max(0, request.Pagination.getOffset()));
       typedQuery.setMaxResults(request.Pagination.getPageSize());
     }
 
     return m_daoUtils.selectList(typedQuery);
   }
 
+  /**
+   * Determines whether {@link #findAll(AlertHistoryRequest)} sorts and pages
+   * the entities in the database, which is the case when the predicate and
+   * sort properties can all be expressed in JPA.
+   *
+   * @param request
+   *          the request with the predicate, page and sort requests.
+   * @return {@code true} if the returned entities are already the requested
+   *         page.
+   */
+  public boolean isPageable(AlertHistoryRequest request) {
+    HistoryPredicateVisitor visitor = new HistoryPredicateVisitor();
+    PredicateHelper.visit(request.Predicate, visitor);
+    return visitor.isPageable(request.Sort, HISTORY_PAGING_IGNORED_PROPERTY_IDS);
+  }
+
+  /**
+   * Determines whether {@link #findAll(AlertCurrentRequest)} sorts and pages
+   * the entities in the database, which is the case when the predicate and
+   * sort properties can all be expressed in JPA.
+   *
+   * @param request
+   *          the request with the predicate, page and sort requests.
+   * @return {@code true} if the returned entities are already the requested
+   *         page.
+   */
+  public boolean isPageable(AlertCurrentRequest request) {
+    CurrentPredicateVisitor visitor = new CurrentPredicateVisitor();
+    PredicateHelper.visit(request.Predicate, visitor);
+    return visitor.isPageable(request.Sort, CURRENT_PAGING_IGNORED_PROPERTY_IDS);
+  }
+
   /**
    * Finds all {@link AlertCurrentEntity} that match the provided
    * {@link AlertCurrentRequest}. This method will make JPA do the heavy lifting
-   * of providing a slice of the result set.
+   * of providing a slice of the result set if
+   * {@link #isPageable(AlertCurrentRequest)}; otherwise all matching entities
+   * are returned and must be paged by the caller.
    *
    * @param request
    * @return
@@ -402,7 +455,8 @@ public class AlertsDAO implements Cleanable {
 
     // pagination
     TypedQuery<AlertCurrentEntity> typedQuery = entityManager.createQuery(query);
-    if( null != request.Pagination ){
+    if (null != request.Pagination
+        && visitor.isPageable(request.Sort, CURRENT_PAGING_IGNORED_PROPERTY_IDS)) {
       // prevent JPA errors when -1 is passed in by accident
       int offset = request.Pagination.getOffset();
       if (offset < 0) {
@@ -431,8 +485,45 @@ public class AlertsDAO implements Cleanable {
    *          the predicate to apply, or {@code null} for none.
    * @return the total count of rows that would be returned in a result set.
    */
+  @RequiresSession
   public int getCount(Predicate predicate) {
-    return 0;
+    HistoryPredicateVisitor visitor = new HistoryPredicateVisitor(true);
+    PredicateHelper.visit(predicate, visitor);
+    return count(visitor);
+  }
+
+  /**
+   * Gets the total count of all {@link AlertCurrentEntity} rows that match the
+   * specified {@link Predicate}.
+   *
+   * @param predicate
+   *          the predicate to apply, or {@code null} for none.
+   * @return the total count of rows that would be returned in a result set.
+   */
+  @RequiresSession
+  public int getCurrentCount(Predicate predicate) {
+    CurrentPredicateVisitor visitor = new CurrentPredicateVisitor(true);
+    PredicateHelper.visit(predicate, visitor);
+    return count(visitor);
+  }
+
+  /**
+   * Runs the count query of a visitor built in count mode.
+   *
+   * @param visitor
+   *          the visitor which has visited the predicate.
+   * @return the number of matching rows.
+   */
+  private int count(JpaPredicateVisitor<?> visitor) {
+    CriteriaQuery<Long> query = visitor.getCountQuery();
+    javax.persistence.criteria.Predicate jpaPredicate = visitor.getJpaPredicate();
+
+    if (null != jpaPredicate) {
+      query.where(jpaPredicate);
+    }
+
+    Long count = m_daoUtils.selectSingle(m_entityManagerProvider.get().createQuery(query));
+    return null == count ? 0 : count.intValue();
   }
 
   /**
@@ -1081,6 +1172,29 @@ public class AlertsDAO implements Cleanable {
     return merge(alert);
   }
 
+  /**
+   * Persists the new historical entries of alerts and merges the current
+   * alerts in a single transaction, letting JPA batch the statements.
+   *
+   * @param histories
+   *          the historical entries to persist, in the order in which they
+   *          were received (not {@code null}).
+   * @param currentAlerts
+   *          the current alerts to merge (not {@code null}).
+   */
+  @Transactional
+  public void saveAlertStates(List<AlertHistoryEntity> histories,
+      Collection<AlertCurrentEntity> currentAlerts) {
+    EntityManager entityManager = m_entityManagerProvider.get();
+    for (AlertHistoryEntity history : histories) {
+      entityManager.persist(history);
+    }
+
+    for (AlertCurrentEntity currentAlert : currentAlerts) {
+      merge(currentAlert);
+    }
+  }
+
   /**
    * Removes the specified current alert from the database.
    *
@@ -1252,7 +1366,17 @@ public class AlertsDAO implements Cleanable {
      *
      */
     public HistoryPredicateVisitor() {
-      super(m_entityManagerProvider.get(), AlertHistoryEntity.class);
+      this(false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param count
+     *          {@code true} to build a count query.
+     */
+    public HistoryPredicateVisitor(boolean count) {
+      super(m_entityManagerProvider.get(), AlertHistoryEntity.class, count);
     }
 
     /**
@@ -1285,7 +1409,17 @@ public class AlertsDAO implements Cleanable {
      *
      */
     public CurrentPredicateVisitor() {
-      super(m_entityManagerProvider.get(), AlertCurrentEntity.class);
+      this(false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param count
+     *          {@code true} to build a count query.
+     */
+    public CurrentPredicateVisitor(boolean count) {
+      super(m_entityManagerProvider.get(), AlertCurrentEntity.class, count);
     }
 
     /**
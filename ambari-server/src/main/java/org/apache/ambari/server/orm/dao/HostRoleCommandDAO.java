@@ -44,6 +44,7 @@ import org.apache.ambari.server.actionmanager.HostRoleStatus;
 import org.apache.ambari.server.api.query.JpaPredicateVisitor;
 import org.apache.ambari.server.api.query.JpaSortBuilder;
 import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.controller.internal.TaskResourceProvider;
 import org.apache.ambari.server.controller.spi.PageRequest;
 import org.apache.ambari.server.controller.spi.Predicate;
 import org.apache.ambari.server.controller.spi.Request;
@@ -73,6 +74,13 @@ public class HostRoleCommandDAO {
 
   private static final Logger LOG = LoggerFactory.getLogger(HostRoleCommandDAO.class);
 
+  /**
+   * Tasks are selected by their request, which is unique over all clusters,
+   * so the cluster name does not need to be part of a paged query.
+   */
+  private static final Set<String> PAGING_IGNORED_PROPERTY_IDS =
+      Collections.singleton(TaskResourceProvider.TASK_CLUSTER_NAME_PROPERTY_ID);
+
   private static final String SUMMARY_DTO = String.format(
     "SELECT NEW %s(" +
       "MAX(hrc.stage.skippable), " +
@@ -812,7 +820,8 @@ public class HostRoleCommandDAO {
   /**
    * Finds all {@link HostRoleCommandEntity} that match the provided predicate.
    * This method will make JPA do the heavy lifting of providing a slice of the
-   * result set.
+   * result set if {@link #isPageable(Request, Predicate)}; otherwise all
+   * matching entities are returned and must be paged by the caller.
    *
    * @param request
    * @return
@@ -844,14 +853,56 @@ public class HostRoleCommandDAO {
 
     // pagination
     PageRequest pagination = request.getPageRequest();
-    if (null != pagination) {
-      typedQuery.setFirstResult(pagination.getOffset());
+    if (null != pagination && visitor.isPageable(sortRequest, PAGING_IGNORED_PROPERTY_IDS)) {
+      typedQuery.setFirstResult(Math.max(0, pagination.getOffset()));
       typedQuery.setMaxResults(pagination.getPageSize());
     }
 
     return daoUtils.selectList(typedQuery);
   }
 
+  /**
+   * Determines whether {@link #findAll(Request, Predicate)} sorts and pages
+   * the entities in the database, which is the case when the predicate and
+   * sort properties can all be expressed in JPA.
+   *
+   * @param request
+   *          the request with the page and sort requests.
+   * @param predicate
+   *          the predicate to apply, or {@code null} for none.
+   * @return {@code true} if the returned entities are already the requested
+   *         page.
+   */
+  public boolean isPageable(Request request, Predicate predicate) {
+    HostRoleCommandPredicateVisitor visitor = new HostRoleCommandPredicateVisitor();
+    PredicateHelper.visit(predicate, visitor);
+    return visitor.isPageable(request.getSortRequest(), PAGING_IGNORED_PROPERTY_IDS);
+  }
+
+  /**
+   * Gets the total count of all {@link HostRoleCommandEntity} rows that match
+   * the specified {@link Predicate}.
+   *
+   * @param predicate
+   *          the predicate to apply, or {@code null} for none.
+   * @return the total count of rows that would be returned in a result set.
+   */
+  @RequiresSession
+  public int getCount(Predicate predicate) {
+    HostRoleCommandPredicateVisitor visitor = new HostRoleCommandPredicateVisitor(true);
+    PredicateHelper.visit(predicate, visitor);
+
+    CriteriaQuery<Long> query = visitor.getCountQuery();
+    javax.persistence.criteria.Predicate jpaPredicate = visitor.getJpaPredicate();
+
+    if (null != jpaPredicate) {
+      query.where(jpaPredicate);
+    }
+
+    Long count = daoUtils.selectSingle(entityManagerProvider.get().createQuery(query));
+    return count == null ? 0 : count.intValue();
+  }
+
   /**
    * The {@link HostRoleCommandPredicateVisitor} is used to convert an Ambari
    * {@link Predicate} into a JPA {@link javax.persistence.criteria.Predicate}.
@@ -864,7 +915,17 @@ public class HostRoleCommandDAO {
      *
      */
     public HostRoleCommandPredicateVisitor() {
-      super(entityManagerProvider.get(), HostRoleCommandEntity.class);
+      this(false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param count
+     *          {@code true} to build a count query.
+     */
+    public HostRoleCommandPredicateVisitor(boolean count) {
+      super(entityManagerProvider.get(), HostRoleCommandEntity.class, count);
     }
 
     /**
@@ -29,6 +29,8 @@ import javax.persistence.Lob;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
 
+import org.apache.ambari.server.utils.CompressionUtils;
+
 @Table(name = "execution_command")
 @Entity
 public class ExecutionCommandEntity {
@@ -62,6 +64,25 @@ public class ExecutionCommandEntity {
     this.command = command;
   }
 
+  /**
+   * Gets the JSON of the command, which is stored compressed.
+   *
+   * @return the JSON of the command, or {@code null} if not set.
+   */
+  public String getCommandJson() {
+    return command == null ? null : CompressionUtils.decompress(command);
+  }
+
+  /**
+   * Sets the JSON of the command, compressing it for storage.
+   *
+   * @param commandJson
+   *          the JSON of the command (not {@code null}).
+   */
+  public void setCommandJson(String commandJson) {
+    command = CompressionUtils.compress(commandJson);
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
@@ -116,6 +116,11 @@ public class ServerActionExecutor {
    */
   private Thread executorThread = null;
 
+  /**
+   * Notified whenever a task has finished, or {@code null} for none.
+   */
+  private volatile Runnable taskCompletionListener = null;
+
   /**
    * Statically initialize the Injector
    * <p/>
@@ -208,6 +213,16 @@ public class ServerActionExecutor {
     }
   }
 
+  /**
+   * Sets the listener which is notified whenever a task has finished, such as
+   * the scheduler which can then start the commands waiting for the task.
+   *
+   * @param taskCompletionListener the listener, or {@code null} for none
+   */
+  public void setTaskCompletionListener(Runnable taskCompletionListener) {
+    this.taskCompletionListener = taskCompletionListener;
+  }
+
   /**
    * Attempts to force this ServerActionExecutor to wake up and do work.
    * <p/>
@@ -438,6 +453,11 @@ public class ServerActionExecutor {
                 LOG.debug("Server Action Executor Worker thread for task #{} exited on its own.", taskId);
                 updateHostRoleState(task, executionCommand, worker.getCommandReport());
               }
+
+              Runnable listener = taskCompletionListener;
+              if (null != listener) {
+                listener.run();
+              }
             } else {
               LOG.warn("Task #{} failed to produce an ExecutionCommand, skipping.", taskId);
             }
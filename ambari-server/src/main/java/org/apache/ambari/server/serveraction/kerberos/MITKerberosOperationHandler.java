@@ -56,6 +56,11 @@ public class MITKerberosOperationHandler extends KerberosOperationHandler {
    */
   private final static Pattern PATTERN_GET_KEY_NUMBER = Pattern.compile("^.*?Key: vno (\\d+).*$", Pattern.DOTALL);
 
+  /**
+   * The key number the KDC assigns to a newly created principal
+   */
+  private final static Integer INITIAL_KEY_NUMBER = 1;
+
   private final static Logger LOG = LoggerFactory.getLogger(MITKerberosOperationHandler.class);
 
   /**
@@ -201,7 +206,12 @@ public class MITKerberosOperationHandler extends KerberosOperationHandler {
       String stdOut = result.getStdout();
       String stdErr = result.getStderr();
       if ((stdOut != null) && stdOut.contains(String.format("Principal \"%s\" created", principal))) {
-        return getKeyNumber(principal);
+        // A new principal created with the default attributes starts at the initial key number,
+        // so avoid another kadmin invocation to look it up; user-specified creation attributes
+        // may set a different one
+        return StringUtils.isEmpty(createAttributes)
+            ? INITIAL_KEY_NUMBER
+            : getKeyNumber(principal);
       } else if ((stdErr != null) && stdErr.contains(String.format("Principal or policy already exists while creating \"%s\"", principal))) {
         throw new KerberosPrincipalAlreadyExistsException(principal);
       } else {
@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
 
@@ -118,6 +119,15 @@ public class StackContext {
         new File(stack.getStackDirectory().getRepoDir()), stack.getModuleInfo(), osFamily));
   }
 
+  /**
+   * Get the registered repo update tasks.
+   *
+   * @return the registered repo update tasks
+   */
+  Collection<LatestRepoCallable> getRepoTasks() {
+    return repoUpdateExecutor.tasks;
+  }
+
   /**
    * Execute the registered repo update tasks.
    */
@@ -141,9 +151,9 @@ public class StackContext {
    */
   public static class LatestRepoQueryExecutor {
     /**
-     * Registered tasks
+     * Registered tasks, stack modules register them from the parser threads
      */
-    private Collection<LatestRepoCallable> tasks = new ArrayList<LatestRepoCallable>();
+    private Collection<LatestRepoCallable> tasks = new ConcurrentLinkedQueue<LatestRepoCallable>();
 
     /**
      * Task futures
@@ -19,11 +19,18 @@
 package org.apache.ambari.server.stack;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nullable;
 import javax.xml.XMLConstants;
@@ -53,6 +60,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
 
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
 
@@ -84,6 +93,12 @@ public class StackManager {
 
   public static final String METAINFO_FILE_NAME = "metainfo.xml";
 
+  /**
+   * Number of threads parsing the stack, common services and extension
+   * definitions
+   */
+  private static final int PARSER_THREADS = Runtime.getRuntime().availableProcessors();
+
   /**
    * Provides access to non-stack server functionality
    */
@@ -183,10 +198,37 @@ public class StackManager {
   }
 
   protected void parseDirectories(File stackRoot, File commonServicesRoot, File extensionRoot) throws AmbariException {
-    commonServiceModules = parseCommonServicesDirectory(commonServicesRoot);
-    stackModules = parseStackDirectory(stackRoot);
-    LOG.info("About to parse extension directories");
-    extensionModules = parseExtensionDirectory(extensionRoot);
+    // each stack, common service and extension version is parsed on its own,
+    // resolving them against each other happens afterwards
+    ExecutorService executor = Executors.newFixedThreadPool(getParserThreadCount(),
+        new ThreadFactoryBuilder().setNameFormat("ambari-stack-parser-%d").build());
+    try {
+      commonServiceModules = parseCommonServicesDirectory(commonServicesRoot, executor);
+      stackModules = parseStackDirectory(stackRoot, executor);
+      LOG.info("About to parse extension directories");
+      extensionModules = parseExtensionDirectory(extensionRoot, executor);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Get the number of threads parsing the stack, common services and
+   * extension definitions.
+   *
+   * @return the number of parser threads
+   */
+  protected int getParserThreadCount() {
+    return PARSER_THREADS;
+  }
+
+  /**
+   * Get the stack context shared by the stack modules.
+   *
+   * @return the stack context
+   */
+  StackContext getStackContext() {
+    return stackContext;
   }
   private void populateDB(StackDAO stackDao, ExtensionDAO extensionDao) throws AmbariException {
     // for every stack read in, ensure that we have a database entry for it;
@@ -491,41 +533,65 @@ public class StackManager {
    * Parse the specified common services root directory
    *
    * @param commonServicesRoot  the common services root directory to parse
+   * @param executor            executor parsing the common service versions
    * @return map of common service id which contains name and version to common service module.
    * @throws AmbariException if unable to parse all common services
    */
-  private Map<String, ServiceModule> parseCommonServicesDirectory(File commonServicesRoot) throws AmbariException {
+  private Map<String, ServiceModule> parseCommonServicesDirectory(File commonServicesRoot,
+      ExecutorService executor) throws AmbariException {
     Map<String, ServiceModule> commonServiceModules = new HashMap<String, ServiceModule>();
 
     if(commonServicesRoot != null) {
+      List<Future<Map<String, ServiceModule>>> futures = new ArrayList<>();
       File[] commonServiceFiles = commonServicesRoot.listFiles(AmbariMetaInfo.FILENAME_FILTER);
       for (File commonService : commonServiceFiles) {
         if (commonService.isFile()) {
           continue;
         }
-        for (File serviceFolder : commonService.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
-          String serviceName = serviceFolder.getParentFile().getName();
-          String serviceVersion = serviceFolder.getName();
-          ServiceDirectory serviceDirectory = new CommonServiceDirectory(serviceFolder.getPath());
-          ServiceMetainfoXml metaInfoXml = serviceDirectory.getMetaInfoFile();
-          if (metaInfoXml != null) {
-            if (metaInfoXml.isValid()) {
-              for (ServiceInfo serviceInfo : metaInfoXml.getServices()) {
-                ServiceModule serviceModule = new ServiceModule(stackContext, serviceInfo, serviceDirectory, true);
-
-                String commonServiceKey = serviceInfo.getName() + StackManager.PATH_DELIMITER + serviceInfo.getVersion();
-                commonServiceModules.put(commonServiceKey, serviceModule);
-              }
-            } else {
-              ServiceModule serviceModule = new ServiceModule(stackContext, new ServiceInfo(), serviceDirectory, true);
-              serviceModule.setValid(false);
-              serviceModule.addErrors(metaInfoXml.getErrors());
-              commonServiceModules.put(metaInfoXml.getSchemaVersion(), serviceModule);
-              metaInfoXml.setSchemaVersion(null);
+        for (final File serviceFolder : commonService.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
+          futures.add(executor.submit(new Callable<Map<String, ServiceModule>>() {
+            @Override
+            public Map<String, ServiceModule> call() throws Exception {
+              return parseCommonServiceDirectory(serviceFolder);
             }
-          }
+          }));
         }
       }
+
+      for (Future<Map<String, ServiceModule>> future : futures) {
+        commonServiceModules.putAll(getParsed(future));
+      }
+    }
+    return commonServiceModules;
+  }
+
+  /**
+   * Parse a single version of a common service.
+   *
+   * @param serviceFolder  the common service version directory to parse
+   * @return map of common service id to common service module
+   * @throws AmbariException if unable to parse the common service
+   */
+  private Map<String, ServiceModule> parseCommonServiceDirectory(File serviceFolder) throws AmbariException {
+    Map<String, ServiceModule> commonServiceModules = new HashMap<String, ServiceModule>();
+
+    ServiceDirectory serviceDirectory = new CommonServiceDirectory(serviceFolder.getPath());
+    ServiceMetainfoXml metaInfoXml = serviceDirectory.getMetaInfoFile();
+    if (metaInfoXml != null) {
+      if (metaInfoXml.isValid()) {
+        for (ServiceInfo serviceInfo : metaInfoXml.getServices()) {
+          ServiceModule serviceModule = new ServiceModule(stackContext, serviceInfo, serviceDirectory, true);
+
+          String commonServiceKey = serviceInfo.getName() + StackManager.PATH_DELIMITER + serviceInfo.getVersion();
+          commonServiceModules.put(commonServiceKey, serviceModule);
+        }
+      } else {
+        ServiceModule serviceModule = new ServiceModule(stackContext, new ServiceInfo(), serviceDirectory, true);
+        serviceModule.setValid(false);
+        serviceModule.addErrors(metaInfoXml.getErrors());
+        commonServiceModules.put(metaInfoXml.getSchemaVersion(), serviceModule);
+        metaInfoXml.setSchemaVersion(null);
+      }
     }
     return commonServiceModules;
   }
@@ -534,31 +600,42 @@ public class StackManager {
    * Parse the specified stack root directory
    *
    * @param stackRoot  the stack root directory to parse
+   * @param executor   executor parsing the stack versions
    * @return map of stack id which contains name and version to stack module.
    * @throws AmbariException if unable to parse all stacks
    */
-  private Map<String, StackModule> parseStackDirectory(File stackRoot) throws AmbariException {
+  private Map<String, StackModule> parseStackDirectory(File stackRoot, ExecutorService executor) throws AmbariException {
     Map<String, StackModule> stackModules = new HashMap<String, StackModule>();
+    Map<String, Future<StackModule>> futures = new LinkedHashMap<>();
 
     File[] stackFiles = stackRoot.listFiles(AmbariMetaInfo.FILENAME_FILTER);
     for (File stack : stackFiles) {
       if (stack.isFile()) {
         continue;
       }
-      for (File stackFolder : stack.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
+      for (final File stackFolder : stack.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
         if (stackFolder.isFile()) {
           continue;
         }
         String stackName = stackFolder.getParentFile().getName();
         String stackVersion = stackFolder.getName();
 
-        StackModule stackModule = new StackModule(new StackDirectory(stackFolder.getPath()), stackContext);
         String stackKey = stackName + StackManager.PATH_DELIMITER + stackVersion;
-        stackModules.put(stackKey, stackModule);
-        stackMap.put(stackKey, stackModule.getModuleInfo());
+        futures.put(stackKey, executor.submit(new Callable<StackModule>() {
+          @Override
+          public StackModule call() throws Exception {
+            return new StackModule(new StackDirectory(stackFolder.getPath()), stackContext);
+          }
+        }));
       }
     }
 
+    for (Map.Entry<String, Future<StackModule>> entry : futures.entrySet()) {
+      StackModule stackModule = getParsed(entry.getValue());
+      stackModules.put(entry.getKey(), stackModule);
+      stackMap.put(entry.getKey(), stackModule.getModuleInfo());
+    }
+
     if (stackMap.isEmpty()) {
       throw new AmbariException("Unable to find stack definitions under " +
           "stackRoot = " + stackRoot.getAbsolutePath());
@@ -576,37 +653,70 @@ public class StackManager {
    * Parse the specified extension root directory
    *
    * @param extensionRoot  the extension root directory to parse
+   * @param executor       executor parsing the extension versions
    * @return map of extension id which contains name and version to extension module.
    * @throws AmbariException if unable to parse all extensions
    */
-  private Map<String, ExtensionModule> parseExtensionDirectory(File extensionRoot) throws AmbariException {
+  private Map<String, ExtensionModule> parseExtensionDirectory(File extensionRoot,
+      ExecutorService executor) throws AmbariException {
     Map<String, ExtensionModule> extensionModules = new HashMap<String, ExtensionModule>();
     if (extensionRoot == null || !extensionRoot.exists())
       return extensionModules;
 
+    Map<String, Future<ExtensionModule>> futures = new LinkedHashMap<>();
     File[] extensionFiles = extensionRoot.listFiles(AmbariMetaInfo.FILENAME_FILTER);
     for (File extensionNameFolder : extensionFiles) {
       if (extensionNameFolder.isFile()) {
         continue;
       }
-      for (File extensionVersionFolder : extensionNameFolder.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
+      for (final File extensionVersionFolder : extensionNameFolder.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
         if (extensionVersionFolder.isFile()) {
           continue;
         }
         String extensionName = extensionNameFolder.getName();
         String extensionVersion = extensionVersionFolder.getName();
 
-        ExtensionModule extensionModule = new ExtensionModule(new ExtensionDirectory(extensionVersionFolder.getPath()), stackContext);
         String extensionKey = extensionName + StackManager.PATH_DELIMITER + extensionVersion;
-        extensionModules.put(extensionKey, extensionModule);
-        extensionMap.put(extensionKey, extensionModule.getModuleInfo());
+        futures.put(extensionKey, executor.submit(new Callable<ExtensionModule>() {
+          @Override
+          public ExtensionModule call() throws Exception {
+            return new ExtensionModule(new ExtensionDirectory(extensionVersionFolder.getPath()), stackContext);
+          }
+        }));
       }
     }
 
+    for (Map.Entry<String, Future<ExtensionModule>> entry : futures.entrySet()) {
+      ExtensionModule extensionModule = getParsed(entry.getValue());
+      extensionModules.put(entry.getKey(), extensionModule);
+      extensionMap.put(entry.getKey(), extensionModule.getModuleInfo());
+    }
+
     if (stackMap.isEmpty()) {
       throw new AmbariException("Unable to find extension definitions under " +
           "extensionRoot = " + extensionRoot.getAbsolutePath());
     }
     return extensionModules;
   }
+
+  /**
+   * Wait for a module parsed on the parser executor.
+   *
+   * @param future  the parse task
+   * @return the parsed module
+   * @throws AmbariException if the module could not be parsed
+   */
+  private static <T> T getParsed(Future<T> future) throws AmbariException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AmbariException("Interrupted while parsing the stack definitions", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      Throwables.propagateIfInstanceOf(cause, AmbariException.class);
+      Throwables.propagateIfPossible(cause);
+      throw new AmbariException(cause.getMessage(), cause);
+    }
+  }
 }
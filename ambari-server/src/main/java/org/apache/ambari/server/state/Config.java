@@ -93,6 +93,12 @@ public interface Config {
    */
   public void deleteProperties(List<String> properties);
 
+  /**
+   * @return a stamp of the current properties, which changes whenever they are
+   *         changed in place and is never shared with another instance
+   */
+  public long getPropertiesStamp();
+
   /**
    * Persist the configuration.
    */
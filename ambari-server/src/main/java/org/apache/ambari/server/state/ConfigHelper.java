@@ -35,6 +35,8 @@ import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.api.services.AmbariMetaInfo;
 import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.AmbariManagementController;
+import org.apache.ambari.server.events.ClusterConfigChangedEvent;
+import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
 import org.apache.ambari.server.orm.dao.ClusterDAO;
 import org.apache.ambari.server.orm.entities.ClusterConfigEntity;
 import org.apache.ambari.server.orm.entities.HostComponentDesiredStateEntity;
@@ -49,6 +51,7 @@ import com.google.common.base.Objects;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Maps;
+import com.google.common.eventbus.Subscribe;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.persist.Transactional;
@@ -73,6 +76,16 @@ public class ConfigHelper {
    */
   private final Cache<Integer, Boolean> staleConfigsCache;
 
+  /**
+   * Cache of the effective properties of a configuration type, keyed by the
+   * cluster and the tags and {@link Config#getPropertiesStamp() stamps} of the
+   * cluster and config group configurations merged into them, so that
+   * configurations changed in place are never served stale. Entries of changed
+   * configurations are evicted on {@link ClusterConfigChangedEvent}.
+   * {@code null} if disabled.
+   */
+  private final Cache<EffectivePropertiesKey, Map<String, String>> effectivePropertiesCache;
+
   private static final Logger LOG =
       LoggerFactory.getLogger(ConfigHelper.class);
 
@@ -101,7 +114,8 @@ public class ConfigHelper {
   public static final String FIRST_VERSION_TAG = "version1";
 
   @Inject
-  public ConfigHelper(Clusters c, AmbariMetaInfo metaInfo, Configuration configuration, ClusterDAO clusterDAO) {
+  public ConfigHelper(Clusters c, AmbariMetaInfo metaInfo, Configuration configuration, ClusterDAO clusterDAO,
+      AmbariEventPublisher eventPublisher) {
     clusters = c;
     ambariMetaInfo = metaInfo;
     this.clusterDAO = clusterDAO;
@@ -109,6 +123,35 @@ public class ConfigHelper {
     STALE_CONFIGS_CACHE_EXPIRATION_TIME = configuration.staleConfigCacheExpiration();
     staleConfigsCache = CacheBuilder.newBuilder().
         expireAfterWrite(STALE_CONFIGS_CACHE_EXPIRATION_TIME, TimeUnit.SECONDS).build();
+
+    int effectiveConfigsCacheSize = configuration.getEffectiveConfigsCacheSize();
+    effectivePropertiesCache = effectiveConfigsCacheSize > 0
+        ? CacheBuilder.newBuilder().maximumSize(effectiveConfigsCacheSize).<EffectivePropertiesKey, Map<String, String>>build()
+        : null;
+
+    eventPublisher.register(this);
+  }
+
+  /**
+   * Evicts the cached effective properties of a configuration type whose
+   * properties were changed.
+   *
+   * @param event
+   *          the configuration change
+   */
+  @Subscribe
+  public void onConfigChanged(ClusterConfigChangedEvent event) {
+    if (null == effectivePropertiesCache) {
+      return;
+    }
+
+    Iterator<EffectivePropertiesKey> keys = effectivePropertiesCache.asMap().keySet().iterator();
+    while (keys.hasNext()) {
+      EffectivePropertiesKey key = keys.next();
+      if (key.type.equals(event.getConfigType()) && key.clusterName.equals(event.getClusterName())) {
+        keys.remove();
+      }
+    }
   }
 
   /**
@@ -240,26 +283,10 @@ public class ConfigHelper {
           propertyMap = new HashMap<String, String>();
         }
 
-        Map<String, String> tags = new HashMap<String, String>(entry.getValue());
-        String clusterTag = tags.get(CLUSTER_DEFAULT_TAG);
-
         // Overrides is only supported if the config type exists at cluster
         // level
-        if (clusterTag != null) {
-          Config config = cluster.getConfig(type, clusterTag);
-          if (config != null) {
-            propertyMap.putAll(config.getProperties());
-          }
-          tags.remove(CLUSTER_DEFAULT_TAG);
-          // Now merge overrides
-          for (Entry<String, String> overrideEntry : tags.entrySet()) {
-            Config overrideConfig = cluster.getConfig(type,
-                overrideEntry.getValue());
-
-            if (overrideConfig != null) {
-              propertyMap = getMergedConfig(propertyMap, overrideConfig.getProperties());
-            }
-          }
+        if (entry.getValue().get(CLUSTER_DEFAULT_TAG) != null) {
+          propertyMap.putAll(getEffectiveTypeProperties(cluster, type, entry.getValue()));
         }
         properties.put(type, propertyMap);
       }
@@ -268,6 +295,70 @@ public class ConfigHelper {
     return properties;
   }
 
+  /**
+   * Get the properties of a config type with the config group overrides of
+   * the given tags merged in, from the cache if possible.
+   *
+   * @param cluster
+   * @param type
+   * @param typeTags
+   *          the cluster tag and config group override tags of the type
+   * @return the merged properties, which must not be modified
+   */
+  private Map<String, String> getEffectiveTypeProperties(Cluster cluster, String type,
+      Map<String, String> typeTags) {
+    if (null == effectivePropertiesCache) {
+      return mergeTypeProperties(cluster, type, typeTags);
+    }
+
+    // stamped before merging, so that a change made meanwhile is never cached
+    // under the new stamp
+    Map<String, Long> stamps = new HashMap<String, Long>();
+    for (Entry<String, String> tag : typeTags.entrySet()) {
+      Config config = cluster.getConfig(type, tag.getValue());
+      if (config != null) {
+        stamps.put(tag.getKey(), config.getPropertiesStamp());
+      }
+    }
+
+    EffectivePropertiesKey key = new EffectivePropertiesKey(cluster.getClusterId(),
+        cluster.getClusterName(), type, typeTags, stamps);
+    Map<String, String> propertyMap = effectivePropertiesCache.getIfPresent(key);
+    if (null == propertyMap) {
+      propertyMap = Collections.unmodifiableMap(mergeTypeProperties(cluster, type, typeTags));
+      effectivePropertiesCache.put(key, propertyMap);
+    }
+
+    return propertyMap;
+  }
+
+  /**
+   * Merges the config group overrides of a config type into its cluster
+   * properties.
+   */
+  private Map<String, String> mergeTypeProperties(Cluster cluster, String type,
+      Map<String, String> typeTags) {
+    Map<String, String> propertyMap = new HashMap<String, String>();
+    Map<String, String> tags = new HashMap<String, String>(typeTags);
+
+    Config config = cluster.getConfig(type, tags.get(CLUSTER_DEFAULT_TAG));
+    if (config != null) {
+      propertyMap.putAll(config.getProperties());
+    }
+    tags.remove(CLUSTER_DEFAULT_TAG);
+    // Now merge overrides
+    for (Entry<String, String> overrideEntry : tags.entrySet()) {
+      Config overrideConfig = cluster.getConfig(type,
+          overrideEntry.getValue());
+
+      if (overrideConfig != null) {
+        propertyMap = getMergedConfig(propertyMap, overrideConfig.getProperties());
+      }
+    }
+
+    return propertyMap;
+  }
+
   /**
    * Get all config attributes for a cluster given a set of configType to
    * versionTags map. This helper method merges all the override tags with a
@@ -1297,4 +1388,42 @@ public class ConfigHelper {
     }
   }
 
+
+  /**
+   * Key of the cached effective properties of a configuration type.
+   */
+  private static final class EffectivePropertiesKey {
+    private final long clusterId;
+    private final String clusterName;
+    private final String type;
+    private final Map<String, String> tags;
+    private final Map<String, Long> stamps;
+
+    private EffectivePropertiesKey(long clusterId, String clusterName, String type,
+        Map<String, String> tags, Map<String, Long> stamps) {
+      this.clusterId = clusterId;
+      this.clusterName = clusterName;
+      this.type = type;
+      this.tags = new HashMap<String, String>(tags);
+      this.stamps = stamps;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      EffectivePropertiesKey that = (EffectivePropertiesKey) o;
+      return clusterId == that.clusterId && type.equals(that.type) && tags.equals(that.tags)
+          && stamps.equals(that.stamps);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(clusterId, type, tags, stamps);
+    }
+  }
 }
@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import javax.annotation.Nullable;
@@ -56,6 +57,12 @@ public class ConfigImpl implements Config {
    */
   private static final String PROPERTY_LOCK_LABEL = "configurationPropertyLock";
 
+  /**
+   * Source of {@link #propertiesStamp}, shared by all instances so that a
+   * stamp is never reused.
+   */
+  private static final AtomicLong PROPERTIES_STAMPS = new AtomicLong();
+
   public static final String GENERATED_TAG_PREFIX = "generatedTag_";
 
   private final long configId;
@@ -79,6 +86,11 @@ public class ConfigImpl implements Config {
    */
   private final ReadWriteLock propertyLock;
 
+  /**
+   * Changed whenever {@link #properties} are changed.
+   */
+  private volatile long propertiesStamp = PROPERTIES_STAMPS.incrementAndGet();
+
   /**
    * The property attributes for this configuration.
    */
@@ -286,6 +298,7 @@ public class ConfigImpl implements Config {
     propertyLock.writeLock().lock();
     try {
       this.properties = properties;
+      propertiesStamp = PROPERTIES_STAMPS.incrementAndGet();
     } finally {
       propertyLock.writeLock().unlock();
     }
@@ -301,6 +314,7 @@ public class ConfigImpl implements Config {
     propertyLock.writeLock().lock();
     try {
       properties.putAll(propertiesToUpdate);
+      propertiesStamp = PROPERTIES_STAMPS.incrementAndGet();
     } finally {
       propertyLock.writeLock().unlock();
     }
@@ -317,11 +331,17 @@ public class ConfigImpl implements Config {
     try {
       Set<String> keySet = properties.keySet();
       keySet.removeAll(propertyKeysToRemove);
+      propertiesStamp = PROPERTIES_STAMPS.incrementAndGet();
     } finally {
       propertyLock.writeLock().unlock();
     }
   }
 
+  @Override
+  public long getPropertiesStamp() {
+    return propertiesStamp;
+  }
+
   /**
    * Persist the entity and update the internal state relationships once the
    * transaction has been committed.
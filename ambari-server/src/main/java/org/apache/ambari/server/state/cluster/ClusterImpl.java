@@ -188,8 +188,11 @@ public class ClusterImpl implements Cluster {
 
   /**
    * [ Config Type -> [ Config Version Tag -> Config ] ]
+   * <p/>
+   * Reloading the configurations swaps in a new map, so that readers don't
+   * need the {@link #clusterGlobalLock} to get a consistent view.
    */
-  private final ConcurrentMap<String, ConcurrentMap<String, Config>> allConfigs = new ConcurrentHashMap<>();
+  private volatile ConcurrentMap<String, ConcurrentMap<String, Config>> allConfigs = new ConcurrentHashMap<>();
 
   /**
    * [ ServiceName -> [ ServiceComponentName -> [ HostName -> [ ... ] ] ] ]
@@ -213,8 +216,14 @@ public class ClusterImpl implements Cluster {
 
   private final ReadWriteLock clusterGlobalLock;
 
-  // This is a lock for operations that do not need to be cluster global
-  private final Lock hostTransitionStateWriteLock;
+  /**
+   * The number of locks the host version transitions are striped over.
+   */
+  private static final int HOST_TRANSITION_STATE_LOCK_STRIPES = 16;
+
+  // These are locks for operations that do not need to be cluster global,
+  // only serialized per host
+  private final Lock[] hostTransitionStateWriteLocks;
 
   /**
    * The unique ID of the {@link @ClusterEntity}.
@@ -345,7 +354,10 @@ public class ClusterImpl implements Cluster {
     injector.injectMembers(this);
 
     clusterGlobalLock = lockFactory.newReadWriteLock("clusterGlobalLock");
-    hostTransitionStateWriteLock = lockFactory.newLock("hostTransitionStateLock");
+    hostTransitionStateWriteLocks = new Lock[HOST_TRANSITION_STATE_LOCK_STRIPES];
+    for (int i = 0; i < hostTransitionStateWriteLocks.length; i++) {
+      hostTransitionStateWriteLocks[i] = lockFactory.newLock("hostTransitionStateLock");
+    }
 
     loadStackVersion();
     loadServices();
@@ -1531,6 +1543,7 @@ public class ClusterImpl implements Cluster {
       getClusterId(), repoVersionStackId, repositoryVersion.getVersion(),
       host.getHostId());
 
+    Lock hostTransitionStateWriteLock = getHostTransitionStateWriteLock(host);
     hostTransitionStateWriteLock.lock();
     try {
       // Create one if it doesn't already exist. It will be possible to make further transitions below.
@@ -1576,6 +1589,18 @@ public class ClusterImpl implements Cluster {
     return hostVersionEntity;
   }
 
+  /**
+   * Gets the lock which serializes the host version transitions of a host.
+   *
+   * @param host
+   *          the host (not {@code null}).
+   * @return the lock of the stripe the host belongs to.
+   */
+  private Lock getHostTransitionStateWriteLock(HostEntity host) {
+    int hash = host.getHostId() == null ? 0 : host.getHostId().hashCode();
+    return hostTransitionStateWriteLocks[(hash & Integer.MAX_VALUE) % hostTransitionStateWriteLocks.length];
+  }
+
   @Override
   public void recalculateAllClusterVersionStates() throws AmbariException {
     clusterGlobalLock.writeLock().lock();
@@ -1868,50 +1893,38 @@ public class ClusterImpl implements Cluster {
 
   @Override
   public Map<String, Config> getConfigsByType(String configType) {
-    clusterGlobalLock.readLock().lock();
-    try {
-      if (!allConfigs.containsKey(configType)) {
-        return null;
-      }
-
-      return Collections.unmodifiableMap(allConfigs.get(configType));
-    } finally {
-      clusterGlobalLock.readLock().unlock();
+    Map<String, Config> configs = allConfigs.get(configType);
+    if (null == configs) {
+      return null;
     }
+
+    return Collections.unmodifiableMap(configs);
   }
 
   @Override
   public Config getConfig(String configType, String versionTag) {
-    clusterGlobalLock.readLock().lock();
-    try {
-      if (!allConfigs.containsKey(configType)
-          || !allConfigs.get(configType).containsKey(versionTag)) {
-        return null;
-      }
-      return allConfigs.get(configType).get(versionTag);
-    } finally {
-      clusterGlobalLock.readLock().unlock();
+    Map<String, Config> configs = allConfigs.get(configType);
+    if (null == configs) {
+      return null;
     }
+
+    return configs.get(versionTag);
   }
 
   @Override
   public Config getConfigByVersion(String configType, Long configVersion) {
-    clusterGlobalLock.readLock().lock();
-    try {
-      if (!allConfigs.containsKey(configType)) {
-        return null;
-      }
+    Map<String, Config> configs = allConfigs.get(configType);
+    if (null == configs) {
+      return null;
+    }
 
-      for (Map.Entry<String, Config> entry : allConfigs.get(configType).entrySet()) {
-        if (entry.getValue().getVersion().equals(configVersion)) {
-          return entry.getValue();
-        }
+    for (Map.Entry<String, Config> entry : configs.entrySet()) {
+      if (entry.getValue().getVersion().equals(configVersion)) {
+        return entry.getValue();
       }
-
-      return null;
-    } finally {
-      clusterGlobalLock.readLock().unlock();
     }
+
+    return null;
   }
 
   @Override
@@ -1922,11 +1935,13 @@ public class ClusterImpl implements Cluster {
 
     clusterGlobalLock.writeLock().lock();
     try {
-      if (!allConfigs.containsKey(config.getType())) {
-        allConfigs.put(config.getType(), new ConcurrentHashMap<String, Config>());
+      ConcurrentMap<String, Config> configs = allConfigs.get(config.getType());
+      if (null == configs) {
+        configs = new ConcurrentHashMap<>();
+        allConfigs.put(config.getType(), configs);
       }
 
-      allConfigs.get(config.getType()).put(config.getTag(), config);
+      configs.put(config.getTag(), config);
     } finally {
       clusterGlobalLock.writeLock().unlock();
     }
@@ -1934,18 +1949,13 @@ public class ClusterImpl implements Cluster {
 
   @Override
   public Collection<Config> getAllConfigs() {
-    clusterGlobalLock.readLock().lock();
-    try {
-      List<Config> list = new ArrayList<>();
-      for (Entry<String, ConcurrentMap<String, Config>> entry : allConfigs.entrySet()) {
-        for (Config config : entry.getValue().values()) {
-          list.add(config);
-        }
+    List<Config> list = new ArrayList<>();
+    for (Entry<String, ConcurrentMap<String, Config>> entry : allConfigs.entrySet()) {
+      for (Config config : entry.getValue().values()) {
+        list.add(config);
       }
-      return Collections.unmodifiableList(list);
-    } finally {
-      clusterGlobalLock.readLock().unlock();
     }
+    return Collections.unmodifiableList(list);
   }
 
   @Override
@@ -2091,7 +2101,7 @@ public class ClusterImpl implements Cluster {
       refresh();
       deleteAllServices();
       removeEntities();
-      allConfigs.clear();
+      allConfigs = new ConcurrentHashMap<>();
     } finally {
       clusterGlobalLock.writeLock().unlock();
     }
@@ -3321,20 +3331,24 @@ public class ClusterImpl implements Cluster {
     clusterGlobalLock.writeLock().lock();
     try {
       ClusterEntity clusterEntity = getClusterEntity();
-      allConfigs.clear();
 
+      // build the new cache aside and swap it in, readers keep using the
+      // previous one until then
+      ConcurrentMap<String, ConcurrentMap<String, Config>> configs = new ConcurrentHashMap<>();
       if (!clusterEntity.getClusterConfigEntities().isEmpty()) {
         for (ClusterConfigEntity entity : clusterEntity.getClusterConfigEntities()) {
 
-          if (!allConfigs.containsKey(entity.getType())) {
-            allConfigs.put(entity.getType(), new ConcurrentHashMap<String, Config>());
+          if (!configs.containsKey(entity.getType())) {
+            configs.put(entity.getType(), new ConcurrentHashMap<String, Config>());
           }
 
           Config config = configFactory.createExisting(this, entity);
 
-          allConfigs.get(entity.getType()).put(entity.getTag(), config);
+          configs.get(entity.getType()).put(entity.getTag(), config);
         }
       }
+
+      allConfigs = configs;
     } finally {
       clusterGlobalLock.writeLock().unlock();
     }
@@ -0,0 +1,270 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.annotations.Experimental;
+import org.apache.ambari.annotations.ExperimentalFeature;
+import org.apache.ambari.server.AmbariService;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.events.AlertEvent;
+import org.apache.ambari.server.events.publishers.AlertEventPublisher;
+import org.apache.ambari.server.orm.dao.AlertsDAO;
+import org.apache.ambari.server.orm.entities.AlertCurrentEntity;
+import org.apache.ambari.server.orm.entities.AlertHistoryEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+
+/**
+ * The {@link AlertWriteBehindService} collects the alert state changes
+ * received from the agents and periodically writes them to the database in a
+ * single transaction, instead of one transaction per heartbeat. The events of
+ * the state changes are published once they have been written.
+ * <p/>
+ * The current alerts being written are kept in the alert cache, so that the
+ * next alerts received are compared against their latest state. The service
+ * is therefore controlled by {@link Configuration#isAlertCacheEnabled()} and
+ * {@link Configuration#getAlertCacheWriteBehindInterval()}. Pending state
+ * changes are written when the service is stopped.
+ */
+@AmbariService
+@Experimental(feature = ExperimentalFeature.ALERT_CACHING)
+public class AlertWriteBehindService extends AbstractScheduledService {
+
+  /**
+   * Logger.
+   */
+  private final static Logger LOG = LoggerFactory.getLogger(AlertWriteBehindService.class);
+
+  /**
+   * Configuration.
+   */
+  @Inject
+  private Configuration m_configuration;
+
+  /**
+   * Used for writing the alerts to the database.
+   */
+  @Inject
+  private AlertsDAO m_alertsDAO;
+
+  /**
+   * Used for publishing the events of the written alerts.
+   */
+  @Inject
+  private Provider<AlertEventPublisher> m_alertEventPublisher;
+
+  /**
+   * Guards {@link #m_pending} and {@link #m_accepting}.
+   */
+  private final Object m_lock = new Object();
+
+  /**
+   * The state changes waiting to be written, in the order they were received.
+   */
+  private List<PendingAlertStates> m_pending = new ArrayList<>();
+
+  /**
+   * Whether state changes are currently being collected.
+   */
+  private boolean m_accepting = false;
+
+  /**
+   * Serializes the writes so that events are published in order.
+   */
+  private final Object m_writeLock = new Object();
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected Scheduler scheduler() {
+    int interval = Math.max(1, m_configuration.getAlertCacheWriteBehindInterval());
+    return Scheduler.newFixedDelaySchedule(interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Invokes {@link #stop()} if not enabled.
+   */
+  @Override
+  protected void startUp() throws Exception {
+    boolean enabled = m_configuration.isAlertCacheEnabled()
+        && m_configuration.getAlertCacheWriteBehindInterval() > 0;
+
+    if (!enabled) {
+      stopAsync();
+      return;
+    }
+
+    synchronized (m_lock) {
+      m_accepting = true;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Writes the pending state changes to the database.
+   */
+  @Override
+  protected void runOneIteration() throws Exception {
+    try {
+      write();
+    } catch (Exception exception) {
+      LOG.error("Unable to write alert state changes to the database", exception);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Stops collecting state changes and writes the pending ones to the
+   * database.
+   */
+  @Override
+  protected void shutDown() throws Exception {
+    synchronized (m_lock) {
+      m_accepting = false;
+    }
+
+    write();
+  }
+
+  /**
+   * Queues the state changes of the alerts received in a heartbeat to be
+   * written to the database. The new historical entry of each current alert is
+   * captured when queued.
+   *
+   * @param toCreateHistoryAndMerge
+   *          the current alerts which changed state (not {@code null}).
+   * @param alertEvents
+   *          the events to publish once the alerts have been written (not
+   *          {@code null}).
+   * @return {@code true} if the state changes were queued, {@code false} if
+   *         the service is not running and the caller has to write them.
+   */
+  public boolean offer(List<AlertCurrentEntity> toCreateHistoryAndMerge,
+      List<AlertEvent> alertEvents) {
+    PendingAlertStates pending = new PendingAlertStates(toCreateHistoryAndMerge, alertEvents);
+
+    synchronized (m_lock) {
+      if (!m_accepting) {
+        return false;
+      }
+
+      m_pending.add(pending);
+    }
+
+    // keep the latest state in the cache until it has been written
+    for (AlertCurrentEntity current : toCreateHistoryAndMerge) {
+      m_alertsDAO.merge(current, true);
+    }
+
+    return true;
+  }
+
+  /**
+   * Writes all of the pending state changes in a single transaction and then
+   * publishes their events. If the transaction fails, the state changes of
+   * each heartbeat are retried on their own so that one bad alert doesn't lose
+   * the others.
+   */
+  void write() {
+    synchronized (m_writeLock) {
+      List<PendingAlertStates> pending;
+      synchronized (m_lock) {
+        pending = m_pending;
+        m_pending = new ArrayList<>();
+      }
+
+      if (pending.isEmpty()) {
+        return;
+      }
+
+      List<AlertHistoryEntity> histories = new ArrayList<>();
+      Map<Long, AlertCurrentEntity> currentAlerts = new LinkedHashMap<>();
+      for (PendingAlertStates states : pending) {
+        histories.addAll(states.m_histories);
+        for (AlertCurrentEntity current : states.m_currentAlerts) {
+          currentAlerts.put(current.getAlertId(), current);
+        }
+      }
+
+      try {
+        m_alertsDAO.saveAlertStates(histories, currentAlerts.values());
+        LOG.debug("Wrote {} alert state changes of {} heartbeats to the database",
+            histories.size(), pending.size());
+
+        for (PendingAlertStates states : pending) {
+          publish(states.m_alertEvents);
+        }
+      } catch (Exception exception) {
+        LOG.warn("Unable to write {} alert state changes to the database, retrying them separately",
+            histories.size(), exception);
+
+        for (PendingAlertStates states : pending) {
+          try {
+            m_alertsDAO.saveAlertStates(states.m_histories, states.m_currentAlerts);
+            publish(states.m_alertEvents);
+          } catch (Exception retryException) {
+            LOG.error("Unable to write the alert state changes {}", states.m_histories,
+                retryException);
+          }
+        }
+      }
+    }
+  }
+
+  private void publish(List<AlertEvent> alertEvents) {
+    AlertEventPublisher publisher = m_alertEventPublisher.get();
+    for (AlertEvent alertEvent : alertEvents) {
+      publisher.publish(alertEvent);
+    }
+  }
+
+  /**
+   * The state changes of the alerts received in a single heartbeat.
+   */
+  private static final class PendingAlertStates {
+    private final List<AlertHistoryEntity> m_histories;
+    private final Collection<AlertCurrentEntity> m_currentAlerts;
+    private final List<AlertEvent> m_alertEvents;
+
+    private PendingAlertStates(List<AlertCurrentEntity> currentAlerts,
+        List<AlertEvent> alertEvents) {
+      m_currentAlerts = new ArrayList<>(currentAlerts);
+      m_alertEvents = new ArrayList<>(alertEvents);
+      m_histories = new ArrayList<>(currentAlerts.size());
+      for (AlertCurrentEntity current : currentAlerts) {
+        m_histories.add(current.getAlertHistory());
+      }
+    }
+  }
+}
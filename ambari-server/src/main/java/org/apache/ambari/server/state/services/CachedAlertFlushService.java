@@ -29,6 +29,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.util.concurrent.AbstractScheduledService;
 import com.google.inject.Inject;
+import com.google.inject.Provider;
 
 /**
  * The {@link CachedAlertFlushService} is used to periodically flush cached
@@ -57,6 +58,13 @@ public class CachedAlertFlushService extends AbstractScheduledService {
   @Inject
   private AlertsDAO m_alertsDAO;
 
+  /**
+   * Used for writing pending state changes before the cache is flushed, so
+   * that cached alerts never reference history which hasn't been written.
+   */
+  @Inject
+  private Provider<AlertWriteBehindService> m_alertWriteBehindService;
+
   /**
    * {@inheritDoc}
    */
@@ -89,6 +97,7 @@ public class CachedAlertFlushService extends AbstractScheduledService {
   protected void runOneIteration() throws Exception {
     try {
       LOG.info("Flushing cached alerts to the database");
+      m_alertWriteBehindService.get().write();
       m_alertsDAO.flushCachedEntitiesToJPA();
     } catch (Exception exception) {
       LOG.error("Unable to flush cached alerts to the database", exception);
@@ -62,6 +62,20 @@ public class LatestRepoCallable implements Callable<Void> {
     this.os_family = os_family;
   }
 
+  /**
+   * @return the URI the latest repo information is read from
+   */
+  public String getSourceUri() {
+    return sourceUri;
+  }
+
+  /**
+   * @return the stack the latest repo information is resolved for
+   */
+  public StackInfo getStack() {
+    return stack;
+  }
+
   @Override
   public Void call() throws Exception {
 
@@ -117,12 +117,19 @@ public class LogicalRequest extends Request {
 
     // not explicitly reserved, at least not in this request, so attempt to match to outstanding host requests
     boolean predicateRejected = false;
+    // unassigned host requests of a host group share its predicate, so once one of
+    // them declined the host the remaining ones of the group need not be evaluated
+    Set<String> rejectingHostGroups = new HashSet<String>();
     synchronized (outstandingHostRequests) {
       //todo: prioritization of master host requests
       Iterator<HostRequest> hostRequestIterator = outstandingHostRequests.iterator();
       while (hostRequestIterator.hasNext()) {
-        LOG.info("LogicalRequest.offer: attempting to match a request to a request for a non-reserved host to hostname = {}", host.getHostName());
-        HostOfferResponse response = hostRequestIterator.next().offer(host);
+        HostRequest hostRequest = hostRequestIterator.next();
+        if (rejectingHostGroups.contains(hostRequest.getHostgroupName())) {
+          continue;
+        }
+        LOG.debug("LogicalRequest.offer: attempting to match a request to a request for a non-reserved host to hostname = {}", host.getHostName());
+        HostOfferResponse response = hostRequest.offer(host);
         switch (response.getAnswer()) {
           case ACCEPTED:
             hostRequestIterator.remove();
@@ -134,8 +141,11 @@ public class LogicalRequest extends Request {
             LOG.info("LogicalRequest.offer: host request returned DECLINED_DONE for hostname = {}, host request has been removed from list", host.getHostName());
             break;
           case DECLINED_PREDICATE:
-            LOG.info("LogicalRequest.offer: host request returned DECLINED_PREDICATE for hostname = {}", host.getHostName());
+            LOG.debug("LogicalRequest.offer: host request returned DECLINED_PREDICATE for hostname = {}", host.getHostName());
             predicateRejected = true;
+            if (hostRequest.getHostName() == null) {
+              rejectingHostGroups.add(hostRequest.getHostgroupName());
+            }
             break;
         }
       }
@@ -75,6 +75,7 @@ import org.apache.ambari.server.utils.RetryHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Meter;
 import com.google.common.eventbus.Subscribe;
 import com.google.inject.Singleton;
 
@@ -96,6 +97,8 @@ public class TopologyManager {
   private final ExecutorService executor = Executors.newSingleThreadExecutor();
   private final Executor taskExecutor; // executes TopologyTasks
   private final boolean parallelTaskCreationEnabled;
+  private final Meter matchedHosts = new Meter(); // rate at which hosts are matched to requests
+  private static final int MATCHED_HOSTS_LOG_INTERVAL = 100; // log the match rate every this many hosts
   private Collection<String> hostsToIgnore = new HashSet<String>();
   private final List<HostImpl> availableHosts = new LinkedList<HostImpl>();
   private final Map<String, LogicalRequest> reservedHosts = new HashMap<String, LogicalRequest>();
@@ -780,6 +783,12 @@ public class TopologyManager {
 
   private void processAcceptedHostOffer(final ClusterTopology topology, final HostOfferResponse response, final HostImpl host) {
     final String hostName = host.getHostName();
+    matchedHosts.mark();
+    LOG.debug("TopologyManager.processAcceptedHostOffer: host = {} matched", hostName);
+    if (matchedHosts.getCount() % MATCHED_HOSTS_LOG_INTERVAL == 0) {
+      LOG.info("TopologyManager.processAcceptedHostOffer: {} hosts matched so far at {} hosts per second",
+          matchedHosts.getCount(), String.format("%.2f", matchedHosts.getOneMinuteRate()));
+    }
     try {
       topology.addHostToTopology(response.getHostGroupName(), hostName);
 
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * Utilities for storing large text payloads, such as execution commands, in a
+ * compressed form.
+ */
+public final class CompressionUtils {
+
+  /**
+   * The first two bytes of every GZIP stream.
+   */
+  private static final int GZIP_MAGIC = GZIPInputStream.GZIP_MAGIC;
+
+  /**
+   * Compresses <code>text</code> with GZIP.
+   *
+   * @param text
+   *          the text to compress (not {@code null}).
+   * @return the compressed UTF-8 bytes of the text.
+   */
+  public static byte[] compress(String text) {
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, bytes.length / 8));
+    try (OutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(bytes);
+    } catch (IOException e) {
+      // not possible for an in-memory stream
+      throw new IllegalStateException("Unable to compress text", e);
+    }
+
+    return out.toByteArray();
+  }
+
+  /**
+   * Reads text written by {@link #compress(String)}. Bytes which are not
+   * compressed are returned as they are, so that payloads stored before
+   * compression was introduced can still be read.
+   *
+   * @param bytes
+   *          the compressed or plain bytes (not {@code null}).
+   * @return the text.
+   */
+  public static String decompress(byte[] bytes) {
+    if (!isCompressed(bytes)) {
+      return new String(bytes);
+    }
+
+    try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+      return new String(ByteStreams.toByteArray(gzip), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Unable to decompress text", e);
+    }
+  }
+
+  /**
+   * Gets whether <code>bytes</code> start with the GZIP header.
+   */
+  public static boolean isCompressed(byte[] bytes) {
+    return bytes.length > 2 && (bytes[0] & 0xff) == (GZIP_MAGIC & 0xff)
+        && (bytes[1] & 0xff) == (GZIP_MAGIC >> 8 & 0xff);
+  }
+
+  private CompressionUtils() {
+    throw new UnsupportedOperationException("No instances");
+  }
+
+}
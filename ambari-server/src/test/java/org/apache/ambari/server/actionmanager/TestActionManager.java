@@ -30,6 +30,7 @@ import static org.junit.Assert.assertSame;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.ambari.server.AmbariException;
@@ -286,4 +287,36 @@ public class TestActionManager {
 
     verify(queue, db, clusters);
   }
+
+  @Test
+  public void testCompletedCommandAwakesScheduler() throws Exception {
+    ActionDBAccessor db = createNiceMock(ActionDBAccessor.class);
+    ActionScheduler scheduler = createStrictMock(ActionScheduler.class);
+    HostRoleCommand command = createNiceMock(HostRoleCommand.class);
+
+    expect(db.getLastPersistedRequestIdWhenInitialized()).andReturn(Long.valueOf(1000));
+    expect(command.getStatus()).andReturn(HostRoleStatus.IN_PROGRESS).anyTimes();
+
+    // only the completed command wakes the scheduler
+    scheduler.awake();
+    EasyMock.expectLastCall().once();
+
+    replay(db, scheduler, command);
+
+    ActionManager manager = new ActionManager(db, injector.getInstance(RequestFactory.class), scheduler);
+
+    CommandReport inProgress = new CommandReport();
+    inProgress.setTaskId(1);
+    inProgress.setStatus(HostRoleStatus.IN_PROGRESS.name());
+    manager.processTaskResponse(hostname, new ArrayList<>(Arrays.asList(inProgress)),
+        Collections.singletonMap(1L, command));
+
+    CommandReport completed = new CommandReport();
+    completed.setTaskId(1);
+    completed.setStatus(HostRoleStatus.COMPLETED.name());
+    manager.processTaskResponse(hostname, new ArrayList<>(Arrays.asList(completed)),
+        Collections.singletonMap(1L, command));
+
+    verify(scheduler);
+  }
 }
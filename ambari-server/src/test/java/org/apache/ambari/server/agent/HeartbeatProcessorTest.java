@@ -30,18 +30,25 @@ import static org.apache.ambari.server.agent.DummyHeartbeatConstants.HDFS;
 import static org.apache.ambari.server.agent.DummyHeartbeatConstants.HDFS_CLIENT;
 import static org.apache.ambari.server.agent.DummyHeartbeatConstants.NAMENODE;
 import static org.apache.ambari.server.agent.DummyHeartbeatConstants.SECONDARY_NAMENODE;
+import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.H2DatabaseCleaner;
@@ -74,6 +81,7 @@ import org.apache.ambari.server.state.Host;
 import org.apache.ambari.server.state.HostState;
 import org.apache.ambari.server.state.SecurityState;
 import org.apache.ambari.server.state.Service;
+import org.apache.ambari.server.state.ServiceComponent;
 import org.apache.ambari.server.state.ServiceComponentHost;
 import org.apache.ambari.server.state.StackId;
 import org.apache.ambari.server.state.State;
@@ -1364,6 +1372,109 @@ public class HeartbeatProcessorTest {
     assertEquals(State.STOPPING, componentState2);
   }
 
+  /**
+   * A status report repeating the state and stack version the server already
+   * has must not write either of them.
+   */
+  @Test
+  public void testUnchangedStatusReportIsNotWritten() throws Exception {
+    StackId stackId = new StackId(DummyStackId);
+
+    ServiceComponentHost sch = createMock(ServiceComponentHost.class);
+    expect(sch.getState()).andReturn(State.STARTED).anyTimes();
+    expect(sch.getSecurityState()).andReturn(SecurityState.UNSECURED).anyTimes();
+    expect(sch.getStackVersion()).andReturn(stackId).anyTimes();
+
+    ServiceComponent serviceComponent = createMock(ServiceComponent.class);
+    expect(serviceComponent.getServiceComponentHost(DummyHostname1)).andReturn(sch).anyTimes();
+
+    Service service = createMock(Service.class);
+    expect(service.getServiceComponents()).andReturn(
+        Collections.singletonMap(DATANODE, serviceComponent)).anyTimes();
+    expect(service.getServiceComponent(DATANODE)).andReturn(serviceComponent).anyTimes();
 
+    Cluster cluster = createMock(Cluster.class);
+    expect(cluster.getClusterName()).andReturn(DummyCluster).anyTimes();
+    expect(cluster.getService(HDFS)).andReturn(service).anyTimes();
+
+    Clusters mockClusters = createMock(Clusters.class);
+    expect(mockClusters.getClustersForHost(DummyHostname1)).andReturn(
+        Collections.singleton(cluster)).anyTimes();
+
+    ActionManager am = actionManagerTestHelper.getMockActionManager();
+    replay(am, mockClusters, cluster, service, serviceComponent, sch);
+
+    ComponentStatus componentStatus = new ComponentStatus();
+    componentStatus.setClusterName(DummyCluster);
+    componentStatus.setServiceName(HDFS);
+    componentStatus.setComponentName(DATANODE);
+    componentStatus.setStatus(State.STARTED.name());
+    componentStatus.setSecurityState(SecurityState.UNSECURED.name());
+    JsonObject stackVersion = new JsonObject();
+    stackVersion.addProperty("stackName", stackId.getStackName());
+    stackVersion.addProperty("stackVersion", stackId.getStackVersion());
+    componentStatus.setStackVersion(stackVersion.toString());
+
+    HeartBeat hb = new HeartBeat();
+    hb.setHostname(DummyHostname1);
+    hb.setComponentStatus(Collections.singletonList(componentStatus));
+
+    HeartbeatProcessor heartbeatProcessor = new HeartbeatProcessor(mockClusters, am,
+        new HeartbeatMonitor(mockClusters, new ActionQueue(), am, 60000, injector), injector);
+    heartbeatProcessor.processStatusReports(hb);
+
+    // the strict mock fails on setState or setStackVersion
+    verify(sch);
+  }
+
+  @Test
+  public void testHeartbeatsOfHostProcessedInOrder() throws Exception {
+    final int heartbeatsPerHost = 50;
+    final List<String> hostnames = Arrays.asList("host1", "host2", "host3", "host4");
+    final Map<String, List<Long>> alertResponseIds = new ConcurrentHashMap<>();
+    final Map<String, List<Long>> stateResponseIds = new ConcurrentHashMap<>();
+    for (String hostname : hostnames) {
+      alertResponseIds.put(hostname, new CopyOnWriteArrayList<Long>());
+      stateResponseIds.put(hostname, new CopyOnWriteArrayList<Long>());
+    }
+    final CountDownLatch latch = new CountDownLatch(2 * hostnames.size() * heartbeatsPerHost);
+
+    ActionManager am = actionManagerTestHelper.getMockActionManager();
+    replay(am);
+    HeartbeatProcessor heartbeatProcessor = new HeartbeatProcessor(clusters, am,
+        new HeartbeatMonitor(clusters, new ActionQueue(), am, 60000, injector), injector) {
+      @Override
+      protected void processStage(HeartbeatProcessor.Stage stage, HeartBeat heartbeat) {
+        Map<String, List<Long>> responseIds =
+            stage == HeartbeatProcessor.Stage.ALERTS ? alertResponseIds : stateResponseIds;
+        responseIds.get(heartbeat.getHostname()).add(heartbeat.getResponseId());
+        latch.countDown();
+      }
+    };
+    heartbeatProcessor.startAsync().awaitRunning();
+
+    for (long responseId = 0; responseId < heartbeatsPerHost; responseId++) {
+      for (String hostname : hostnames) {
+        HeartBeat hb = new HeartBeat();
+        hb.setHostname(hostname);
+        hb.setResponseId(responseId);
+        heartbeatProcessor.addHeartbeat(hb);
+      }
+    }
+
+    assertTrue(latch.await(30, TimeUnit.SECONDS));
+    heartbeatProcessor.stopAsync().awaitTerminated();
+
+    for (String hostname : hostnames) {
+      for (Map<String, List<Long>> responseIds : Arrays.asList(alertResponseIds, stateResponseIds)) {
+        List<Long> processed = responseIds.get(hostname);
+        assertEquals(heartbeatsPerHost, processed.size());
+        for (int i = 0; i < heartbeatsPerHost; i++) {
+          assertEquals(Long.valueOf(i), processed.get(i));
+        }
+      }
+    }
+    assertEquals(0, heartbeatProcessor.getQueueSize(HeartbeatProcessor.Stage.STATE));
+  }
 
 }
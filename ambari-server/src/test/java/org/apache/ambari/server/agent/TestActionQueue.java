@@ -25,6 +25,7 @@ import static org.junit.Assert.assertTrue;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.ambari.server.agent.AgentCommand.AgentCommandType;
 import org.easymock.EasyMock;
@@ -379,4 +380,39 @@ public class TestActionQueue {
     assertEquals(4, queue.size(c6401));
     assertEquals(3, queue.size(c6402));
   }
+
+  /**
+   * Tests that waiting for commands returns as soon as commands are queued for
+   * the host, and times out otherwise.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testAwaitCommands() throws Exception {
+    final ActionQueue queue = new ActionQueue();
+    final String c6401 = "c6401.ambari.apache.org";
+
+    assertFalse(queue.awaitCommands(c6401, 10, TimeUnit.MILLISECONDS));
+
+    Thread producer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(100);
+        } catch (InterruptedException e) {
+          return;
+        }
+
+        queue.enqueue(c6401,
+            EasyMock.createMockBuilder(ExecutionCommand.class).createNiceMock());
+      }
+    };
+
+    producer.start();
+
+    assertTrue(queue.awaitCommands(c6401, 1, TimeUnit.MINUTES));
+    assertEquals(1, queue.size(c6401));
+
+    producer.join();
+  }
 }
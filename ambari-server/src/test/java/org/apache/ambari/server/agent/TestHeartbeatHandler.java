@@ -51,6 +51,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -221,6 +222,60 @@ public class TestHeartbeatHandler {
     assertEquals(0, aq.dequeueAll(hostname).size());
   }
 
+  @Test
+  public void testAwaitCommandsIgnoresUnknownStatus() throws Exception {
+    ActionManager am = actionManagerTestHelper.getMockActionManager();
+    replay(am);
+
+    ActionQueue aq = new ActionQueue();
+    aq.updateListOfHostsWithUnsentTask(new HashSet<>(Collections.singleton(DummyHostname1)));
+    HeartBeatHandler handler = heartbeatTestHelper.getHeartBeatHandler(am, aq);
+
+    assertFalse(handler.awaitCommands(createReportHeartbeat(null, "NOT_A_STATUS")));
+  }
+
+  @Test
+  public void testAwaitCommandsTimesOut() throws Exception {
+    ActionManager am = actionManagerTestHelper.getMockActionManager();
+    replay(am);
+
+    ActionQueue aq = new ActionQueue();
+    aq.updateListOfHostsWithUnsentTask(new HashSet<>(Collections.singleton(DummyHostname1)));
+    HeartBeatHandler handler = heartbeatTestHelper.getHeartBeatHandler(am, aq);
+
+    long start = System.currentTimeMillis();
+    assertTrue(handler.awaitCommands(createReportHeartbeat(HostRoleStatus.COMPLETED.name())));
+    assertTrue(System.currentTimeMillis() - start >= config.getAgentCommandsWaitTimeout());
+  }
+
+  @Test
+  public void testAwaitCommandsWithoutUnsentTasks() throws Exception {
+    ActionManager am = actionManagerTestHelper.getMockActionManager();
+    replay(am);
+
+    ActionQueue aq = new ActionQueue();
+    aq.updateListOfHostsWithPendingTask(new HashSet<>(Collections.singleton(DummyHostname1)));
+    HeartBeatHandler handler = heartbeatTestHelper.getHeartBeatHandler(am, aq);
+
+    assertFalse(handler.awaitCommands(createReportHeartbeat(HostRoleStatus.COMPLETED.name())));
+  }
+
+  private HeartBeat createReportHeartbeat(String... statuses) {
+    List<CommandReport> reports = new ArrayList<>();
+    for (String status : statuses) {
+      CommandReport report = new CommandReport();
+      report.setRole(DATANODE);
+      report.setStatus(status);
+      reports.add(report);
+    }
+
+    HeartBeat hb = new HeartBeat();
+    hb.setResponseId(0);
+    hb.setHostname(DummyHostname1);
+    hb.setReports(reports);
+    return hb;
+  }
+
 
 
 
@@ -560,7 +560,8 @@ public class AlertResourceProviderTest {
     expect(m_dao.findAll(EasyMock.anyObject(AlertCurrentRequest.class))).andReturn(
         getClusterMockEntities()).atLeastOnce();
 
-    expect(m_dao.getCount(EasyMock.anyObject(Predicate.class))).andReturn(0).atLeastOnce();
+    expect(m_dao.isPageable(EasyMock.anyObject(AlertCurrentRequest.class))).andReturn(true).atLeastOnce();
+    expect(m_dao.getCurrentCount(EasyMock.anyObject(Predicate.class))).andReturn(0).atLeastOnce();
 
     replay(m_dao);
 
@@ -592,6 +593,43 @@ public class AlertResourceProviderTest {
     verify(m_dao);
   }
 
+  /**
+   * A predicate which JPA can't express leaves the paging and the total count
+   * to the cluster controller.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testResponseIsNotPaginatedForUnconvertedPredicate() throws Exception {
+    expect(m_dao.findAll(EasyMock.anyObject(AlertCurrentRequest.class))).andReturn(
+        getClusterMockEntities()).atLeastOnce();
+
+    expect(m_dao.isPageable(EasyMock.anyObject(AlertCurrentRequest.class))).andReturn(false).atLeastOnce();
+
+    replay(m_dao);
+
+    SecurityContextHolder.getContext().setAuthentication(TestAuthenticationFactory.createAdministrator());
+
+    Set<String> requestProperties = new HashSet<String>();
+    requestProperties.add(AlertResourceProvider.ALERT_ID);
+    requestProperties.add(AlertResourceProvider.ALERT_DEFINITION_NAME);
+
+    Predicate predicate = new PredicateBuilder().property(AlertResourceProvider.ALERT_CLUSTER_NAME).equals(
+        "c1").and().property(AlertResourceProvider.ALERT_LABEL).equals("label").toPredicate();
+
+    PageRequest pageRequest = new PageRequestImpl(StartingPoint.Beginning, 5, 10, predicate, null);
+    Request request = PropertyHelper.getReadRequest(requestProperties, null, null, pageRequest, null);
+
+    AlertResourceProvider provider = createProvider();
+    QueryResponse response = provider.queryForResources(request, predicate);
+
+    // the controller pages the in-memory results and counts them itself
+    assertFalse(response.isPagedResponse());
+    assertFalse(response.isSortedResponse());
+
+    verify(m_dao);
+  }
+
   /**
    * @return
    */
@@ -24,7 +24,9 @@ import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -39,7 +41,9 @@ import org.apache.ambari.server.actionmanager.ExecutionCommandWrapperFactory;
 import org.apache.ambari.server.actionmanager.HostRoleCommand;
 import org.apache.ambari.server.controller.AmbariManagementController;
 import org.apache.ambari.server.controller.RequestStatusResponse;
+import org.apache.ambari.server.controller.spi.PageRequest;
 import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.QueryResponse;
 import org.apache.ambari.server.controller.spi.Request;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.controller.spi.ResourceProvider;
@@ -159,6 +163,59 @@ public class TaskResourceProviderTest {
     verify(hostRoleCommandDAO);
   }
 
+  @Test
+  public void testQueryForResourcesPagedInDatabase() throws Exception {
+    Resource.Type type = Resource.Type.Task;
+
+    AmbariManagementController amc = createMock(AmbariManagementController.class);
+    HostRoleCommandDAO hostRoleCommandDAO = createMock(HostRoleCommandDAO.class);
+
+    Injector m_injector = Guice.createInjector(new InMemoryDefaultTestModule());
+    TaskResourceProvider provider = (TaskResourceProvider) AbstractControllerResourceProvider.getResourceProvider(
+        type, PropertyHelper.getPropertyIds(type), PropertyHelper.getKeyPropertyIds(type), amc);
+
+    m_injector.injectMembers(provider);
+    TaskResourceProvider.s_dao = hostRoleCommandDAO;
+
+    List<HostRoleCommandEntity> entities = new ArrayList<>();
+    HostRoleCommandEntity hostRoleCommandEntity = new HostRoleCommandEntity();
+    hostRoleCommandEntity.setRequestId(100L);
+    hostRoleCommandEntity.setTaskId(100L);
+    hostRoleCommandEntity.setStageId(100L);
+    hostRoleCommandEntity.setRole(Role.DATANODE);
+    entities.add(hostRoleCommandEntity);
+
+    Predicate predicate = new PredicateBuilder().property(TaskResourceProvider.TASK_REQUEST_ID_PROPERTY_ID).equals("100").toPredicate();
+    PageRequest pageRequest = new PageRequestImpl(PageRequest.StartingPoint.OffsetStart, 1, 10, predicate, null);
+
+    Set<String> propertyIds = new HashSet<String>();
+    propertyIds.add(TaskResourceProvider.TASK_ID_PROPERTY_ID);
+    Request request = PropertyHelper.getReadRequest(propertyIds, null, null, pageRequest, null);
+
+    // set expectations
+    expect(hostRoleCommandDAO.isPageable(request, predicate)).andReturn(true).once();
+    expect(hostRoleCommandDAO.findAll(request, predicate)).andReturn(entities).once();
+    expect(hostRoleCommandDAO.getCount(predicate)).andReturn(25).once();
+    expect(hostRoleCommandDAO.isPageable(request, predicate)).andReturn(false).once();
+    expect(hostRoleCommandDAO.findAll(request, predicate)).andReturn(entities).once();
+
+    // replay
+    replay(hostRoleCommandDAO);
+
+    // the page and total come from the database
+    QueryResponse response = provider.queryForResources(request, predicate);
+    assertEquals(1, response.getResources().size());
+    assertTrue(response.isPagedResponse());
+    assertEquals(25, response.getTotalResourceCount());
+
+    // otherwise the cluster controller pages the tasks
+    response = provider.queryForResources(request, predicate);
+    assertFalse(response.isPagedResponse());
+
+    // verify
+    verify(hostRoleCommandDAO);
+  }
+
   @Test
   public void testGetResourcesForTopology() throws Exception {
     Resource.Type type = Resource.Type.Task;
@@ -302,7 +302,7 @@ public class UpgradeResourceProviderHDP22Test {
 
     List<ExecutionCommandEntity> currentExecutionCommands = injector.getInstance(ExecutionCommandDAO.class).findAll();
     for (ExecutionCommandEntity ece : currentExecutionCommands) {
-      String executionCommandJson = new String(ece.getCommand());
+      String executionCommandJson = ece.getCommandJson();
       Map<String, Object> commandMap = gson.<Map<String, Object>> fromJson(executionCommandJson, Map.class);
 
       // ensure that the latest tag is being used - this is absolutely required
@@ -43,6 +43,7 @@ import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.internal.TemporalInfoImpl;
 import org.apache.ambari.server.controller.metrics.timeline.MetricsRequestHelper;
 import org.apache.ambari.server.controller.spi.TemporalInfo;
+import org.apache.hadoop.metrics2.sink.timeline.Precision;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.apache.http.client.utils.URIBuilder;
@@ -519,4 +520,63 @@ public class TimelineMetricCacheTest {
 
     verify(configuration, metricsRequestHelperForGets, cacheEntryFactory);
   }
+
+  @Test
+  public void testUpdateEntryValueCoalescesRecentRefresh() throws Exception {
+    Configuration configuration = createNiceMock(Configuration.class);
+    expect(configuration.getMetricRequestBufferTimeCatchupInterval()).andReturn(0l).anyTimes();
+    expect(configuration.getMetricCacheCoalesceIntervalMillis()).andReturn(60000l).anyTimes();
+    replay(configuration);
+
+    final long now = System.currentTimeMillis();
+    final long hour = 3600 * 1000;
+
+    TimelineMetric timelineMetric = new TimelineMetric();
+    timelineMetric.setMetricName("cpu_user");
+    timelineMetric.setAppId("app1");
+    TreeMap<Long, Double> metricValues = new TreeMap<Long, Double>();
+    metricValues.put(now - 1000, 1.0);
+    timelineMetric.setMetricValues(metricValues);
+    TimelineMetrics existingMetrics = new TimelineMetrics();
+    existingMetrics.getMetrics().add(timelineMetric);
+
+    TimelineMetricsCacheValue value = new TimelineMetricsCacheValue(now - hour, now,
+      existingMetrics, Precision.getPrecision(now - hour, now));
+
+    // Same dashboard opened a few seconds later
+    TimelineAppMetricCacheKey key = new TimelineAppMetricCacheKey(
+      Collections.singleton("cpu_user"), "app1",
+      new TemporalInfoImpl(now - hour + 5000, now + 5000, 1));
+    key.setSpec("");
+
+    MetricsRequestHelper requestHelper = createMock(MetricsRequestHelper.class);
+    expect(requestHelper.fetchTimelineMetrics(EasyMock.isA(URIBuilder.class), anyLong(), anyLong()))
+      .andReturn(new TimelineMetrics()).times(2);
+    replay(requestHelper);
+
+    TimelineMetricCacheEntryFactory factory = new TimelineMetricCacheEntryFactory(configuration);
+    Field requestHelperField = TimelineMetricCacheEntryFactory.class.getDeclaredField("requestHelperForUpdates");
+    requestHelperField.setAccessible(true);
+    requestHelperField.set(factory, requestHelper);
+
+    // Refreshed just now, served from the cache as is
+    factory.updateEntryValue(key, value);
+    Assert.assertEquals(now, value.getEndTime().longValue());
+
+    // Refreshed a while ago, the delta is fetched
+    value.setRefreshTime(now - 120000);
+    factory.updateEntryValue(key, value);
+    Assert.assertEquals(now + 5000, value.getEndTime().longValue());
+    Assert.assertTrue(value.getRefreshTime() >= now);
+
+    // Refreshed just now, but the requested window ends well past the cached one
+    TimelineAppMetricCacheKey laterKey = new TimelineAppMetricCacheKey(
+      Collections.singleton("cpu_user"), "app1",
+      new TemporalInfoImpl(now - hour + 125000, now + 125000, 1));
+    laterKey.setSpec("");
+    factory.updateEntryValue(laterKey, value);
+    Assert.assertEquals(now + 125000, value.getEndTime().longValue());
+
+    verify(configuration, requestHelper);
+  }
 }
@@ -0,0 +1,246 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.events.publishers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.events.AlertDefinitionChangedEvent;
+import org.apache.ambari.server.events.AlertDefinitionDeleteEvent;
+import org.apache.ambari.server.events.AlertDefinitionDisabledEvent;
+import org.apache.ambari.server.events.AlertDefinitionRegistrationEvent;
+import org.apache.ambari.server.events.AmbariEvent.AmbariEventType;
+import org.apache.ambari.server.events.ClusterEvent;
+import org.apache.ambari.server.events.HostEvent;
+import org.apache.ambari.server.state.alert.AlertDefinition;
+import org.junit.Test;
+
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * PartitionedEventBus tests.
+ */
+public class PartitionedEventBusTest {
+
+  @Test
+  public void testEventsOfClusterDeliveredInOrder() throws Exception {
+    PartitionedEventBus eventBus = new PartitionedEventBus("test-event-bus", 4, 10, 10000L);
+    OrderListener listener = new OrderListener(400);
+    eventBus.register(listener);
+
+    for (int i = 0; i < 100; i++) {
+      for (long clusterId = 1; clusterId <= 4; clusterId++) {
+        eventBus.post(new SequencedEvent(clusterId, i));
+      }
+    }
+
+    assertTrue(listener.latch.await(30, TimeUnit.SECONDS));
+    for (long clusterId = 1; clusterId <= 4; clusterId++) {
+      List<Integer> sequences = listener.sequences.get(clusterId);
+      assertEquals(100, sequences.size());
+      for (int i = 0; i < 100; i++) {
+        assertEquals(Integer.valueOf(i), sequences.get(i));
+      }
+    }
+  }
+
+  /**
+   * An event without a partition key is delivered after every event published
+   * before it and before every event published after it, whatever their
+   * partition.
+   */
+  @Test
+  public void testEventWithoutKeyOrderedWithAllPartitions() throws Exception {
+    PartitionedEventBus eventBus = new PartitionedEventBus("test-event-bus", 4, 10, 10000L);
+    final List<Object> delivered = Collections.synchronizedList(new ArrayList<Object>());
+    final CountDownLatch latch = new CountDownLatch(401);
+    eventBus.register(new Object() {
+      @Subscribe
+      public void onEvent(SequencedEvent event) {
+        delivered.add(event);
+        latch.countDown();
+      }
+
+      @Subscribe
+      public void onEvent(HostRegistration event) {
+        delivered.add(event);
+        latch.countDown();
+      }
+    });
+
+    for (int i = 0; i < 100; i++) {
+      if (i == 50) {
+        eventBus.post(new HostRegistration("h1"));
+      }
+      for (long clusterId = 1; clusterId <= 4; clusterId++) {
+        eventBus.post(new SequencedEvent(clusterId, i));
+      }
+    }
+
+    assertTrue(latch.await(30, TimeUnit.SECONDS));
+    int registration = -1;
+    for (int i = 0; i < delivered.size(); i++) {
+      if (delivered.get(i) instanceof HostRegistration) {
+        registration = i;
+      }
+    }
+
+    assertEquals(200, registration);
+    for (int i = 0; i < delivered.size(); i++) {
+      if (i != registration) {
+        SequencedEvent event = (SequencedEvent) delivered.get(i);
+        assertEquals(event.sequence < 50, i < registration);
+      }
+    }
+  }
+
+  /**
+   * The events of an alert definition share a partition key, while the
+   * definitions of a cluster are spread over the partitions.
+   */
+  @Test
+  public void testAlertDefinitionEventsKeyedByDefinition() {
+    AlertDefinition definition = new AlertDefinition();
+    definition.setDefinitionId(7L);
+
+    Object key = new AlertDefinitionRegistrationEvent(1L, definition).getPartitionKey();
+    assertEquals(key, new AlertDefinitionChangedEvent(1L, definition).getPartitionKey());
+    assertEquals(key, new AlertDefinitionDisabledEvent(1L, 7L).getPartitionKey());
+    assertEquals(key, new AlertDefinitionDeleteEvent(1L, definition).getPartitionKey());
+
+    Set<Integer> partitions = new HashSet<>();
+    for (long definitionId = 1; definitionId <= 4; definitionId++) {
+      Object definitionKey = new AlertDefinitionDisabledEvent(1L, definitionId).getPartitionKey();
+      partitions.add(PartitionedEventBus.getPartition(definitionKey, 4));
+    }
+    assertEquals(4, partitions.size());
+  }
+
+  @Test
+  public void testListenerPublishingOntoFullPartition() throws Exception {
+    final PartitionedEventBus eventBus = new PartitionedEventBus("test-event-bus", 1, 1, 10000L);
+    final CountDownLatch latch = new CountDownLatch(5);
+    eventBus.register(new Object() {
+      @Subscribe
+      public void onEvent(SequencedEvent event) {
+        // re-publish onto the same (full) partition, which must not block
+        if (event.sequence < 4) {
+          eventBus.post(new SequencedEvent(event.getClusterId(), event.sequence + 1));
+          eventBus.post(new SequencedEvent(event.getClusterId(), 100));
+        }
+        latch.countDown();
+      }
+
+      @Subscribe
+      public void onFailingEvent(SequencedEvent event) {
+        throw new IllegalStateException("failing listener");
+      }
+    });
+
+    eventBus.post(new SequencedEvent(1, 0));
+    assertTrue(latch.await(30, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testPublishingOntoFullPartitionDoesNotBlock() throws Exception {
+    PartitionedEventBus eventBus = new PartitionedEventBus("test-event-bus", 1, 1, 10000L);
+    final CountDownLatch release = new CountDownLatch(1);
+    final List<Integer> delivered = Collections.synchronizedList(new ArrayList<Integer>());
+    eventBus.register(new Object() {
+      @Subscribe
+      public void onEvent(SequencedEvent event) throws InterruptedException {
+        release.await(30, TimeUnit.SECONDS);
+        delivered.add(event.sequence);
+      }
+    });
+
+    // the partition stays full until the listener is released, so posting
+    // would never return if it waited for room
+    for (int i = 0; i < 10; i++) {
+      eventBus.post(new SequencedEvent(1, i));
+    }
+
+    release.countDown();
+    long deadline = System.currentTimeMillis() + 30000L;
+    while (delivered.size() < 10 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+
+    List<Integer> expected = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      expected.add(i);
+    }
+    assertEquals(expected, delivered);
+  }
+
+  @Test
+  public void testPartition() {
+    assertEquals(0, PartitionedEventBus.getPartition(null, 4));
+    assertEquals(PartitionedEventBus.getPartition(2L, 4), PartitionedEventBus.getPartition(2L, 4));
+    for (long key = -10; key < 10; key++) {
+      int partition = PartitionedEventBus.getPartition(key, 3);
+      assertTrue(partition >= 0 && partition < 3);
+    }
+  }
+
+  private static final class SequencedEvent extends ClusterEvent {
+    private final int sequence;
+
+    private SequencedEvent(long clusterId, int sequence) {
+      super(AmbariEventType.SERVICE_INSTALL_SUCCESS, clusterId);
+      this.sequence = sequence;
+    }
+  }
+
+  private static final class HostRegistration extends HostEvent {
+    private HostRegistration(String hostName) {
+      super(AmbariEventType.HOST_REGISTERED, hostName);
+    }
+  }
+
+  private static final class OrderListener {
+    private final ConcurrentMap<Long, List<Integer>> sequences = new ConcurrentHashMap<>();
+    private final CountDownLatch latch;
+
+    private OrderListener(int events) {
+      latch = new CountDownLatch(events);
+    }
+
+    @Subscribe
+    public void onEvent(SequencedEvent event) {
+      List<Integer> clusterSequences = sequences.get(event.getClusterId());
+      if (null == clusterSequences) {
+        sequences.putIfAbsent(event.getClusterId(), new ArrayList<Integer>());
+        clusterSequences = sequences.get(event.getClusterId());
+      }
+
+      clusterSequences.add(event.sequence);
+      latch.countDown();
+    }
+  }
+}
@@ -19,11 +19,15 @@ package org.apache.ambari.server.logging;
 
 import static org.easymock.EasyMock.expect;
 
+import java.lang.management.ManagementFactory;
+import java.util.Map;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import javax.management.ObjectName;
+
 import org.apache.ambari.server.configuration.Configuration;
 import org.easymock.EasyMockSupport;
 import org.junit.Assert;
@@ -92,4 +96,35 @@ public class LockFactoryTest extends EasyMockSupport {
     verifyAll();
   }
 
+  @Test
+  public void exposesStatisticsByLockName() throws Exception {
+    Configuration config = createNiceMock(Configuration.class);
+    expect(config.isServerLocksProfilingEnabled()).andReturn(true);
+    replayAll();
+
+    LockFactory factory = new LockFactory(config);
+    Lock first = factory.newLock("stripedLock");
+    Lock second = factory.newLock("stripedLock");
+    ReadWriteLock readWriteLock = factory.newReadWriteLock("globalLock");
+
+    first.lock();
+    first.unlock();
+    second.lock();
+    second.unlock();
+    readWriteLock.readLock().lock();
+    readWriteLock.readLock().unlock();
+
+    Map<String, Long> lockCount = factory.getLockCount();
+    Assert.assertEquals(Long.valueOf(2), lockCount.get("stripedLock"));
+    Assert.assertEquals(Long.valueOf(1), lockCount.get("globalLock (read)"));
+    Assert.assertEquals(Long.valueOf(0), lockCount.get("globalLock (write)"));
+    Assert.assertTrue(factory.getTimeSpentLocked().containsKey("stripedLock"));
+    Assert.assertTrue(factory.getTimeSpentWaitingForLock().containsKey("stripedLock"));
+
+    Assert.assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(
+        new ObjectName(LockFactory.MBEAN_NAME)));
+
+    verifyAll();
+  }
+
 }
@@ -194,6 +194,33 @@ public class MITKerberosOperationHandlerTest extends KerberosOperationHandlerTes
     Assert.assertTrue(query.getValue().contains(" " + KERBEROS_ENV_MAP.get(MITKerberosOperationHandler.KERBEROS_ENV_KDC_CREATE_ATTRIBUTES) + " "));
   }
 
+  @Test
+  public void testCreateServicePrincipal_NoAdditionalAttributes() throws Exception {
+    Method invokeKAdmin = MITKerberosOperationHandler.class.getDeclaredMethod("invokeKAdmin", String.class, String.class);
+
+    Map<String, String> kerberosEnvMap = new HashMap<String, String>(KERBEROS_ENV_MAP);
+    kerberosEnvMap.remove(MITKerberosOperationHandler.KERBEROS_ENV_KDC_CREATE_ATTRIBUTES);
+
+    ShellCommandUtil.Result result1 = createNiceMock(ShellCommandUtil.Result.class);
+    expect(result1.getStderr()).andReturn("").anyTimes();
+    expect(result1.getStdout()).andReturn("Principal \"" + DEFAULT_ADMIN_PRINCIPAL + "\" created\"").anyTimes();
+
+    MITKerberosOperationHandler handler = createMockBuilder(MITKerberosOperationHandler.class)
+        .addMockedMethod(invokeKAdmin)
+        .createStrictMock();
+
+    // a principal created with the default attributes has the initial key number, so no
+    // get_principal query is expected
+    expect(handler.invokeKAdmin(anyString(), anyString())).andReturn(result1).once();
+
+    replay(handler, result1);
+
+    handler.open(new PrincipalKeyCredential(DEFAULT_ADMIN_PRINCIPAL, DEFAULT_ADMIN_PASSWORD), DEFAULT_REALM, kerberosEnvMap);
+    Assert.assertEquals(Integer.valueOf(1), handler.createPrincipal(DEFAULT_ADMIN_PRINCIPAL, DEFAULT_ADMIN_PASSWORD, false));
+
+    verify(handler, result1);
+  }
+
   @Test(expected = KerberosPrincipalAlreadyExistsException.class)
   public void testCreatePrincipalPrincipalAlreadyNotExists() throws Exception {
     MITKerberosOperationHandler handler = createMock();
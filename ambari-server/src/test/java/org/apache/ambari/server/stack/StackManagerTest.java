@@ -39,6 +39,9 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.Role;
@@ -55,9 +58,11 @@ import org.apache.ambari.server.state.ClientConfigFileDefinition;
 import org.apache.ambari.server.state.CommandScriptDefinition;
 import org.apache.ambari.server.state.ComponentInfo;
 import org.apache.ambari.server.state.PropertyInfo;
+import org.apache.ambari.server.state.RepositoryInfo;
 import org.apache.ambari.server.state.ServiceInfo;
 import org.apache.ambari.server.state.ServiceOsSpecific;
 import org.apache.ambari.server.state.StackInfo;
+import org.apache.ambari.server.state.stack.LatestRepoCallable;
 import org.apache.ambari.server.state.stack.MetricDefinition;
 import org.apache.ambari.server.state.stack.OsFamily;
 import org.apache.ambari.server.state.stack.UpgradePack;
@@ -94,6 +99,15 @@ public class StackManagerTest {
   }
 
   public static StackManager createTestStackManager(String stackRoot) throws Exception {
+    return createTestStackManager(stackRoot, null);
+  }
+
+  /**
+   * @param parserThreads  number of threads parsing the stack definitions, 1 or
+   *                       4; the number of processors if null
+   */
+  private static StackManager createTestStackManager(String stackRoot, Integer parserThreads)
+      throws Exception {
     // todo: dao , actionMetaData expectations
     metaInfoDao = createNiceMock(MetainfoDAO.class);
     stackDao = createNiceMock(StackDAO.class);
@@ -119,8 +133,17 @@ public class StackManagerTest {
 
     osFamily = new OsFamily(config);
 
-    StackManager stackManager = new StackManager(new File(stackRoot), null, null, osFamily, false,
-        metaInfoDao, actionMetadata, stackDao, extensionDao, linkDao);
+    StackManager stackManager;
+    if (null == parserThreads) {
+      stackManager = new StackManager(new File(stackRoot), null, null, osFamily, false,
+          metaInfoDao, actionMetadata, stackDao, extensionDao, linkDao);
+    } else if (1 == parserThreads) {
+      stackManager = new SerialStackManager(new File(stackRoot), osFamily,
+          metaInfoDao, actionMetadata, stackDao, extensionDao, linkDao);
+    } else {
+      stackManager = new ParallelStackManager(new File(stackRoot), osFamily,
+          metaInfoDao, actionMetadata, stackDao, extensionDao, linkDao);
+    }
 
     verify(config, metaInfoDao, stackDao, actionMetadata);
 
@@ -1009,4 +1032,76 @@ public class StackManagerTest {
     assertTrue(logsearchLogfeederRoleCommand + " should be dependent of " + infraSolrRoleCommand, logsearchLogfeederBlockers.contains(infraSolrRoleCommand));
     assertTrue(logsearchLogfeederRoleCommand + " should be dependent of " + logsearchServerRoleCommand, logsearchLogfeederBlockers.contains(logsearchServerRoleCommand));
   }
+
+  @Test
+  public void testParallelParseMatchesSerialParse() throws Exception {
+    String stack = ClassLoader.getSystemClassLoader().getResource("stacks").getPath();
+    StackManager serial = createTestStackManager(stack, 1);
+    StackManager parallel = createTestStackManager(stack, 4);
+
+    assertEquals(describeStacks(serial), describeStacks(parallel));
+
+    Set<String> repoTasks = describeRepoTasks(serial);
+    assertFalse(repoTasks.isEmpty());
+    assertEquals(repoTasks, describeRepoTasks(parallel));
+  }
+
+  private static Map<String, String> describeStacks(StackManager stackManager) {
+    Map<String, String> stacks = new TreeMap<>();
+    for (StackInfo stack : stackManager.getStacks()) {
+      Set<String> services = new TreeSet<>();
+      for (ServiceInfo service : stack.getServices()) {
+        services.add(service.getName() + "-" + service.getVersion() + ":" + service.getComponents().size());
+      }
+      Set<String> repos = new TreeSet<>();
+      for (RepositoryInfo repo : stack.getRepositories()) {
+        repos.add(repo.getOsType() + ":" + repo.getRepoId() + ":" + repo.getBaseUrl());
+      }
+      stacks.put(stack.getName() + "-" + stack.getVersion(), services + " " + repos);
+    }
+    return stacks;
+  }
+
+  private static Set<String> describeRepoTasks(StackManager stackManager) {
+    Set<String> tasks = new TreeSet<>();
+    for (LatestRepoCallable task : stackManager.getStackContext().getRepoTasks()) {
+      tasks.add(task.getStack().getName() + "-" + task.getStack().getVersion() + ":" + task.getSourceUri());
+    }
+    return tasks;
+  }
+
+  /**
+   * Parses the stack definitions on the calling thread only.
+   */
+  private static class SerialStackManager extends StackManager {
+    SerialStackManager(File stackRoot, OsFamily osFamily, MetainfoDAO metaInfoDao,
+        ActionMetadata actionMetadata, StackDAO stackDao, ExtensionDAO extensionDao,
+        ExtensionLinkDAO linkDao) throws AmbariException {
+      super(stackRoot, null, null, osFamily, false, metaInfoDao, actionMetadata, stackDao,
+          extensionDao, linkDao);
+    }
+
+    @Override
+    protected int getParserThreadCount() {
+      return 1;
+    }
+  }
+
+  /**
+   * Parses the stack definitions on several threads, whatever the number of
+   * processors.
+   */
+  private static class ParallelStackManager extends StackManager {
+    ParallelStackManager(File stackRoot, OsFamily osFamily, MetainfoDAO metaInfoDao,
+        ActionMetadata actionMetadata, StackDAO stackDao, ExtensionDAO extensionDao,
+        ExtensionLinkDAO linkDao) throws AmbariException {
+      super(stackRoot, null, null, osFamily, false, metaInfoDao, actionMetadata, stackDao,
+          extensionDao, linkDao);
+    }
+
+    @Override
+    protected int getParserThreadCount() {
+      return 4;
+    }
+  }
 }
@@ -45,6 +45,7 @@ import org.apache.ambari.server.controller.AmbariManagementController;
 import org.apache.ambari.server.controller.ClusterRequest;
 import org.apache.ambari.server.controller.ConfigurationRequest;
 import org.apache.ambari.server.controller.spi.ClusterController;
+import org.apache.ambari.server.events.ClusterConfigChangedEvent;
 import org.apache.ambari.server.orm.DBAccessor;
 import org.apache.ambari.server.orm.GuiceJpaInitializer;
 import org.apache.ambari.server.orm.InMemoryDefaultTestModule;
@@ -449,6 +450,37 @@ public class ConfigHelperTest {
       Assert.assertEquals("30", coreProps.get("ipc.client.connect.max.retries"));
     }
 
+    @Test
+    public void testEffectivePropertiesCacheEvictedOnConfigChange() throws Exception {
+      Map<String, Map<String, String>> desiredTags = configHelper.getEffectiveDesiredTags(cluster, "h1");
+
+      Map<String, String> coreProps = configHelper.getEffectiveConfigProperties(cluster, desiredTags).get("core-site");
+      Assert.assertEquals("30", coreProps.get("fs.trash.interval"));
+
+      // modifying the returned properties must not leak into other callers
+      coreProps.put("fs.trash.interval", "0");
+      coreProps = configHelper.getEffectiveConfigProperties(cluster, desiredTags).get("core-site");
+      Assert.assertEquals("30", coreProps.get("fs.trash.interval"));
+
+      Config config = cluster.getConfig("core-site", "version1");
+      Map<String, String> properties = new HashMap<>(config.getProperties());
+      properties.put("fs.trash.interval", "60");
+      config.setProperties(properties);
+
+      // changes in place keep the tag, and are visible before the change event
+      coreProps = configHelper.getEffectiveConfigProperties(cluster, desiredTags).get("core-site");
+      Assert.assertEquals("60", coreProps.get("fs.trash.interval"));
+
+      config.updateProperties(Collections.singletonMap("fs.trash.interval", "90"));
+      coreProps = configHelper.getEffectiveConfigProperties(cluster, desiredTags).get("core-site");
+      Assert.assertEquals("90", coreProps.get("fs.trash.interval"));
+
+      configHelper.onConfigChanged(new ClusterConfigChangedEvent(clusterName, "core-site", "version1", config.getVersion()));
+
+      coreProps = configHelper.getEffectiveConfigProperties(cluster, desiredTags).get("core-site");
+      Assert.assertEquals("90", coreProps.get("fs.trash.interval"));
+    }
+
     @Test
     public void testEffectivePropertiesAttributesWithOverrides() throws Exception {
 
@@ -0,0 +1,180 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.events.AlertEvent;
+import org.apache.ambari.server.orm.DBAccessor;
+import org.apache.ambari.server.orm.dao.AlertDefinitionDAO;
+import org.apache.ambari.server.orm.dao.AlertsDAO;
+import org.apache.ambari.server.orm.entities.AlertCurrentEntity;
+import org.apache.ambari.server.orm.entities.AlertHistoryEntity;
+import org.apache.ambari.server.state.Cluster;
+import org.apache.ambari.server.state.Clusters;
+import org.apache.ambari.server.state.stack.OsFamily;
+import org.easymock.Capture;
+import org.easymock.EasyMock;
+import org.easymock.EasyMockSupport;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import com.google.inject.Binder;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+
+/**
+ * Tests the {@link AlertWriteBehindService}.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(AlertWriteBehindService.class)
+public class AlertWriteBehindServiceTest extends EasyMockSupport {
+
+  private Injector m_injector;
+
+  @Before
+  public void before() {
+    // create an injector which will inject the mocks
+    m_injector = Guice.createInjector(new MockModule());
+    Configuration configuration = m_injector.getInstance(Configuration.class);
+    EasyMock.reset(configuration);
+  }
+
+  /**
+   * Tests that the service does not run or accept state changes if caching is
+   * disabled.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testServiceIsDisabled() throws Exception {
+    Configuration configuration = m_injector.getInstance(Configuration.class);
+    EasyMock.expect(configuration.isAlertCacheEnabled()).andReturn(Boolean.FALSE).atLeastOnce();
+
+    // mock the stopAsync method
+    AlertWriteBehindService service = PowerMockito.spy(new AlertWriteBehindService());
+    PowerMockito.doReturn(null).when(service).stopAsync();
+
+    replayAll();
+
+    m_injector.injectMembers(service);
+    service.startUp();
+
+    PowerMockito.verifyPrivate(service).invoke("stopAsync");
+    Assert.assertFalse(service.offer(Collections.singletonList(createCurrent(1L)),
+        Collections.<AlertEvent> emptyList()));
+
+    verifyAll();
+  }
+
+  /**
+   * Tests that the state changes received in several heartbeats are written
+   * in a single transaction, keeping the latest state of each current alert.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testStateChangesAreWrittenTogether() throws Exception {
+    Configuration configuration = m_injector.getInstance(Configuration.class);
+    EasyMock.expect(configuration.isAlertCacheEnabled()).andReturn(Boolean.TRUE).atLeastOnce();
+    EasyMock.expect(configuration.getAlertCacheWriteBehindInterval()).andReturn(1000).atLeastOnce();
+
+    AlertCurrentEntity first = createCurrent(1L);
+    AlertCurrentEntity second = createCurrent(2L);
+    AlertCurrentEntity secondAgain = createCurrent(2L);
+
+    Capture<List<AlertHistoryEntity>> histories = EasyMock.newCapture();
+    Capture<Collection<AlertCurrentEntity>> currentAlerts = EasyMock.newCapture();
+
+    AlertsDAO alertsDAO = m_injector.getInstance(AlertsDAO.class);
+    alertsDAO.saveAlertStates(EasyMock.capture(histories), EasyMock.capture(currentAlerts));
+    EasyMock.expectLastCall().once();
+
+    replayAll();
+
+    AlertWriteBehindService service = new AlertWriteBehindService();
+    m_injector.injectMembers(service);
+    service.startUp();
+
+    Assert.assertTrue(service.offer(Arrays.asList(first, second),
+        Collections.<AlertEvent> emptyList()));
+    Assert.assertTrue(service.offer(Collections.singletonList(secondAgain),
+        Collections.<AlertEvent> emptyList()));
+
+    service.runOneIteration();
+
+    // nothing left to write
+    service.runOneIteration();
+
+    verifyAll();
+
+    Assert.assertEquals(Arrays.asList(first.getAlertHistory(), second.getAlertHistory(),
+        secondAgain.getAlertHistory()), histories.getValue());
+
+    Assert.assertEquals(Arrays.asList(first, secondAgain),
+        new ArrayList<>(currentAlerts.getValue()));
+  }
+
+  private AlertCurrentEntity createCurrent(long alertId) {
+    AlertCurrentEntity current = new AlertCurrentEntity();
+    current.setAlertId(alertId);
+    current.setAlertHistory(new AlertHistoryEntity());
+    return current;
+  }
+
+  /**
+   *
+   */
+  private class MockModule implements Module {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void configure(Binder binder) {
+      Cluster cluster = EasyMock.createNiceMock(Cluster.class);
+
+      // required for since the configuration is being mocked
+      Configuration configuration = createNiceMock(Configuration.class);
+      EasyMock.expect(configuration.getAlertEventPublisherPoolSize()).andReturn(2).anyTimes();
+
+      EasyMock.replay(configuration);
+
+      binder.bind(Configuration.class).toInstance(configuration);
+      binder.bind(Clusters.class).toInstance(createNiceMock(Clusters.class));
+      binder.bind(OsFamily.class).toInstance(createNiceMock(OsFamily.class));
+      binder.bind(DBAccessor.class).toInstance(createNiceMock(DBAccessor.class));
+      binder.bind(Cluster.class).toInstance(cluster);
+      binder.bind(AlertDefinitionDAO.class).toInstance(createNiceMock(AlertDefinitionDAO.class));
+      binder.bind(AlertsDAO.class).toInstance(createNiceMock(AlertsDAO.class));
+      binder.bind(EntityManager.class).toInstance(createNiceMock(EntityManager.class));
+    }
+  }
+}
@@ -17,6 +17,7 @@
  */
 package org.apache.ambari.server.topology;
 
+import static org.easymock.EasyMock.anyObject;
 import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.junit.Assert.assertEquals;
@@ -25,12 +26,15 @@ import static org.powermock.api.easymock.PowerMock.mockStatic;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.annotation.Nullable;
 
 import org.apache.ambari.server.controller.AmbariManagementController;
 import org.apache.ambari.server.controller.AmbariServer;
 import org.apache.ambari.server.controller.internal.ProvisionAction;
+import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.orm.entities.TopologyHostGroupEntity;
 import org.apache.ambari.server.orm.entities.TopologyHostInfoEntity;
 import org.apache.ambari.server.orm.entities.TopologyHostRequestEntity;
@@ -39,6 +43,8 @@ import org.apache.ambari.server.orm.entities.TopologyLogicalRequestEntity;
 import org.apache.ambari.server.orm.entities.TopologyRequestEntity;
 import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
+import org.apache.ambari.server.state.HostHealthStatus;
+import org.apache.ambari.server.state.host.HostImpl;
 import org.easymock.EasyMockRule;
 import org.easymock.EasyMockSupport;
 import org.easymock.Mock;
@@ -339,4 +345,67 @@ public class LogicalRequestTest extends EasyMockSupport {
     assertTrue(completedHostReq1.isPresent() && completedHostReq2.isPresent());
 
   }
+
+  @Test
+  public void testOfferEvaluatesHostGroupPredicateOncePerGroup() throws Exception {
+    // Given
+    Map<String, HostGroupInfo> hostGroupInfoMap = new LinkedHashMap<>();
+    org.apache.ambari.server.controller.spi.Predicate predicate1 =
+      createMock(org.apache.ambari.server.controller.spi.Predicate.class);
+    org.apache.ambari.server.controller.spi.Predicate predicate2 =
+      createMock(org.apache.ambari.server.controller.spi.Predicate.class);
+    hostGroupInfoMap.put("host_group_1", createHostGroupInfo("host_group_1", 3, predicate1));
+    hostGroupInfoMap.put("host_group_2", createHostGroupInfo("host_group_2", 2, predicate2));
+    hostGroupInfoMap.put("host_group_3", createHostGroupInfo("host_group_3", 1, null, "host2"));
+    expect(replayedTopologyRequest.getHostGroupInfo()).andReturn(hostGroupInfoMap).anyTimes();
+
+    // each group declines the host once, however many requests it has outstanding
+    expect(predicate1.evaluate(anyObject(Resource.class))).andReturn(false).once();
+    expect(predicate2.evaluate(anyObject(Resource.class))).andReturn(false).once();
+
+    HostImpl host1 = createHost("host1");
+    HostImpl host2 = createHost("host2");
+
+    replayAll();
+
+    LogicalRequest req = new LogicalRequest(1L, replayedTopologyRequest, clusterTopology);
+
+    // When
+    HostOfferResponse response1 = req.offer(host1);
+    HostOfferResponse response2 = req.offer(host2);
+
+    // Then
+    verifyAll();
+
+    assertEquals(HostOfferResponse.Answer.DECLINED_PREDICATE, response1.getAnswer());
+    // the request for a reserved host name still accepts its host
+    assertEquals(HostOfferResponse.Answer.ACCEPTED, response2.getAnswer());
+    assertEquals("host_group_3", response2.getHostGroupName());
+    assertTrue(req.getReservedHosts().isEmpty());
+  }
+
+  private HostGroupInfo createHostGroupInfo(String name, int count,
+      org.apache.ambari.server.controller.spi.Predicate predicate, String... hostNames) {
+    HostGroup hostGroup = createNiceMock(HostGroup.class);
+    expect(hostGroup.getName()).andReturn(name).anyTimes();
+    expect(hostGroup.getComponentNames()).andReturn(Collections.<String>emptySet()).anyTimes();
+    expect(hostGroup.getComponentNames(anyObject(ProvisionAction.class)))
+      .andReturn(Collections.<String>emptySet()).anyTimes();
+    expect(blueprint.getHostGroup(name)).andReturn(hostGroup).anyTimes();
+
+    HostGroupInfo hostGroupInfo = createNiceMock(HostGroupInfo.class);
+    expect(hostGroupInfo.getHostGroupName()).andReturn(name).anyTimes();
+    expect(hostGroupInfo.getRequestedHostCount()).andReturn(count).anyTimes();
+    expect(hostGroupInfo.getHostNames()).andReturn(ImmutableSet.copyOf(hostNames)).anyTimes();
+    expect(hostGroupInfo.getPredicate()).andReturn(predicate).anyTimes();
+    return hostGroupInfo;
+  }
+
+  private HostImpl createHost(String hostName) {
+    HostImpl host = createNiceMock(HostImpl.class);
+    expect(host.getHostName()).andReturn(hostName).anyTimes();
+    expect(host.getHealthStatus()).andReturn(
+      new HostHealthStatus(HostHealthStatus.HealthStatus.HEALTHY, "")).anyTimes();
+    return host;
+  }
 }
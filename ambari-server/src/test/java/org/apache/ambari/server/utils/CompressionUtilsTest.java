@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CompressionUtilsTest {
+
+  private static final String JSON = "{\"commandType\":\"EXECUTION_COMMAND\",\"clusterName\":\"c1\","
+      + "\"configurations\":{\"core-site\":{\"fs.defaultFS\":\"hdfs://c6401.ambari.apache.org:8020\"}}}";
+
+  @Test
+  public void roundTrips() throws Exception {
+    byte[] compressed = CompressionUtils.compress(JSON);
+
+    assertTrue(CompressionUtils.isCompressed(compressed));
+    assertEquals(JSON, CompressionUtils.decompress(compressed));
+  }
+
+  @Test
+  public void readsUncompressedBytes() throws Exception {
+    byte[] plain = JSON.getBytes();
+
+    assertFalse(CompressionUtils.isCompressed(plain));
+    assertEquals(JSON, CompressionUtils.decompress(plain));
+  }
+
+  @Test
+  public void compressesRepeatedConfigurations() throws Exception {
+    StringBuilder json = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      json.append(JSON);
+    }
+
+    assertTrue(CompressionUtils.compress(json.toString()).length < json.length() / 10);
+  }
+}